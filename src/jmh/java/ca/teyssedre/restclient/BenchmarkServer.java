@@ -0,0 +1,111 @@
+package ca.teyssedre.restclient;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * HTTP server bound to the loopback interface serving fixed payloads, so that the benchmarks
+ * measure the library rather than the network : /small a JSON object of 128 bytes, /large
+ * 256KB of binary, /gzip 256KB of JSON compressed with gzip, any other path echoing the size
+ * of the request body.
+ */
+final class BenchmarkServer {
+
+    static final int LARGE_SIZE = 256 * 1024;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    BenchmarkServer() throws IOException {
+        final byte[] small = Payloads.json(128);
+        final byte[] large = Payloads.binary(LARGE_SIZE);
+        final byte[] gzip = gzip(Payloads.json(LARGE_SIZE));
+        // without TCP_NODELAY the body written after the headers waits for the delayed ACK, 40ms
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0), 0);
+        executor = Executors.newFixedThreadPool(4);
+        server.setExecutor(executor);
+        server.createContext("/small", new FixedHandler(small, "application/json", null));
+        server.createContext("/large", new FixedHandler(large, "application/octet-stream", null));
+        server.createContext("/gzip", new FixedHandler(gzip, "application/json", "gzip"));
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                long count = drain(exchange.getRequestBody());
+                byte[] body = Long.toString(count).getBytes("US-ASCII");
+                exchange.getResponseHeaders().set("Content-Type", "text/plain");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(body);
+                os.close();
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static long drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        long count = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            count += read;
+        }
+        return count;
+    }
+
+    static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream zip = new GZIPOutputStream(out);
+        zip.write(bytes);
+        zip.close();
+        return out.toByteArray();
+    }
+
+    private static final class FixedHandler implements HttpHandler {
+
+        private final byte[] body;
+        private final String contentType;
+        private final String encoding;
+
+        FixedHandler(byte[] body, String contentType, String encoding) {
+            this.body = body;
+            this.contentType = contentType;
+            this.encoding = encoding;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            drain(exchange.getRequestBody());
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            if (encoding != null) {
+                exchange.getResponseHeaders().set("Content-Encoding", encoding);
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            OutputStream os = exchange.getResponseBody();
+            os.write(body);
+            os.close();
+            exchange.close();
+        }
+    }
+}
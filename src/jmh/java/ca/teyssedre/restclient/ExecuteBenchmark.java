@@ -0,0 +1,113 @@
+package ca.teyssedre.restclient;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole exchanges through {@link HttpClient#execute(HttpRequest)} against the
+ * {@link BenchmarkServer}, with the {@link java.net.HttpURLConnection} transport, going through
+ * {@link HttpRequest#doWrite()} and {@link HttpRequest#doRead()}, or with the {@link NioTransport}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExecuteBenchmark {
+
+    @Param({"urlconnection", "nio"})
+    public String transport;
+
+    private BenchmarkServer server;
+    private HttpTransport nio;
+    private HttpClient client;
+    private String smallUrl;
+    private String largeUrl;
+    private String gzipUrl;
+    private String echoUrl;
+    private String json;
+    private byte[] binary;
+
+    @Setup(Level.Trial)
+    public void startServer() throws Exception {
+        server = new BenchmarkServer();
+        smallUrl = server.url("/small");
+        largeUrl = server.url("/large");
+        gzipUrl = server.url("/gzip");
+        echoUrl = server.url("/echo");
+        json = Payloads.jsonString(4 * 1024);
+        binary = Payloads.binary(64 * 1024);
+    }
+
+    /**
+     * The client keeps the response of every request by id, a new client per iteration keeps
+     * the heap from growing over the run.
+     */
+    @Setup(Level.Iteration)
+    public void createClient() {
+        client = new HttpClient();
+        if ("nio".equals(transport)) {
+            nio = new NioTransport();
+            client.setTransport(nio);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeClient() {
+        if (nio != null) {
+            nio.shutdown();
+            nio = null;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() {
+        server.stop();
+    }
+
+    @Benchmark
+    public HttpResponse getSmall() throws Exception {
+        return check(client.execute(new HttpRequest(smallUrl)));
+    }
+
+    @Benchmark
+    public HttpResponse getLarge() throws Exception {
+        return check(client.execute(new HttpRequest(largeUrl)));
+    }
+
+    @Benchmark
+    public HttpResponse getGzip() throws Exception {
+        return check(client.execute(new HttpRequest(gzipUrl)));
+    }
+
+    @Benchmark
+    public HttpResponse postString() throws Exception {
+        return check(client.execute(new HttpRequest(echoUrl, HttpRequestType.POST).addData(json)));
+    }
+
+    @Benchmark
+    public HttpResponse postBinary() throws Exception {
+        return check(client.execute(new HttpRequest(echoUrl, HttpRequestType.POST).addBinary(binary)));
+    }
+
+    private static HttpResponse check(HttpResponse response) {
+        if (response.getException() != null) {
+            throw new IllegalStateException(response.getException());
+        }
+        return response;
+    }
+}
@@ -0,0 +1,55 @@
+package ca.teyssedre.restclient;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding of a {@link HttpForm} of 20 fields, with characters to escape, as a {@link String}
+ * and streamed as the request body.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FormBenchmark {
+
+    private static final String FIRST = "value 0 & more = été/0";
+
+    private HttpForm form;
+    private final Payloads.Sink sink = new Payloads.Sink();
+
+    @Setup
+    public void setUp() {
+        form = new HttpForm().add("field_0", FIRST);
+        for (int i = 1; i < 20; i++) {
+            form.add("field_" + i, "value " + i + " & more = été/" + i);
+        }
+    }
+
+    @Benchmark
+    public String serialize() throws IOException {
+        return form.serialize();
+    }
+
+    @Benchmark
+    public long stream() throws IOException {
+        // replacing a field forgets the length computed by the previous call
+        form.add("field_0", FIRST);
+        long length = form.contentLength();
+        form.writeTo(sink);
+        return length + sink.count;
+    }
+}
@@ -0,0 +1,100 @@
+package ca.teyssedre.restclient;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handling of the headers : merge of the default and request headers, write of the request head
+ * and parse of the response head by the {@link NioTransport}, lookup ignoring the case in a
+ * {@link HttpResponse} filled by {@link java.net.HttpURLConnection}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HeaderBenchmark {
+
+    private static final String RESPONSE_HEAD = "HTTP/1.1 200 OK\r\n"
+            + "Date: Sun, 18 Oct 2026 10:00:00 GMT\r\n"
+            + "Server: benchmark\r\n"
+            + "Content-Type: application/json; charset=utf-8\r\n"
+            + "Content-Length: 1024\r\n"
+            + "Cache-Control: private, max-age=60\r\n"
+            + "ETag: \"5f2b1c\"\r\n"
+            + "Vary: Accept-Encoding\r\n"
+            + "X-RateLimit-Remaining: 99\r\n"
+            + "X-RateLimit-Reset: 60\r\n"
+            + "Set-Cookie: session=abc; Path=/; HttpOnly\r\n"
+            + "Set-Cookie: theme=dark; Path=/\r\n"
+            + "Connection: keep-alive\r\n"
+            + "\r\n";
+
+    private HttpRequest request;
+    private URL url;
+    private List<HttpHeader> headers;
+    private byte[] head;
+    private HttpResponse response;
+    private final Payloads.Sink sink = new Payloads.Sink();
+
+    @Setup
+    public void setUp() throws Exception {
+        request = new HttpRequest("http://127.0.0.1/headers?page=1");
+        for (int i = 0; i < 6; i++) {
+            request.addHeader("X-Custom-" + i, "value-" + i);
+        }
+        request.addHeader("Authorization", "Bearer 0123456789abcdef");
+        request.addHeader("Accept", "application/json");
+        url = new URL(request.getUrl());
+        headers = request.buildHeaders(null);
+        head = RESPONSE_HEAD.getBytes("ISO-8859-1");
+        Map<String, List<String>> values = new HashMap<>();
+        Http1Codec.Head parsed = Http1Codec.readHead(new ByteArrayInputStream(head));
+        for (Map.Entry<String, List<String>> entry : parsed.headers.entrySet()) {
+            values.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        values.put(null, Collections.singletonList("HTTP/1.1 200 OK"));
+        response = new HttpResponse();
+        response.setHeaders(values);
+    }
+
+    @Benchmark
+    public List<HttpHeader> buildHeaders() throws IOException {
+        return request.buildHeaders(null);
+    }
+
+    @Benchmark
+    public long writeRequestHead() throws IOException {
+        Http1Codec.writeRequest(sink, url, "GET", headers, null);
+        return sink.count;
+    }
+
+    @Benchmark
+    public Http1Codec.Head readResponseHead() throws IOException {
+        return Http1Codec.readHead(new ByteArrayInputStream(head));
+    }
+
+    @Benchmark
+    public String lookupHeader() {
+        return response.getHeader("content-type");
+    }
+}
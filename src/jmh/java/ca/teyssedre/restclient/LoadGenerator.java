@@ -0,0 +1,357 @@
+package ca.teyssedre.restclient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end load driver running {@link HttpClient} against the {@link LoadServer} : a number of
+ * threads send a mix of requests for a duration, after a warm up, then the throughput, the
+ * latency percentiles per method and the reuse of the connections are reported. Run with
+ * {@code ./gradlew loadTest -PloadArgs="--concurrency=32 --transport=nio"}, the options being :
+ * <pre>
+ * --concurrency=16        threads sending the requests
+ * --duration=10           seconds of measurement
+ * --warmup=3              seconds of warm up, not measured
+ * --transport=nio         urlconnection or nio
+ * --mix=GET:80,POST:20    weights of the {@link HttpRequestType}
+ * --response-size=1024    bytes of the response body
+ * --request-size=4096     bytes of the POST and PUT bodies
+ * --gzip=false            gzip the responses and the request bodies
+ * --latency=0             latency in millisecond injected by the server, or a range as 5-20
+ * --stream=false          read the GET responses as a stream instead of buffering them
+ * </pre>
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+public final class LoadGenerator {
+
+    /**
+     * The client keeps the response of every request by id, each worker replaces its client after
+     * this number of requests so that the heap stays flat over long runs.
+     */
+    private static final int CLIENT_REQUESTS = 1000;
+    private static final double[] PERCENTILES = {0.50, 0.75, 0.90, 0.95, 0.99, 0.999, 0.9999};
+
+    private final Options options;
+    private final LatencyHistogram[] latencies = new LatencyHistogram[HttpRequestType.values().length];
+    private final AtomicLong errors = new AtomicLong();
+    private volatile boolean running = true;
+    private volatile boolean measuring;
+    private LoadServer server;
+    private HttpTransport transport;
+    private byte[] requestBody;
+
+    private LoadGenerator(Options options) {
+        this.options = options;
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        new LoadGenerator(options).run();
+    }
+
+    private void run() throws Exception {
+        server = new LoadServer(options.responseSize, options.gzip, options.minLatency, options.maxLatency);
+        transport = "nio".equals(options.transport) ? new NioTransport() : null;
+        requestBody = Payloads.json(Math.max(options.requestSize, 16));
+        List<Worker> workers = new ArrayList<>();
+        try {
+            for (int i = 0; i < options.concurrency; i++) {
+                Worker worker = new Worker(i);
+                workers.add(worker);
+                worker.start();
+            }
+            Thread.sleep(options.warmup * 1000L);
+            long connections = server.getConnectionCount();
+            long serverRequests = server.getRequestCount();
+            long start = System.nanoTime();
+            measuring = true;
+            Thread.sleep(options.duration * 1000L);
+            running = false;
+            long elapsed = System.nanoTime() - start;
+            for (Worker worker : workers) {
+                worker.join();
+            }
+            report(workers, elapsed, server.getConnectionCount() - connections,
+                    server.getRequestCount() - serverRequests);
+        } finally {
+            running = false;
+            if (transport != null) {
+                transport.shutdown();
+            }
+            server.stop();
+        }
+    }
+
+    private void report(List<Worker> workers, long elapsed, long connections, long serverRequests) {
+        long requests = 0;
+        for (LatencyHistogram histogram : latencies) {
+            requests += histogram.getCount();
+        }
+        long exchanges = 0;
+        long newConnections = 0;
+        long reused = 0;
+        long staleRetries = 0;
+        long discarded = 0;
+        for (Worker worker : workers) {
+            exchanges += worker.exchanges;
+            newConnections += worker.newConnections;
+            reused += worker.reused;
+            staleRetries += worker.staleRetries;
+            discarded += worker.discarded;
+        }
+        double seconds = elapsed / 1e9;
+        System.out.println(options);
+        System.out.println(String.format(Locale.US, "requests %d in %.1fs, %.1f req/s, errors %d",
+                requests, seconds, requests / seconds, errors.get()));
+        StringBuilder header = new StringBuilder("latency (us)");
+        for (double percentile : PERCENTILES) {
+            header.append(String.format(Locale.US, "%10s", "p" + format(percentile * 100)));
+        }
+        header.append(String.format(Locale.US, "%10s%10s%10s", "max", "mean", "count"));
+        System.out.println(header);
+        for (HttpRequestType type : HttpRequestType.values()) {
+            LatencyHistogram histogram = latencies[type.ordinal()];
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            StringBuilder line = new StringBuilder(String.format(Locale.US, "%-12s", type.name()));
+            for (double percentile : PERCENTILES) {
+                line.append(String.format(Locale.US, "%10d", histogram.percentile(percentile)));
+            }
+            line.append(String.format(Locale.US, "%10d%10.0f%10d", histogram.getMax(), histogram.getMean(),
+                    histogram.getCount()));
+            System.out.println(line);
+        }
+        System.out.println(String.format(Locale.US, "server   connections opened %d for %d requests, %.2f%% reused",
+                connections, serverRequests, serverRequests == 0 ? 0 : 100.0 * (serverRequests - connections) / serverRequests));
+        System.out.println(String.format(Locale.US, "client   exchanges %d, new %d, reused %d, stale retries %d, discarded %d",
+                exchanges, newConnections, reused, staleRetries, discarded));
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    private HttpClient newClient() {
+        HttpClient client = new HttpClient().setTransport(transport);
+        if (options.gzip) {
+            client.setRequestCompression(0);
+        }
+        return client;
+    }
+
+    /**
+     * Thread sending requests until the end of the run, its own {@link HttpClient} counting the
+     * connections of the measured requests only.
+     */
+    private final class Worker extends Thread {
+
+        private final Random random;
+        private final String url;
+        private long exchanges;
+        private long newConnections;
+        private long reused;
+        private long staleRetries;
+        private long discarded;
+
+        Worker(int index) {
+            super("load-" + index);
+            random = new Random(index);
+            url = server.url("/load/" + index);
+        }
+
+        @Override
+        public void run() {
+            HttpClient client = newClient();
+            boolean measured = false;
+            int sent = 0;
+            byte[] drain = new byte[8192];
+            while (running) {
+                if (!measured && measuring) {
+                    measured = true;
+                    client = newClient();
+                    sent = 0;
+                } else if (++sent % CLIENT_REQUESTS == 0) {
+                    if (measured) {
+                        add(client.getConnectionStats());
+                    }
+                    client = newClient();
+                }
+                HttpRequestType type = options.pick(random);
+                try {
+                    HttpRequest request = new HttpRequest(url, type, HttpContentType.APPLICATION_JSON);
+                    if (type == HttpRequestType.POST || type == HttpRequestType.PUT) {
+                        request.addBody(HttpBody.create(requestBody));
+                    } else if (type == HttpRequestType.GET && options.stream) {
+                        request.setResponseMode(HttpResponseMode.STREAM);
+                    }
+                    long start = System.nanoTime();
+                    HttpResponse response = client.execute(request);
+                    boolean failed = response.getException() != null;
+                    InputStream in = failed ? null : response.getBodyStream();
+                    if (in != null) {
+                        try {
+                            while (in.read(drain) != -1) {
+                                // read the whole body as a caller would
+                            }
+                        } finally {
+                            in.close();
+                        }
+                    }
+                    long micros = (System.nanoTime() - start) / 1000;
+                    if (measured && running) {
+                        if (failed) {
+                            errors.incrementAndGet();
+                        } else {
+                            latencies[type.ordinal()].record(micros);
+                        }
+                    }
+                } catch (Exception e) {
+                    if (measured && running) {
+                        errors.incrementAndGet();
+                    }
+                }
+            }
+            if (measured) {
+                add(client.getConnectionStats());
+            }
+        }
+
+        private void add(ConnectionStats stats) {
+            exchanges += stats.getExchangeCount();
+            newConnections += stats.getNewConnectionCount();
+            reused += stats.getReusedConnectionCount();
+            staleRetries += stats.getStaleRetryCount();
+            discarded += stats.getDiscardedCount();
+        }
+    }
+
+    /**
+     * Options of the run, parsed from the arguments.
+     */
+    static final class Options {
+
+        int concurrency = 16;
+        int duration = 10;
+        int warmup = 3;
+        String transport = "nio";
+        String mix = "GET:80,POST:20";
+        int responseSize = 1024;
+        int requestSize = 4096;
+        boolean gzip;
+        long minLatency;
+        long maxLatency;
+        boolean stream;
+        private HttpRequestType[] types;
+        private int[] weights;
+        private int totalWeight;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                int equal = arg.indexOf('=');
+                if (!arg.startsWith("--") || equal < 0) {
+                    throw new IllegalArgumentException("Unexpected argument " + arg + ", expecting --name=value");
+                }
+                options.set(arg.substring(2, equal), arg.substring(equal + 1));
+            }
+            options.parseMix();
+            if (options.concurrency < 1 || options.duration < 1 || options.warmup < 0) {
+                throw new IllegalArgumentException("concurrency and duration must be positive");
+            }
+            if (!"nio".equals(options.transport) && !"urlconnection".equals(options.transport)) {
+                throw new IllegalArgumentException("Unknown transport " + options.transport);
+            }
+            return options;
+        }
+
+        private void set(String name, String value) {
+            try {
+                if ("concurrency".equals(name)) {
+                    concurrency = Integer.parseInt(value);
+                } else if ("duration".equals(name)) {
+                    duration = Integer.parseInt(value);
+                } else if ("warmup".equals(name)) {
+                    warmup = Integer.parseInt(value);
+                } else if ("transport".equals(name)) {
+                    transport = value.toLowerCase(Locale.US);
+                } else if ("mix".equals(name)) {
+                    mix = value;
+                } else if ("response-size".equals(name)) {
+                    responseSize = Integer.parseInt(value);
+                } else if ("request-size".equals(name)) {
+                    requestSize = Integer.parseInt(value);
+                } else if ("gzip".equals(name)) {
+                    gzip = Boolean.parseBoolean(value);
+                } else if ("latency".equals(name)) {
+                    int dash = value.indexOf('-');
+                    minLatency = Long.parseLong(dash < 0 ? value : value.substring(0, dash));
+                    maxLatency = dash < 0 ? minLatency : Long.parseLong(value.substring(dash + 1));
+                } else if ("stream".equals(name)) {
+                    stream = Boolean.parseBoolean(value);
+                } else {
+                    throw new IllegalArgumentException("Unknown option --" + name);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value of --" + name + ": " + value);
+            }
+        }
+
+        private void parseMix() {
+            String[] entries = mix.split(",");
+            types = new HttpRequestType[entries.length];
+            weights = new int[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                String[] parts = entries[i].trim().split(":");
+                try {
+                    types[i] = HttpRequestType.valueOf(parts[0].trim().toUpperCase(Locale.US));
+                    weights[i] = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Invalid mix entry " + entries[i]);
+                }
+                if (types[i] == HttpRequestType.UNKNOWNS || weights[i] < 0) {
+                    throw new IllegalArgumentException("Invalid mix entry " + entries[i]);
+                }
+                totalWeight += weights[i];
+            }
+            if (totalWeight == 0) {
+                throw new IllegalArgumentException("The mix has no weight");
+            }
+        }
+
+        HttpRequestType pick(Random random) {
+            int value = random.nextInt(totalWeight);
+            for (int i = 0; i < types.length; i++) {
+                value -= weights[i];
+                if (value < 0) {
+                    return types[i];
+                }
+            }
+            return types[types.length - 1];
+        }
+
+        @Override
+        public String toString() {
+            return "transport=" + transport + " concurrency=" + concurrency + " duration=" + duration + "s mix=" + mix
+                    + " response=" + responseSize + "B request=" + requestSize + "B gzip=" + gzip + " latency="
+                    + minLatency + (maxLatency > minLatency ? "-" + maxLatency : "") + "ms stream=" + stream;
+        }
+    }
+}
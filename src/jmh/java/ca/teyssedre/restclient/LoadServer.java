@@ -0,0 +1,130 @@
+package ca.teyssedre.restclient;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stub server of the {@link LoadGenerator}, bound to the loopback interface : it drains the request
+ * body, waits the injected latency and answers a fixed body, gzipped when the client accepts it.
+ * The connections are counted by the address of the client, whatever the transport, since
+ * {@link java.net.HttpURLConnection} doesn't expose its plain HTTP connections.
+ */
+final class LoadServer {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] body;
+    private final byte[] gzipBody;
+    private final long minLatency;
+    private final long maxLatency;
+    private final ConcurrentMap<InetSocketAddress, Boolean> clients = new ConcurrentHashMap<>();
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    /**
+     * @param size       {@link Integer} number of bytes of the response body.
+     * @param gzip       true to compress the responses of the clients accepting gzip.
+     * @param minLatency {@link Long} minimal latency in millisecond added to each response.
+     * @param maxLatency {@link Long} maximal latency in millisecond, uniformly distributed.
+     * @throws IOException if the server can't be bound.
+     */
+    LoadServer(int size, boolean gzip, long minLatency, long maxLatency) throws IOException {
+        this.body = Payloads.json(Math.max(size, 16));
+        this.gzipBody = gzip ? BenchmarkServer.gzip(body) : null;
+        this.minLatency = minLatency;
+        this.maxLatency = Math.max(minLatency, maxLatency);
+        // without TCP_NODELAY the body written after the headers waits for the delayed ACK, 40ms
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0), 1024);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleExchange(exchange);
+            }
+        });
+        server.start();
+    }
+
+    private void handleExchange(HttpExchange exchange) throws IOException {
+        if (clients.putIfAbsent(exchange.getRemoteAddress(), Boolean.TRUE) == null) {
+            connections.incrementAndGet();
+        }
+        requests.incrementAndGet();
+        try {
+            bytesReceived.addAndGet(drain(exchange.getRequestBody()));
+            long latency = minLatency;
+            if (maxLatency > minLatency) {
+                latency += new Random().nextInt((int) (maxLatency - minLatency + 1));
+            }
+            if (latency > 0) {
+                Thread.sleep(latency);
+            }
+            byte[] payload = body;
+            String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (gzipBody != null && accept != null && accept.contains("gzip")) {
+                payload = gzipBody;
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, payload.length);
+            OutputStream os = exchange.getResponseBody();
+            os.write(payload);
+            os.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static long drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        long count = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            count += read;
+        }
+        return count;
+    }
+
+    String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    /**
+     * @return number of connections opened by the clients, an address reused by the system after
+     * a close being counted once.
+     */
+    long getConnectionCount() {
+        return connections.get();
+    }
+
+    long getRequestCount() {
+        return requests.get();
+    }
+
+    long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,74 @@
+package ca.teyssedre.restclient;
+
+import java.io.OutputStream;
+
+/**
+ * Deterministic payloads shared by the benchmarks.
+ */
+final class Payloads {
+
+    private Payloads() {
+    }
+
+    /**
+     * @param size {@link Integer} number of bytes, at least 16.
+     * @return JSON array of objects padded to the size, compressible like a real API response.
+     */
+    static byte[] json(int size) {
+        StringBuilder builder = new StringBuilder(size + 64);
+        builder.append('[');
+        int id = 0;
+        while (builder.length() < size - 48) {
+            if (id > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"id\":").append(id).append(",\"name\":\"item ").append(id)
+                    .append("\",\"active\":").append(id % 2 == 0).append('}');
+            id++;
+        }
+        builder.append(']');
+        while (builder.length() < size) {
+            builder.append(' ');
+        }
+        return builder.toString().getBytes();
+    }
+
+    static String jsonString(int size) {
+        return new String(json(size));
+    }
+
+    /**
+     * @param size {@link Integer} number of bytes.
+     * @return pseudo random bytes, not compressible.
+     */
+    static byte[] binary(int size) {
+        byte[] bytes = new byte[size];
+        int seed = 0x2545F491;
+        for (int i = 0; i < size; i++) {
+            seed ^= seed << 13;
+            seed ^= seed >>> 17;
+            seed ^= seed << 5;
+            bytes[i] = (byte) seed;
+        }
+        return bytes;
+    }
+
+    /**
+     * {@link OutputStream} discarding the bytes written, counting them so that the JIT can't
+     * remove the writes.
+     */
+    static final class Sink extends OutputStream {
+
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package ca.teyssedre.restclient;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read path of {@link HttpRequest#doRead()} without the socket : decoding and buffering of a
+ * body already received, or handing it as a stream drained by the caller.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReadBenchmark {
+
+    @Param({"small", "large", "gzip"})
+    public String body;
+
+    private byte[] payload;
+    private String encoding;
+    private HttpRequest buffered;
+    private HttpRequest streamed;
+    private final byte[] drain = new byte[8192];
+
+    @Setup
+    public void setUp() throws Exception {
+        if ("small".equals(body)) {
+            payload = Payloads.json(128);
+        } else if ("large".equals(body)) {
+            payload = Payloads.binary(BenchmarkServer.LARGE_SIZE);
+        } else {
+            payload = BenchmarkServer.gzip(Payloads.json(BenchmarkServer.LARGE_SIZE));
+            encoding = "gzip";
+        }
+        buffered = new HttpRequest("http://127.0.0.1/read");
+        streamed = new HttpRequest("http://127.0.0.1/read");
+        streamed.setResponseMode(HttpResponseMode.STREAM);
+    }
+
+    @Benchmark
+    public HttpResponse readBuffered() throws IOException {
+        HttpResponse response = new HttpResponse();
+        buffered.readBody(response, 200, new ByteArrayInputStream(payload), payload.length, encoding);
+        return response;
+    }
+
+    @Benchmark
+    public long readStreamed() throws IOException {
+        HttpResponse response = new HttpResponse();
+        streamed.readBody(response, 200, new ByteArrayInputStream(payload), payload.length, encoding);
+        InputStream in = response.getBodyStream();
+        long count = 0;
+        try {
+            int read;
+            while ((read = in.read(drain)) != -1) {
+                count += read;
+            }
+        } finally {
+            in.close();
+        }
+        return count;
+    }
+}
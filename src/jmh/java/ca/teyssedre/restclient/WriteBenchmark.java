@@ -0,0 +1,62 @@
+package ca.teyssedre.restclient;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write path of {@link HttpRequest#doWrite()} without the socket : selection of the body, its
+ * optional compression and its serialization, for string and binary bodies.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WriteBenchmark {
+
+    @Param({"1024", "65536"})
+    public int size;
+
+    /**
+     * Compression threshold of the request, -1 to send the body as is.
+     */
+    @Param({"-1", "0"})
+    public long compression;
+
+    private HttpRequest string;
+    private HttpRequest binary;
+    private final Payloads.Sink sink = new Payloads.Sink();
+
+    @Setup
+    public void setUp() throws Exception {
+        string = new HttpRequest("http://127.0.0.1/write", HttpRequestType.POST).addData(Payloads.jsonString(size));
+        string.setCompressionThreshold(compression);
+        binary = new HttpRequest("http://127.0.0.1/write", HttpRequestType.POST).addBinary(Payloads.binary(size));
+        binary.setCompressionThreshold(compression);
+    }
+
+    @Benchmark
+    public long writeString() throws IOException {
+        string.prepareBody().writeTo(sink);
+        return sink.count;
+    }
+
+    @Benchmark
+    public long writeBinary() throws IOException {
+        binary.prepareBody().writeTo(sink);
+        return sink.count;
+    }
+}
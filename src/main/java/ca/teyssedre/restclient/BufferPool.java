@@ -0,0 +1,145 @@
+package ca.teyssedre.restclient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recycled byte and char buffers shared by the execution of the requests : the copies, the drains
+ * of the connections and the bodies of unknown length are read through fixed size segments taken
+ * from this pool instead of fresh arrays. The bytes allocated are counted globally and per thread,
+ * {@link HttpRequest#getAllocatedBytes()} giving the share of each request.
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+@SuppressWarnings("unused")
+public final class BufferPool {
+
+    /**
+     * Size in bytes of the pooled segments, the char segments have the same size in bytes.
+     */
+    public static final int SEGMENT_SIZE = 8 * 1024;
+    private static final int MAX_SEGMENTS = 32;
+    private static final BufferPool SHARED = new BufferPool(MAX_SEGMENTS);
+    private static final ThreadLocal<long[]> THREAD_ALLOCATED = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    private final int maxSegments;
+    private final List<byte[]> byteSegments = new ArrayList<>();
+    private final List<char[]> charSegments = new ArrayList<>();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final AtomicLong recycledCount = new AtomicLong();
+
+    BufferPool(int maxSegments) {
+        this.maxSegments = maxSegments;
+    }
+
+    /**
+     * @return {@link BufferPool} instance used by all the clients.
+     */
+    public static BufferPool shared() {
+        return SHARED;
+    }
+
+    //<editor-fold desc="Segments">
+    byte[] takeBytes() {
+        synchronized (byteSegments) {
+            if (!byteSegments.isEmpty()) {
+                recycledCount.incrementAndGet();
+                return byteSegments.remove(byteSegments.size() - 1);
+            }
+        }
+        count(SEGMENT_SIZE);
+        return new byte[SEGMENT_SIZE];
+    }
+
+    void recycle(byte[] segment) {
+        if (segment == null || segment.length != SEGMENT_SIZE) {
+            return;
+        }
+        synchronized (byteSegments) {
+            if (byteSegments.size() < maxSegments) {
+                byteSegments.add(segment);
+            }
+        }
+    }
+
+    char[] takeChars() {
+        synchronized (charSegments) {
+            if (!charSegments.isEmpty()) {
+                recycledCount.incrementAndGet();
+                return charSegments.remove(charSegments.size() - 1);
+            }
+        }
+        count(SEGMENT_SIZE);
+        return new char[SEGMENT_SIZE / 2];
+    }
+
+    void recycle(char[] segment) {
+        if (segment == null || segment.length != SEGMENT_SIZE / 2) {
+            return;
+        }
+        synchronized (charSegments) {
+            if (charSegments.size() < maxSegments) {
+                charSegments.add(segment);
+            }
+        }
+    }
+
+    /**
+     * Allocate an array which is not recycled, a response body for example, counting its size.
+     *
+     * @param size {@link Integer} length of the array.
+     * @return new array of byte.
+     */
+    byte[] allocate(int size) {
+        count(size);
+        return new byte[size];
+    }
+
+    private void count(long bytes) {
+        allocatedBytes.addAndGet(bytes);
+        THREAD_ALLOCATED.get()[0] += bytes;
+    }
+    //</editor-fold>
+
+    /**
+     * @return {@link Long} number of bytes allocated by the current thread through the pools.
+     */
+    static long threadAllocatedBytes() {
+        return THREAD_ALLOCATED.get()[0];
+    }
+
+    /**
+     * @return {@link Long} number of bytes allocated since the creation of the pool, the segments
+     * created when the pool was empty and the arrays of the bodies.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    /**
+     * @return {@link Long} number of segments served from the pool instead of being allocated.
+     */
+    public long getRecycledCount() {
+        return recycledCount.get();
+    }
+
+    /**
+     * @return {@link Integer} number of segments currently waiting in the pool.
+     */
+    public int getPooledCount() {
+        int count;
+        synchronized (byteSegments) {
+            count = byteSegments.size();
+        }
+        synchronized (charSegments) {
+            return count + charSegments.size();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package ca.teyssedre.restclient;
+
+import java.util.List;
+
+/**
+ * Directives of the Cache-Control headers relevant for a private client cache.
+ */
+final class CacheControl {
+
+    boolean noStore;
+    boolean noCache;
+    boolean mustRevalidate;
+    long maxAgeSeconds = -1;
+
+    private CacheControl() {
+    }
+
+    static CacheControl parse(List<String> values) {
+        CacheControl control = new CacheControl();
+        if (values == null) {
+            return control;
+        }
+        for (String value : values) {
+            if (value == null) {
+                continue;
+            }
+            for (String directive : value.split(",")) {
+                String token = directive.trim().toLowerCase();
+                if ("no-store".equals(token)) {
+                    control.noStore = true;
+                } else if (token.startsWith("no-cache")) {
+                    control.noCache = true;
+                } else if ("must-revalidate".equals(token)) {
+                    control.mustRevalidate = true;
+                } else if (token.startsWith("max-age=")) {
+                    try {
+                        control.maxAgeSeconds = Long.parseLong(token.substring(8).replace("\"", "").trim());
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+            }
+        }
+        return control;
+    }
+}
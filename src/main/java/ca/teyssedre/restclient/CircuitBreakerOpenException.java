@@ -0,0 +1,32 @@
+package ca.teyssedre.restclient;
+
+import java.io.IOException;
+
+/**
+ * Exception set on the {@link HttpResponse} when the {@link HttpCircuitBreaker} of the host is
+ * open : the request failed immediately, without any connection.
+ */
+public class CircuitBreakerOpenException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String host;
+    private final long retryAfter;
+
+    public CircuitBreakerOpenException(String host, long retryAfter) {
+        super("Circuit breaker open for " + host + ", retry in " + retryAfter + " ms");
+        this.host = host;
+        this.retryAfter = retryAfter;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @return {@link Long} delay in millisecond before the circuit lets trial requests through.
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,119 @@
+package ca.teyssedre.restclient;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.SSLSession;
+
+/**
+ * Counters of the connections used by a {@link HttpClient}. The connections opened for HTTPS
+ * requests are observed through the {@link javax.net.ssl.SSLSocketFactory}; the plain HTTP
+ * connections of {@link java.net.HttpURLConnection} can't be observed and are only part of the
+ * exchange count. The TLS handshakes of the new connections are counted as full or resumed, a
+ * resumed one reusing a session negotiated before the connection.
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+public class ConnectionStats {
+
+    private final AtomicLong exchangeCount = new AtomicLong();
+    private final AtomicLong trackedExchangeCount = new AtomicLong();
+    private final AtomicLong newConnectionCount = new AtomicLong();
+    private final AtomicLong staleRetryCount = new AtomicLong();
+    private final AtomicLong discardedCount = new AtomicLong();
+    private final AtomicLong fullHandshakeCount = new AtomicLong();
+    private final AtomicLong resumedHandshakeCount = new AtomicLong();
+
+    void exchange(boolean tracked) {
+        exchangeCount.incrementAndGet();
+        if (tracked) {
+            trackedExchangeCount.incrementAndGet();
+        }
+    }
+
+    void newConnection() {
+        newConnectionCount.incrementAndGet();
+    }
+
+    void staleRetry() {
+        staleRetryCount.incrementAndGet();
+    }
+
+    void discarded() {
+        discardedCount.incrementAndGet();
+    }
+
+    void handshake(boolean resumed) {
+        if (resumed) {
+            resumedHandshakeCount.incrementAndGet();
+        } else {
+            fullHandshakeCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param session {@link SSLSession} negotiated by a handshake.
+     * @param start   {@link Long} time in millisecond of the creation of the connection.
+     * @return true if the session was created before the connection, the handshake resuming it.
+     */
+    static boolean isResumed(SSLSession session, long start) {
+        return session != null && session.getCreationTime() < start;
+    }
+
+    /**
+     * @return number of exchanges with a server, including the retries.
+     */
+    public long getExchangeCount() {
+        return exchangeCount.get();
+    }
+
+    /**
+     * @return number of exchanges which connection could be observed.
+     */
+    public long getTrackedExchangeCount() {
+        return trackedExchangeCount.get();
+    }
+
+    /**
+     * @return number of connections opened, with the TCP and TLS setup.
+     */
+    public long getNewConnectionCount() {
+        return newConnectionCount.get();
+    }
+
+    /**
+     * @return number of observed exchanges which reused a pooled connection.
+     */
+    public long getReusedConnectionCount() {
+        return Math.max(0, trackedExchangeCount.get() - newConnectionCount.get());
+    }
+
+    /**
+     * @return number of idempotent requests transparently resent after a failure of a pooled connection.
+     */
+    public long getStaleRetryCount() {
+        return staleRetryCount.get();
+    }
+
+    /**
+     * @return number of connections closed instead of being returned to the pool, after a failure
+     * or a body too long to be drained.
+     */
+    public long getDiscardedCount() {
+        return discardedCount.get();
+    }
+
+    /**
+     * @return number of TLS handshakes negotiating a new session.
+     */
+    public long getFullHandshakeCount() {
+        return fullHandshakeCount.get();
+    }
+
+    /**
+     * @return number of TLS handshakes resuming a session, without the key exchange.
+     */
+    public long getResumedHandshakeCount() {
+        return resumedHandshakeCount.get();
+    }
+}
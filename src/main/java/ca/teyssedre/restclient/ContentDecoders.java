@@ -0,0 +1,409 @@
+package ca.teyssedre.restclient;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Registry of the decoders of the response bodies, keyed by Content-Encoding. gzip and deflate are
+ * supported out of the box, both inflated by pooled {@link Inflater} instances, and other codecs
+ * could be plugged through {@link #register(String, Decoder)}. The Accept-Encoding header sent with
+ * the requests lists only the registered encodings.
+ * <pre>
+ * client.getContentDecoders().register("br", new ContentDecoders.Decoder() {
+ *     public InputStream decode(InputStream in) throws IOException {
+ *         return new BrotliInputStream(in);
+ *     }
+ * });
+ * </pre>
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+@SuppressWarnings("unused")
+public class ContentDecoders {
+
+    private static final int MAX_POOLED_INFLATERS = 8;
+    private static final List<Inflater> INFLATERS = new ArrayList<>();
+
+    /**
+     * Decoder of a content encoding.
+     */
+    public interface Decoder {
+        /**
+         * @param in {@link InputStream} of the encoded body.
+         * @return {@link InputStream} of the decoded body, closing it must close the encoded stream.
+         * @throws IOException if the body can't be decoded.
+         */
+        InputStream decode(InputStream in) throws IOException;
+    }
+
+    /**
+     * gzip (RFC 1952) : the header and the trailer are parsed here, the data being inflated by a
+     * pooled raw {@link Inflater}.
+     */
+    public static final Decoder GZIP = new Decoder() {
+        @Override
+        public InputStream decode(InputStream in) throws IOException {
+            return new InflatingInputStream(in, true);
+        }
+    };
+
+    /**
+     * deflate (RFC 9110) : a zlib stream (RFC 1950) in theory, some servers send raw deflate data
+     * (RFC 1951) which is detected from the first bytes.
+     */
+    public static final Decoder DEFLATE = new Decoder() {
+        @Override
+        public InputStream decode(InputStream in) throws IOException {
+            return new InflatingInputStream(in, false);
+        }
+    };
+
+    private final Map<String, Decoder> decoders = new LinkedHashMap<>();
+    private volatile String acceptEncoding;
+
+    public ContentDecoders() {
+        register("gzip", GZIP);
+        register("deflate", DEFLATE);
+    }
+
+    /**
+     * @param encoding {@link String} name of the encoding, as found in the Content-Encoding header.
+     * @param decoder  {@link Decoder} instance, null to remove the encoding.
+     * @return the current instance of {@link ContentDecoders}.
+     */
+    public synchronized ContentDecoders register(String encoding, Decoder decoder) {
+        String name = encoding.trim().toLowerCase(Locale.US);
+        if (decoder == null) {
+            decoders.remove(name);
+        } else {
+            decoders.put(name, decoder);
+        }
+        acceptEncoding = null;
+        return this;
+    }
+
+    /**
+     * @return {@link String} value of the Accept-Encoding header, "identity" when no decoder is registered.
+     */
+    public String getAcceptEncoding() {
+        String value = acceptEncoding;
+        if (value == null) {
+            synchronized (this) {
+                StringBuilder builder = new StringBuilder();
+                for (String name : decoders.keySet()) {
+                    if (builder.length() > 0) {
+                        builder.append(", ");
+                    }
+                    builder.append(name);
+                }
+                value = builder.length() == 0 ? "identity" : builder.toString();
+                acceptEncoding = value;
+            }
+        }
+        return value;
+    }
+
+    public synchronized boolean supports(String encoding) {
+        return decoders.containsKey(encoding.trim().toLowerCase(Locale.US));
+    }
+
+    /**
+     * Decode a body, the encodings listed in the Content-Encoding header being removed in the
+     * reverse order of their application.
+     *
+     * @param in       {@link InputStream} of the body as received.
+     * @param encoding {@link String} value of the Content-Encoding header, could be null.
+     * @return {@link InputStream} of the decoded body.
+     * @throws IOException if an encoding is not supported or the body can't be decoded.
+     */
+    public InputStream decode(InputStream in, String encoding) throws IOException {
+        if (encoding == null) {
+            return in;
+        }
+        String[] names = encoding.split(",");
+        for (int i = names.length - 1; i >= 0; i--) {
+            String name = names[i].trim().toLowerCase(Locale.US);
+            if (name.length() == 0 || "identity".equals(name)) {
+                continue;
+            }
+            Decoder decoder;
+            synchronized (this) {
+                decoder = decoders.get(name);
+            }
+            if (decoder == null) {
+                throw new IOException("Unsupported Content-Encoding: " + name);
+            }
+            in = decoder.decode(in);
+        }
+        return in;
+    }
+
+    //<editor-fold desc="Inflaters">
+    private static Inflater takeInflater() {
+        synchronized (INFLATERS) {
+            if (!INFLATERS.isEmpty()) {
+                return INFLATERS.remove(INFLATERS.size() - 1);
+            }
+        }
+        return new Inflater(true);
+    }
+
+    private static void releaseInflater(Inflater inflater) {
+        inflater.reset();
+        synchronized (INFLATERS) {
+            if (INFLATERS.size() < MAX_POOLED_INFLATERS) {
+                INFLATERS.add(inflater);
+                return;
+            }
+        }
+        inflater.end();
+    }
+
+    /**
+     * @return {@link Integer} number of {@link Inflater} waiting in the pool.
+     */
+    static int pooledInflaters() {
+        synchronized (INFLATERS) {
+            return INFLATERS.size();
+        }
+    }
+    //</editor-fold>
+
+    /**
+     * Stream inflating gzip members or a zlib/raw deflate stream with a raw {@link Inflater}, the
+     * wrappers being parsed and their checksums verified here. The inflater goes back to the pool
+     * when the stream is closed.
+     */
+    private static final class InflatingInputStream extends FilterInputStream {
+
+        private final boolean gzip;
+        private byte[] buffer;
+        private int position;
+        private int limit;
+        private Inflater inflater;
+        private Checksum checksum;
+        private boolean zlib;
+        private boolean ended;
+        private boolean closed;
+
+        InflatingInputStream(InputStream in, boolean gzip) throws IOException {
+            super(in);
+            this.gzip = gzip;
+            this.buffer = BufferPool.shared().takeBytes();
+            this.inflater = takeInflater();
+            try {
+                if (gzip) {
+                    readGzipHeader();
+                } else {
+                    readZlibHeader();
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (len == 0) {
+                return 0;
+            }
+            while (!ended) {
+                int inflated;
+                try {
+                    inflated = inflater.inflate(b, off, len);
+                } catch (DataFormatException e) {
+                    throw new IOException("Invalid compressed data: " + e.getMessage());
+                }
+                if (inflated > 0) {
+                    checksum.update(b, off, inflated);
+                    return inflated;
+                }
+                if (inflater.finished()) {
+                    // the bytes following the deflate data belong to the trailer
+                    position = limit - inflater.getRemaining();
+                    finishMember();
+                } else if (inflater.needsDictionary()) {
+                    throw new IOException("Preset dictionary not supported");
+                } else if (inflater.needsInput()) {
+                    require(1);
+                    inflater.setInput(buffer, position, limit - position);
+                    position = limit;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return ended || closed ? 0 : 1;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] skipped = new byte[(int) Math.min(n, 2048)];
+            long total = 0;
+            int read;
+            while (total < n && (read = read(skipped, 0, (int) Math.min(skipped.length, n - total))) != -1) {
+                total += read;
+            }
+            return total;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (inflater != null) {
+                releaseInflater(inflater);
+                inflater = null;
+            }
+            BufferPool.shared().recycle(buffer);
+            buffer = null;
+            in.close();
+        }
+
+        /**
+         * Check the trailer of the member, then look for another gzip member.
+         */
+        private void finishMember() throws IOException {
+            if (gzip) {
+                long crc = readIntLe();
+                long size = readIntLe();
+                if (crc != checksum.getValue() || size != (inflater.getBytesWritten() & 0xffffffffL)) {
+                    throw new IOException("Corrupt gzip trailer");
+                }
+                if (position == limit && !fill()) {
+                    ended = true;
+                    return;
+                }
+                inflater.reset();
+                readGzipHeader();
+            } else {
+                if (zlib) {
+                    long adler = ((long) readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+                    if (adler != checksum.getValue()) {
+                        throw new IOException("Corrupt zlib trailer");
+                    }
+                }
+                ended = true;
+            }
+        }
+
+        private void readGzipHeader() throws IOException {
+            if (readByte() != 0x1f || readByte() != 0x8b) {
+                throw new IOException("Not in gzip format");
+            }
+            if (readByte() != 8) {
+                throw new IOException("Unsupported gzip compression method");
+            }
+            int flags = readByte();
+            // modification time, extra flags, operating system
+            for (int i = 0; i < 6; i++) {
+                readByte();
+            }
+            if ((flags & 0x04) != 0) {
+                int length = readByte() | (readByte() << 8);
+                for (int i = 0; i < length; i++) {
+                    readByte();
+                }
+            }
+            if ((flags & 0x08) != 0) {
+                while (readByte() != 0) {
+                    // file name
+                }
+            }
+            if ((flags & 0x10) != 0) {
+                while (readByte() != 0) {
+                    // comment
+                }
+            }
+            if ((flags & 0x02) != 0) {
+                readByte();
+                readByte();
+            }
+            checksum = new CRC32();
+        }
+
+        private void readZlibHeader() throws IOException {
+            require(2);
+            int cmf = buffer[position] & 0xff;
+            int flg = buffer[position + 1] & 0xff;
+            zlib = (cmf & 0x0f) == 8 && (cmf >> 4) <= 7 && ((cmf << 8) | flg) % 31 == 0;
+            if (zlib) {
+                if ((flg & 0x20) != 0) {
+                    throw new IOException("Preset dictionary not supported");
+                }
+                position += 2;
+            }
+            // otherwise raw deflate data, as sent by some servers, the bytes are left to the inflater
+            checksum = new Adler32();
+        }
+
+        private int readByte() throws IOException {
+            require(1);
+            return buffer[position++] & 0xff;
+        }
+
+        private long readIntLe() throws IOException {
+            return (readByte() | (readByte() << 8) | (readByte() << 16) | ((long) readByte() << 24)) & 0xffffffffL;
+        }
+
+        /**
+         * Make sure the buffer holds at least the given number of unread bytes.
+         */
+        private void require(int count) throws IOException {
+            while (limit - position < count) {
+                if (!fill()) {
+                    throw new EOFException("Unexpected end of compressed data");
+                }
+            }
+        }
+
+        /**
+         * @return false at the end of the stream, true if bytes were added to the buffer.
+         */
+        private boolean fill() throws IOException {
+            if (position > 0) {
+                System.arraycopy(buffer, position, buffer, 0, limit - position);
+                limit -= position;
+                position = 0;
+            }
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read == -1) {
+                return false;
+            }
+            limit += read;
+            return true;
+        }
+    }
+}
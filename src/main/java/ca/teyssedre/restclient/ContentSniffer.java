@@ -0,0 +1,173 @@
+package ca.teyssedre.restclient;
+
+/**
+ * Guess the {@link HttpContentType} of a request body from its first characters only, so that the
+ * cost doesn't depend on the size of the body. The detectors are tried in order : binary, JSON,
+ * XML/HTML and form, the body being plain text when none matches. The result is a hint, an
+ * {@link HttpContentType} set on the {@link HttpRequest} always takes precedence.
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+@SuppressWarnings("unused")
+public final class ContentSniffer {
+
+    /**
+     * Maximum number of characters, or bytes, examined.
+     */
+    public static final int PREFIX_LENGTH = 512;
+
+    private ContentSniffer() {
+    }
+
+    /**
+     * @param data {@link String} body of the request.
+     * @return {@link HttpContentType} guessed, null without data.
+     */
+    public static HttpContentType detect(String data) {
+        if (data == null) {
+            return null;
+        }
+        int end = Math.min(data.length(), PREFIX_LENGTH);
+        for (int i = 0; i < end; i++) {
+            if (isBinary(data.charAt(i))) {
+                return HttpContentType.OCTET_STREAM;
+            }
+        }
+        return detectText(data, end);
+    }
+
+    /**
+     * @param data array of byte of the body.
+     * @return {@link HttpContentType} guessed, null without data.
+     */
+    public static HttpContentType detect(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        int end = Math.min(data.length, PREFIX_LENGTH);
+        int start = 0;
+        if (end >= 3 && (data[0] & 0xff) == 0xef && (data[1] & 0xff) == 0xbb && (data[2] & 0xff) == 0xbf) {
+            start = 3;
+        }
+        StringBuilder prefix = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = (char) (data[i] & 0xff);
+            if (isBinary(c)) {
+                return HttpContentType.OCTET_STREAM;
+            }
+            // the structural characters are ASCII, the others only need to be non-binary
+            prefix.append(c);
+        }
+        return detectText(prefix, prefix.length());
+    }
+
+    private static HttpContentType detectText(CharSequence data, int end) {
+        int start = 0;
+        if (end > 0 && data.charAt(0) == '\uFEFF') {
+            start = 1;
+        }
+        int first = skipWhitespace(data, start, end);
+        if (first == end) {
+            return HttpContentType.PLAIN_TEXT;
+        }
+        if (isJson(data, first, end)) {
+            return HttpContentType.APPLICATION_JSON;
+        }
+        HttpContentType markup = detectMarkup(data, first, end);
+        if (markup != null) {
+            return markup;
+        }
+        if (isForm(data, first, end)) {
+            return HttpContentType.APPLICATION_WWW_FORM;
+        }
+        return HttpContentType.PLAIN_TEXT;
+    }
+
+    //<editor-fold desc="Detectors">
+    private static boolean isBinary(char c) {
+        return c < 0x20 && c != '\t' && c != '\n' && c != '\r' && c != '\f';
+    }
+
+    /**
+     * An object or an array : '{' followed by a name or '}', '[' followed by the start of a value.
+     */
+    private static boolean isJson(CharSequence data, int first, int end) {
+        char c = data.charAt(first);
+        if (c != '{' && c != '[') {
+            return false;
+        }
+        int next = skipWhitespace(data, first + 1, end);
+        if (next == end) {
+            // only the opening character within the prefix
+            return true;
+        }
+        char n = data.charAt(next);
+        if (c == '{') {
+            return n == '"' || n == '}';
+        }
+        return n == ']' || n == '{' || n == '[' || n == '"' || n == '-' || n >= '0' && n <= '9'
+                || n == 't' || n == 'f' || n == 'n';
+    }
+
+    private static HttpContentType detectMarkup(CharSequence data, int first, int end) {
+        if (data.charAt(first) != '<' || first + 1 >= end) {
+            return null;
+        }
+        char n = data.charAt(first + 1);
+        if (!(n == '?' || n == '!' || Character.isLetter(n))) {
+            return null;
+        }
+        if (startsWithIgnoreCase(data, first, end, "<!doctype html") || startsWithIgnoreCase(data, first, end, "<html")) {
+            return HttpContentType.TEXT_HTML;
+        }
+        return HttpContentType.APPLICATION_XML;
+    }
+
+    /**
+     * URL encoded pairs : only the characters allowed by the encoding, with at least one '=' and no
+     * pair without name.
+     */
+    private static boolean isForm(CharSequence data, int first, int end) {
+        boolean equals = false;
+        char previous = '&';
+        for (int i = first; i < end; i++) {
+            char c = data.charAt(i);
+            if (c == '=') {
+                if (previous == '&') {
+                    return false;
+                }
+                equals = true;
+            } else if (!(c == '&' || c == '%' || c == '+' || c == '-' || c == '.' || c == '_' || c == '~' || c == '*'
+                    || c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9')) {
+                return false;
+            }
+            previous = c;
+        }
+        return equals;
+    }
+    //</editor-fold>
+
+    private static int skipWhitespace(CharSequence data, int index, int end) {
+        while (index < end) {
+            char c = data.charAt(index);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                break;
+            }
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean startsWithIgnoreCase(CharSequence data, int first, int end, String prefix) {
+        if (end - first < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.toLowerCase(data.charAt(first + i)) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
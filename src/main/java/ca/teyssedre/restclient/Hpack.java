@@ -0,0 +1,534 @@
+package ca.teyssedre.restclient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.ProtocolException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HPACK header compression of HTTP/2 (RFC 7541) : static and dynamic tables, integer and string
+ * representations, Huffman coding. The {@link Encoder} and {@link Decoder} keep the state of one
+ * direction of a connection and are not thread safe.
+ */
+final class Hpack {
+
+    static final int DEFAULT_TABLE_SIZE = 4096;
+    private static final int ENTRY_OVERHEAD = 32;
+
+    private static final String[][] STATIC_TABLE = {
+            {":authority", ""},
+            {":method", "GET"},
+            {":method", "POST"},
+            {":path", "/"},
+            {":path", "/index.html"},
+            {":scheme", "http"},
+            {":scheme", "https"},
+            {":status", "200"},
+            {":status", "204"},
+            {":status", "206"},
+            {":status", "304"},
+            {":status", "400"},
+            {":status", "404"},
+            {":status", "500"},
+            {"accept-charset", ""},
+            {"accept-encoding", "gzip, deflate"},
+            {"accept-language", ""},
+            {"accept-ranges", ""},
+            {"accept", ""},
+            {"access-control-allow-origin", ""},
+            {"age", ""},
+            {"allow", ""},
+            {"authorization", ""},
+            {"cache-control", ""},
+            {"content-disposition", ""},
+            {"content-encoding", ""},
+            {"content-language", ""},
+            {"content-length", ""},
+            {"content-location", ""},
+            {"content-range", ""},
+            {"content-type", ""},
+            {"cookie", ""},
+            {"date", ""},
+            {"etag", ""},
+            {"expect", ""},
+            {"expires", ""},
+            {"from", ""},
+            {"host", ""},
+            {"if-match", ""},
+            {"if-modified-since", ""},
+            {"if-none-match", ""},
+            {"if-range", ""},
+            {"if-unmodified-since", ""},
+            {"last-modified", ""},
+            {"link", ""},
+            {"location", ""},
+            {"max-forwards", ""},
+            {"proxy-authenticate", ""},
+            {"proxy-authorization", ""},
+            {"range", ""},
+            {"referer", ""},
+            {"refresh", ""},
+            {"retry-after", ""},
+            {"server", ""},
+            {"set-cookie", ""},
+            {"strict-transport-security", ""},
+            {"transfer-encoding", ""},
+            {"user-agent", ""},
+            {"vary", ""},
+            {"via", ""},
+            {"www-authenticate", ""}
+    };
+
+    /**
+     * First index of each name in the static table.
+     */
+    private static final Map<String, Integer> STATIC_NAMES = new HashMap<>();
+
+    static {
+        for (int i = STATIC_TABLE.length - 1; i >= 0; i--) {
+            STATIC_NAMES.put(STATIC_TABLE[i][0], i + 1);
+        }
+    }
+
+    private Hpack() {
+    }
+
+    //<editor-fold desc="Tables">
+    /**
+     * Dynamic table of a direction of the connection, the newest entry first.
+     */
+    private static final class Table {
+
+        private final LinkedList<String[]> entries = new LinkedList<>();
+        private int size;
+        private int maxSize = DEFAULT_TABLE_SIZE;
+
+        String[] get(int index) throws IOException {
+            if (index <= 0) {
+                throw new ProtocolException("Invalid HPACK index " + index);
+            }
+            if (index <= STATIC_TABLE.length) {
+                return STATIC_TABLE[index - 1];
+            }
+            int dynamic = index - STATIC_TABLE.length - 1;
+            if (dynamic >= entries.size()) {
+                throw new ProtocolException("Invalid HPACK index " + index);
+            }
+            return entries.get(dynamic);
+        }
+
+        void add(String name, String value) {
+            int entrySize = name.length() + value.length() + ENTRY_OVERHEAD;
+            if (entrySize > maxSize) {
+                entries.clear();
+                size = 0;
+                return;
+            }
+            entries.addFirst(new String[]{name, value});
+            size += entrySize;
+            evict();
+        }
+
+        void resize(int maxSize) {
+            this.maxSize = maxSize;
+            evict();
+        }
+
+        private void evict() {
+            while (size > maxSize) {
+                String[] eldest = entries.removeLast();
+                size -= eldest[0].length() + eldest[1].length() + ENTRY_OVERHEAD;
+            }
+        }
+
+        /**
+         * @return index of the exact entry, or minus the index of an entry with the same name, 0 if none.
+         */
+        int find(String name, String value) {
+            int nameIndex = 0;
+            Integer staticIndex = STATIC_NAMES.get(name);
+            if (staticIndex != null) {
+                for (int i = staticIndex; i <= STATIC_TABLE.length && STATIC_TABLE[i - 1][0].equals(name); i++) {
+                    if (STATIC_TABLE[i - 1][1].equals(value)) {
+                        return i;
+                    }
+                }
+                nameIndex = staticIndex;
+            }
+            int index = STATIC_TABLE.length + 1;
+            for (String[] entry : entries) {
+                if (entry[0].equals(name)) {
+                    if (entry[1].equals(value)) {
+                        return index;
+                    }
+                    if (nameIndex == 0) {
+                        nameIndex = index;
+                    }
+                }
+                index++;
+            }
+            return -nameIndex;
+        }
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Decoder">
+    /**
+     * Decoder of the header blocks received.
+     */
+    static final class Decoder {
+
+        private final Table table = new Table();
+        private final int maxTableSize;
+
+        /**
+         * @param maxTableSize {@link Integer} SETTINGS_HEADER_TABLE_SIZE advertised to the peer.
+         */
+        Decoder(int maxTableSize) {
+            this.maxTableSize = maxTableSize;
+            table.resize(maxTableSize);
+        }
+
+        /**
+         * @param block complete header block, HEADERS and CONTINUATION fragments joined.
+         * @return {@link List} of the name and value pairs, in the order of the block.
+         * @throws IOException if the block is malformed.
+         */
+        List<String[]> decode(byte[] block, int offset, int length) throws IOException {
+            List<String[]> headers = new ArrayList<>();
+            Reader reader = new Reader(block, offset, offset + length);
+            boolean headerSeen = false;
+            while (reader.hasRemaining()) {
+                int b = reader.peek();
+                if ((b & 0x80) != 0) {
+                    headers.add(table.get(reader.readInt(7)));
+                    headerSeen = true;
+                } else if ((b & 0x40) != 0) {
+                    String[] header = readLiteral(reader, 6);
+                    table.add(header[0], header[1]);
+                    headers.add(header);
+                    headerSeen = true;
+                } else if ((b & 0x20) != 0) {
+                    if (headerSeen) {
+                        throw new ProtocolException("HPACK table size update after a header");
+                    }
+                    int size = reader.readInt(5);
+                    if (size > maxTableSize) {
+                        throw new ProtocolException("HPACK table size " + size + " above " + maxTableSize);
+                    }
+                    table.resize(size);
+                } else {
+                    headers.add(readLiteral(reader, 4));
+                    headerSeen = true;
+                }
+            }
+            return headers;
+        }
+
+        private String[] readLiteral(Reader reader, int prefix) throws IOException {
+            int index = reader.readInt(prefix);
+            String name = index == 0 ? reader.readString() : table.get(index)[0];
+            return new String[]{name, reader.readString()};
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] data;
+        private int position;
+        private final int limit;
+
+        Reader(byte[] data, int offset, int limit) {
+            this.data = data;
+            this.position = offset;
+            this.limit = limit;
+        }
+
+        boolean hasRemaining() {
+            return position < limit;
+        }
+
+        int peek() {
+            return data[position] & 0xff;
+        }
+
+        int readByte() throws IOException {
+            if (position >= limit) {
+                throw new ProtocolException("Truncated HPACK block");
+            }
+            return data[position++] & 0xff;
+        }
+
+        int readInt(int prefix) throws IOException {
+            int max = (1 << prefix) - 1;
+            int value = readByte() & max;
+            if (value < max) {
+                return value;
+            }
+            int shift = 0;
+            int b;
+            do {
+                b = readByte();
+                if (shift > 28) {
+                    throw new ProtocolException("HPACK integer overflow");
+                }
+                value += (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            if (value < 0) {
+                throw new ProtocolException("HPACK integer overflow");
+            }
+            return value;
+        }
+
+        String readString() throws IOException {
+            boolean huffman = (peek() & 0x80) != 0;
+            int length = readInt(7);
+            if (length > limit - position) {
+                throw new ProtocolException("Truncated HPACK string");
+            }
+            String value = huffman ? Huffman.decode(data, position, length) : new String(data, position, length, "ISO-8859-1");
+            position += length;
+            return value;
+        }
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Encoder">
+    /**
+     * Encoder of the header blocks sent. The headers are added to the dynamic table, except the
+     * credentials which are never indexed.
+     */
+    static final class Encoder {
+
+        private final Table table = new Table();
+        private int pendingSize = -1;
+
+        /**
+         * Apply the SETTINGS_HEADER_TABLE_SIZE of the peer, the table never grows above the default size.
+         *
+         * @param size {@link Integer} size advertised by the peer.
+         */
+        void setMaxTableSize(int size) {
+            int effective = Math.min(size, DEFAULT_TABLE_SIZE);
+            if (effective != table.maxSize) {
+                table.resize(effective);
+                pendingSize = effective;
+            }
+        }
+
+        /**
+         * @param headers {@link List} of name and value pairs, the names in lower case.
+         * @return the header block.
+         */
+        byte[] encode(List<String[]> headers) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+            if (pendingSize >= 0) {
+                writeInt(out, 0x20, 5, pendingSize);
+                pendingSize = -1;
+            }
+            for (String[] header : headers) {
+                String name = header[0];
+                String value = header[1];
+                boolean sensitive = "authorization".equals(name) || "proxy-authorization".equals(name)
+                        || ("cookie".equals(name) && value.length() < 20);
+                int index = sensitive ? 0 : table.find(name, value);
+                if (index > 0) {
+                    writeInt(out, 0x80, 7, index);
+                    continue;
+                }
+                int nameIndex = sensitive ? findName(name) : -index;
+                if (sensitive) {
+                    writeInt(out, 0x10, 4, nameIndex);
+                } else {
+                    writeInt(out, 0x40, 6, nameIndex);
+                    table.add(name, value);
+                }
+                if (nameIndex == 0) {
+                    writeString(out, name);
+                }
+                writeString(out, value);
+            }
+            return out.toByteArray();
+        }
+
+        private int findName(String name) {
+            int found = table.find(name, "\u0000");
+            return found < 0 ? -found : found;
+        }
+    }
+
+    static void writeInt(ByteArrayOutputStream out, int flags, int prefix, int value) {
+        int max = (1 << prefix) - 1;
+        if (value < max) {
+            out.write(flags | value);
+            return;
+        }
+        out.write(flags | max);
+        value -= max;
+        while (value >= 0x80) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] raw;
+        try {
+            raw = value.getBytes("ISO-8859-1");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        int encoded = Huffman.encodedLength(raw);
+        if (encoded < raw.length) {
+            writeInt(out, 0x80, 7, encoded);
+            Huffman.encode(raw, out);
+        } else {
+            writeInt(out, 0x00, 7, raw.length);
+            out.write(raw, 0, raw.length);
+        }
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Huffman">
+    /**
+     * Canonical Huffman code of RFC 7541 Appendix B, the symbol 256 being the end of string.
+     */
+    static final class Huffman {
+
+        private static final int[] CODES = {
+            0x1ff8, 0x7fffd8, 0xfffffe2, 0xfffffe3, 0xfffffe4, 0xfffffe5, 0xfffffe6, 0xfffffe7, 0xfffffe8,
+            0xffffea, 0x3ffffffc, 0xfffffe9, 0xfffffea, 0x3ffffffd, 0xfffffeb, 0xfffffec, 0xfffffed,
+            0xfffffee, 0xfffffef, 0xffffff0, 0xffffff1, 0xffffff2, 0x3ffffffe, 0xffffff3, 0xffffff4,
+            0xffffff5, 0xffffff6, 0xffffff7, 0xffffff8, 0xffffff9, 0xffffffa, 0xffffffb, 0x14, 0x3f8, 0x3f9,
+            0xffa, 0x1ff9, 0x15, 0xf8, 0x7fa, 0x3fa, 0x3fb, 0xf9, 0x7fb, 0xfa, 0x16, 0x17, 0x18, 0x0, 0x1,
+            0x2, 0x19, 0x1a, 0x1b, 0x1c, 0x1d, 0x1e, 0x1f, 0x5c, 0xfb, 0x7ffc, 0x20, 0xffb, 0x3fc, 0x1ffa,
+            0x21, 0x5d, 0x5e, 0x5f, 0x60, 0x61, 0x62, 0x63, 0x64, 0x65, 0x66, 0x67, 0x68, 0x69, 0x6a, 0x6b,
+            0x6c, 0x6d, 0x6e, 0x6f, 0x70, 0x71, 0x72, 0xfc, 0x73, 0xfd, 0x1ffb, 0x7fff0, 0x1ffc, 0x3ffc,
+            0x22, 0x7ffd, 0x3, 0x23, 0x4, 0x24, 0x5, 0x25, 0x26, 0x27, 0x6, 0x74, 0x75, 0x28, 0x29, 0x2a,
+            0x7, 0x2b, 0x76, 0x2c, 0x8, 0x9, 0x2d, 0x77, 0x78, 0x79, 0x7a, 0x7b, 0x7ffe, 0x7fc, 0x3ffd,
+            0x1ffd, 0xffffffc, 0xfffe6, 0x3fffd2, 0xfffe7, 0xfffe8, 0x3fffd3, 0x3fffd4, 0x3fffd5, 0x7fffd9,
+            0x3fffd6, 0x7fffda, 0x7fffdb, 0x7fffdc, 0x7fffdd, 0x7fffde, 0xffffeb, 0x7fffdf, 0xffffec,
+            0xffffed, 0x3fffd7, 0x7fffe0, 0xffffee, 0x7fffe1, 0x7fffe2, 0x7fffe3, 0x7fffe4, 0x1fffdc,
+            0x3fffd8, 0x7fffe5, 0x3fffd9, 0x7fffe6, 0x7fffe7, 0xffffef, 0x3fffda, 0x1fffdd, 0xfffe9,
+            0x3fffdb, 0x3fffdc, 0x7fffe8, 0x7fffe9, 0x1fffde, 0x7fffea, 0x3fffdd, 0x3fffde, 0xfffff0,
+            0x1fffdf, 0x3fffdf, 0x7fffeb, 0x7fffec, 0x1fffe0, 0x1fffe1, 0x3fffe0, 0x1fffe2, 0x7fffed,
+            0x3fffe1, 0x7fffee, 0x7fffef, 0xfffea, 0x3fffe2, 0x3fffe3, 0x3fffe4, 0x7ffff0, 0x3fffe5,
+            0x3fffe6, 0x7ffff1, 0x3ffffe0, 0x3ffffe1, 0xfffeb, 0x7fff1, 0x3fffe7, 0x7ffff2, 0x3fffe8,
+            0x1ffffec, 0x3ffffe2, 0x3ffffe3, 0x3ffffe4, 0x7ffffde, 0x7ffffdf, 0x3ffffe5, 0xfffff1, 0x1ffffed,
+            0x7fff2, 0x1fffe3, 0x3ffffe6, 0x7ffffe0, 0x7ffffe1, 0x3ffffe7, 0x7ffffe2, 0xfffff2, 0x1fffe4,
+            0x1fffe5, 0x3ffffe8, 0x3ffffe9, 0xffffffd, 0x7ffffe3, 0x7ffffe4, 0x7ffffe5, 0xfffec, 0xfffff3,
+            0xfffed, 0x1fffe6, 0x3fffe9, 0x1fffe7, 0x1fffe8, 0x7ffff3, 0x3fffea, 0x3fffeb, 0x1ffffee,
+            0x1ffffef, 0xfffff4, 0xfffff5, 0x3ffffea, 0x7ffff4, 0x3ffffeb, 0x7ffffe6, 0x3ffffec, 0x3ffffed,
+            0x7ffffe7, 0x7ffffe8, 0x7ffffe9, 0x7ffffea, 0x7ffffeb, 0xffffffe, 0x7ffffec, 0x7ffffed,
+            0x7ffffee, 0x7ffffef, 0x7fffff0, 0x3ffffee, 0x3fffffff
+        };
+
+        private static final byte[] LENGTHS = {
+            13, 23, 28, 28, 28, 28, 28, 28, 28, 24, 30, 28, 28, 30, 28, 28, 28, 28, 28, 28, 28, 28, 30, 28,
+            28, 28, 28, 28, 28, 28, 28, 28, 6, 10, 10, 12, 13, 6, 8, 11, 10, 10, 8, 11, 8, 6, 6, 6, 5, 5, 5,
+            6, 6, 6, 6, 6, 6, 6, 7, 8, 15, 6, 12, 10, 13, 6, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7,
+            7, 7, 7, 7, 7, 7, 8, 7, 8, 13, 19, 13, 14, 6, 15, 5, 6, 5, 6, 5, 6, 6, 6, 5, 7, 7, 6, 6, 6, 5, 6,
+            7, 6, 5, 5, 6, 7, 7, 7, 7, 7, 15, 11, 14, 13, 28, 20, 22, 20, 20, 22, 22, 22, 23, 22, 23, 23, 23,
+            23, 23, 24, 23, 24, 24, 22, 23, 24, 23, 23, 23, 23, 21, 22, 23, 22, 23, 23, 24, 22, 21, 20, 22,
+            22, 23, 23, 21, 23, 22, 22, 24, 21, 22, 23, 23, 21, 21, 22, 21, 23, 22, 23, 23, 20, 22, 22, 22,
+            23, 22, 22, 23, 26, 26, 20, 19, 22, 23, 22, 25, 26, 26, 26, 27, 27, 26, 24, 25, 19, 21, 26, 27,
+            27, 26, 27, 24, 21, 21, 26, 26, 28, 27, 27, 27, 20, 24, 20, 21, 22, 21, 21, 23, 22, 22, 25, 25,
+            24, 24, 26, 23, 26, 27, 26, 26, 27, 27, 27, 27, 27, 28, 27, 27, 27, 27, 27, 26, 30
+        };
+
+        /**
+         * Decoding tree : children of the node n at 2n and 2n + 1, leaves as -1 - symbol.
+         */
+        private static final int[] TREE;
+
+        static {
+            int[] tree = new int[2 * 512];
+            int nodes = 1;
+            for (int symbol = 0; symbol < CODES.length; symbol++) {
+                int node = 0;
+                for (int bit = LENGTHS[symbol] - 1; bit >= 0; bit--) {
+                    int child = 2 * node + ((CODES[symbol] >>> bit) & 1);
+                    if (bit == 0) {
+                        tree[child] = -1 - symbol;
+                    } else {
+                        if (tree[child] == 0) {
+                            tree[child] = nodes++;
+                        }
+                        node = tree[child];
+                    }
+                }
+            }
+            TREE = tree;
+        }
+
+        private Huffman() {
+        }
+
+        static String decode(byte[] data, int offset, int length) throws IOException {
+            StringBuilder decoded = new StringBuilder(length * 8 / 5);
+            int node = 0;
+            int pendingBits = 0;
+            boolean pendingOnes = true;
+            for (int i = offset; i < offset + length; i++) {
+                int b = data[i] & 0xff;
+                for (int bit = 7; bit >= 0; bit--) {
+                    int value = (b >>> bit) & 1;
+                    int next = TREE[2 * node + value];
+                    pendingBits++;
+                    pendingOnes &= value == 1;
+                    if (next < 0) {
+                        int symbol = -1 - next;
+                        if (symbol == 256) {
+                            throw new ProtocolException("Huffman EOS in a string");
+                        }
+                        decoded.append((char) symbol);
+                        node = 0;
+                        pendingBits = 0;
+                        pendingOnes = true;
+                    } else if (next == 0) {
+                        throw new ProtocolException("Invalid Huffman code");
+                    } else {
+                        node = next;
+                    }
+                }
+            }
+            if (pendingBits > 7 || !pendingOnes) {
+                throw new ProtocolException("Invalid Huffman padding");
+            }
+            return decoded.toString();
+        }
+
+        static int encodedLength(byte[] raw) {
+            long bits = 0;
+            for (byte b : raw) {
+                bits += LENGTHS[b & 0xff];
+            }
+            return (int) ((bits + 7) / 8);
+        }
+
+        static void encode(byte[] raw, ByteArrayOutputStream out) {
+            long current = 0;
+            int bits = 0;
+            for (byte b : raw) {
+                int symbol = b & 0xff;
+                current = (current << LENGTHS[symbol]) | CODES[symbol];
+                bits += LENGTHS[symbol];
+                while (bits >= 8) {
+                    bits -= 8;
+                    out.write((int) (current >>> bits));
+                }
+            }
+            if (bits > 0) {
+                out.write((int) ((current << (8 - bits)) | (0xff >>> bits)));
+            }
+        }
+    }
+    //</editor-fold>
+}
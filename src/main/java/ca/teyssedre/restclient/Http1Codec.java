@@ -0,0 +1,340 @@
+package ca.teyssedre.restclient;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writing of the HTTP/1.1 requests and parsing of the responses for the {@link NioTransport}.
+ */
+final class Http1Codec {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final int MAX_LINE = 64 * 1024;
+
+    private Http1Codec() {
+    }
+
+    /**
+     * Write the request line, the headers and the body. The body is sent with a Content-Length
+     * when its length is known, with the chunked transfer encoding otherwise.
+     *
+     * @param out     {@link OutputStream} of the connection.
+     * @param url     {@link URL} of the request.
+     * @param method  {@link String} method of the request.
+     * @param headers {@link List} of {@link HttpHeader} to send.
+     * @param body    {@link HttpBody} to send, could be null.
+     * @throws IOException throw by the connection or the body.
+     */
+    static void writeRequest(OutputStream out, URL url, String method, List<HttpHeader> headers, HttpBody body)
+            throws IOException {
+        StringBuilder head = new StringBuilder(256);
+        String path = url.getFile();
+        HttpHeader.checkTarget(path);
+        head.append(method).append(' ').append(path == null || path.length() == 0 ? "/" : path).append(" HTTP/1.1\r\n");
+        head.append("Host: ").append(url.getHost());
+        if (url.getPort() != -1 && url.getPort() != url.getDefaultPort()) {
+            head.append(':').append(url.getPort());
+        }
+        head.append("\r\n");
+        long length = body == null ? -1 : body.contentLength();
+        for (HttpHeader header : headers) {
+            String name = header.getName();
+            if ("Host".equalsIgnoreCase(name) || "Content-Length".equalsIgnoreCase(name)
+                    || "Transfer-Encoding".equalsIgnoreCase(name)) {
+                continue;
+            }
+            HttpHeader.check(name, header.getValue());
+            head.append(name).append(": ").append(header.getValue()).append("\r\n");
+        }
+        if (body != null) {
+            if (length >= 0) {
+                head.append("Content-Length: ").append(length).append("\r\n");
+            } else {
+                head.append("Transfer-Encoding: chunked\r\n");
+            }
+        } else if ("POST".equals(method) || "PUT".equals(method)) {
+            head.append("Content-Length: 0\r\n");
+        }
+        head.append("\r\n");
+        out.write(head.toString().getBytes("ISO-8859-1"));
+        if (body != null) {
+            if (length >= 0) {
+                body.writeTo(out);
+            } else {
+                ChunkedOutputStream chunked = new ChunkedOutputStream(out);
+                body.writeTo(chunked);
+                chunked.finish();
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Read the status line and the headers of the response, skipping the interim 1xx responses.
+     *
+     * @param in {@link InputStream} of the connection.
+     * @return {@link Head} of the response.
+     * @throws IOException throw by the connection, or if the response is malformed.
+     */
+    static Head readHead(InputStream in) throws IOException {
+        while (true) {
+            String statusLine = readLine(in);
+            if (statusLine == null) {
+                throw new EOFException("unexpected end of stream before the response");
+            }
+            if (!statusLine.startsWith("HTTP/1.") || statusLine.length() < 12) {
+                throw new ProtocolException("Unexpected status line: " + statusLine);
+            }
+            Head head = new Head();
+            head.http11 = statusLine.charAt(7) != '0';
+            try {
+                head.status = Integer.parseInt(statusLine.substring(9, 12));
+            } catch (NumberFormatException e) {
+                throw new ProtocolException("Unexpected status line: " + statusLine);
+            }
+            head.message = statusLine.length() > 13 ? statusLine.substring(13) : "";
+            String line;
+            while ((line = readLine(in)) != null && line.length() > 0) {
+                int colon = line.indexOf(':');
+                if (colon <= 0) {
+                    continue;
+                }
+                String name = line.substring(0, colon).trim();
+                List<String> values = head.headers.get(name);
+                if (values == null) {
+                    values = new ArrayList<>(1);
+                    head.headers.put(name, values);
+                }
+                values.add(line.substring(colon + 1).trim());
+            }
+            if (line == null) {
+                throw new EOFException("unexpected end of stream in the headers");
+            }
+            if (head.status >= 100 && head.status < 200 && head.status != 101) {
+                continue;
+            }
+            return head;
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder(64);
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                return line.toString();
+            }
+            if (line.length() >= MAX_LINE) {
+                throw new ProtocolException("Header line too long");
+            }
+            line.append((char) c);
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+
+    /**
+     * Status line and headers of a response.
+     */
+    static final class Head {
+
+        int status;
+        String message;
+        boolean http11;
+        final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+        String header(String name) {
+            List<String> values = headers.get(name);
+            return values == null || values.isEmpty() ? null : values.get(values.size() - 1);
+        }
+
+        /**
+         * @param method {@link String} method of the request.
+         * @return true if the response has no body whatever its headers.
+         */
+        boolean hasNoBody(String method) {
+            return "HEAD".equals(method) || status == 204 || status == 304 || (status >= 100 && status < 200);
+        }
+
+        boolean isChunked() {
+            String encoding = header("Transfer-Encoding");
+            return encoding != null && encoding.toLowerCase().contains("chunked");
+        }
+
+        long contentLength() {
+            String value = header("Content-Length");
+            if (value == null) {
+                return -1;
+            }
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        /**
+         * @return true if the connection could be used for another exchange after this response.
+         */
+        boolean isKeepAlive() {
+            String connection = header("Connection");
+            if (connection != null && connection.toLowerCase().contains("close")) {
+                return false;
+            }
+            return http11 || connection != null && connection.toLowerCase().contains("keep-alive");
+        }
+    }
+
+    /**
+     * Stream of a body ending after a number of bytes.
+     */
+    static class FixedLengthInputStream extends InputStream {
+
+        private final InputStream in;
+        private long remaining;
+
+        FixedLengthInputStream(InputStream in, long length) {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read == -1) {
+                throw new EOFException("unexpected end of stream, " + remaining + " bytes missing");
+            }
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+    }
+
+    /**
+     * Stream of a body sent with the chunked transfer encoding, trailers are ignored.
+     */
+    static class ChunkedInputStream extends InputStream {
+
+        private final InputStream in;
+        private long chunkRemaining;
+        private boolean started;
+        private boolean finished;
+
+        ChunkedInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (finished) {
+                return -1;
+            }
+            if (chunkRemaining == 0) {
+                nextChunk();
+                if (finished) {
+                    return -1;
+                }
+            }
+            int read = in.read(buffer, offset, (int) Math.min(length, chunkRemaining));
+            if (read == -1) {
+                throw new EOFException("unexpected end of stream in a chunk");
+            }
+            chunkRemaining -= read;
+            return read;
+        }
+
+        private void nextChunk() throws IOException {
+            if (started && !"".equals(readLine(in))) {
+                throw new ProtocolException("Missing chunk terminator");
+            }
+            started = true;
+            String line = readLine(in);
+            if (line == null) {
+                throw new EOFException("unexpected end of stream before a chunk");
+            }
+            int extension = line.indexOf(';');
+            String size = (extension == -1 ? line : line.substring(0, extension)).trim();
+            try {
+                chunkRemaining = Long.parseLong(size, 16);
+            } catch (NumberFormatException e) {
+                throw new ProtocolException("Malformed chunk size: " + line);
+            }
+            if (chunkRemaining == 0) {
+                String trailer;
+                while ((trailer = readLine(in)) != null && trailer.length() > 0) {
+                    // trailers are not exposed
+                }
+                finished = true;
+            }
+        }
+    }
+
+    /**
+     * Stream writing each buffer as a chunk, the connection being already buffered.
+     */
+    static class ChunkedOutputStream extends OutputStream {
+
+        private final OutputStream out;
+
+        ChunkedOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return;
+            }
+            out.write(Integer.toHexString(length).getBytes("ISO-8859-1"));
+            out.write(CRLF);
+            out.write(buffer, offset, length);
+            out.write(CRLF);
+        }
+
+        @Override
+        public void close() {
+            // the connection stays open, see finish()
+        }
+
+        void finish() throws IOException {
+            out.write('0');
+            out.write(CRLF);
+            out.write(CRLF);
+        }
+    }
+}
@@ -0,0 +1,888 @@
+package ca.teyssedre.restclient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HTTP/2 connection (RFC 7540) of the {@link Http2Transport} : the requests are multiplexed as
+ * streams over one {@link NioConnection}. A reader thread dispatches the frames received to the
+ * streams; the frames are written by the threads of the requests, one frame at a time.
+ * <p>
+ * Flow control is applied both ways : the DATA frames sent wait for the windows of the peer, and
+ * the windows granted to the peer are only replenished once the body has been consumed.
+ */
+final class Http2Connection implements Closeable {
+
+    static final byte[] PREFACE = {'P', 'R', 'I', ' ', '*', ' ', 'H', 'T', 'T', 'P', '/', '2', '.', '0', '\r', '\n',
+            '\r', '\n', 'S', 'M', '\r', '\n', '\r', '\n'};
+
+    static final int TYPE_DATA = 0x0;
+    static final int TYPE_HEADERS = 0x1;
+    static final int TYPE_PRIORITY = 0x2;
+    static final int TYPE_RST_STREAM = 0x3;
+    static final int TYPE_SETTINGS = 0x4;
+    static final int TYPE_PUSH_PROMISE = 0x5;
+    static final int TYPE_PING = 0x6;
+    static final int TYPE_GOAWAY = 0x7;
+    static final int TYPE_WINDOW_UPDATE = 0x8;
+    static final int TYPE_CONTINUATION = 0x9;
+
+    static final int FLAG_END_STREAM = 0x1;
+    static final int FLAG_ACK = 0x1;
+    static final int FLAG_END_HEADERS = 0x4;
+    static final int FLAG_PADDED = 0x8;
+    static final int FLAG_PRIORITY = 0x20;
+
+    static final int SETTINGS_HEADER_TABLE_SIZE = 0x1;
+    static final int SETTINGS_ENABLE_PUSH = 0x2;
+    static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3;
+    static final int SETTINGS_INITIAL_WINDOW_SIZE = 0x4;
+    static final int SETTINGS_MAX_FRAME_SIZE = 0x5;
+
+    static final int ERROR_NO_ERROR = 0x0;
+    static final int ERROR_PROTOCOL = 0x1;
+    static final int ERROR_FLOW_CONTROL = 0x3;
+    static final int ERROR_FRAME_SIZE = 0x6;
+    static final int ERROR_REFUSED_STREAM = 0x7;
+    static final int ERROR_CANCEL = 0x8;
+
+    static final int DEFAULT_WINDOW = 65535;
+    static final int DEFAULT_MAX_FRAME_SIZE = 16384;
+    static final int LARGEST_MAX_FRAME_SIZE = (1 << 24) - 1;
+    private static final int STREAM_WINDOW = 1024 * 1024;
+    private static final int CONNECTION_WINDOW = 16 * 1024 * 1024;
+
+    private final NioConnection socket;
+    private final DataInputStream in;
+    private final OutputStream out;
+    private final Object writeLock = new Object();
+    private final Hpack.Encoder encoder = new Hpack.Encoder();
+    private final Hpack.Decoder decoder = new Hpack.Decoder(Hpack.DEFAULT_TABLE_SIZE);
+    private final Map<Integer, Stream> streams = new HashMap<>();
+    private final Route route;
+
+    // guarded by this
+    private int nextStreamId = 1;
+    private int pendingStreams;
+    private long sendWindow = DEFAULT_WINDOW;
+    private int peerInitialWindow = DEFAULT_WINDOW;
+    private int peerMaxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+    private int peerMaxConcurrentStreams = Integer.MAX_VALUE;
+    private long receiveUnacked;
+    private int lastGoodStreamId = Integer.MAX_VALUE;
+    private boolean goAway;
+    private IOException failure;
+    private long idleSince = System.nanoTime();
+
+    Http2Connection(NioConnection socket) {
+        this.socket = socket;
+        this.route = socket.getRoute();
+        this.in = new DataInputStream(socket.source());
+        this.out = socket.sink();
+    }
+
+    /**
+     * Send the preface and the settings, then start the reader thread.
+     *
+     * @throws IOException if the preface could not be sent.
+     */
+    void start() throws IOException {
+        synchronized (writeLock) {
+            out.write(PREFACE);
+            byte[] settings = new byte[18];
+            putSetting(settings, 0, SETTINGS_ENABLE_PUSH, 0);
+            putSetting(settings, 6, SETTINGS_INITIAL_WINDOW_SIZE, STREAM_WINDOW);
+            putSetting(settings, 12, SETTINGS_HEADER_TABLE_SIZE, Hpack.DEFAULT_TABLE_SIZE);
+            writeFrame(TYPE_SETTINGS, 0, 0, settings, 0, settings.length);
+            writeWindowUpdate(0, CONNECTION_WINDOW - DEFAULT_WINDOW);
+            out.flush();
+        }
+        // the reads block until the next frame, the timeouts are applied per stream
+        socket.setTimeout(0);
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readLoop();
+            }
+        }, "Http2Reader " + route);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private static void putSetting(byte[] payload, int offset, int id, int value) {
+        payload[offset] = (byte) (id >>> 8);
+        payload[offset + 1] = (byte) id;
+        payload[offset + 2] = (byte) (value >>> 24);
+        payload[offset + 3] = (byte) (value >>> 16);
+        payload[offset + 4] = (byte) (value >>> 8);
+        payload[offset + 5] = (byte) value;
+    }
+
+    //<editor-fold desc="Streams">
+    /**
+     * Open a stream sending the headers of a request, waiting for a slot when the peer limit of
+     * concurrent streams is reached.
+     *
+     * @param headers   {@link List} of name and value pairs, the pseudo headers first.
+     * @param endStream true if the request has no body.
+     * @param timeout   {@link Integer} timeout of the reads of the stream, 0 for none.
+     * @return {@link Stream} opened.
+     * @throws IOException if the connection can't open more streams.
+     */
+    Stream newStream(List<String[]> headers, boolean endStream, int timeout) throws IOException {
+        synchronized (this) {
+            long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+            while (failure == null && !goAway && streams.size() + pendingStreams >= peerMaxConcurrentStreams) {
+                waitFor(deadline, "Timeout waiting for a stream");
+            }
+            checkUsable();
+            pendingStreams++;
+        }
+        synchronized (writeLock) {
+            Stream stream;
+            synchronized (this) {
+                pendingStreams--;
+                checkUsable();
+                stream = new Stream(nextStreamId, timeout, peerInitialWindow);
+                nextStreamId += 2;
+                streams.put(stream.id, stream);
+            }
+            byte[] block = encoder.encode(headers);
+            writeHeaderBlock(stream.id, block, endStream);
+            out.flush();
+            return stream;
+        }
+    }
+
+    private void checkUsable() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        if (goAway || nextStreamId < 0) {
+            throw new RefusedStreamException("Connection shutting down");
+        }
+    }
+
+    /**
+     * @return true if a new stream could be opened on this connection.
+     */
+    synchronized boolean isUsable() {
+        return failure == null && !goAway && nextStreamId > 0 && !socket.isClosed();
+    }
+
+    synchronized boolean isIdle() {
+        return streams.isEmpty() && pendingStreams == 0;
+    }
+
+    synchronized long getIdleSince() {
+        return idleSince;
+    }
+
+    Route getRoute() {
+        return route;
+    }
+
+    NioConnection getSocket() {
+        return socket;
+    }
+
+    private void removeStream(Stream stream) {
+        long released;
+        synchronized (this) {
+            if (streams.remove(stream.id) == null) {
+                return;
+            }
+            if (streams.isEmpty()) {
+                idleSince = System.nanoTime();
+            }
+            // the bytes never consumed must not leak from the connection window
+            released = stream.buffered;
+            stream.buffered = 0;
+            notifyAll();
+        }
+        if (released > 0) {
+            consumed(released);
+        }
+    }
+
+    /**
+     * Account the bytes consumed by the application and replenish the connection window.
+     */
+    private void consumed(long bytes) {
+        long increment = 0;
+        synchronized (this) {
+            receiveUnacked += bytes;
+            if (receiveUnacked >= CONNECTION_WINDOW / 2) {
+                increment = receiveUnacked;
+                receiveUnacked = 0;
+            }
+        }
+        if (increment > 0) {
+            try {
+                synchronized (writeLock) {
+                    writeWindowUpdate(0, (int) increment);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    private void waitFor(long deadline, String message) throws IOException {
+        try {
+            if (deadline == 0) {
+                wait();
+                return;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new SocketTimeoutException(message);
+            }
+            wait(remaining);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(message);
+        }
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Writing">
+    private void writeFrame(int type, int flags, int streamId, byte[] payload, int offset, int length) throws IOException {
+        out.write(length >>> 16);
+        out.write(length >>> 8);
+        out.write(length);
+        out.write(type);
+        out.write(flags);
+        out.write(streamId >>> 24);
+        out.write(streamId >>> 16);
+        out.write(streamId >>> 8);
+        out.write(streamId);
+        if (length > 0) {
+            out.write(payload, offset, length);
+        }
+    }
+
+    private void writeHeaderBlock(int streamId, byte[] block, boolean endStream) throws IOException {
+        int maxFrame;
+        synchronized (this) {
+            maxFrame = peerMaxFrameSize;
+        }
+        int length = Math.min(block.length, maxFrame);
+        int flags = (endStream ? FLAG_END_STREAM : 0) | (length == block.length ? FLAG_END_HEADERS : 0);
+        writeFrame(TYPE_HEADERS, flags, streamId, block, 0, length);
+        for (int offset = length; offset < block.length; offset += length) {
+            length = Math.min(block.length - offset, maxFrame);
+            writeFrame(TYPE_CONTINUATION, offset + length == block.length ? FLAG_END_HEADERS : 0,
+                    streamId, block, offset, length);
+        }
+    }
+
+    private void writeWindowUpdate(int streamId, int increment) throws IOException {
+        byte[] payload = {(byte) (increment >>> 24), (byte) (increment >>> 16), (byte) (increment >>> 8), (byte) increment};
+        writeFrame(TYPE_WINDOW_UPDATE, 0, streamId, payload, 0, 4);
+    }
+
+    private void writeControl(int type, int flags, int streamId, byte[] payload) {
+        try {
+            synchronized (writeLock) {
+                writeFrame(type, flags, streamId, payload, 0, payload.length);
+                out.flush();
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void writeReset(int streamId, int errorCode) {
+        writeControl(TYPE_RST_STREAM, 0, streamId, intBytes(errorCode));
+    }
+
+    private static byte[] intBytes(int value) {
+        return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Reading">
+    private void readLoop() {
+        try {
+            byte[] empty = new byte[0];
+            while (true) {
+                int length = (in.readUnsignedByte() << 16) | (in.readUnsignedByte() << 8) | in.readUnsignedByte();
+                int type = in.readUnsignedByte();
+                int flags = in.readUnsignedByte();
+                int streamId = in.readInt() & 0x7fffffff;
+                if (length > DEFAULT_MAX_FRAME_SIZE) {
+                    goAway(ERROR_FRAME_SIZE);
+                    throw new ProtocolException("Frame of " + length + " bytes above the maximum size");
+                }
+                byte[] payload = length == 0 ? empty : new byte[length];
+                in.readFully(payload);
+                switch (type) {
+                    case TYPE_DATA:
+                        readData(streamId, flags, payload);
+                        break;
+                    case TYPE_HEADERS:
+                        readHeaders(streamId, flags, payload);
+                        break;
+                    case TYPE_RST_STREAM:
+                        readReset(streamId, payload);
+                        break;
+                    case TYPE_SETTINGS:
+                        readSettings(flags, payload);
+                        break;
+                    case TYPE_PUSH_PROMISE:
+                        // push is disabled by the settings of the client
+                        goAway(ERROR_PROTOCOL);
+                        throw new ProtocolException("PUSH_PROMISE received while push is disabled");
+                    case TYPE_PING:
+                        if ((flags & FLAG_ACK) == 0) {
+                            writeControl(TYPE_PING, FLAG_ACK, 0, payload);
+                        }
+                        break;
+                    case TYPE_GOAWAY:
+                        readGoAway(payload);
+                        break;
+                    case TYPE_WINDOW_UPDATE:
+                        readWindowUpdate(streamId, payload);
+                        break;
+                    case TYPE_CONTINUATION:
+                        throw new ProtocolException("Unexpected CONTINUATION frame");
+                    default:
+                        // PRIORITY and the unknown frames are ignored
+                        break;
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void readData(int streamId, int flags, byte[] payload) throws IOException {
+        int padding = (flags & FLAG_PADDED) != 0 ? payload[0] & 0xff : 0;
+        int offset = (flags & FLAG_PADDED) != 0 ? 1 : 0;
+        int length = payload.length - offset - padding;
+        if (length < 0) {
+            throw new ProtocolException("Invalid DATA padding");
+        }
+        Stream stream;
+        synchronized (this) {
+            stream = streams.get(streamId);
+            if (stream != null) {
+                stream.receive(payload, offset, length, (flags & FLAG_END_STREAM) != 0);
+            }
+        }
+        // the padding and the data of the closed streams are consumed right away
+        consumed(stream == null ? payload.length : payload.length - length);
+        if (stream != null) {
+            stream.consumedPadding(payload.length - length);
+        }
+    }
+
+    private void readHeaders(int streamId, int flags, byte[] payload) throws IOException {
+        int offset = 0;
+        int padding = 0;
+        if ((flags & FLAG_PADDED) != 0) {
+            padding = payload[0] & 0xff;
+            offset = 1;
+        }
+        if ((flags & FLAG_PRIORITY) != 0) {
+            offset += 5;
+        }
+        if (payload.length - offset - padding < 0) {
+            throw new ProtocolException("Invalid HEADERS padding");
+        }
+        byte[] block = readContinuations(streamId, flags, payload, offset, payload.length - offset - padding);
+        // decoded even for an unknown stream, to keep the table in sync
+        List<String[]> headers = decoder.decode(block, 0, block.length);
+        synchronized (this) {
+            Stream stream = streams.get(streamId);
+            if (stream != null) {
+                stream.receiveHeaders(headers, (flags & FLAG_END_STREAM) != 0);
+            }
+        }
+    }
+
+    private byte[] readContinuations(int streamId, int flags, byte[] payload, int offset, int length) throws IOException {
+        if ((flags & FLAG_END_HEADERS) != 0) {
+            byte[] block = new byte[length];
+            System.arraycopy(payload, offset, block, 0, length);
+            return block;
+        }
+        ByteArrayOutputStream block = new ByteArrayOutputStream(length * 2);
+        block.write(payload, offset, length);
+        while (true) {
+            int size = (in.readUnsignedByte() << 16) | (in.readUnsignedByte() << 8) | in.readUnsignedByte();
+            int type = in.readUnsignedByte();
+            int continuationFlags = in.readUnsignedByte();
+            int id = in.readInt() & 0x7fffffff;
+            if (type != TYPE_CONTINUATION || id != streamId || size > DEFAULT_MAX_FRAME_SIZE) {
+                throw new ProtocolException("Expected CONTINUATION of stream " + streamId);
+            }
+            byte[] fragment = new byte[size];
+            in.readFully(fragment);
+            block.write(fragment, 0, size);
+            if ((continuationFlags & FLAG_END_HEADERS) != 0) {
+                return block.toByteArray();
+            }
+        }
+    }
+
+    private void readReset(int streamId, byte[] payload) throws IOException {
+        if (payload.length != 4) {
+            throw new ProtocolException("Invalid RST_STREAM");
+        }
+        int code = readInt(payload, 0);
+        Stream stream;
+        synchronized (this) {
+            stream = streams.get(streamId);
+            if (stream != null) {
+                stream.fail(code == ERROR_REFUSED_STREAM
+                        ? new RefusedStreamException("Stream refused")
+                        : new IOException("Stream reset by the server, error " + code));
+            }
+        }
+        if (stream != null) {
+            removeStream(stream);
+        }
+    }
+
+    private void readSettings(int flags, byte[] payload) throws IOException {
+        if ((flags & FLAG_ACK) != 0) {
+            return;
+        }
+        if (payload.length % 6 != 0) {
+            throw new ProtocolException("Invalid SETTINGS");
+        }
+        checkSettings(payload);
+        int tableSize = -1;
+        synchronized (this) {
+            for (int i = 0; i < payload.length; i += 6) {
+                int id = ((payload[i] & 0xff) << 8) | (payload[i + 1] & 0xff);
+                int value = readInt(payload, i + 2);
+                switch (id) {
+                    case SETTINGS_HEADER_TABLE_SIZE:
+                        tableSize = value;
+                        break;
+                    case SETTINGS_MAX_CONCURRENT_STREAMS:
+                        peerMaxConcurrentStreams = value;
+                        break;
+                    case SETTINGS_INITIAL_WINDOW_SIZE:
+                        int delta = value - peerInitialWindow;
+                        peerInitialWindow = value;
+                        for (Stream stream : streams.values()) {
+                            stream.sendWindow += delta;
+                        }
+                        break;
+                    case SETTINGS_MAX_FRAME_SIZE:
+                        peerMaxFrameSize = value;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            notifyAll();
+        }
+        synchronized (writeLock) {
+            if (tableSize >= 0) {
+                // the encoder is only used under the write lock
+                encoder.setMaxTableSize(tableSize);
+            }
+            writeFrame(TYPE_SETTINGS, FLAG_ACK, 0, payload, 0, 0);
+            out.flush();
+        }
+    }
+
+    /**
+     * Check the values of the SETTINGS against the ranges of RFC 7540 section 6.5.2, a value out of
+     * range being a connection error.
+     */
+    private void checkSettings(byte[] payload) throws IOException {
+        for (int i = 0; i < payload.length; i += 6) {
+            int id = ((payload[i] & 0xff) << 8) | (payload[i + 1] & 0xff);
+            int value = readInt(payload, i + 2);
+            if (id == SETTINGS_INITIAL_WINDOW_SIZE && value < 0) {
+                goAway(ERROR_FLOW_CONTROL);
+                throw new ProtocolException("Invalid initial window size");
+            }
+            if (id == SETTINGS_MAX_FRAME_SIZE && (value < DEFAULT_MAX_FRAME_SIZE || value > LARGEST_MAX_FRAME_SIZE)) {
+                goAway(ERROR_PROTOCOL);
+                throw new ProtocolException("Invalid max frame size " + value);
+            }
+        }
+    }
+
+    private void readGoAway(byte[] payload) throws IOException {
+        if (payload.length < 8) {
+            throw new ProtocolException("Invalid GOAWAY");
+        }
+        int lastStreamId = readInt(payload, 0) & 0x7fffffff;
+        List<Stream> refused = new ArrayList<>();
+        synchronized (this) {
+            goAway = true;
+            lastGoodStreamId = lastStreamId;
+            for (Stream stream : streams.values()) {
+                if (stream.id > lastStreamId) {
+                    stream.fail(new RefusedStreamException("Stream not processed before GOAWAY"));
+                    refused.add(stream);
+                }
+            }
+            notifyAll();
+        }
+        for (Stream stream : refused) {
+            removeStream(stream);
+        }
+    }
+
+    private void readWindowUpdate(int streamId, byte[] payload) throws IOException {
+        if (payload.length != 4) {
+            throw new ProtocolException("Invalid WINDOW_UPDATE");
+        }
+        int increment = readInt(payload, 0) & 0x7fffffff;
+        synchronized (this) {
+            if (streamId == 0) {
+                sendWindow += increment;
+            } else {
+                Stream stream = streams.get(streamId);
+                if (stream != null) {
+                    stream.sendWindow += increment;
+                }
+            }
+            notifyAll();
+        }
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return ((data[offset] & 0xff) << 24) | ((data[offset + 1] & 0xff) << 16)
+                | ((data[offset + 2] & 0xff) << 8) | (data[offset + 3] & 0xff);
+    }
+    //</editor-fold>
+
+    private void goAway(int errorCode) {
+        // the client never accepts streams from the server, the last stream id is 0
+        byte[] payload = new byte[8];
+        System.arraycopy(intBytes(errorCode), 0, payload, 4, 4);
+        writeControl(TYPE_GOAWAY, 0, 0, payload);
+    }
+
+    /**
+     * Fail the connection and all its streams, the streams not processed by the server could be
+     * retried on another connection.
+     */
+    private void fail(IOException e) {
+        List<Stream> failed;
+        synchronized (this) {
+            if (failure != null) {
+                return;
+            }
+            failure = e;
+            failed = new ArrayList<>(streams.values());
+            for (Stream stream : failed) {
+                stream.fail(stream.id > lastGoodStreamId
+                        ? new RefusedStreamException("Stream not processed before GOAWAY") : e);
+            }
+            streams.clear();
+            notifyAll();
+        }
+        socket.close();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (failure != null) {
+                return;
+            }
+        }
+        goAway(ERROR_NO_ERROR);
+        fail(new IOException("Connection closed"));
+    }
+
+    /**
+     * Failure of a stream which has not been processed by the server, the request could be sent
+     * again on a new connection.
+     */
+    static class RefusedStreamException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        RefusedStreamException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Request and response of a stream. The response body is buffered up to the window granted
+     * to the peer and handed through {@link #getInputStream()}.
+     */
+    final class Stream implements Closeable {
+
+        final int id;
+        private final int timeout;
+        // guarded by the connection
+        private long sendWindow;
+        private List<String[]> headers;
+        private final LinkedList<byte[]> data = new LinkedList<>();
+        private int dataOffset;
+        private long buffered;
+        private long unacked;
+        private boolean remoteClosed;
+        private IOException error;
+
+        Stream(int id, int timeout, int sendWindow) {
+            this.id = id;
+            this.timeout = timeout;
+            this.sendWindow = sendWindow;
+        }
+
+        //<editor-fold desc="Reader thread, under the connection lock">
+        private void receive(byte[] payload, int offset, int length, boolean endStream) {
+            if (length > 0) {
+                byte[] chunk = new byte[length];
+                System.arraycopy(payload, offset, chunk, 0, length);
+                data.add(chunk);
+                buffered += length;
+            }
+            if (endStream) {
+                remoteClosed = true;
+            }
+            Http2Connection.this.notifyAll();
+        }
+
+        private void receiveHeaders(List<String[]> block, boolean endStream) {
+            String status = null;
+            for (String[] header : block) {
+                if (":status".equals(header[0])) {
+                    status = header[1];
+                }
+            }
+            if (headers == null && status != null && status.startsWith("1")) {
+                // interim response
+            } else if (headers == null) {
+                headers = block;
+            }
+            if (endStream) {
+                remoteClosed = true;
+            }
+            Http2Connection.this.notifyAll();
+        }
+
+        private void fail(IOException e) {
+            if (error == null) {
+                error = e;
+            }
+            Http2Connection.this.notifyAll();
+        }
+
+        private void consumedPadding(int padding) {
+            // the padding of a DATA frame counts in the window of the stream
+            if (padding > 0) {
+                consumedBytes(padding);
+            }
+        }
+        //</editor-fold>
+
+        /**
+         * Wait for the response headers.
+         *
+         * @return {@link List} of name and value pairs, the pseudo headers included.
+         * @throws IOException on failure of the stream or timeout.
+         */
+        List<String[]> awaitHeaders() throws IOException {
+            synchronized (Http2Connection.this) {
+                long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+                while (headers == null && error == null) {
+                    if (remoteClosed) {
+                        throw new ProtocolException("Stream closed without response headers");
+                    }
+                    waitFor(deadline, "Read timed out");
+                }
+                if (headers == null) {
+                    throw error;
+                }
+                return headers;
+            }
+        }
+
+        /**
+         * @return {@link OutputStream} writing the request body as DATA frames, closing it ends the stream.
+         */
+        OutputStream getOutputStream() {
+            return new OutputStream() {
+                private boolean closed;
+
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] buffer, int offset, int length) throws IOException {
+                    writeData(buffer, offset, length, false);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    if (!closed) {
+                        closed = true;
+                        writeData(new byte[0], 0, 0, true);
+                    }
+                }
+            };
+        }
+
+        private void writeData(byte[] buffer, int offset, int length, boolean endStream) throws IOException {
+            while (length > 0 || endStream) {
+                int chunk;
+                synchronized (Http2Connection.this) {
+                    long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+                    while (length > 0 && error == null && failure == null
+                            && (sendWindow <= 0 || Http2Connection.this.sendWindow <= 0)) {
+                        waitFor(deadline, "Write timed out");
+                    }
+                    if (error != null) {
+                        throw error;
+                    }
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    chunk = (int) Math.min(Math.min(length, peerMaxFrameSize),
+                            Math.min(sendWindow, Http2Connection.this.sendWindow));
+                    sendWindow -= chunk;
+                    Http2Connection.this.sendWindow -= chunk;
+                }
+                boolean last = endStream && chunk == length;
+                synchronized (writeLock) {
+                    writeFrame(TYPE_DATA, last ? FLAG_END_STREAM : 0, id, buffer, offset, chunk);
+                    out.flush();
+                }
+                offset += chunk;
+                length -= chunk;
+                if (last) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return {@link InputStream} of the response body. Closing it before the end resets the
+         * stream, the connection staying usable.
+         */
+        InputStream getInputStream() {
+            return new InputStream() {
+                private boolean closed;
+
+                @Override
+                public int read() throws IOException {
+                    byte[] single = new byte[1];
+                    return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    if (closed) {
+                        throw new IOException("Stream closed");
+                    }
+                    if (length == 0) {
+                        return 0;
+                    }
+                    int read;
+                    synchronized (Http2Connection.this) {
+                        long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+                        while (data.isEmpty() && !remoteClosed && error == null) {
+                            waitFor(deadline, "Read timed out");
+                        }
+                        if (data.isEmpty()) {
+                            if (remoteClosed) {
+                                read = -1;
+                            } else {
+                                throw error;
+                            }
+                        } else {
+                            byte[] chunk = data.getFirst();
+                            read = Math.min(length, chunk.length - dataOffset);
+                            System.arraycopy(chunk, dataOffset, buffer, offset, read);
+                            dataOffset += read;
+                            if (dataOffset == chunk.length) {
+                                data.removeFirst();
+                                dataOffset = 0;
+                            }
+                            buffered -= read;
+                        }
+                    }
+                    if (read == -1) {
+                        removeStream(Stream.this);
+                        return -1;
+                    }
+                    consumedBytes(read);
+                    consumed(read);
+                    return read;
+                }
+
+                @Override
+                public int available() {
+                    synchronized (Http2Connection.this) {
+                        return (int) Math.min(Integer.MAX_VALUE, buffered);
+                    }
+                }
+
+                @Override
+                public void close() {
+                    if (!closed) {
+                        closed = true;
+                        Stream.this.close();
+                    }
+                }
+            };
+        }
+
+        /**
+         * Replenish the window of the stream once half of it has been consumed.
+         */
+        private void consumedBytes(int bytes) {
+            int increment = 0;
+            synchronized (Http2Connection.this) {
+                unacked += bytes;
+                if (unacked >= STREAM_WINDOW / 2 && !remoteClosed) {
+                    increment = (int) unacked;
+                    unacked = 0;
+                }
+            }
+            if (increment > 0) {
+                writeControl(TYPE_WINDOW_UPDATE, 0, id, intBytes(increment));
+            }
+        }
+
+        /**
+         * Release the stream, resetting it if the response has not been fully received.
+         */
+        @Override
+        public void close() {
+            boolean reset;
+            synchronized (Http2Connection.this) {
+                reset = !remoteClosed && error == null && streams.containsKey(id);
+                if (error == null) {
+                    error = new IOException("Stream canceled");
+                }
+                Http2Connection.this.notifyAll();
+            }
+            if (reset) {
+                writeReset(id, ERROR_CANCEL);
+            }
+            removeStream(this);
+        }
+    }
+}
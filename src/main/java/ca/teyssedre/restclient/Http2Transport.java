@@ -0,0 +1,388 @@
+package ca.teyssedre.restclient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.URL;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+
+/**
+ * {@link HttpTransport} multiplexing the requests to a host as HTTP/2 streams over a single
+ * connection, with HPACK header compression and flow control. HTTPS connections negotiate the
+ * protocol through ALPN : when the server, or the platform, doesn't select h2 the requests to
+ * that host go through a {@link NioTransport} over HTTP/1.1, reusing the connection already
+ * opened. Plain HTTP requests use h2c with prior knowledge, unless disabled by
+ * {@link #setCleartext(boolean)}.
+ * <pre>
+ * HttpClient client = new HttpClient().setTransport(new Http2Transport());
+ * </pre>
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+@SuppressWarnings("unused")
+public class Http2Transport implements HttpTransport {
+
+    private static final String[] ALPN_PROTOCOLS = {"h2", "http/1.1"};
+    private static final Set<String> CONNECTION_HEADERS = new HashSet<>();
+
+    static {
+        CONNECTION_HEADERS.add("connection");
+        CONNECTION_HEADERS.add("keep-alive");
+        CONNECTION_HEADERS.add("proxy-connection");
+        CONNECTION_HEADERS.add("transfer-encoding");
+        CONNECTION_HEADERS.add("upgrade");
+        CONNECTION_HEADERS.add("host");
+        CONNECTION_HEADERS.add("content-length");
+    }
+
+    private final Map<Route, Http2Connection> connections = new HashMap<>();
+    private final Map<Route, Object> routeLocks = new HashMap<>();
+    private final Set<Route> http1Routes = new HashSet<>();
+    private final NioTransport http1;
+    private SSLContext sslContext;
+    private HostnameVerifier hostnameVerifier = HttpsURLConnection.getDefaultHostnameVerifier();
+    private boolean cleartext = true;
+    private long keepAliveNanos = TimeUnit.MINUTES.toNanos(5);
+    private boolean shutdown;
+
+    public Http2Transport() {
+        this(new NioTransport());
+    }
+
+    /**
+     * @param http1 {@link NioTransport} used for the hosts which don't speak HTTP/2.
+     */
+    public Http2Transport(NioTransport http1) {
+        this.http1 = http1;
+    }
+
+    /**
+     * @param sslContext {@link SSLContext} of the HTTPS connections, the default one otherwise, the
+     *                   one of the {@link HttpTlsConfig} of the client being preferred. A request
+     *                   with another {@link javax.net.ssl.SSLSocketFactory} than a
+     *                   {@link NoSSLValidation} is sent in HTTP/1.1 from that factory.
+     * @return the current instance of {@link Http2Transport}.
+     */
+    public Http2Transport setSslContext(SSLContext sslContext) {
+        this.sslContext = sslContext;
+        http1.setSslContext(sslContext);
+        return this;
+    }
+
+    /**
+     * @param verifier {@link HostnameVerifier} checking the certificates against the host name.
+     * @return the current instance of {@link Http2Transport}.
+     */
+    public Http2Transport setHostnameVerifier(HostnameVerifier verifier) {
+        this.hostnameVerifier = verifier;
+        http1.setHostnameVerifier(verifier);
+        return this;
+    }
+
+    /**
+     * Change how the plain HTTP requests are sent : h2c with prior knowledge by default, HTTP/1.1
+     * when disabled.
+     *
+     * @param cleartext {@link Boolean} flag.
+     * @return the current instance of {@link Http2Transport}.
+     */
+    public Http2Transport setCleartext(boolean cleartext) {
+        this.cleartext = cleartext;
+        return this;
+    }
+
+    /**
+     * @param millisecond {@link Long} delay after which a connection without stream is closed, 5 minutes by default.
+     * @return the current instance of {@link Http2Transport}.
+     */
+    public Http2Transport setKeepAlive(long millisecond) {
+        this.keepAliveNanos = TimeUnit.MILLISECONDS.toNanos(millisecond);
+        return this;
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request, ConnectionStats stats) {
+        HttpResponse response = new HttpResponse();
+        response.setOrigin(request.getUrl());
+        if (request.isCancelled()) {
+            response.setException(new IOException("Request canceled"));
+            return response;
+        }
+        URL url;
+        try {
+            url = new URL(request.getUrl());
+        } catch (IOException e) {
+            response.setException(e);
+            return response;
+        }
+        boolean https = "https".equalsIgnoreCase(url.getProtocol());
+        Route route = NioTransport.route(url, request);
+        // the HTTP/1.1 transport sends the requests with another factory through its own
+        if (!https && !cleartext || isHttp1(route) || !NioTransport.isSupported(url, request)) {
+            return http1.execute(request, stats);
+        }
+        HttpBody body = request.prepareBody();
+        List<String[]> headers;
+        try {
+            headers = headers(request, url, body);
+        } catch (IOException e) {
+            response.setException(e);
+            return response;
+        }
+        boolean retried = false;
+        while (true) {
+            response = new HttpResponse();
+            response.setOrigin(request.getUrl());
+            request.events().attemptStart();
+            try {
+                Http2Connection connection;
+                synchronized (routeLock(route)) {
+                    connection = get(route);
+                    if (connection == null) {
+                        NioConnection socket = open(request, url, https, route);
+                        stats.newConnection();
+                        if (socket.isSecure()) {
+                            stats.handshake(socket.isResumedSession());
+                        }
+                        if (https && !"h2".equals(socket.getApplicationProtocol())) {
+                            markHttp1(route);
+                            http1.adopt(socket);
+                        } else {
+                            connection = new Http2Connection(socket);
+                            connection.start();
+                            put(connection);
+                        }
+                    }
+                }
+                if (connection == null) {
+                    // outside of the lock, the exchange would block the other requests to the host
+                    return http1.execute(request, stats);
+                }
+                stats.exchange(true);
+                exchange(connection, request, headers, body, response);
+                return response;
+            } catch (Http2Connection.RefusedStreamException e) {
+                if (retried || request.isCancelled() || !request.canResend()) {
+                    response.setException(e);
+                    return response;
+                }
+                retried = true;
+                stats.staleRetry();
+            } catch (IOException e) {
+                response.setException(e);
+                return response;
+            }
+        }
+    }
+
+    private void exchange(Http2Connection connection, HttpRequest request, List<String[]> headers,
+                          HttpBody body, HttpResponse response) throws IOException {
+        Http2Connection.Stream stream = connection.newStream(headers, body == null, request.getReadTimeout());
+        request.setCancelHook(stream);
+        try {
+            if (body != null) {
+                OutputStream out = stream.getOutputStream();
+                body.writeTo(out);
+                out.close();
+            }
+            request.events().requestEnd();
+            int status = 0;
+            Map<String, List<String>> responseHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (String[] header : stream.awaitHeaders()) {
+                if (":status".equals(header[0])) {
+                    status = Integer.parseInt(header[1]);
+                } else if (!header[0].startsWith(":")) {
+                    List<String> values = responseHeaders.get(header[0]);
+                    if (values == null) {
+                        values = new ArrayList<>(1);
+                        responseHeaders.put(header[0], values);
+                    }
+                    values.add(header[1]);
+                }
+            }
+            response.setStatusCode(status);
+            response.setHeaders(responseHeaders);
+            request.events().responseHeadersEnd(status);
+            response.setContentType(first(responseHeaders, "content-type"));
+            SSLSession session = connection.getSocket().getSession();
+            if (session != null) {
+                response.setCipherSuite(session.getCipherSuite());
+                try {
+                    response.setCertificates(session.getPeerCertificates());
+                } catch (SSLPeerUnverifiedException ignored) {
+                }
+            }
+            InputStream in = stream.getInputStream();
+            if (!request.shouldRead()) {
+                in.close();
+            } else {
+                long length = -1;
+                String contentLength = first(responseHeaders, "content-length");
+                if (contentLength != null) {
+                    try {
+                        length = Long.parseLong(contentLength);
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+                request.readBody(response, status, in, length >= 0 && length <= Integer.MAX_VALUE ? (int) length : -1,
+                        first(responseHeaders, "content-encoding"));
+            }
+            if (status >= 400) {
+                response.setException(new RequestException(status, ""));
+            }
+        } catch (IOException | RuntimeException e) {
+            stream.close();
+            if (e instanceof NumberFormatException) {
+                throw new IOException("Invalid :status header");
+            }
+            throw e;
+        } finally {
+            request.setCancelHook(null);
+        }
+    }
+
+    /**
+     * @return the pseudo headers followed by the headers of the request, the connection specific
+     * ones being removed as required by HTTP/2.
+     */
+    private static List<String[]> headers(HttpRequest request, URL url, HttpBody body) throws IOException {
+        List<String[]> headers = new ArrayList<>();
+        String path = url.getFile();
+        HttpHeader.checkTarget(path);
+        String authority = url.getHost();
+        if (url.getPort() != -1 && url.getPort() != url.getDefaultPort()) {
+            authority += ":" + url.getPort();
+        }
+        headers.add(new String[]{":method", NioTransport.method(request)});
+        headers.add(new String[]{":scheme", url.getProtocol().toLowerCase(Locale.US)});
+        headers.add(new String[]{":authority", authority});
+        headers.add(new String[]{":path", path == null || path.length() == 0 ? "/" : path});
+        for (HttpHeader header : request.buildHeaders(body)) {
+            String name = header.getName().toLowerCase(Locale.US);
+            if (!CONNECTION_HEADERS.contains(name) && !("te".equals(name) && !"trailers".equals(header.getValue()))) {
+                headers.add(new String[]{name, header.getValue()});
+            }
+        }
+        if (body != null && body.contentLength() >= 0) {
+            headers.add(new String[]{"content-length", String.valueOf(body.contentLength())});
+        }
+        return headers;
+    }
+
+    private static String first(Map<String, List<String>> headers, String name) {
+        List<String> values = headers.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    //<editor-fold desc="Connections">
+    private NioConnection open(HttpRequest request, URL url, boolean https, Route route) throws IOException {
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        SSLContext context = null;
+        HostnameVerifier verifier = null;
+        if (https) {
+            context = route.getSslContext() != null ? route.getSslContext() : sslContext();
+            verifier = route.isVerified() ? hostnameVerifier : null;
+        }
+        InetAddress[] addresses = request.resolve(url.getHost());
+        return NioConnection.open(route, url.getHost(), port, addresses, context, verifier,
+                request.getConnectTimeout(), https ? ALPN_PROTOCOLS : null, request.events());
+    }
+
+    private synchronized Object routeLock(Route route) {
+        Object lock = routeLocks.get(route);
+        if (lock == null) {
+            lock = new Object();
+            routeLocks.put(route, lock);
+        }
+        return lock;
+    }
+
+    /**
+     * @return the usable connection of the route, null if one must be opened. The connections
+     * without stream for longer than the keep alive delay are closed.
+     */
+    private Http2Connection get(Route route) throws IOException {
+        List<Http2Connection> expired = new ArrayList<>();
+        Http2Connection found;
+        synchronized (this) {
+            if (shutdown) {
+                throw new IOException("Transport shut down");
+            }
+            long now = System.nanoTime();
+            for (Http2Connection connection : new ArrayList<>(connections.values())) {
+                if (!connection.isUsable()
+                        || connection.isIdle() && now - connection.getIdleSince() > keepAliveNanos) {
+                    connections.remove(connection.getRoute());
+                    expired.add(connection);
+                }
+            }
+            found = connections.get(route);
+        }
+        for (Http2Connection connection : expired) {
+            connection.close();
+        }
+        return found;
+    }
+
+    private synchronized void put(Http2Connection connection) {
+        connections.put(connection.getRoute(), connection);
+    }
+
+    private synchronized boolean isHttp1(Route route) {
+        return http1Routes.contains(route);
+    }
+
+    private synchronized void markHttp1(Route route) {
+        http1Routes.add(route);
+    }
+
+    /**
+     * @return {@link Integer} number of HTTP/2 connections open.
+     */
+    public synchronized int getConnectionCount() {
+        return connections.size();
+    }
+
+    @Override
+    public void shutdown() {
+        List<Http2Connection> open;
+        synchronized (this) {
+            shutdown = true;
+            open = new ArrayList<>(connections.values());
+            connections.clear();
+        }
+        for (Http2Connection connection : open) {
+            connection.close();
+        }
+        http1.shutdown();
+    }
+    //</editor-fold>
+
+    private synchronized SSLContext sslContext() throws IOException {
+        if (sslContext == null) {
+            try {
+                sslContext = SSLContext.getDefault();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException("No default SSLContext: " + e.getMessage());
+            }
+        }
+        return sslContext;
+    }
+}
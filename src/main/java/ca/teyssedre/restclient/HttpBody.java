@@ -0,0 +1,214 @@
+package ca.teyssedre.restclient;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Source of the body of a {@link HttpRequest}. The body is written directly into the output stream
+ * of the connection, when the length is known the request is sent in fixed length streaming mode,
+ * otherwise with the chunked transfer encoding. Either way the upload is never buffered.
+ * <p>
+ * Implementations could be provided to write the body from a callback :
+ * <pre>
+ * request.addBody(new HttpBody() {
+ *     public long contentLength() { return -1; }
+ *     public void writeTo(OutputStream out) throws IOException { ... }
+ * });
+ * </pre>
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+@SuppressWarnings("unused")
+public abstract class HttpBody {
+
+    /**
+     * @return number of bytes written by {@link #writeTo(OutputStream)}, -1 if unknown.
+     */
+    public abstract long contentLength();
+
+    /**
+     * Write the body into the {@link OutputStream} of the connection. The stream should not be closed.
+     *
+     * @param out {@link OutputStream} of the connection.
+     * @throws IOException throw by the {@link OutputStream} or the source of the body.
+     */
+    public abstract void writeTo(OutputStream out) throws IOException;
+
+    /**
+     * @return {@link HttpContentType} of the body, null to keep the one of the {@link HttpRequest}.
+     */
+    public HttpContentType contentType() {
+        return null;
+    }
+
+    /**
+     * @return {@link String} value of the Content-Type header, when the body needs parameters such
+     * as a multipart boundary.
+     */
+    public String contentTypeValue() {
+        HttpContentType type = contentType();
+        return type != null ? type.getValue() : null;
+    }
+
+    /**
+     * @return {@link String} value of the Content-Encoding header of the body, null if not encoded.
+     */
+    public String contentEncoding() {
+        return null;
+    }
+
+    /**
+     * @return true if {@link #writeTo(OutputStream)} can be invoked more than once, to resend the request.
+     */
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    public static HttpBody create(final byte[] binary) {
+        return new HttpBody() {
+            @Override
+            public long contentLength() {
+                return binary.length;
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                out.write(binary);
+            }
+        };
+    }
+
+    public static HttpBody create(String data) {
+        try {
+            return create(data.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static HttpBody create(final File file) {
+        return new HttpBody() {
+            @Override
+            public long contentLength() {
+                return file.length();
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                InputStream in = new FileInputStream(file);
+                try {
+                    Streams.copy(in, out);
+                } finally {
+                    in.close();
+                }
+            }
+
+            @Override
+            public HttpContentType contentType() {
+                return HttpContentType.OCTET_STREAM;
+            }
+        };
+    }
+
+    /**
+     * Create a body streamed from an {@link InputStream}. The stream is read only once and closed
+     * after being written, such body can't be resent.
+     *
+     * @param in     {@link InputStream} providing the bytes to send.
+     * @param length number of bytes of the stream, -1 if unknown.
+     * @return {@link HttpBody} instance.
+     */
+    public static HttpBody create(final InputStream in, final long length) {
+        return new HttpBody() {
+            @Override
+            public long contentLength() {
+                return length;
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                try {
+                    Streams.copy(in, out);
+                } finally {
+                    in.close();
+                }
+            }
+
+            @Override
+            public boolean isRepeatable() {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Compress a body with gzip while it is written, nothing is buffered beside the deflater. The
+     * compressed length being unknown, the request is sent with the chunked transfer encoding.
+     *
+     * @param body {@link HttpBody} to compress.
+     * @return {@link HttpBody} instance sent with "Content-Encoding: gzip".
+     */
+    public static HttpBody gzip(final HttpBody body) {
+        return new HttpBody() {
+            @Override
+            public long contentLength() {
+                return -1;
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                GZIPOutputStream gzip = new GZIPOutputStream(new NonClosingOutputStream(out), BufferPool.SEGMENT_SIZE);
+                try {
+                    body.writeTo(gzip);
+                } finally {
+                    // releases the deflater, the stream of the connection stays open
+                    gzip.close();
+                }
+            }
+
+            @Override
+            public HttpContentType contentType() {
+                return body.contentType();
+            }
+
+            @Override
+            public String contentTypeValue() {
+                return body.contentTypeValue();
+            }
+
+            @Override
+            public String contentEncoding() {
+                return "gzip";
+            }
+
+            @Override
+            public boolean isRepeatable() {
+                return body.isRepeatable();
+            }
+        };
+    }
+
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            out.write(buffer, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
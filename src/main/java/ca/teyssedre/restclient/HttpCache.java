@@ -0,0 +1,596 @@
+package ca.teyssedre.restclient;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Disk cache of the GET responses following the HTTP caching semantics. Fresh entries, according to
+ * the Cache-Control max-age or Expires headers, are served without network call. Stale entries
+ * holding an ETag or a Last-Modified value are revalidated with a conditional request, a
+ * 304 Not Modified answer being served from the cache. A response with a Vary header is served only
+ * to the requests having the same values for the headers it names, one variant being kept per URL.
+ * The total size of the entries is bounded, the least recently used ones are evicted first.
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+@SuppressWarnings("unused")
+public class HttpCache {
+
+    private static final String TAG = "HttpCache";
+    private static final int ENTRY_VERSION = 2;
+    private static final String SUFFIX = ".entry";
+
+    private final File directory;
+    private final long maxSize;
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+    private int requestCount;
+    private int hitCount;
+    private int missCount;
+    private int revalidationCount;
+    private int conditionalHitCount;
+
+    /**
+     * Constructor of {@link HttpCache} class.
+     *
+     * @param directory {@link File} directory where the entries are stored, created if missing.
+     * @param maxSize   {@link Long} maximum number of bytes used by the entries.
+     */
+    public HttpCache(File directory, long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be greater than 0");
+        }
+        this.directory = directory;
+        this.maxSize = maxSize;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            System.out.println(TAG + " unable to create " + directory);
+        }
+        loadIndex();
+    }
+
+    /**
+     * Execute a request through the cache.
+     *
+     * @param request {@link HttpRequest} to execute.
+     * @param next    {@link HttpExchange} performing the request when the cache can't answer.
+     * @return {@link HttpResponse} from the cache or from the network.
+     */
+    HttpResponse execute(HttpRequest request, HttpExchange next) {
+        if (!isCacheable(request)) {
+            HttpResponse response = next.proceed(request);
+            if (request.getType() != HttpRequestType.GET && response.getException() == null) {
+                remove(request.getUrl());
+            }
+            return response;
+        }
+        String key = key(request.getUrl());
+        Entry entry = read(key);
+        if (entry != null && !entry.matches(request)) {
+            // another variant, replaced by the response of this request
+            entry = null;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            requestCount++;
+        }
+        if (entry != null && entry.isFresh(now)) {
+            synchronized (this) {
+                hitCount++;
+            }
+            return entry.toResponse();
+        }
+
+        List<HttpHeader> conditions = new ArrayList<>();
+        if (entry != null) {
+            String etag = entry.getHeader("ETag");
+            String lastModified = entry.getHeader("Last-Modified");
+            if (etag != null) {
+                conditions.add(new HttpHeader("If-None-Match", etag));
+            }
+            if (lastModified != null) {
+                conditions.add(new HttpHeader("If-Modified-Since", lastModified));
+            }
+        }
+        HttpResponse response;
+        if (conditions.isEmpty()) {
+            response = next.proceed(request);
+        } else {
+            synchronized (this) {
+                revalidationCount++;
+            }
+            // sent on a copy, the headers of the caller are left untouched
+            final HttpRequest conditional = request.duplicate();
+            conditional.getHeaders().addAll(conditions);
+            request.setCancelHook(new Closeable() {
+                @Override
+                public void close() {
+                    conditional.cancel();
+                }
+            });
+            try {
+                response = next.proceed(conditional);
+            } finally {
+                request.setCancelHook(null);
+            }
+            request.events().adopt(conditional.events());
+        }
+
+        if (entry != null && response.getException() == null && response.getStatusCode() == 304) {
+            synchronized (this) {
+                conditionalHitCount++;
+            }
+            entry.merge(response.getHeaders(), System.currentTimeMillis());
+            write(key, entry);
+            return entry.toResponse();
+        }
+        synchronized (this) {
+            missCount++;
+        }
+        if (isStorable(response)) {
+            write(key, new Entry(request, response, System.currentTimeMillis()));
+        } else if (entry != null && response.getException() == null) {
+            remove(request.getUrl());
+        }
+        return response;
+    }
+
+    /**
+     * Remove the entry of an URL.
+     *
+     * @param url {@link String} URL of the entry.
+     */
+    public synchronized void remove(String url) {
+        delete(key(url));
+    }
+
+    /**
+     * Remove all the entries of the cache.
+     */
+    public synchronized void evictAll() {
+        for (String key : new ArrayList<>(index.keySet())) {
+            delete(key);
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * @return number of GET requests which went through the cache.
+     */
+    public synchronized int getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * @return number of requests served by a fresh entry without network call.
+     */
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return number of requests answered by the network with a full response.
+     */
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return number of conditional requests sent to revalidate a stale entry.
+     */
+    public synchronized int getRevalidationCount() {
+        return revalidationCount;
+    }
+
+    /**
+     * @return number of revalidations answered with a 304 Not Modified and served from the cache.
+     */
+    public synchronized int getConditionalHitCount() {
+        return conditionalHitCount;
+    }
+
+    private static boolean isCacheable(HttpRequest request) {
+        if (request.getType() != HttpRequestType.GET
+                || request.getResponseMode() == HttpResponseMode.STREAM
+                || !request.shouldRead()) {
+            return false;
+        }
+        if (request.getHeader("If-None-Match") != null || request.getHeader("If-Modified-Since") != null) {
+            return false;
+        }
+        CacheControl control = CacheControl.parse(Collections.singletonList(request.getHeader("Cache-Control")));
+        return !control.noStore && !control.noCache;
+    }
+
+    private boolean isStorable(HttpResponse response) {
+        if (response.getException() != null || response.getBody() == null) {
+            return false;
+        }
+        switch (response.getStatusCode()) {
+            case 200:
+            case 203:
+            case 300:
+            case 301:
+            case 410:
+                break;
+            default:
+                return false;
+        }
+        if (response.getBody().length > maxSize / 2) {
+            return false;
+        }
+        if (varyNames(response.getHeaderValues("Vary")).contains("*")) {
+            return false;
+        }
+        CacheControl control = CacheControl.parse(response.getHeaderValues("Cache-Control"));
+        if (control.noStore) {
+            return false;
+        }
+        return control.maxAgeSeconds >= 0
+                || response.getHeader("Expires") != null
+                || response.getHeader("ETag") != null
+                || response.getHeader("Last-Modified") != null;
+    }
+
+    /**
+     * @param values {@link List} of the Vary headers of a response, could be null.
+     * @return {@link List} of the request header names listed.
+     */
+    static List<String> varyNames(List<String> values) {
+        List<String> names = new ArrayList<>();
+        if (values != null) {
+            for (String value : values) {
+                if (value == null) {
+                    continue;
+                }
+                for (String name : value.split(",")) {
+                    name = name.trim();
+                    if (name.length() > 0) {
+                        names.add(name);
+                    }
+                }
+            }
+        }
+        return names;
+    }
+
+    //<editor-fold desc="Storage">
+    private synchronized void loadIndex() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long l = lhs.lastModified();
+                long r = rhs.lastModified();
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(SUFFIX)) {
+                index.put(name.substring(0, name.length() - SUFFIX.length()), file.length());
+                size += file.length();
+            } else if (name.endsWith(".tmp")) {
+                file.delete();
+            }
+        }
+        trimToSize();
+    }
+
+    /**
+     * Read an entry, the lock being held only to look the index up : the requests reading or
+     * writing other entries are not blocked by the disk.
+     */
+    private Entry read(String key) {
+        synchronized (this) {
+            if (index.get(key) == null) {
+                return null;
+            }
+        }
+        File file = new File(directory, key + SUFFIX);
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            Entry entry = Entry.readFrom(in);
+            file.setLastModified(System.currentTimeMillis());
+            return entry;
+        } catch (FileNotFoundException e) {
+            // replaced or removed since the look up
+            return null;
+        } catch (IOException e) {
+            delete(key);
+            return null;
+        } finally {
+            Streams.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Write an entry into a file of its own, then commit it under the lock by renaming the file.
+     */
+    private void write(String key, Entry entry) {
+        File tmp = null;
+        DataOutputStream out = null;
+        try {
+            // unique, two requests could store the same entry at once
+            tmp = File.createTempFile(key, ".tmp", directory);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            entry.writeTo(out);
+            out.close();
+            out = null;
+            commit(key, tmp);
+        } catch (IOException e) {
+            System.out.println(TAG + " unable to store entry " + e.getMessage());
+            if (tmp != null) {
+                tmp.delete();
+            }
+        } finally {
+            Streams.closeQuietly(out);
+        }
+    }
+
+    private synchronized void commit(String key, File tmp) throws IOException {
+        delete(key);
+        File file = new File(directory, key + SUFFIX);
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Unable to commit " + file);
+        }
+        index.put(key, file.length());
+        size += file.length();
+        trimToSize();
+    }
+
+    private synchronized void delete(String key) {
+        Long length = index.remove(key);
+        if (length != null) {
+            size -= length;
+        }
+        new File(directory, key + SUFFIX).delete();
+    }
+
+    private synchronized void trimToSize() {
+        Iterator<Map.Entry<String, Long>> iterator = index.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            size -= eldest.getValue();
+            new File(directory, eldest.getKey() + SUFFIX).delete();
+        }
+    }
+
+    static String key(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] hash = digest.digest(url.getBytes("UTF-8"));
+            StringBuilder builder = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                builder.append(Character.forDigit((b >> 4) & 0xf, 16));
+                builder.append(Character.forDigit(b & 0xf, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    //</editor-fold>
+
+    /**
+     * Response stored by the cache.
+     */
+    static class Entry {
+
+        private final String url;
+        private final int statusCode;
+        private final Map<String, List<String>> headers;
+        // values of the request headers named by Vary, null for an absent header
+        private final Map<String, String> varying;
+        private final byte[] body;
+        private long receivedAt;
+
+        Entry(HttpRequest request, HttpResponse response, long receivedAt) {
+            this.url = request.getUrl();
+            this.statusCode = response.getStatusCode();
+            this.varying = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (String name : varyNames(response.getHeaderValues("Vary"))) {
+                varying.put(name, request.getHeader(name));
+            }
+            this.headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            if (response.getHeaders() != null) {
+                for (Map.Entry<String, List<String>> header : response.getHeaders().entrySet()) {
+                    if (isStoredHeader(header.getKey())) {
+                        this.headers.put(header.getKey(), new ArrayList<>(header.getValue()));
+                    }
+                }
+            }
+            this.body = response.getBody();
+            this.receivedAt = receivedAt;
+        }
+
+        private Entry(String url, int statusCode, Map<String, List<String>> headers, Map<String, String> varying,
+                      byte[] body, long receivedAt) {
+            this.url = url;
+            this.statusCode = statusCode;
+            this.headers = headers;
+            this.varying = varying;
+            this.body = body;
+            this.receivedAt = receivedAt;
+        }
+
+        /**
+         * The body is stored decoded, the headers describing the encoding of the transfer are dropped.
+         */
+        private static boolean isStoredHeader(String name) {
+            return name != null
+                    && !"Content-Length".equalsIgnoreCase(name)
+                    && !"Content-Encoding".equalsIgnoreCase(name)
+                    && !"Transfer-Encoding".equalsIgnoreCase(name);
+        }
+
+        /**
+         * @param request {@link HttpRequest} looked up.
+         * @return true if the request has the values of the headers named by the Vary of the entry.
+         */
+        boolean matches(HttpRequest request) {
+            for (Map.Entry<String, String> header : varying.entrySet()) {
+                String value = request.getHeader(header.getKey());
+                if (value == null ? header.getValue() != null : !value.equals(header.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        String getHeader(String name) {
+            List<String> values = headers.get(name);
+            return values == null || values.isEmpty() ? null : values.get(0);
+        }
+
+        /**
+         * @param now current time in millisecond.
+         * @return true if the entry could be served without revalidation.
+         */
+        boolean isFresh(long now) {
+            CacheControl control = CacheControl.parse(headers.get("Cache-Control"));
+            if (control.noCache) {
+                return false;
+            }
+            long served = HttpDate.parse(getHeader("Date"));
+            long lifetime;
+            if (control.maxAgeSeconds >= 0) {
+                lifetime = control.maxAgeSeconds * 1000;
+            } else if (getHeader("Expires") != null) {
+                long expires = HttpDate.parse(getHeader("Expires"));
+                lifetime = expires - (served > 0 ? served : receivedAt);
+            } else if (getHeader("Last-Modified") != null && !url.contains("?")) {
+                // heuristic freshness, 10% of the time since the last modification
+                long lastModified = HttpDate.parse(getHeader("Last-Modified"));
+                long base = served > 0 ? served : receivedAt;
+                lifetime = lastModified > 0 && lastModified < base ? (base - lastModified) / 10 : 0;
+            } else {
+                lifetime = 0;
+            }
+            long age = Math.max(0, now - receivedAt);
+            String ageHeader = getHeader("Age");
+            if (ageHeader != null) {
+                try {
+                    age += Long.parseLong(ageHeader.trim()) * 1000;
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            return age < lifetime;
+        }
+
+        /**
+         * Update the entry with the headers of a 304 Not Modified response.
+         */
+        void merge(Map<String, List<String>> update, long now) {
+            if (update != null) {
+                for (Map.Entry<String, List<String>> header : update.entrySet()) {
+                    if (isStoredHeader(header.getKey())) {
+                        headers.put(header.getKey(), new ArrayList<>(header.getValue()));
+                    }
+                }
+            }
+            receivedAt = now;
+        }
+
+        HttpResponse toResponse() {
+            HttpResponse response = new HttpResponse();
+            response.setOrigin(url);
+            response.setStatusCode(statusCode);
+            response.setContentType(getHeader("Content-Type"));
+            response.setHeaders(headers);
+            response.setBody(body);
+            response.setFromCache(true);
+            return response;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(ENTRY_VERSION);
+            out.writeUTF(url);
+            out.writeInt(statusCode);
+            out.writeLong(receivedAt);
+            out.writeInt(headers.size());
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                out.writeUTF(header.getKey());
+                out.writeInt(header.getValue().size());
+                for (String value : header.getValue()) {
+                    out.writeUTF(value == null ? "" : value);
+                }
+            }
+            out.writeInt(varying.size());
+            for (Map.Entry<String, String> header : varying.entrySet()) {
+                out.writeUTF(header.getKey());
+                out.writeBoolean(header.getValue() != null);
+                out.writeUTF(header.getValue() == null ? "" : header.getValue());
+            }
+            out.writeInt(body.length);
+            out.write(body);
+        }
+
+        static Entry readFrom(DataInputStream in) throws IOException {
+            if (in.readInt() != ENTRY_VERSION) {
+                throw new IOException("Unsupported entry version");
+            }
+            String url = in.readUTF();
+            int statusCode = in.readInt();
+            long receivedAt = in.readLong();
+            int count = in.readInt();
+            Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                int valueCount = in.readInt();
+                List<String> values = new ArrayList<>(valueCount);
+                for (int j = 0; j < valueCount; j++) {
+                    values.add(in.readUTF());
+                }
+                headers.put(name, values);
+            }
+            int varyCount = in.readInt();
+            Map<String, String> varying = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (int i = 0; i < varyCount; i++) {
+                String name = in.readUTF();
+                boolean present = in.readBoolean();
+                String value = in.readUTF();
+                varying.put(name, present ? value : null);
+            }
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            return new Entry(url, statusCode, headers, varying, body, receivedAt);
+        }
+    }
+}
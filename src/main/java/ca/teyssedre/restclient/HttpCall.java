@@ -0,0 +1,74 @@
+package ca.teyssedre.restclient;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Handle of a {@link HttpRequest} executed asynchronously through
+ * {@link HttpClient#executeAsync(HttpRequest, HttpCallback)}.
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+@SuppressWarnings("unused")
+public class HttpCall {
+
+    private final HttpRequest request;
+    private volatile Future<HttpResponse> future;
+
+    HttpCall(HttpRequest request) {
+        this.request = request;
+    }
+
+    void setFuture(Future<HttpResponse> future) {
+        this.future = future;
+    }
+
+    /**
+     * Cancel the execution of the request. If the request is waiting for a worker it will never
+     * be executed, if it is running the underlying connection is closed. The {@link HttpCallback}
+     * is not notified after this call.
+     */
+    public void cancel() {
+        request.cancel();
+        Future<HttpResponse> current = future;
+        if (current != null) {
+            current.cancel(true);
+        }
+    }
+
+    public boolean isCancelled() {
+        return request.isCancelled();
+    }
+
+    public boolean isDone() {
+        Future<HttpResponse> current = future;
+        return current != null && current.isDone();
+    }
+
+    public HttpRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * Blocking helper to retrieve the {@link HttpResponse} of the call.
+     *
+     * @return {@link HttpResponse} of the request, null if the call was cancelled.
+     * @throws InterruptedException if the current thread is interrupted while waiting.
+     */
+    public HttpResponse await() throws InterruptedException {
+        Future<HttpResponse> current = future;
+        // the closed connection could complete the future before it is cancelled
+        if (current == null || current.isCancelled() || request.isCancelled()) {
+            return null;
+        }
+        try {
+            return current.get();
+        } catch (ExecutionException e) {
+            return request.getResponse();
+        } catch (CancellationException e) {
+            return null;
+        }
+    }
+}
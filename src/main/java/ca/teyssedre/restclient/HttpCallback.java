@@ -0,0 +1,30 @@
+package ca.teyssedre.restclient;
+
+/**
+ * Callback notified of the completion of a {@link HttpRequest} executed through
+ * {@link HttpClient#executeAsync(HttpRequest, HttpCallback)}. The methods are invoked on the
+ * callback {@link java.util.concurrent.Executor} of the {@link HttpClient}, the main thread by
+ * default on Android. No method is invoked once the {@link HttpCall} has been cancelled.
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+public interface HttpCallback {
+
+    /**
+     * Invoked when the server response has been processed.
+     *
+     * @param request  {@link HttpRequest} executed.
+     * @param response {@link HttpResponse} of the request.
+     */
+    void onResponse(HttpRequest request, HttpResponse response);
+
+    /**
+     * Invoked when the request could not be executed, for example on connectivity issue or timeout,
+     * or when an interceptor or a listener threw a {@link RuntimeException}.
+     *
+     * @param request   {@link HttpRequest} executed.
+     * @param exception {@link Exception} which prevent the request to complete.
+     */
+    void onFailure(HttpRequest request, Exception exception);
+}
@@ -0,0 +1,365 @@
+package ca.teyssedre.restclient;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circuit breaker of each host, failing the requests immediately while the host is down instead
+ * of waiting out the connect or read timeouts.
+ * <ul>
+ * <li>CLOSED : the requests go through, their outcome is recorded in a rolling window of the last
+ * calls. When the window holds enough calls and the failure rate, or the slow call rate, reaches
+ * its threshold the circuit opens.</li>
+ * <li>OPEN : the requests fail with a {@link CircuitBreakerOpenException} without connection until
+ * the open duration elapses.</li>
+ * <li>HALF_OPEN : a few trial requests go through, the others still fail fast. The circuit closes
+ * if the trials succeed, opens again otherwise.</li>
+ * </ul>
+ * A failure is an I/O error or a 5xx response; a call is slow when it lasts more than the slow call
+ * duration, whatever its outcome.
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+@SuppressWarnings("unused")
+public class HttpCircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * Listener of the transitions of the circuits, invoked on the thread completing the request.
+     */
+    public interface Listener {
+        /**
+         * @param host {@link String} host of the circuit.
+         * @param from {@link State} before the transition.
+         * @param to   {@link State} after the transition.
+         */
+        void onStateChange(String host, State from, State to);
+    }
+
+    private final Map<String, Circuit> circuits = new HashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private int windowSize = 20;
+    private int minimumCalls = 10;
+    private double failureRateThreshold = 0.5;
+    private double slowCallRateThreshold = 1;
+    private long slowCallDuration = 10 * 1000;
+    private long openDuration = 30 * 1000;
+    private int halfOpenCalls = 3;
+
+    //<editor-fold desc="Configuration">
+    /**
+     * @param windowSize   {@link Integer} number of last calls of the rolling window, 20 by default.
+     * @param minimumCalls {@link Integer} number of calls recorded before the rates are evaluated, 10 by default.
+     * @return the current instance of {@link HttpCircuitBreaker}.
+     */
+    public synchronized HttpCircuitBreaker setWindow(int windowSize, int minimumCalls) {
+        this.windowSize = Math.max(1, windowSize);
+        this.minimumCalls = Math.min(this.windowSize, Math.max(1, minimumCalls));
+        circuits.clear();
+        return this;
+    }
+
+    /**
+     * @param threshold {@link Double} rate of failed calls opening the circuit, 0.5 by default.
+     * @return the current instance of {@link HttpCircuitBreaker}.
+     */
+    public synchronized HttpCircuitBreaker setFailureRateThreshold(double threshold) {
+        this.failureRateThreshold = threshold;
+        return this;
+    }
+
+    /**
+     * @param threshold {@link Double} rate of slow calls opening the circuit, 1 by default : only
+     *                  when all the calls of the window are slow.
+     * @param duration  {@link Long} duration in millisecond from which a call is slow, 10 seconds by default.
+     * @return the current instance of {@link HttpCircuitBreaker}.
+     */
+    public synchronized HttpCircuitBreaker setSlowCallThreshold(double threshold, long duration) {
+        this.slowCallRateThreshold = threshold;
+        this.slowCallDuration = duration;
+        return this;
+    }
+
+    /**
+     * @param openDuration  {@link Long} time in millisecond the circuit stays open, 30 seconds by default.
+     * @param halfOpenCalls {@link Integer} number of trial calls in the half-open state, 3 by default.
+     * @return the current instance of {@link HttpCircuitBreaker}.
+     */
+    public synchronized HttpCircuitBreaker setOpenDuration(long openDuration, int halfOpenCalls) {
+        this.openDuration = Math.max(0, openDuration);
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        return this;
+    }
+
+    public HttpCircuitBreaker addListener(Listener listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    public HttpCircuitBreaker removeListener(Listener listener) {
+        listeners.remove(listener);
+        return this;
+    }
+    //</editor-fold>
+
+    /**
+     * Execute a request if the circuit of its host lets it through.
+     *
+     * @param request {@link HttpRequest} to execute.
+     * @param next    {@link HttpExchange} performing the network exchange.
+     * @return {@link HttpResponse} of the exchange, or failed with a {@link CircuitBreakerOpenException}.
+     */
+    HttpResponse execute(HttpRequest request, HttpExchange next) {
+        String host = key(request);
+        List<Transition> transitions = new ArrayList<>(2);
+        long wait;
+        synchronized (this) {
+            wait = circuit(host).acquire(host, System.currentTimeMillis(), transitions);
+        }
+        notify(transitions);
+        if (wait >= 0) {
+            rejectedCount.incrementAndGet();
+            HttpResponse response = new HttpResponse();
+            response.setException(new CircuitBreakerOpenException(host, wait));
+            return response;
+        }
+        long start = System.currentTimeMillis();
+        HttpResponse response = null;
+        try {
+            response = next.proceed(request);
+            return response;
+        } finally {
+            long end = System.currentTimeMillis();
+            transitions.clear();
+            synchronized (this) {
+                Circuit circuit = circuit(host);
+                if (response == null || request.isCancelled()) {
+                    circuit.release();
+                } else {
+                    circuit.record(host, isFailure(response), end - start >= slowCallDuration, end, transitions);
+                }
+            }
+            notify(transitions);
+        }
+    }
+
+    /**
+     * @param host {@link String} name of the host.
+     * @return {@link State} of the circuit of the host.
+     */
+    public synchronized State getState(String host) {
+        Circuit circuit = circuits.get(host.toLowerCase(Locale.US));
+        if (circuit == null) {
+            return State.CLOSED;
+        }
+        if (circuit.state == State.OPEN && System.currentTimeMillis() >= circuit.openUntil) {
+            // transition done by the next request
+            return State.HALF_OPEN;
+        }
+        return circuit.state;
+    }
+
+    /**
+     * Close the circuit of a host, forgetting the recorded calls.
+     *
+     * @param host {@link String} name of the host.
+     */
+    public void reset(String host) {
+        State previous;
+        synchronized (this) {
+            Circuit circuit = circuits.remove(host.toLowerCase(Locale.US));
+            previous = circuit == null ? State.CLOSED : circuit.state;
+        }
+        if (previous != State.CLOSED) {
+            List<Transition> transitions = new ArrayList<>(1);
+            transitions.add(new Transition(host, previous, State.CLOSED));
+            notify(transitions);
+        }
+    }
+
+    /**
+     * @return number of requests failed without connection because their circuit was open.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    private static String key(HttpRequest request) {
+        String host = request.getHost();
+        return host == null ? "" : host.toLowerCase(Locale.US);
+    }
+
+    private static boolean isFailure(HttpResponse response) {
+        Exception failure = response.getException();
+        if (failure == null) {
+            return false;
+        }
+        if (failure instanceof RequestException) {
+            return ((RequestException) failure).statusCode >= 500;
+        }
+        return true;
+    }
+
+    private Circuit circuit(String host) {
+        Circuit circuit = circuits.get(host);
+        if (circuit == null) {
+            circuit = new Circuit(windowSize);
+            circuits.put(host, circuit);
+        }
+        return circuit;
+    }
+
+    private void notify(List<Transition> transitions) {
+        for (Transition transition : transitions) {
+            for (Listener listener : listeners) {
+                try {
+                    listener.onStateChange(transition.host, transition.from, transition.to);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private static final class Transition {
+
+        private final String host;
+        private final State from;
+        private final State to;
+
+        Transition(String host, State from, State to) {
+            this.host = host;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /**
+     * Circuit of one host, guarded by the lock of the {@link HttpCircuitBreaker}.
+     */
+    private final class Circuit {
+
+        private static final int FAILED = 1;
+        private static final int SLOW = 2;
+
+        private final byte[] outcomes;
+        private State state = State.CLOSED;
+        private int count;
+        private int next;
+        private int failures;
+        private int slowCalls;
+        private long openUntil;
+        private int trialsStarted;
+        private int trialsDone;
+        private int trialFailures;
+        private int trialSlowCalls;
+
+        Circuit(int windowSize) {
+            outcomes = new byte[windowSize];
+        }
+
+        /**
+         * @return {@link Long} -1 if the call could go through, otherwise the time in millisecond
+         * before the circuit lets trial calls through.
+         */
+        long acquire(String host, long now, List<Transition> transitions) {
+            if (state == State.OPEN) {
+                if (now < openUntil) {
+                    return openUntil - now;
+                }
+                moveTo(host, State.HALF_OPEN, transitions);
+                trialsStarted = 0;
+                trialsDone = 0;
+                trialFailures = 0;
+                trialSlowCalls = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (trialsStarted >= halfOpenCalls) {
+                    return 0;
+                }
+                trialsStarted++;
+            }
+            return -1;
+        }
+
+        /**
+         * Give back the permit of a call without outcome, a cancelled one.
+         */
+        void release() {
+            if (state == State.HALF_OPEN && trialsStarted > trialsDone) {
+                trialsStarted--;
+            }
+        }
+
+        void record(String host, boolean failed, boolean slow, long now, List<Transition> transitions) {
+            if (state == State.HALF_OPEN) {
+                trialsDone++;
+                trialFailures += failed ? 1 : 0;
+                trialSlowCalls += slow ? 1 : 0;
+                if (trialsDone >= halfOpenCalls) {
+                    if (exceeds(trialFailures, trialSlowCalls, trialsDone)) {
+                        open(host, now, transitions);
+                    } else {
+                        clear();
+                        moveTo(host, State.CLOSED, transitions);
+                    }
+                }
+                return;
+            }
+            if (state != State.CLOSED) {
+                // a call started before the circuit opened
+                return;
+            }
+            if (count == outcomes.length) {
+                byte evicted = outcomes[next];
+                failures -= evicted & FAILED;
+                slowCalls -= (evicted & SLOW) >> 1;
+            } else {
+                count++;
+            }
+            outcomes[next] = (byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0));
+            next = (next + 1) % outcomes.length;
+            failures += failed ? 1 : 0;
+            slowCalls += slow ? 1 : 0;
+            if (count >= minimumCalls && exceeds(failures, slowCalls, count)) {
+                open(host, now, transitions);
+            }
+        }
+
+        private boolean exceeds(int failed, int slow, int total) {
+            return failed >= failureRateThreshold * total || slow >= slowCallRateThreshold * total;
+        }
+
+        private void open(String host, long now, List<Transition> transitions) {
+            clear();
+            openUntil = now + openDuration;
+            moveTo(host, State.OPEN, transitions);
+        }
+
+        private void clear() {
+            count = 0;
+            next = 0;
+            failures = 0;
+            slowCalls = 0;
+        }
+
+        private void moveTo(String host, State target, List<Transition> transitions) {
+            if (state != target) {
+                transitions.add(new Transition(host, state, target));
+                state = target;
+            }
+        }
+    }
+}
@@ -5,7 +5,6 @@ import android.util.Base64;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -17,12 +16,17 @@ import java.nio.charset.Charset;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
-import java.util.zip.GZIPInputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 import javax.net.ssl.SSLSocketFactory;
 
@@ -38,8 +42,26 @@ public class HttpClient {
     private static final String TAG = "HttpClient";
     private Set<HttpRequest> requests;
     private Map<UUID, HttpResponse> responses;
+    private Map<UUID, Future<HttpResponse>> futures;
     private SSLSocketFactory sslFactory;
+    private HttpDispatcher dispatcher;
+    private HttpDispatcher defaultDispatcher;
+    private HttpCache cache;
+    private HttpMemoryCache memoryCache;
+    private HttpCoalescer coalescer;
+    private HttpRetryPolicy retryPolicy;
+    private HttpHedgingPolicy hedgingPolicy;
+    private HttpCircuitBreaker circuitBreaker;
+    private HttpRateLimiter rateLimiter;
+    private HttpEventListener eventListener;
+    private HttpResolver resolver;
+    private HttpTlsConfig tlsConfig;
+    private final ConnectionStats connectionStats = new ConnectionStats();
+    private HttpTransport transport = new UrlConnectionTransport();
+    private Executor callbackExecutor;
     private boolean hasUA = true;
+    private long compressionThreshold = -1;
+    private ContentDecoders contentDecoders = new ContentDecoders();
 
     /**
      * Default constructor of {@link HttpClient} class.
@@ -48,7 +70,8 @@ public class HttpClient {
      */
     public HttpClient(String url) {
         requests = new HashSet<>();
-        responses = new HashMap<>();
+        responses = Collections.synchronizedMap(new HashMap<UUID, HttpResponse>());
+        futures = Collections.synchronizedMap(new HashMap<UUID, Future<HttpResponse>>());
         try {
             requests.add(new HttpRequest(url, HttpRequestType.GET));
         } catch (Exception e) {
@@ -59,7 +82,8 @@ public class HttpClient {
 
     public HttpClient(HttpRequest... array) {
         requests = new HashSet<>();
-        responses = new HashMap<>();
+        responses = Collections.synchronizedMap(new HashMap<UUID, HttpResponse>());
+        futures = Collections.synchronizedMap(new HashMap<UUID, Future<HttpResponse>>());
         requests.addAll(Arrays.asList(array));
     }
 
@@ -71,7 +95,8 @@ public class HttpClient {
      */
     public HttpClient(String url, HttpRequestType type) {
         requests = new HashSet<>();
-        responses = new HashMap<>();
+        responses = Collections.synchronizedMap(new HashMap<UUID, HttpResponse>());
+        futures = Collections.synchronizedMap(new HashMap<UUID, Future<HttpResponse>>());
         try {
             requests.add(new HttpRequest(url, type));
         } catch (Exception e) {
@@ -81,18 +106,26 @@ public class HttpClient {
 
     public HttpClient() {
         requests = new HashSet<>();
-        responses = new HashMap<>();
+        responses = Collections.synchronizedMap(new HashMap<UUID, HttpResponse>());
+        futures = Collections.synchronizedMap(new HashMap<UUID, Future<HttpResponse>>());
     }
 
     /**
      * If a custom {@link SSLSocketFactory} is require to perform the HTTP/HTTPS call :
      * for custom validation or some other specific operation.
      *
+     * The last one of this method and {@link #setTlsConfig(HttpTlsConfig)} called wins, with every
+     * {@link HttpTransport}.
+     *
      * @param factory instance of {@link SSLSocketFactory} which provide the {@link javax.net.ssl.SSLContext}
      *                to create and validate handshake process.
      * @return the current instance of {@link HttpClient}.
      */
     public HttpClient setSSLFactory(SSLSocketFactory factory) {
+        if (tlsConfig != null && factory != tlsConfig.getSocketFactory()) {
+            // replaced, the transports would otherwise keep opening connections from its context
+            tlsConfig = null;
+        }
         sslFactory = factory;
         for (HttpRequest request : requests) {
             request.setSslFactory(factory);
@@ -100,6 +133,226 @@ public class HttpClient {
         return this;
     }
 
+    /**
+     * Switching the execution of the queued requests to the dispatcher mode : the {@link HttpRequest}
+     * will be executed in parallel by the {@link HttpDispatcher} worker threads, within its global
+     * and per host limits.
+     *
+     * @param dispatcher instance of {@link HttpDispatcher} to use, null to go back to sequential execution.
+     * @return the current instance of {@link HttpClient}.
+     */
+    public HttpClient setDispatcher(HttpDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+        return this;
+    }
+
+    public HttpDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * Enable the HTTP cache : GET responses will be stored on disk according to their Cache-Control,
+     * Expires, ETag and Last-Modified headers, fresh entries are served without network call and
+     * stale ones are revalidated.
+     *
+     * @param cache instance of {@link HttpCache} to use, null to disable the cache.
+     * @return the current instance of {@link HttpClient}.
+     */
+    public HttpClient setCache(HttpCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    public HttpCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Enable the in-memory cache of the small GET responses, in front of the {@link HttpCache}.
+     * Hits are answered with a shared immutable {@link HttpResponse}.
+     *
+     * @param memoryCache instance of {@link HttpMemoryCache} to use, null to disable it.
+     * @return the current instance of {@link HttpClient}.
+     */
+    public HttpClient setMemoryCache(HttpMemoryCache memoryCache) {
+        this.memoryCache = memoryCache;
+        return this;
+    }
+
+    public HttpMemoryCache getMemoryCache() {
+        return memoryCache;
+    }
+
+    /**
+     * Enable the coalescing of the identical idempotent requests : while a request is in flight
+     * the identical ones wait for it and share its {@link HttpResponse}.
+     *
+     * @param coalescer instance of {@link HttpCoalescer} to use, null to disable the coalescing.
+     * @return the current instance of {@link HttpClient}.
+     */
+    public HttpClient setCoalescer(HttpCoalescer coalescer) {
+        this.coalescer = coalescer;
+        return this;
+    }
+
+    public HttpCoalescer getCoalescer() {
+        return coalescer;
+    }
+
+    /**
+     * Enable the retry of the transient failures : the idempotent requests failing with an I/O
+     * error, a 408, a 429 or a 5xx are sent again after a jittered backoff, within the retry budget
+     * of the policy.
+     *
+     * @param retryPolicy instance of {@link HttpRetryPolicy} to use, null to disable the retries.
+     * @return the current instance of {@link HttpClient}.
+     */
+    public HttpClient setRetryPolicy(HttpRetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    public HttpRetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Enable the hedging of the GET requests : a request slower than the hedge delay is sent once
+     * more and the first response wins, within the hedge budget of the policy.
+     *
+     * @param hedgingPolicy instance of {@link HttpHedgingPolicy} to use, null to disable the hedging.
+     * @return the current instance of {@link HttpClient}.
+     */
+    public HttpClient setHedgingPolicy(HttpHedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+        return this;
+    }
+
+    public HttpHedgingPolicy getHedgingPolicy() {
+        return hedgingPolicy;
+    }
+
+    /**
+     * Enable the circuit breaker of the hosts : while a host fails, or answers too slowly, its
+     * requests fail immediately with a {@link CircuitBreakerOpenException}.
+     *
+     * @param circuitBreaker instance of {@link HttpCircuitBreaker} to use, null to disable it.
+     * @return the current instance of {@link HttpClient}.
+     */
+    public HttpClient setCircuitBreaker(HttpCircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+        return this;
+    }
+
+    public HttpCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Enable the client side rate limiting : each attempt of a request takes a token of the limit
+     * of its host or route, waiting or failing when the bucket is empty.
+     *
+     * @param rateLimiter instance of {@link HttpRateLimiter} to use, null to disable it.
+     * @return the current instance of {@link HttpClient}.
+     */
+    public HttpClient setRateLimiter(HttpRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+        return this;
+    }
+
+    public HttpRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Follow the phases of the calls : DNS, connection, TLS, request, wait of the response and
+     * read of the body. The durations of the last call of a request are then available from
+     * {@link HttpRequest#getTimings()}.
+     *
+     * @param eventListener {@link HttpEventListener} to notify, {@link HttpMetricsRecorder} for
+     *                      per host histograms, null to disable the events.
+     * @return the current instance of {@link HttpClient}.
+     */
+    public HttpClient setEventListener(HttpEventListener eventListener) {
+        this.eventListener = eventListener;
+        return this;
+    }
+
+    public HttpEventListener getEventListener() {
+        return eventListener;
+    }
+
+    /**
+     * Resolve the host names with a {@link HttpResolver}, an {@link HttpDnsCache} for example. Only
+     * the {@link NioTransport} and the {@link Http2Transport} connect to the addresses it returns :
+     * {@link java.net.HttpURLConnection} offering no way to supply them, the default
+     * {@link UrlConnectionTransport} ignores the resolver and connects through the lookup of the
+     * system.
+     *
+     * @param resolver {@link HttpResolver} to use, null for the one of the system.
+     * @return the current instance of {@link HttpClient}.
+     */
+    public HttpClient setResolver(HttpResolver resolver) {
+        this.resolver = resolver;
+        return this;
+    }
+
+    public HttpResolver getResolver() {
+        return resolver;
+    }
+
+    /**
+     * Share one {@link javax.net.ssl.SSLContext} between all the HTTPS requests of the client, their
+     * TLS sessions being resumed by the next connections. The full and resumed handshakes are
+     * counted by the {@link ConnectionStats}. Replaces the factory of {@link #setSSLFactory(SSLSocketFactory)}.
+     *
+     * @param tlsConfig {@link HttpTlsConfig} to use, null for the default context of the system.
+     * @return the current instance of {@link HttpClient}.
+     */
+    public HttpClient setTlsConfig(HttpTlsConfig tlsConfig) {
+        this.tlsConfig = tlsConfig;
+        return setSSLFactory(tlsConfig != null ? tlsConfig.getSocketFactory() : null);
+    }
+
+    public HttpTlsConfig getTlsConfig() {
+        return tlsConfig;
+    }
+
+    /**
+     * Change the engine performing the network exchanges, {@link UrlConnectionTransport} by default.
+     *
+     * @param transport instance of {@link HttpTransport} to use, null to restore the default one.
+     * @return the current instance of {@link HttpClient}.
+     */
+    public HttpClient setTransport(HttpTransport transport) {
+        this.transport = transport != null ? transport : new UrlConnectionTransport();
+        return this;
+    }
+
+    public HttpTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * @return {@link ConnectionStats} counters of the connections opened and reused by this client.
+     */
+    public ConnectionStats getConnectionStats() {
+        return connectionStats;
+    }
+
+    /**
+     * Change the {@link Executor} on which the {@link HttpCallback} of
+     * {@link #executeAsync(HttpRequest, HttpCallback)} are invoked. By default the callbacks are
+     * posted to the main {@link android.os.Looper}.
+     *
+     * @param executor instance of {@link Executor} delivering the callbacks.
+     * @return the current instance of {@link HttpClient}.
+     */
+    public HttpClient setCallbackExecutor(Executor executor) {
+        this.callbackExecutor = executor;
+        return this;
+    }
+
     /**
      * Adding to the URL a specific path.
      *
@@ -260,6 +513,36 @@ public class HttpClient {
         return this;
     }
 
+    /**
+     * Compress with gzip the bodies of the requests reaching the threshold, unless the
+     * {@link HttpRequest} sets its own threshold through
+     * {@link HttpRequest#setCompressionThreshold(long)}. The bodies of unknown length are compressed
+     * only with a threshold of 0. The server must accept "Content-Encoding: gzip" requests.
+     *
+     * @param threshold {@link Long} length in bytes from which the bodies are compressed, -1 to disable (the default).
+     * @return the current instance of {@link HttpClient}.
+     */
+    public HttpClient setRequestCompression(long threshold) {
+        this.compressionThreshold = threshold;
+        return this;
+    }
+
+    /**
+     * @return {@link ContentDecoders} decoding the response bodies, where other encodings could be registered.
+     */
+    public ContentDecoders getContentDecoders() {
+        return contentDecoders;
+    }
+
+    /**
+     * @param contentDecoders {@link ContentDecoders} instance, null to restore the default one (gzip and deflate).
+     * @return the current instance of {@link HttpClient}.
+     */
+    public HttpClient setContentDecoders(ContentDecoders contentDecoders) {
+        this.contentDecoders = contentDecoders != null ? contentDecoders : new ContentDecoders();
+        return this;
+    }
+
     /**
      * In order to avoid {@link java.security.cert.CertificateException} from the {@link HttpRequest}
      * we provide a class {@link NoSSLValidation} that will ignore the Certificate validation process.
@@ -271,7 +554,7 @@ public class HttpClient {
     @Deprecated
     public HttpClient ignoreCertificateValidation(boolean flag) {
         try {
-            setSSLFactory(flag ? new NoSSLValidation() : (SSLSocketFactory) SSLSocketFactory.getDefault());
+            setSSLFactory(flag ? NoSSLValidation.shared() : (SSLSocketFactory) SSLSocketFactory.getDefault());
         } catch (NoSuchAlgorithmException | KeyManagementException e) {
             e.printStackTrace();
         }
@@ -295,28 +578,140 @@ public class HttpClient {
     }
 
     /**
-     * Executing {@link HttpRequest} queue elements.
+     * Execute the {@link HttpRequest} on a worker thread of the {@link HttpDispatcher} without
+     * blocking the calling thread. The {@link HttpCallback} is invoked on the callback
+     * {@link Executor} once the request is completed.
+     *
+     * @param request  {@link HttpRequest} to execute.
+     * @param callback {@link HttpCallback} to notify, could be null.
+     * @return {@link HttpCall} handle to follow or cancel the execution.
+     */
+    public HttpCall executeAsync(final HttpRequest request, final HttpCallback callback) {
+        if (request == null) {
+            return null;
+        }
+        final HttpCall call = new HttpCall(request);
+        call.setFuture(obtainDispatcher().enqueue(request, new Callable<HttpResponse>() {
+            @Override
+            public HttpResponse call() throws Exception {
+                HttpResponse response;
+                try {
+                    response = execute(request);
+                } catch (RuntimeException e) {
+                    // thrown by an interceptor or a listener, the callback must still complete
+                    deliver(callback, request, null, e);
+                    throw e;
+                }
+                deliver(callback, request, response, response == null ? null : response.getException());
+                return response;
+            }
+        }));
+        return call;
+    }
+
+    private void deliver(final HttpCallback callback, final HttpRequest request, final HttpResponse response,
+                         final Exception failure) {
+        if (callback == null || request.isCancelled()) {
+            return;
+        }
+        getCallbackExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (request.isCancelled()) {
+                    return;
+                }
+                if (response == null || failure != null) {
+                    callback.onFailure(request, failure);
+                } else {
+                    callback.onResponse(request, response);
+                }
+            }
+        });
+    }
+
+    /**
+     * Executing {@link HttpRequest} queue elements. When a {@link HttpDispatcher} has been set, the
+     * requests are executed in parallel and this call returns once all of them are completed.
      */
     public void execute() {
-        HttpRequest next = prepare();
-        if (next != null) {
+        if (dispatcher != null) {
+            for (Future<HttpResponse> future : dispatch().values()) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    e.printStackTrace();
+                }
+            }
+            return;
+        }
+        HttpRequest next;
+        while ((next = prepare()) != null) {
             process(next);
-            execute();
         }
     }
 
+    /**
+     * Submitting all the pending {@link HttpRequest} of the queue to the {@link HttpDispatcher}, a
+     * default one is created if none has been set. This call does not wait for the requests.
+     *
+     * @return {@link Map} of {@link Future} giving access to each {@link HttpResponse}, keyed by the
+     * {@link HttpRequest#getId()} value.
+     */
+    public Map<UUID, Future<HttpResponse>> dispatch() {
+        HttpDispatcher dispatcher = obtainDispatcher();
+        Map<UUID, Future<HttpResponse>> submitted = new LinkedHashMap<>();
+        for (final HttpRequest request : requests) {
+            if (request.hasBeenProcessed() || futures.containsKey(request.getId())) {
+                continue;
+            }
+            Future<HttpResponse> future = dispatcher.enqueue(request, new Callable<HttpResponse>() {
+                @Override
+                public HttpResponse call() throws Exception {
+                    process(request);
+                    return request.getResponse();
+                }
+            });
+            futures.put(request.getId(), future);
+            submitted.put(request.getId(), future);
+        }
+        return submitted;
+    }
+
     /**
      * Helper function to execute the request through the call of {@link HttpClient#execute()} and parse
-     * the result as a {@link JSONObject}.
+     * the result as a {@link JSONObject}. The object is parsed by a {@link JsonStreamReader} as the
+     * bytes are read from the connection.
      *
-     * @return {@link JSONObject} instance parse from the {@link String} value of the {@link InputStream} of the request made.
+     * @return {@link JSONObject} instance parse from the {@link InputStream} of the request made.
      * @throws IOException   throw by the {@link InputStream} object in case of error.
-     * @throws JSONException
-     * @deprecated
+     * @throws JSONException if the body is not a JSON object.
+     * @deprecated use {@link HttpResponse#getJsonReader()}.
      */
     @Deprecated
     public JSONObject getJson() throws IOException, JSONException {
-        return new JSONObject(getString());
+        HttpResponse response = processNext();
+        Exception failure = response.getException();
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure != null) {
+            throw new IOException(failure.getMessage());
+        }
+        JsonStreamReader reader = response.getJsonReader();
+        if (reader == null) {
+            throw new JSONException("No response body");
+        }
+        try {
+            Object value = reader.nextValue();
+            if (!(value instanceof JSONObject)) {
+                throw new JSONException("Expected a JSON object");
+            }
+            return (JSONObject) value;
+        } finally {
+            reader.close();
+        }
     }
 
     /**
@@ -329,14 +724,22 @@ public class HttpClient {
      */
     @Deprecated
     public String getString() throws IOException {
-        process(prepare());
-        return readAsString(prepare().processRequest().getConnection());
+        HttpResponse response = processNext();
+        return response.getException() != null ? null : readAsString(response);
     }
 
     public HttpResponse getResponse(UUID id) {
         return responses.get(id);
     }
 
+    /**
+     * @param id {@link UUID} value of the {@link HttpRequest} submitted through {@link #dispatch()}.
+     * @return {@link Future} of the dispatched request, null if the request has not been dispatched.
+     */
+    public Future<HttpResponse> getFuture(UUID id) {
+        return futures.get(id);
+    }
+
     /**
      * Shorter to connect the {@link URL} object and setup the {@link HttpURLConnection} instance.
      *
@@ -350,6 +753,22 @@ public class HttpClient {
         return request;
     }
 
+    /**
+     * Process the next request of the queue for the deprecated helpers, its body being read from the
+     * {@link HttpResponse} rather than by a second exchange.
+     *
+     * @return {@link HttpResponse} of the request processed.
+     * @throws IOException if there is no request to process.
+     */
+    private HttpResponse processNext() throws IOException {
+        HttpRequest request = prepare();
+        if (request == null) {
+            throw new IOException("No request to process");
+        }
+        process(request);
+        return request.getResponse();
+    }
+
     /**
      * Shorter to retrieve the next processable {@link HttpRequest}.
      *
@@ -372,34 +791,49 @@ public class HttpClient {
     /**
      * Helper to retrieved from an {@link InputStream} object the {@link String} value.
      *
-     * @param connection {@link HttpURLConnection}
+     * @param response {@link HttpResponse} whose body is read.
      * @return the response of the server in a {@link String} format.
      * @deprecated
      */
     @Deprecated
-    private String readAsString(HttpURLConnection connection) {
-        if (connection == null) {
-            return null;
-        }
+    private String readAsString(HttpResponse response) {
         try {
-            InputStream in = connection.getInputStream();
+            InputStream in = response.getBodyStream();
             if (in != null) {
-                Charset charset = Charset.forName("UTF8");
-                Reader reader;
-                if ("gzip".equals(connection.getContentEncoding())) {
-                    reader = new InputStreamReader(new GZIPInputStream(in), charset);
-                } else {
-                    reader = new InputStreamReader(in, charset);
+                Reader reader = new InputStreamReader(in, Charset.forName(response.getCharset()));
+                BufferPool pool = BufferPool.shared();
+                char[] buffer = pool.takeChars();
+                byte[] body = response.getBody();
+                StringBuilder value = new StringBuilder(body != null && body.length > 0 ? body.length : 256);
+                // every line is terminated by '\r', as read line by line before
+                boolean lineOpen = false;
+                boolean afterCarriageReturn = false;
+                try {
+                    int read;
+                    while ((read = reader.read(buffer)) != -1) {
+                        for (int i = 0; i < read; i++) {
+                            char c = buffer[i];
+                            if (c == '\n' && afterCarriageReturn) {
+                                afterCarriageReturn = false;
+                            } else if (c == '\r' || c == '\n') {
+                                value.append('\r');
+                                lineOpen = false;
+                                afterCarriageReturn = c == '\r';
+                            } else {
+                                value.append(c);
+                                lineOpen = true;
+                                afterCarriageReturn = false;
+                            }
+                        }
+                    }
+                } finally {
+                    pool.recycle(buffer);
+                    reader.close();
                 }
-                BufferedReader rd = new BufferedReader(reader);
-                String line;
-                StringBuilder response = new StringBuilder();
-                while ((line = rd.readLine()) != null) {
-                    response.append(line);
-                    response.append('\r');
+                if (lineOpen) {
+                    value.append('\r');
                 }
-                rd.close();
-                return response.toString();
+                return value.toString();
             }
         } catch (IOException e) {
             e.printStackTrace();
@@ -410,18 +844,130 @@ public class HttpClient {
 
     private HttpClient process(HttpRequest request) {
         if (request != null) {
-            request.processRequest();
-
-            if (request.shouldWrite()) {
-                request.doWrite();
+            request.setDefaultCompressionThreshold(compressionThreshold);
+            request.setContentDecoders(contentDecoders);
+            request.setResolver(resolver);
+            HttpTlsConfig config = tlsConfig;
+            boolean shared = config != null && request.getSslFactory() == config.getSocketFactory();
+            request.setTlsContext(shared ? config.getSslContext() : null);
+            HttpEventListener listener = eventListener;
+            HttpEvents events = listener != null ? new HttpEvents(request, listener) : HttpEvents.NONE;
+            request.setEvents(events);
+            events.callStart();
+            long allocated = BufferPool.threadAllocatedBytes();
+            HttpResponse response = buildChain().proceed(request);
+            request.setAllocatedBytes(BufferPool.threadAllocatedBytes() - allocated);
+            events.callEnd(response);
+            if (response != request.getResponse()) {
+                request.complete(response);
             }
-            if (request.shouldRead()) {
-                request.doRead();
+            responses.put(request.getId(), response);
+        }
+        return this;
+    }
+
+    /**
+     * Building the sequence of {@link HttpExchange} executing a request, from the features
+     * enabled on this client down to the network exchange.
+     *
+     * @return {@link HttpExchange} first step of the sequence.
+     */
+    private HttpExchange buildChain() {
+        final HttpTransport network = transport;
+        HttpExchange chain = new HttpExchange() {
+            @Override
+            public HttpResponse proceed(HttpRequest request) {
+                return network.execute(request, connectionStats);
             }
+        };
+        final HttpCircuitBreaker breaker = circuitBreaker;
+        if (breaker != null) {
+            final HttpExchange next = chain;
+            chain = new HttpExchange() {
+                @Override
+                public HttpResponse proceed(HttpRequest request) {
+                    return breaker.execute(request, next);
+                }
+            };
+        }
+        final HttpRateLimiter limiter = rateLimiter;
+        if (limiter != null) {
+            final HttpExchange next = chain;
+            chain = new HttpExchange() {
+                @Override
+                public HttpResponse proceed(HttpRequest request) {
+                    return limiter.execute(request, next);
+                }
+            };
+        }
+        final HttpRetryPolicy retry = retryPolicy;
+        if (retry != null) {
+            final HttpExchange next = chain;
+            chain = new HttpExchange() {
+                @Override
+                public HttpResponse proceed(HttpRequest request) {
+                    return retry.execute(request, next);
+                }
+            };
+        }
+        final HttpHedgingPolicy hedging = hedgingPolicy;
+        if (hedging != null) {
+            final HttpExchange next = chain;
+            chain = new HttpExchange() {
+                @Override
+                public HttpResponse proceed(HttpRequest request) {
+                    return hedging.execute(request, next);
+                }
+            };
+        }
+        final HttpCache diskCache = cache;
+        if (diskCache != null) {
+            final HttpExchange next = chain;
+            chain = new HttpExchange() {
+                @Override
+                public HttpResponse proceed(HttpRequest request) {
+                    return diskCache.execute(request, next);
+                }
+            };
+        }
+        final HttpCoalescer singleFlight = coalescer;
+        if (singleFlight != null) {
+            final HttpExchange next = chain;
+            chain = new HttpExchange() {
+                @Override
+                public HttpResponse proceed(HttpRequest request) {
+                    return singleFlight.execute(request, next);
+                }
+            };
+        }
+        final HttpMemoryCache hotCache = memoryCache;
+        if (hotCache != null) {
+            final HttpExchange next = chain;
+            chain = new HttpExchange() {
+                @Override
+                public HttpResponse proceed(HttpRequest request) {
+                    return hotCache.execute(request, next);
+                }
+            };
+        }
+        return chain;
+    }
 
-            responses.put(request.getId(), request.getResponse());
+    private synchronized HttpDispatcher obtainDispatcher() {
+        if (dispatcher != null) {
+            return dispatcher;
         }
-        return this;
+        if (defaultDispatcher == null) {
+            defaultDispatcher = new HttpDispatcher();
+        }
+        return defaultDispatcher;
+    }
+
+    private synchronized Executor getCallbackExecutor() {
+        if (callbackExecutor == null) {
+            callbackExecutor = new MainThreadExecutor();
+        }
+        return callbackExecutor;
     }
 
     public HttpRequestType getType() {
@@ -0,0 +1,160 @@
+package ca.teyssedre.restclient;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single-flight execution of identical idempotent requests. While a request is in flight, the
+ * requests with the same key wait for it instead of opening their own connection, and all of them
+ * receive the same immutable {@link HttpResponse}.
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+@SuppressWarnings("unused")
+public class HttpCoalescer {
+
+    private final HttpRequestKey keyFunction;
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+    private final AtomicInteger flightCount = new AtomicInteger();
+    private final AtomicInteger coalescedCount = new AtomicInteger();
+
+    /**
+     * Default constructor of {@link HttpCoalescer} class, the requests are identified by their
+     * normalized URL and all their headers, so that the requests of different sessions are never
+     * coalesced.
+     */
+    public HttpCoalescer() {
+        this(UrlRequestKey.allHeaders());
+    }
+
+    /**
+     * Constructor of {@link HttpCoalescer} class. A key ignoring some headers, a
+     * {@link UrlRequestKey} with a selection of headers for example, hands the response of a caller
+     * to the requests differing only by those headers.
+     *
+     * @param keyFunction {@link HttpRequestKey} identifying the identical requests.
+     */
+    public HttpCoalescer(HttpRequestKey keyFunction) {
+        this.keyFunction = keyFunction;
+    }
+
+    /**
+     * Execute a request, joining the identical request in flight if any. When the request in flight
+     * is cancelled by its own caller, the requests waiting for it are not failed : one of them
+     * performs the exchange instead.
+     *
+     * @param request {@link HttpRequest} to execute.
+     * @param next    {@link HttpExchange} performing the request.
+     * @return {@link HttpResponse} of the request or the shared one of the request in flight.
+     */
+    HttpResponse execute(HttpRequest request, HttpExchange next) {
+        String key = isCoalescable(request) ? keyFunction.key(request) : null;
+        if (key == null) {
+            return next.proceed(request);
+        }
+        while (true) {
+            Flight flight = new Flight();
+            Flight current = flights.putIfAbsent(key, flight);
+            if (current != null) {
+                HttpResponse shared = current.await();
+                if (shared == null) {
+                    // abandoned by its caller, the next request in flight is elected
+                    continue;
+                }
+                coalescedCount.incrementAndGet();
+                return shared;
+            }
+            flightCount.incrementAndGet();
+            HttpResponse response = null;
+            try {
+                response = next.proceed(request);
+                return response;
+            } finally {
+                flights.remove(key, flight);
+                if (request.isCancelled() || Thread.currentThread().isInterrupted()) {
+                    flight.abandon();
+                } else {
+                    flight.complete(response);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of requests which performed the network exchange.
+     */
+    public int getFlightCount() {
+        return flightCount.get();
+    }
+
+    /**
+     * @return number of requests which received the response of a request in flight instead of
+     * performing their own exchange.
+     */
+    public int getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * @return number of requests in flight at the moment.
+     */
+    public int getInFlightCount() {
+        return flights.size();
+    }
+
+    private static boolean isCoalescable(HttpRequest request) {
+        return request.getType() == HttpRequestType.GET
+                && !request.shouldWrite()
+                && request.shouldRead()
+                && request.getResponseMode() == HttpResponseMode.BUFFERED;
+    }
+
+    private static class Flight {
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile HttpResponse shared;
+        private volatile boolean abandoned;
+
+        void complete(HttpResponse response) {
+            if (response != null) {
+                shared = response.isImmutable() ? response : response.toImmutable(response.isFromCache());
+            }
+            latch.countDown();
+        }
+
+        /**
+         * Release the waiting requests without the response of a request cancelled by its caller.
+         */
+        void abandon() {
+            abandoned = true;
+            latch.countDown();
+        }
+
+        /**
+         * @return {@link HttpResponse} shared by the request in flight, null if it was abandoned.
+         */
+        HttpResponse await() {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                HttpResponse interrupted = new HttpResponse();
+                interrupted.setException(new InterruptedIOException("Interrupted while waiting for the request in flight"));
+                return interrupted;
+            }
+            if (abandoned) {
+                return null;
+            }
+            HttpResponse response = shared;
+            if (response == null) {
+                response = new HttpResponse();
+                response.setException(new InterruptedIOException("The request in flight did not complete"));
+            }
+            return response;
+        }
+    }
+}
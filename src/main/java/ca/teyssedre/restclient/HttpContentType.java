@@ -12,7 +12,8 @@ public enum HttpContentType {
     OCTET_STREAM(2, "octet/stream"),
     TEXT_HTML(3, "text/html"),
     APPLICATION_WWW_FORM(4, "application/x-www-form-urlencoded"),
-    PLAIN_TEXT(5, "text/plain");
+    PLAIN_TEXT(5, "text/plain"),
+    MULTIPART_FORM_DATA(6, "multipart/form-data");
 
     private final int code;
     private final String value;
@@ -36,6 +37,8 @@ public enum HttpContentType {
                 return APPLICATION_WWW_FORM;
             case 5:
                 return PLAIN_TEXT;
+            case 6:
+                return MULTIPART_FORM_DATA;
             default:
                 return APPLICATION_JSON;
         }
@@ -55,6 +58,8 @@ public enum HttpContentType {
                     return TEXT_HTML;
                 } else if ("text/plain".equals(i)) {
                     return PLAIN_TEXT;
+                } else if ("multipart/form-data".equals(i)) {
+                    return MULTIPART_FORM_DATA;
                 }
             }
             return APPLICATION_JSON;
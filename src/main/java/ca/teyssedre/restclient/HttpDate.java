@@ -0,0 +1,46 @@
+package ca.teyssedre.restclient;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Helpers to parse and format the dates of the HTTP headers (RFC 1123 format).
+ */
+final class HttpDate {
+
+    private static final ThreadLocal<DateFormat> FORMAT = new ThreadLocal<DateFormat>() {
+        @Override
+        protected DateFormat initialValue() {
+            DateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+            format.setLenient(false);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            return format;
+        }
+    };
+
+    private HttpDate() {
+    }
+
+    /**
+     * @param value {@link String} value of the header.
+     * @return epoch time in millisecond, -1 if the value can't be parsed.
+     */
+    static long parse(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return FORMAT.get().parse(value.trim()).getTime();
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+
+    static String format(long time) {
+        return FORMAT.get().format(new Date(time));
+    }
+}
@@ -0,0 +1,178 @@
+package ca.teyssedre.restclient;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of worker threads executing {@link HttpRequest} in parallel on behalf of
+ * {@link HttpClient}. The number of requests running at the same time is capped globally and per
+ * host; requests over the caps wait in a FIFO queue until a running one completes.
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+@SuppressWarnings("unused")
+public class HttpDispatcher {
+
+    private static final String TAG = "HttpDispatcher";
+    public static final int DEFAULT_MAX_REQUESTS = 64;
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 5;
+
+    private final int maxRequests;
+    private final int maxRequestsPerHost;
+    private final ExecutorService executor;
+    private final List<DispatchTask> ready = new LinkedList<>();
+    private final List<DispatchTask> running = new LinkedList<>();
+    private final Map<String, Integer> runningPerHost = new HashMap<>();
+
+    /**
+     * Default constructor of {@link HttpDispatcher} class, allowing
+     * {@link #DEFAULT_MAX_REQUESTS} requests at the same time and
+     * {@link #DEFAULT_MAX_REQUESTS_PER_HOST} per host.
+     */
+    public HttpDispatcher() {
+        this(DEFAULT_MAX_REQUESTS, DEFAULT_MAX_REQUESTS_PER_HOST);
+    }
+
+    /**
+     * Constructor of {@link HttpDispatcher} class.
+     *
+     * @param maxRequests        {@link Integer} maximum of requests running at the same time.
+     * @param maxRequestsPerHost {@link Integer} maximum of requests running at the same time against one host.
+     */
+    public HttpDispatcher(int maxRequests, int maxRequestsPerHost) {
+        if (maxRequests < 1 || maxRequestsPerHost < 1) {
+            throw new IllegalArgumentException("Dispatcher limits must be greater than 0");
+        }
+        this.maxRequests = maxRequests;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.executor = new ThreadPoolExecutor(maxRequests, maxRequests, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new WorkerFactory());
+    }
+
+    /**
+     * Queue the execution of a {@link HttpRequest}. The {@link Callable} will be invoked on a worker
+     * thread as soon as both the global and the per host limits allow it.
+     *
+     * @param request {@link HttpRequest} instance to execute, used to determine the host.
+     * @param call    {@link Callable} performing the execution and providing the {@link HttpResponse}.
+     * @return {@link Future} completed with the {@link HttpResponse} of the request.
+     */
+    public Future<HttpResponse> enqueue(HttpRequest request, Callable<HttpResponse> call) {
+        DispatchTask task = new DispatchTask(call, request.getHost());
+        synchronized (this) {
+            ready.add(task);
+        }
+        promote();
+        return task;
+    }
+
+    /**
+     * Stop the worker threads once the running and queued requests are completed.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    public synchronized int getRunningCount() {
+        return running.size();
+    }
+
+    public synchronized int getQueuedCount() {
+        return ready.size();
+    }
+
+    /**
+     * Moving the queued tasks allowed by the limits to the worker threads.
+     */
+    private void promote() {
+        List<DispatchTask> promoted = new LinkedList<>();
+        synchronized (this) {
+            Iterator<DispatchTask> iterator = ready.iterator();
+            while (iterator.hasNext() && running.size() < maxRequests) {
+                DispatchTask task = iterator.next();
+                if (task.isCancelled()) {
+                    iterator.remove();
+                    continue;
+                }
+                Integer count = runningPerHost.get(task.host);
+                int current = count == null ? 0 : count;
+                if (current >= maxRequestsPerHost) {
+                    continue;
+                }
+                iterator.remove();
+                runningPerHost.put(task.host, current + 1);
+                running.add(task);
+                promoted.add(task);
+            }
+        }
+        for (DispatchTask task : promoted) {
+            executor.execute(task);
+        }
+    }
+
+    private void finished(DispatchTask task) {
+        synchronized (this) {
+            if (running.remove(task)) {
+                Integer count = runningPerHost.get(task.host);
+                if (count == null || count <= 1) {
+                    runningPerHost.remove(task.host);
+                } else {
+                    runningPerHost.put(task.host, count - 1);
+                }
+            }
+        }
+        promote();
+    }
+
+    private class DispatchTask extends FutureTask<HttpResponse> {
+
+        private final String host;
+
+        DispatchTask(Callable<HttpResponse> callable, String host) {
+            super(callable);
+            this.host = host == null ? "" : host;
+        }
+
+        @Override
+        public void run() {
+            try {
+                super.run();
+            } finally {
+                finished(this);
+            }
+        }
+    }
+
+    private static class WorkerFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, TAG + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package ca.teyssedre.restclient;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link HttpResolver} keeping the addresses of the hosts in memory for a time to live, in front of
+ * another resolver. The hosts used often are resolved again in the background before they expire,
+ * so that their requests never wait for the DNS, and the last known addresses are served when a
+ * lookup fails, for a while after their expiry. The concurrent lookups of the same host are shared.
+ * <p>
+ * The records TTL isn't exposed by {@link InetAddress}, the time to live of the entries is the one
+ * configured, which should not be longer than the one of the system cache (networkaddress.cache.ttl).
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+@SuppressWarnings("unused")
+public class HttpDnsCache implements HttpResolver {
+
+    private final HttpResolver delegate;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentMap<String, FutureTask<InetAddress[]>> lookups = new ConcurrentHashMap<>();
+    private final LatencyHistogram lookupTimes = new LatencyHistogram();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong staleCount = new AtomicLong();
+    private final AtomicLong prefetchCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private volatile long ttl = 60 * 1000;
+    private volatile long staleTtl = 24 * 60 * 60 * 1000L;
+    private volatile double prefetchRatio = 0.75;
+    private volatile int prefetchHits = 2;
+    private volatile int maxEntries = 256;
+    private ExecutorService prefetcher;
+
+    /**
+     * Default constructor of {@link HttpDnsCache} class, caching the {@link HttpResolver#SYSTEM}
+     * resolutions for 60 seconds.
+     */
+    public HttpDnsCache() {
+        this(SYSTEM);
+    }
+
+    /**
+     * Constructor of {@link HttpDnsCache} class.
+     *
+     * @param delegate {@link HttpResolver} performing the lookups.
+     */
+    public HttpDnsCache(HttpResolver delegate) {
+        this.delegate = delegate != null ? delegate : SYSTEM;
+    }
+
+    //<editor-fold desc="Configuration">
+    /**
+     * @param millisecond {@link Long} time to live of the addresses resolved, 60 seconds by default.
+     * @return the current instance of {@link HttpDnsCache}.
+     */
+    public HttpDnsCache setTtl(long millisecond) {
+        this.ttl = Math.max(0, millisecond);
+        return this;
+    }
+
+    /**
+     * @param millisecond {@link Long} time after the expiry during which the addresses are served
+     *                    when the lookup fails, 24 hours by default, 0 to never serve them.
+     * @return the current instance of {@link HttpDnsCache}.
+     */
+    public HttpDnsCache setStaleTtl(long millisecond) {
+        this.staleTtl = Math.max(0, millisecond);
+        return this;
+    }
+
+    /**
+     * Resolve again in the background the hosts used at least a number of times once a part of
+     * their time to live elapsed, 75% and 2 hits by default.
+     *
+     * @param ratio   {@link Double} part of the time to live after which the host is refreshed, 0
+     *                to disable the prefetch.
+     * @param minHits {@link Integer} number of hits of the entry for the host to be refreshed.
+     * @return the current instance of {@link HttpDnsCache}.
+     */
+    public HttpDnsCache setPrefetch(double ratio, int minHits) {
+        this.prefetchRatio = Math.max(0, Math.min(1, ratio));
+        this.prefetchHits = Math.max(0, minHits);
+        return this;
+    }
+
+    /**
+     * @param maxEntries {@link Integer} number of hosts kept, the least recently used being
+     *                   forgotten first, 256 by default.
+     * @return the current instance of {@link HttpDnsCache}.
+     */
+    public HttpDnsCache setMaxEntries(int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+        return this;
+    }
+    //</editor-fold>
+
+    @Override
+    public InetAddress[] resolve(String host) throws UnknownHostException {
+        if (host == null || isLiteral(host)) {
+            return delegate.resolve(host);
+        }
+        String key = host.toLowerCase(Locale.US);
+        long now = System.currentTimeMillis();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null && now < entry.expires) {
+            hitCount.incrementAndGet();
+            int hits = entry.hits.incrementAndGet();
+            if (prefetchRatio > 0 && now >= entry.refreshAt(prefetchRatio) && hits >= prefetchHits
+                    && entry.prefetching.compareAndSet(false, true)) {
+                prefetch(key);
+            }
+            return entry.addresses.clone();
+        }
+        missCount.incrementAndGet();
+        try {
+            return lookup(key).clone();
+        } catch (UnknownHostException e) {
+            if (entry != null && now < entry.expires + staleTtl) {
+                staleCount.incrementAndGet();
+                return entry.addresses.clone();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Resolve the host with the delegate, sharing the lookup with the threads resolving the same
+     * host meanwhile, and store the addresses.
+     */
+    private InetAddress[] lookup(final String host) throws UnknownHostException {
+        FutureTask<InetAddress[]> task = new FutureTask<>(new Callable<InetAddress[]>() {
+            @Override
+            public InetAddress[] call() throws Exception {
+                long start = System.nanoTime();
+                try {
+                    InetAddress[] addresses = delegate.resolve(host);
+                    if (addresses == null || addresses.length == 0) {
+                        throw new UnknownHostException(host);
+                    }
+                    store(host, addresses);
+                    return addresses;
+                } catch (UnknownHostException e) {
+                    failureCount.incrementAndGet();
+                    throw e;
+                } finally {
+                    lookupTimes.record((System.nanoTime() - start) / 1000);
+                }
+            }
+        });
+        FutureTask<InetAddress[]> current = lookups.putIfAbsent(host, task);
+        if (current == null) {
+            current = task;
+            try {
+                task.run();
+            } finally {
+                lookups.remove(host, task);
+            }
+        }
+        try {
+            return current.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UnknownHostException) {
+                throw (UnknownHostException) e.getCause();
+            }
+            UnknownHostException failure = new UnknownHostException(host);
+            failure.initCause(e.getCause());
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            UnknownHostException failure = new UnknownHostException(host);
+            failure.initCause(e);
+            throw failure;
+        }
+    }
+
+    private void store(String host, InetAddress[] addresses) {
+        Entry entry = new Entry(addresses, System.currentTimeMillis(), ttl);
+        synchronized (entries) {
+            entries.put(host, entry);
+            while (entries.size() > maxEntries) {
+                entries.remove(entries.keySet().iterator().next());
+            }
+        }
+    }
+
+    private void prefetch(final String host) {
+        prefetcher().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    lookup(host);
+                    prefetchCount.incrementAndGet();
+                } catch (UnknownHostException e) {
+                    // the current addresses stay served until their expiry, then as stale ones
+                    Entry entry;
+                    synchronized (entries) {
+                        entry = entries.get(host);
+                    }
+                    if (entry != null) {
+                        entry.prefetching.set(false);
+                    }
+                }
+            }
+        });
+    }
+
+    private synchronized ExecutorService prefetcher() {
+        if (prefetcher == null) {
+            prefetcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "HttpDnsCache-prefetch");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return prefetcher;
+    }
+
+    private static boolean isLiteral(String host) {
+        if (host.indexOf(':') >= 0) {
+            return true;
+        }
+        for (int i = 0; i < host.length(); i++) {
+            char c = host.charAt(i);
+            if (c != '.' && (c < '0' || c > '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Forget all the addresses, the counters are kept.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Stop the thread of the prefetch, the cache keeps resolving the hosts without it.
+     */
+    public synchronized void shutdown() {
+        prefetchRatio = 0;
+        if (prefetcher != null) {
+            prefetcher.shutdownNow();
+            prefetcher = null;
+        }
+    }
+
+    //<editor-fold desc="Statistics">
+    /**
+     * @return number of hosts served from the cache.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return number of hosts resolved because they were absent or expired.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return {@link Double} part of the resolutions served from the cache, 0 without resolution.
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @return number of expired addresses served because the lookup failed.
+     */
+    public long getStaleCount() {
+        return staleCount.get();
+    }
+
+    /**
+     * @return number of hosts refreshed in the background.
+     */
+    public long getPrefetchCount() {
+        return prefetchCount.get();
+    }
+
+    /**
+     * @return number of lookups failed, the prefetches included.
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * @return number of lookups performed by the delegate, the prefetches included.
+     */
+    public long getLookupCount() {
+        return lookupTimes.getCount();
+    }
+
+    /**
+     * @return {@link Double} mean duration of the lookups, in microsecond.
+     */
+    public double getMeanLookupTime() {
+        return lookupTimes.getMean();
+    }
+
+    /**
+     * @return {@link Long} median duration of the lookups, in microsecond.
+     */
+    public long getLookupTimeP50() {
+        return lookupTimes.percentile(0.50);
+    }
+
+    /**
+     * @return {@link Long} 99th percentile of the duration of the lookups, in microsecond.
+     */
+    public long getLookupTimeP99() {
+        return lookupTimes.percentile(0.99);
+    }
+    //</editor-fold>
+
+    private static final class Entry {
+
+        private final InetAddress[] addresses;
+        private final long created;
+        private final long expires;
+        private final AtomicInteger hits = new AtomicInteger();
+        private final AtomicBoolean prefetching = new AtomicBoolean();
+
+        Entry(InetAddress[] addresses, long created, long ttl) {
+            this.addresses = addresses;
+            this.created = created;
+            this.expires = created + ttl;
+        }
+
+        long refreshAt(double ratio) {
+            return created + (long) ((expires - created) * ratio);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package ca.teyssedre.restclient;
+
+import java.net.InetAddress;
+
+import javax.net.ssl.SSLSession;
+
+/**
+ * {@link HttpEventListener} ignoring all the events, to override only the callbacks of interest.
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+public abstract class HttpEventAdapter implements HttpEventListener {
+
+    @Override
+    public void callStart(HttpRequest request) {
+    }
+
+    @Override
+    public void dnsStart(HttpRequest request, String host) {
+    }
+
+    @Override
+    public void dnsEnd(HttpRequest request, String host, InetAddress[] addresses) {
+    }
+
+    @Override
+    public void connectStart(HttpRequest request, String host, int port) {
+    }
+
+    @Override
+    public void secureConnectStart(HttpRequest request) {
+    }
+
+    @Override
+    public void secureConnectEnd(HttpRequest request, SSLSession session) {
+    }
+
+    @Override
+    public void connectEnd(HttpRequest request) {
+    }
+
+    @Override
+    public void requestEnd(HttpRequest request, long bodyBytes) {
+    }
+
+    @Override
+    public void responseHeadersEnd(HttpRequest request, int statusCode) {
+    }
+
+    @Override
+    public void responseBodyEnd(HttpRequest request, long bytes) {
+    }
+
+    @Override
+    public void callEnd(HttpRequest request, HttpResponse response) {
+    }
+
+    @Override
+    public void callFailed(HttpRequest request, Exception exception) {
+    }
+}
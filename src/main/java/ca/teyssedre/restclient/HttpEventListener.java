@@ -0,0 +1,96 @@
+package ca.teyssedre.restclient;
+
+import java.net.InetAddress;
+
+import javax.net.ssl.SSLSession;
+
+/**
+ * Listener of the phases of the calls of a {@link HttpClient}, in their order : DNS lookup,
+ * connection and TLS handshake when no pooled connection could be reused, write of the request,
+ * wait of the response headers and read of the body. A call retried or hedged goes through the
+ * phases once per attempt.
+ * <p>
+ * The callbacks are invoked on the thread executing the call and must return quickly. With
+ * {@link java.net.HttpURLConnection} the pooled connections can't be seen : the host is resolved
+ * and the connect phase reported for every exchange, the system caching the addresses and a
+ * reused connection connecting at once. {@link HttpEventAdapter} provides empty implementations
+ * of all the callbacks.
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+public interface HttpEventListener {
+
+    /**
+     * @param request {@link HttpRequest} starting, before the caches.
+     */
+    void callStart(HttpRequest request);
+
+    /**
+     * @param request {@link HttpRequest} resolving the host.
+     * @param host    {@link String} name of the host.
+     */
+    void dnsStart(HttpRequest request, String host);
+
+    /**
+     * @param request   {@link HttpRequest} resolving the host.
+     * @param host      {@link String} name of the host.
+     * @param addresses {@link InetAddress} of the host.
+     */
+    void dnsEnd(HttpRequest request, String host, InetAddress[] addresses);
+
+    /**
+     * @param request {@link HttpRequest} opening a new connection.
+     * @param host    {@link String} name of the host.
+     * @param port    {@link Integer} port of the server.
+     */
+    void connectStart(HttpRequest request, String host, int port);
+
+    /**
+     * @param request {@link HttpRequest} starting the TLS handshake.
+     */
+    void secureConnectStart(HttpRequest request);
+
+    /**
+     * @param request {@link HttpRequest} which completed the TLS handshake.
+     * @param session {@link SSLSession} negotiated.
+     */
+    void secureConnectEnd(HttpRequest request, SSLSession session);
+
+    /**
+     * @param request {@link HttpRequest} connected.
+     */
+    void connectEnd(HttpRequest request);
+
+    /**
+     * @param request   {@link HttpRequest} whose headers and body were written.
+     * @param bodyBytes {@link Long} number of bytes of the body, as sent.
+     */
+    void requestEnd(HttpRequest request, long bodyBytes);
+
+    /**
+     * @param request    {@link HttpRequest} which received the response headers.
+     * @param statusCode {@link Integer} status code of the response.
+     */
+    void responseHeadersEnd(HttpRequest request, int statusCode);
+
+    /**
+     * Invoked once the body is read, which happens after {@link #callEnd} when the body is streamed.
+     *
+     * @param request {@link HttpRequest} which read the body.
+     * @param bytes   {@link Long} number of bytes of the body, as received.
+     */
+    void responseBodyEnd(HttpRequest request, long bytes);
+
+    /**
+     * @param request  {@link HttpRequest} completed.
+     * @param response {@link HttpResponse} received, its status could be an error one.
+     */
+    void callEnd(HttpRequest request, HttpResponse response);
+
+    /**
+     * @param request   {@link HttpRequest} failed without response.
+     * @param exception {@link Exception} of the failure.
+     */
+    void callFailed(HttpRequest request, Exception exception);
+}
@@ -0,0 +1,370 @@
+package ca.teyssedre.restclient;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+
+/**
+ * Events of one call, forwarded to the {@link HttpEventListener} of the client while the start of
+ * each phase is recorded to build the {@link HttpTimings}. Without listener, {@link #NONE} ignores
+ * everything so that the transports could report their phases unconditionally.
+ */
+final class HttpEvents {
+
+    static final HttpEvents NONE = new HttpEvents(null, null);
+    private static final ThreadLocal<HttpEvents> CURRENT = new ThreadLocal<>();
+
+    private final HttpRequest request;
+    private final HttpEventListener listener;
+    private volatile long callStart = -1;
+    private volatile long callEnd = -1;
+    private volatile long attemptStart = -1;
+    private volatile long dnsStart = -1;
+    private volatile long dnsEnd = -1;
+    private volatile long connectStart = -1;
+    private volatile long connectEnd = -1;
+    private volatile long secureStart = -1;
+    private volatile long secureEnd = -1;
+    private volatile long requestEnd = -1;
+    private volatile long headersEnd = -1;
+    private volatile long bodyEnd = -1;
+    private volatile long bytesSent;
+    private volatile long bytesReceived;
+    private volatile SSLSocket secureSocket;
+
+    HttpEvents(HttpRequest request, HttpEventListener listener) {
+        this.request = request;
+        this.listener = listener;
+    }
+
+    boolean isActive() {
+        return listener != null;
+    }
+
+    //<editor-fold desc="Thread">
+    /**
+     * @return {@link HttpEvents} of the call connecting on the current thread, for the socket
+     * factories of {@link java.net.HttpURLConnection}.
+     */
+    static HttpEvents current() {
+        HttpEvents events = CURRENT.get();
+        return events != null ? events : NONE;
+    }
+
+    void enter() {
+        if (listener != null) {
+            CURRENT.set(this);
+        }
+    }
+
+    void exit() {
+        if (listener != null) {
+            CURRENT.remove();
+        }
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Attempts">
+    /**
+     * @return {@link HttpEvents} of a concurrent attempt of the call, a hedge for example, whose
+     * phases are recorded apart from the ones of the other attempts.
+     */
+    HttpEvents fork() {
+        if (listener == null) {
+            return this;
+        }
+        HttpEvents fork = new HttpEvents(request, listener);
+        fork.callStart = callStart;
+        return fork;
+    }
+
+    /**
+     * Take the phases of the attempt which answered, the call keeping its own start and end.
+     *
+     * @param attempt {@link HttpEvents} of the winning attempt.
+     */
+    void adopt(HttpEvents attempt) {
+        if (listener == null || attempt == this) {
+            return;
+        }
+        attemptStart = attempt.attemptStart;
+        dnsStart = attempt.dnsStart;
+        dnsEnd = attempt.dnsEnd;
+        connectStart = attempt.connectStart;
+        connectEnd = attempt.connectEnd;
+        secureStart = attempt.secureStart;
+        secureEnd = attempt.secureEnd;
+        requestEnd = attempt.requestEnd;
+        headersEnd = attempt.headersEnd;
+        bodyEnd = attempt.bodyEnd;
+        bytesSent = attempt.bytesSent;
+        bytesReceived = attempt.bytesReceived;
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Phases">
+    void callStart() {
+        if (listener != null) {
+            callStart = System.nanoTime();
+            callEnd = -1;
+            listener.callStart(request);
+        }
+    }
+
+    /**
+     * Start of an exchange with the network, the phases of the previous attempt are forgotten.
+     */
+    void attemptStart() {
+        if (listener != null) {
+            attemptStart = System.nanoTime();
+            dnsStart = dnsEnd = connectStart = connectEnd = secureStart = secureEnd = -1;
+            requestEnd = headersEnd = bodyEnd = -1;
+            secureSocket = null;
+            bytesSent = 0;
+            bytesReceived = 0;
+        }
+    }
+
+    /**
+     * Resolve the host, between the DNS events.
+     *
+     * @param resolver {@link HttpResolver} of the client, null for the one of the system.
+     * @param host     {@link String} name of the host.
+     */
+    InetAddress[] lookup(HttpResolver resolver, String host) throws UnknownHostException {
+        if (resolver == null) {
+            resolver = HttpResolver.SYSTEM;
+        }
+        if (listener == null) {
+            return resolver.resolve(host);
+        }
+        dnsStart = System.nanoTime();
+        listener.dnsStart(request, host);
+        InetAddress[] addresses = resolver.resolve(host);
+        dnsEnd = System.nanoTime();
+        listener.dnsEnd(request, host, addresses);
+        return addresses;
+    }
+
+    void connectStart(String host, int port) {
+        if (listener != null) {
+            connectStart = System.nanoTime();
+            listener.connectStart(request, host, port);
+        }
+    }
+
+    void secureConnectStart() {
+        if (listener != null) {
+            secureStart = System.nanoTime();
+            listener.secureConnectStart(request);
+        }
+    }
+
+    void secureConnectEnd(SSLSession session) {
+        if (listener != null) {
+            secureEnd = System.nanoTime();
+            listener.secureConnectEnd(request, session);
+        }
+    }
+
+    /**
+     * Start of the handshake of a socket which the connection is about to perform, reported as
+     * ended by {@link #secureConnectEnd()}.
+     *
+     * @param socket {@link SSLSocket} created for the call.
+     */
+    void secureConnectStart(SSLSocket socket) {
+        if (listener != null) {
+            secureSocket = socket;
+            secureConnectStart();
+        }
+    }
+
+    /**
+     * End of the handshake started by {@link #secureConnectStart(SSLSocket)}, once the connection
+     * is established. Nothing is reported when the connection was reused.
+     */
+    void secureConnectEnd() {
+        SSLSocket socket = secureSocket;
+        if (listener != null && socket != null) {
+            secureSocket = null;
+            secureConnectEnd(socket.getSession());
+        }
+    }
+
+    void connectEnd() {
+        if (listener != null) {
+            connectEnd = System.nanoTime();
+            listener.connectEnd(request);
+        }
+    }
+
+    void requestEnd() {
+        if (listener != null) {
+            requestEnd = System.nanoTime();
+            listener.requestEnd(request, bytesSent);
+        }
+    }
+
+    void responseHeadersEnd(int status) {
+        if (listener != null) {
+            headersEnd = System.nanoTime();
+            listener.responseHeadersEnd(request, status);
+        }
+    }
+
+    void responseBodyEnd(long bytes) {
+        if (listener != null) {
+            bodyEnd = System.nanoTime();
+            bytesReceived = bytes;
+            listener.responseBodyEnd(request, bytes);
+        }
+    }
+
+    void callEnd(HttpResponse response) {
+        if (listener != null) {
+            callEnd = System.nanoTime();
+            Exception failure = response.getException();
+            if (failure == null || failure instanceof RequestException) {
+                listener.callEnd(request, response);
+            } else {
+                listener.callFailed(request, failure);
+            }
+        }
+    }
+    //</editor-fold>
+
+    /**
+     * @return {@link HttpTimings} of the phases recorded so far, null without listener.
+     */
+    HttpTimings timings() {
+        if (listener == null) {
+            return null;
+        }
+        long sendStart = Math.max(attemptStart, Math.max(dnsEnd, connectEnd));
+        return new HttpTimings(micros(dnsStart, dnsEnd), micros(connectStart, connectEnd),
+                micros(secureStart, secureEnd), micros(sendStart, requestEnd), micros(requestEnd, headersEnd),
+                micros(headersEnd, bodyEnd), micros(callStart, callEnd), bytesSent, bytesReceived);
+    }
+
+    private static long micros(long start, long end) {
+        return start < 0 || end < 0 || end < start ? -1 : (end - start) / 1000;
+    }
+
+    //<editor-fold desc="Counting">
+    /**
+     * @return {@link HttpBody} counting the bytes written for the request, the body itself without listener.
+     */
+    HttpBody count(final HttpBody body) {
+        if (listener == null || body == null) {
+            return body;
+        }
+        return new HttpBody() {
+            @Override
+            public long contentLength() {
+                return body.contentLength();
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                body.writeTo(new FilterOutputStream(out) {
+                    @Override
+                    public void write(int b) throws IOException {
+                        out.write(b);
+                        bytesSent++;
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        out.write(b, off, len);
+                        bytesSent += len;
+                    }
+                });
+            }
+
+            @Override
+            public HttpContentType contentType() {
+                return body.contentType();
+            }
+
+            @Override
+            public String contentTypeValue() {
+                return body.contentTypeValue();
+            }
+
+            @Override
+            public String contentEncoding() {
+                return body.contentEncoding();
+            }
+
+            @Override
+            public boolean isRepeatable() {
+                return body.isRepeatable();
+            }
+        };
+    }
+
+    /**
+     * @return {@link InputStream} counting the bytes of the response body as received, reporting
+     * the end of the body at the end of the stream or when it is closed.
+     */
+    InputStream count(InputStream in) {
+        if (listener == null) {
+            return in;
+        }
+        return new FilterInputStream(in) {
+            private long count;
+            private boolean ended;
+
+            @Override
+            public int read() throws IOException {
+                int b = in.read();
+                if (b == -1) {
+                    end();
+                } else {
+                    count++;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = in.read(b, off, len);
+                if (read == -1) {
+                    end();
+                } else {
+                    count += read;
+                }
+                return read;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = in.skip(n);
+                count += skipped;
+                return skipped;
+            }
+
+            @Override
+            public void close() throws IOException {
+                end();
+                in.close();
+            }
+
+            private void end() {
+                if (!ended) {
+                    ended = true;
+                    responseBodyEnd(count);
+                }
+            }
+        };
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,14 @@
+package ca.teyssedre.restclient;
+
+/**
+ * Step of the execution of a {@link HttpRequest} by the {@link HttpClient}. Each feature of the
+ * client (cache, ...) wraps the next step and could answer without calling it.
+ */
+interface HttpExchange {
+
+    /**
+     * @param request {@link HttpRequest} to execute.
+     * @return {@link HttpResponse} of the request, never null.
+     */
+    HttpResponse proceed(HttpRequest request);
+}
@@ -1,36 +1,121 @@
 package ca.teyssedre.restclient;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Set;
 
-public class HttpForm {
+/**
+ * Fields of an application/x-www-form-urlencoded body. The form is an {@link HttpBody} : the
+ * fields are encoded straight into the output stream of the connection, in the order they were
+ * added, without building the whole body first.
+ */
+public class HttpForm extends HttpBody {
+
+    private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'};
 
     private Map<String, String> data;
+    private long contentLength = -1;
 
     public HttpForm() {
-        data = new HashMap<>();
+        data = new LinkedHashMap<>();
     }
 
     public HttpForm add(String key, String value) {
         //TODO: validate key url compatible
         data.put(key.trim(), value);
+        contentLength = -1;
         return this;
     }
 
     public String serialize() throws UnsupportedEncodingException {
-        String str = "";
-        Set<String> keys = data.keySet();
-        int i = 0;
-        for (String key : keys) {
-            String value = data.get(key);
-            str += key + "=" + URLEncoder.encode(value, "UTF-8");
-            if (++i < keys.size()) {
-                str += "&";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            encodeTo(out);
+        } catch (UnsupportedEncodingException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toString("US-ASCII");
+    }
+
+    /**
+     * @return number of bytes of the encoded form, computed without buffering it.
+     */
+    @Override
+    public long contentLength() {
+        if (contentLength < 0) {
+            CountingOutputStream counter = new CountingOutputStream();
+            try {
+                encodeTo(counter);
+            } catch (IOException e) {
+                return -1;
+            }
+            contentLength = counter.count;
+        }
+        return contentLength;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        encodeTo(out);
+    }
+
+    @Override
+    public HttpContentType contentType() {
+        return HttpContentType.APPLICATION_WWW_FORM;
+    }
+
+    /**
+     * Write the fields URL encoded as {@link java.net.URLEncoder} does with UTF-8 : the unreserved
+     * characters are kept, the spaces become '+' and the other bytes are percent encoded.
+     */
+    private void encodeTo(OutputStream out) throws IOException {
+        boolean first = true;
+        for (Map.Entry<String, String> entry : data.entrySet()) {
+            if (!first) {
+                out.write('&');
             }
+            first = false;
+            encode(entry.getKey(), out);
+            out.write('=');
+            if (entry.getValue() != null) {
+                encode(entry.getValue(), out);
+            }
+        }
+    }
+
+    private static void encode(String value, OutputStream out) throws IOException {
+        for (byte b : value.getBytes("UTF-8")) {
+            int c = b & 0xff;
+            if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+                    || c == '.' || c == '-' || c == '*' || c == '_') {
+                out.write(c);
+            } else if (c == ' ') {
+                out.write('+');
+            } else {
+                out.write('%');
+                out.write(HEX[c >> 4]);
+                out.write(HEX[c & 0x0f]);
+            }
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) {
+            count += length;
         }
-        return str;
     }
 }
@@ -1,5 +1,7 @@
 package ca.teyssedre.restclient;
 
+import java.net.ProtocolException;
+
 /**
  *
  * @version 1.0
@@ -32,4 +34,45 @@ public class HttpHeader {
         this.value = value;
         return this;
     }
+
+    /**
+     * Check a header before it is sent, CR, LF or NUL in the name or the value would inject other
+     * headers or a second request in the connection.
+     *
+     * @param name  {@link String} name of the header.
+     * @param value {@link String} value of the header.
+     * @throws ProtocolException if the name or the value contains a forbidden character.
+     */
+    static void check(String name, String value) throws ProtocolException {
+        if (!isSafe(name) || name.length() == 0 || !isSafe(value)) {
+            throw new ProtocolException("Invalid character in header " + escape(name));
+        }
+    }
+
+    /**
+     * @param target {@link String} path and query of the request line.
+     * @throws ProtocolException if the target contains CR, LF or NUL.
+     */
+    static void checkTarget(String target) throws ProtocolException {
+        if (!isSafe(target)) {
+            throw new ProtocolException("Invalid character in request target " + escape(target));
+        }
+    }
+
+    private static boolean isSafe(String text) {
+        if (text == null) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\r' || c == '\n' || c == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String escape(String text) {
+        return String.valueOf(text).replace("\r", "\\r").replace("\n", "\\n").replace("\0", "\\0");
+    }
 }
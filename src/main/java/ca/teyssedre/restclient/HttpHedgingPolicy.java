@@ -0,0 +1,393 @@
+package ca.teyssedre.restclient;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hedging of the idempotent GET requests, to cut the tail latency caused by a slow server or
+ * socket. When a request has not completed after the hedge delay a duplicate is sent; the first
+ * one answering wins and the other is cancelled, closing its connection.
+ * <p>
+ * The delay is fixed, or follows a percentile of the latencies observed for the host (the 95th by
+ * default) once enough exchanges were measured. The hedges are bounded by a budget : each request
+ * deposits {@code ratio} token and each hedge withdraws one, so that a slow host can't double the
+ * load. Only the buffered GET requests without body are hedged.
+ * <pre>
+ * client.setHedgingPolicy(new HttpHedgingPolicy().setPercentileDelay(0.95, 50));
+ * </pre>
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+@SuppressWarnings("unused")
+public class HttpHedgingPolicy {
+
+    private static final String TAG = "HttpHedgingPolicy";
+    private static final int SAMPLES_PER_HOST = 128;
+    private static final int MIN_SAMPLES = 20;
+
+    private final RetryBudget budget = new RetryBudget(0.1, 10);
+    private final Map<String, LatencyWindow> latencies = new HashMap<>();
+    private final AtomicLong hedgeCount = new AtomicLong();
+    private final AtomicLong hedgeWinCount = new AtomicLong();
+    private final AtomicLong exhaustedCount = new AtomicLong();
+    private ScheduledExecutorService scheduler;
+    private ExecutorService executor;
+    private long delay = 200;
+    private double percentile = -1;
+    private long minDelay;
+
+    //<editor-fold desc="Configuration">
+    /**
+     * @param delay {@link Long} fixed delay in millisecond before sending the duplicate, 200 by default.
+     * @return the current instance of {@link HttpHedgingPolicy}.
+     */
+    public HttpHedgingPolicy setDelay(long delay) {
+        this.delay = Math.max(0, delay);
+        this.percentile = -1;
+        return this;
+    }
+
+    /**
+     * Follow the latencies of each host : the duplicate is sent once the request is slower than the
+     * given percentile of the last exchanges with the host. The fixed delay is used until enough
+     * exchanges were measured.
+     *
+     * @param percentile {@link Double} percentile of the latencies, between 0 and 1, 0.95 for the p95.
+     * @param minDelay   {@link Long} minimum delay in millisecond, even for a fast host.
+     * @return the current instance of {@link HttpHedgingPolicy}.
+     */
+    public HttpHedgingPolicy setPercentileDelay(double percentile, long minDelay) {
+        this.percentile = Math.min(1, Math.max(0, percentile));
+        this.minDelay = Math.max(0, minDelay);
+        return this;
+    }
+
+    /**
+     * @param ratio   {@link Double} fraction of the requests which could be hedged, 0.1 by default.
+     * @param reserve {@link Integer} number of hedges allowed before any deposit, and maximum
+     *                balance of the budget, 10 by default.
+     * @return the current instance of {@link HttpHedgingPolicy}.
+     */
+    public HttpHedgingPolicy setBudget(double ratio, int reserve) {
+        budget.set(ratio, reserve);
+        return this;
+    }
+    //</editor-fold>
+
+    /**
+     * Execute a request, racing it against a duplicate when it is slower than the hedge delay.
+     *
+     * @param request {@link HttpRequest} to execute.
+     * @param next    {@link HttpExchange} performing the request.
+     * @return {@link HttpResponse} of the attempt which answered first.
+     */
+    HttpResponse execute(final HttpRequest request, final HttpExchange next) {
+        if (!isHedgeable(request)) {
+            return next.proceed(request);
+        }
+        budget.deposit();
+        final Race race = new Race(request.duplicate());
+        request.setCancelHook(race);
+        try {
+            race.timer = scheduler().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    executor().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            hedge(request, next, race);
+                        }
+                    });
+                }
+            }, hedgeDelay(request.getHost()), TimeUnit.MILLISECONDS);
+
+            long start = System.currentTimeMillis();
+            HttpResponse response = next.proceed(race.primary);
+            if (isAnswer(response)) {
+                record(request.getHost(), System.currentTimeMillis() - start);
+            }
+            HttpResponse winner = race.primaryDone(response);
+            HttpRequest attempt = race.winner();
+            if (attempt != race.primary) {
+                // counted here, the caller returning before the thread of the duplicate goes on
+                hedgeWinCount.incrementAndGet();
+            }
+            request.events().adopt(attempt.events());
+            return winner;
+        } finally {
+            request.setCancelHook(null);
+        }
+    }
+
+    /**
+     * Send the duplicate, if the primary request is still running and the budget allows it.
+     */
+    private void hedge(HttpRequest request, HttpExchange next, Race race) {
+        HttpRequest duplicate = request.duplicate();
+        if (!race.start(duplicate)) {
+            return;
+        }
+        if (!budget.withdraw()) {
+            exhaustedCount.incrementAndGet();
+            race.hedgeDone(null);
+            return;
+        }
+        hedgeCount.incrementAndGet();
+        long start = System.currentTimeMillis();
+        HttpResponse response = next.proceed(duplicate);
+        if (isAnswer(response)) {
+            record(request.getHost(), System.currentTimeMillis() - start);
+        }
+        race.hedgeDone(response);
+    }
+
+    /**
+     * Release the threads scheduling and sending the duplicates.
+     */
+    public synchronized void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    //<editor-fold desc="Statistics">
+    /**
+     * @return number of duplicates sent.
+     */
+    public long getHedgeCount() {
+        return hedgeCount.get();
+    }
+
+    /**
+     * @return number of duplicates which answered before the original request.
+     */
+    public long getHedgeWinCount() {
+        return hedgeWinCount.get();
+    }
+
+    /**
+     * @return number of duplicates not sent because the budget was spent.
+     */
+    public long getBudgetExhaustedCount() {
+        return exhaustedCount.get();
+    }
+
+    /**
+     * @param host {@link String} name of the host.
+     * @return {@link Long} delay in millisecond after which a request to the host is hedged.
+     */
+    public long getHedgeDelay(String host) {
+        return hedgeDelay(host);
+    }
+    //</editor-fold>
+
+    private static boolean isHedgeable(HttpRequest request) {
+        return request.getType() == HttpRequestType.GET
+                && !request.shouldWrite()
+                && request.getResponseMode() == HttpResponseMode.BUFFERED;
+    }
+
+    /**
+     * @return true if the server answered, even with an error status.
+     */
+    private static boolean isAnswer(HttpResponse response) {
+        return response != null && (response.getException() == null || response.getException() instanceof RequestException);
+    }
+
+    private long hedgeDelay(String host) {
+        if (percentile < 0 || host == null) {
+            return delay;
+        }
+        LatencyWindow window;
+        synchronized (latencies) {
+            window = latencies.get(host);
+        }
+        long observed = window == null ? -1 : window.percentile(percentile);
+        return observed < 0 ? delay : Math.max(minDelay, observed);
+    }
+
+    private void record(String host, long latency) {
+        if (host == null) {
+            return;
+        }
+        LatencyWindow window;
+        synchronized (latencies) {
+            window = latencies.get(host);
+            if (window == null) {
+                window = new LatencyWindow();
+                latencies.put(host, window);
+            }
+        }
+        window.add(latency);
+    }
+
+    private synchronized ScheduledExecutorService scheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new HedgeThreadFactory());
+        }
+        return scheduler;
+    }
+
+    private synchronized ExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool(new HedgeThreadFactory());
+        }
+        return executor;
+    }
+
+    /**
+     * Last latencies measured for a host, in a circular buffer.
+     */
+    private static final class LatencyWindow {
+
+        private final long[] samples = new long[SAMPLES_PER_HOST];
+        private int count;
+        private int next;
+
+        synchronized void add(long latency) {
+            samples[next] = latency;
+            next = (next + 1) % samples.length;
+            if (count < samples.length) {
+                count++;
+            }
+        }
+
+        /**
+         * @return {@link Long} latency at the percentile, -1 while there are not enough samples.
+         */
+        synchronized long percentile(double percentile) {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * count) - 1;
+            return sorted[Math.min(count - 1, Math.max(0, index))];
+        }
+    }
+
+    /**
+     * State shared by the primary request and its duplicate. Closing it, when the original request
+     * is cancelled, cancels both.
+     */
+    private static final class Race implements Closeable {
+
+        private final HttpRequest primary;
+        private HttpRequest hedge;
+        private HttpResponse hedgeResponse;
+        private boolean hedgeRunning;
+        private boolean finished;
+        private boolean hedgeWon;
+        private ScheduledFuture<?> timer;
+
+        Race(HttpRequest primary) {
+            this.primary = primary;
+        }
+
+        /**
+         * @return false if the primary request already completed, the duplicate is then useless.
+         */
+        synchronized boolean start(HttpRequest duplicate) {
+            if (finished || primary.isCancelled()) {
+                return false;
+            }
+            hedge = duplicate;
+            hedgeRunning = true;
+            return true;
+        }
+
+        /**
+         * @param response {@link HttpResponse} of the duplicate, null if it was not sent.
+         */
+        synchronized void hedgeDone(HttpResponse response) {
+            hedgeRunning = false;
+            hedgeResponse = response;
+            if (!finished && isAnswer(response)) {
+                finished = true;
+                hedgeWon = true;
+                primary.cancel();
+            }
+            notifyAll();
+        }
+
+        /**
+         * @param response {@link HttpResponse} of the primary request.
+         * @return {@link HttpResponse} of the winner : the primary one unless the duplicate answered
+         * first, or answered while the primary request failed.
+         */
+        synchronized HttpResponse primaryDone(HttpResponse response) {
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            if (hedgeWon) {
+                return hedgeResponse;
+            }
+            if (!isAnswer(response) && !primary.isCancelled()) {
+                while (hedgeRunning) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                if (hedgeWon) {
+                    return hedgeResponse;
+                }
+            }
+            finished = true;
+            if (hedge != null) {
+                hedge.cancel();
+            }
+            return response;
+        }
+
+        /**
+         * @return {@link HttpRequest} of the attempt whose response is returned, once the race is over.
+         */
+        synchronized HttpRequest winner() {
+            return hedgeWon ? hedge : primary;
+        }
+
+        @Override
+        public void close() {
+            HttpRequest current;
+            synchronized (this) {
+                finished = true;
+                current = hedge;
+            }
+            primary.cancel();
+            if (current != null) {
+                current.cancel();
+            }
+        }
+    }
+
+    private static class HedgeThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, TAG + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
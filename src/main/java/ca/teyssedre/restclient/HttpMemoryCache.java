@@ -0,0 +1,227 @@
+package ca.teyssedre.restclient;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory cache of small GET responses, placed in front of the {@link HttpCache} if any. Entries
+ * expire after their time to live, the max-age of the response or the default one of the cache.
+ * The cache is bounded by the number of bytes of the entries and evicts the least recently used
+ * first. Hits are answered with a shared immutable {@link HttpResponse}, so the body is neither
+ * read nor decoded again. The responses varying on another header than Accept-Encoding are not kept.
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+@SuppressWarnings("unused")
+public class HttpMemoryCache {
+
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final long maxSize;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private HttpRequestKey keyFunction = UrlRequestKey.allHeaders();
+    private long defaultTtl = 60 * 1000;
+    private long maxEntrySize;
+    private long size;
+    private int hitCount;
+    private int missCount;
+    private int evictionCount;
+
+    /**
+     * Constructor of {@link HttpMemoryCache} class.
+     *
+     * @param maxSize {@link Long} maximum number of bytes held by the cache.
+     */
+    public HttpMemoryCache(long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be greater than 0");
+        }
+        this.maxSize = maxSize;
+        this.maxEntrySize = Math.max(1, maxSize / 8);
+    }
+
+    /**
+     * Change the function building the key of the requests, by default the normalized URL with all
+     * the headers. A key ignoring some headers serves a cached response to the requests differing
+     * only by those headers, the ones of another session for example.
+     *
+     * @param keyFunction {@link HttpRequestKey} instance.
+     * @return the current instance of {@link HttpMemoryCache}.
+     */
+    public HttpMemoryCache setKeyFunction(HttpRequestKey keyFunction) {
+        this.keyFunction = keyFunction;
+        return this;
+    }
+
+    /**
+     * Change the time to live of the entries which response doesn't provide a max-age.
+     *
+     * @param millisecond {@link Long} time to live of the entries.
+     * @return the current instance of {@link HttpMemoryCache}.
+     */
+    public HttpMemoryCache setDefaultTtl(long millisecond) {
+        this.defaultTtl = millisecond;
+        return this;
+    }
+
+    /**
+     * Change the maximum size of a single entry, an eighth of the cache by default. Larger
+     * responses are not kept in memory.
+     *
+     * @param bytes {@link Long} maximum size of an entry.
+     * @return the current instance of {@link HttpMemoryCache}.
+     */
+    public HttpMemoryCache setMaxEntrySize(long bytes) {
+        this.maxEntrySize = bytes;
+        return this;
+    }
+
+    /**
+     * Execute a request through the cache.
+     *
+     * @param request {@link HttpRequest} to execute.
+     * @param next    {@link HttpExchange} performing the request when the cache can't answer.
+     * @return shared {@link HttpResponse} from the cache or the response of the next step.
+     */
+    HttpResponse execute(HttpRequest request, HttpExchange next) {
+        String key = isCacheable(request) ? keyFunction.key(request) : null;
+        if (key == null) {
+            return next.proceed(request);
+        }
+        HttpResponse cached = get(key, System.currentTimeMillis());
+        if (cached != null) {
+            return cached;
+        }
+        HttpResponse response = next.proceed(request);
+        long ttl = ttl(response);
+        if (ttl > 0) {
+            long weight = weight(response);
+            if (weight <= maxEntrySize) {
+                put(key, new Entry(response.toImmutable(true), System.currentTimeMillis() + ttl, weight));
+            }
+        }
+        return response;
+    }
+
+    private synchronized HttpResponse get(String key, long now) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt > now) {
+            hitCount++;
+            return entry.response;
+        }
+        if (entry != null) {
+            entries.remove(key);
+            size -= entry.weight;
+        }
+        missCount++;
+        return null;
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            size -= previous.weight;
+        }
+        size += entry.weight;
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            iterator.remove();
+            size -= eldest.weight;
+            evictionCount++;
+        }
+    }
+
+    /**
+     * Remove all the entries of the cache.
+     */
+    public synchronized void evictAll() {
+        entries.clear();
+        size = 0;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    public synchronized int getEvictionCount() {
+        return evictionCount;
+    }
+
+    private static boolean isCacheable(HttpRequest request) {
+        return request.getType() == HttpRequestType.GET
+                && request.getResponseMode() == HttpResponseMode.BUFFERED
+                && request.shouldRead()
+                && request.getHeader("If-None-Match") == null
+                && request.getHeader("If-Modified-Since") == null;
+    }
+
+    private long ttl(HttpResponse response) {
+        if (response.getException() != null || response.getStatusCode() != 200 || response.getBody() == null) {
+            return 0;
+        }
+        CacheControl control = CacheControl.parse(response.getHeaderValues("Cache-Control"));
+        if (control.noStore || control.noCache) {
+            return 0;
+        }
+        for (String name : HttpCache.varyNames(response.getHeaderValues("Vary"))) {
+            // the variants aren't kept apart, only Accept-Encoding is safe as the body is stored decoded
+            if (!"Accept-Encoding".equalsIgnoreCase(name)) {
+                return 0;
+            }
+        }
+        if (control.maxAgeSeconds >= 0) {
+            return control.maxAgeSeconds * 1000;
+        }
+        return defaultTtl;
+    }
+
+    /**
+     * @return estimation of the memory used by the response : body and headers.
+     */
+    private static long weight(HttpResponse response) {
+        long weight = ENTRY_OVERHEAD + response.getBody().length;
+        Map<String, List<String>> headers = response.getHeaders();
+        if (headers != null) {
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                weight += header.getKey() == null ? 0 : header.getKey().length() * 2;
+                for (String value : header.getValue()) {
+                    weight += value == null ? 0 : value.length() * 2;
+                }
+            }
+        }
+        return weight;
+    }
+
+    private static class Entry {
+
+        private final HttpResponse response;
+        private final long expiresAt;
+        private final long weight;
+
+        Entry(HttpResponse response, long expiresAt, long weight) {
+            this.response = response;
+            this.expiresAt = expiresAt;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package ca.teyssedre.restclient;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link HttpEventListener} keeping per host latency histograms and byte counters, cheap enough to
+ * stay enabled : recording a call takes a few atomic increments and allocates nothing. The
+ * figures are read with {@link #snapshot()}.
+ * <pre>
+ * HttpMetricsRecorder recorder = new HttpMetricsRecorder();
+ * client.setEventListener(recorder);
+ * ...
+ * HttpMetricsRecorder.HostMetrics api = recorder.snapshot().get("api.example.com");
+ * long p99 = api.getP99();
+ * </pre>
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+@SuppressWarnings("unused")
+public class HttpMetricsRecorder extends HttpEventAdapter {
+
+    private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+
+    @Override
+    public void requestEnd(HttpRequest request, long bodyBytes) {
+        host(request).bytesSent.addAndGet(bodyBytes);
+    }
+
+    @Override
+    public void responseBodyEnd(HttpRequest request, long bytes) {
+        host(request).bytesReceived.addAndGet(bytes);
+    }
+
+    @Override
+    public void callEnd(HttpRequest request, HttpResponse response) {
+        Host host = host(request);
+        record(host, request);
+        if (response.getStatusCode() >= 400) {
+            host.errors.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void callFailed(HttpRequest request, Exception exception) {
+        Host host = host(request);
+        record(host, request);
+        host.failures.incrementAndGet();
+    }
+
+    /**
+     * @return {@link Map} of the {@link HostMetrics} keyed by host, sorted by name.
+     */
+    public Map<String, HostMetrics> snapshot() {
+        Map<String, HostMetrics> snapshot = new TreeMap<>();
+        for (Map.Entry<String, Host> entry : hosts.entrySet()) {
+            snapshot.put(entry.getKey(), new HostMetrics(entry.getKey(), entry.getValue()));
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * Forget all the calls recorded.
+     */
+    public void reset() {
+        hosts.clear();
+    }
+
+    private static void record(Host host, HttpRequest request) {
+        host.calls.incrementAndGet();
+        HttpTimings timings = request.getTimings();
+        if (timings != null) {
+            host.latency.record(timings.getTotalTime());
+            host.waiting.record(timings.getWaitTime());
+        }
+    }
+
+    private Host host(HttpRequest request) {
+        String name = request.getHost() == null ? "" : request.getHost().toLowerCase(Locale.US);
+        Host host = hosts.get(name);
+        if (host == null) {
+            Host created = new Host();
+            host = hosts.putIfAbsent(name, created);
+            if (host == null) {
+                host = created;
+            }
+        }
+        return host;
+    }
+
+    private static final class Host {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram waiting = new LatencyHistogram();
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong bytesSent = new AtomicLong();
+        private final AtomicLong bytesReceived = new AtomicLong();
+    }
+
+    /**
+     * Figures of a host at the time of the snapshot, the durations being in microsecond.
+     */
+    public static final class HostMetrics {
+
+        private final String host;
+        private final long calls;
+        private final long failures;
+        private final long errors;
+        private final long bytesSent;
+        private final long bytesReceived;
+        private final long p50;
+        private final long p95;
+        private final long p99;
+        private final long max;
+        private final double mean;
+        private final long waitP50;
+        private final long waitP99;
+
+        HostMetrics(String host, Host source) {
+            this.host = host;
+            this.calls = source.calls.get();
+            this.failures = source.failures.get();
+            this.errors = source.errors.get();
+            this.bytesSent = source.bytesSent.get();
+            this.bytesReceived = source.bytesReceived.get();
+            this.p50 = source.latency.percentile(0.50);
+            this.p95 = source.latency.percentile(0.95);
+            this.p99 = source.latency.percentile(0.99);
+            this.max = source.latency.getMax();
+            this.mean = source.latency.getMean();
+            this.waitP50 = source.waiting.percentile(0.50);
+            this.waitP99 = source.waiting.percentile(0.99);
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        /**
+         * @return number of calls completed, failed ones included.
+         */
+        public long getCallCount() {
+            return calls;
+        }
+
+        /**
+         * @return number of calls failed without response.
+         */
+        public long getFailureCount() {
+            return failures;
+        }
+
+        /**
+         * @return number of responses with a 4xx or 5xx status.
+         */
+        public long getErrorCount() {
+            return errors;
+        }
+
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP95() {
+            return p95;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        /**
+         * @return {@link Long} median of the time to the first byte of the response.
+         */
+        public long getWaitP50() {
+            return waitP50;
+        }
+
+        /**
+         * @return {@link Long} 99th percentile of the time to the first byte of the response.
+         */
+        public long getWaitP99() {
+            return waitP99;
+        }
+
+        @Override
+        public String toString() {
+            return host + " calls=" + calls + " failures=" + failures + " errors=" + errors + " p50=" + p50
+                    + "us p95=" + p95 + "us p99=" + p99 + "us max=" + max + "us sent=" + bytesSent
+                    + "B received=" + bytesReceived + "B";
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package ca.teyssedre.restclient;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * multipart/form-data body (RFC 7578). The parts are written one after the other into the output
+ * stream of the connection, the files and the streams being copied as they are read : nothing is
+ * buffered in memory. When the length of every part is known the request is sent with a
+ * Content-Length, otherwise chunked.
+ * <pre>
+ * HttpMultipart multipart = new HttpMultipart()
+ *         .addField("title", "Holidays")
+ *         .addFile("picture", new File(path), "image/jpeg");
+ * request.addBody(multipart);
+ * </pre>
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+@SuppressWarnings("unused")
+public class HttpMultipart extends HttpBody {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] DASHES = {'-', '-'};
+
+    private final String boundary;
+    private final List<Part> parts = new ArrayList<>();
+
+    public HttpMultipart() {
+        this("AndroRest" + UUID.randomUUID().toString().replace("-", ""));
+    }
+
+    /**
+     * @param boundary {@link String} delimiter of the parts, which must not appear in their content.
+     */
+    public HttpMultipart(String boundary) {
+        this.boundary = boundary;
+    }
+
+    /**
+     * @param name  {@link String} name of the field.
+     * @param value {@link String} value of the field, sent in UTF-8.
+     * @return the current instance of {@link HttpMultipart}.
+     */
+    public HttpMultipart addField(String name, String value) {
+        parts.add(new Part(disposition(name, null), null, HttpBody.create(value)));
+        return this;
+    }
+
+    /**
+     * @param name        {@link String} name of the field.
+     * @param file        {@link File} streamed from the disk when the request is sent.
+     * @param contentType {@link String} media type of the file, application/octet-stream if null.
+     * @return the current instance of {@link HttpMultipart}.
+     */
+    public HttpMultipart addFile(String name, File file, String contentType) {
+        parts.add(new Part(disposition(name, file.getName()), contentType != null ? contentType : "application/octet-stream",
+                HttpBody.create(file)));
+        return this;
+    }
+
+    /**
+     * Add a part read from a stream, which is consumed once and closed : the body can't be resent.
+     *
+     * @param name        {@link String} name of the field.
+     * @param fileName    {@link String} file name announced to the server, could be null.
+     * @param in          {@link InputStream} providing the content of the part.
+     * @param length      {@link Long} number of bytes of the stream, -1 if unknown.
+     * @param contentType {@link String} media type of the content, application/octet-stream if null.
+     * @return the current instance of {@link HttpMultipart}.
+     */
+    public HttpMultipart addStream(String name, String fileName, InputStream in, long length, String contentType) {
+        parts.add(new Part(disposition(name, fileName), contentType != null ? contentType : "application/octet-stream",
+                HttpBody.create(in, length)));
+        return this;
+    }
+
+    /**
+     * @param name        {@link String} name of the field.
+     * @param fileName    {@link String} file name announced to the server, could be null.
+     * @param body        {@link HttpBody} content of the part.
+     * @param contentType {@link String} media type of the content, none if null.
+     * @return the current instance of {@link HttpMultipart}.
+     */
+    public HttpMultipart addPart(String name, String fileName, HttpBody body, String contentType) {
+        parts.add(new Part(disposition(name, fileName), contentType, body));
+        return this;
+    }
+
+    public String getBoundary() {
+        return boundary;
+    }
+
+    @Override
+    public long contentLength() {
+        long total = 0;
+        try {
+            for (Part part : parts) {
+                long length = part.body.contentLength();
+                if (length < 0) {
+                    return -1;
+                }
+                total += DASHES.length + boundaryBytes().length + CRLF.length + part.head().length + length + CRLF.length;
+            }
+            total += DASHES.length + boundaryBytes().length + DASHES.length + CRLF.length;
+        } catch (UnsupportedEncodingException e) {
+            return -1;
+        }
+        return total;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        byte[] delimiter = boundaryBytes();
+        for (Part part : parts) {
+            out.write(DASHES);
+            out.write(delimiter);
+            out.write(CRLF);
+            out.write(part.head());
+            part.body.writeTo(out);
+            out.write(CRLF);
+        }
+        out.write(DASHES);
+        out.write(delimiter);
+        out.write(DASHES);
+        out.write(CRLF);
+    }
+
+    @Override
+    public HttpContentType contentType() {
+        return HttpContentType.MULTIPART_FORM_DATA;
+    }
+
+    @Override
+    public String contentTypeValue() {
+        return HttpContentType.MULTIPART_FORM_DATA.getValue() + "; boundary=" + boundary;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        for (Part part : parts) {
+            if (!part.body.isRepeatable()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] boundaryBytes() throws UnsupportedEncodingException {
+        return boundary.getBytes("US-ASCII");
+    }
+
+    /**
+     * Build the Content-Disposition value, the quotes and line breaks of the names being percent
+     * encoded as the browsers do.
+     */
+    private static String disposition(String name, String fileName) {
+        StringBuilder builder = new StringBuilder("form-data; name=");
+        quote(builder, name);
+        if (fileName != null) {
+            builder.append("; filename=");
+            quote(builder, fileName);
+        }
+        return builder.toString();
+    }
+
+    private static void quote(StringBuilder builder, String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                builder.append("%22");
+            } else if (c == '\r') {
+                builder.append("%0D");
+            } else if (c == '\n') {
+                builder.append("%0A");
+            } else {
+                builder.append(c);
+            }
+        }
+        builder.append('"');
+    }
+
+    private static final class Part {
+
+        private final String disposition;
+        private final String contentType;
+        private final HttpBody body;
+
+        Part(String disposition, String contentType, HttpBody body) {
+            this.disposition = disposition;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        /**
+         * @return headers of the part followed by the empty line.
+         */
+        byte[] head() throws UnsupportedEncodingException {
+            StringBuilder head = new StringBuilder("Content-Disposition: ").append(disposition).append("\r\n");
+            if (contentType != null) {
+                head.append("Content-Type: ").append(contentType).append("\r\n");
+            }
+            return head.append("\r\n").toString().getBytes("UTF-8");
+        }
+    }
+}
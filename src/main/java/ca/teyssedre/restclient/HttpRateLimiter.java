@@ -0,0 +1,316 @@
+package ca.teyssedre.restclient;
+
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Client side rate limiting, keeping the bursts of requests within the quotas of the servers. Each
+ * limit is a token bucket attached to a host ("api.example.com", "*.example.com") or to a pattern
+ * of URL; a request takes a token from the first limit matching it, the route limits being tried
+ * before the host ones, and goes through without limit when none matches.
+ * <p>
+ * When the bucket is empty the request, depending on the {@link Mode}, waits for its token, waits
+ * only if the token comes before the deadline of the queue, or fails immediately with a
+ * {@link RateLimitExceededException}. The waiting requests are served in their order of arrival.
+ * <p>
+ * The buckets follow the quota announced by the server : X-RateLimit-Remaining caps the tokens,
+ * X-RateLimit-Reset (in seconds, or an epoch time) spreads the remaining requests until the reset,
+ * and a 429 or an exhausted quota pauses the bucket until the reset or the Retry-After delay.
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+@SuppressWarnings("unused")
+public class HttpRateLimiter {
+
+    public enum Mode {
+        /**
+         * Wait for the token, however long.
+         */
+        BLOCK,
+        /**
+         * Wait for the token if it is available before the deadline of the queue, fail otherwise.
+         */
+        QUEUE,
+        /**
+         * Fail when no token is available at once.
+         */
+        FAIL_FAST
+    }
+
+    private static final long MAX_SLEEP = 100;
+
+    private final List<Limit> routeLimits = new CopyOnWriteArrayList<>();
+    private final List<Limit> hostLimits = new CopyOnWriteArrayList<>();
+    private final AtomicLong delayedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private volatile Mode mode = Mode.BLOCK;
+    private volatile long queueTimeout = 5 * 1000;
+
+    //<editor-fold desc="Configuration">
+    /**
+     * @param host             {@link String} name of the host, "*.example.com" for all its sub-domains.
+     * @param permitsPerSecond {@link Double} number of requests per second in the long run.
+     * @param burst            {@link Integer} number of requests which could be sent at once.
+     * @return the current instance of {@link HttpRateLimiter}.
+     */
+    public HttpRateLimiter limitHost(String host, double permitsPerSecond, int burst) {
+        hostLimits.add(new Limit(host.toLowerCase(Locale.US), null, permitsPerSecond, burst));
+        return this;
+    }
+
+    /**
+     * @param regex            {@link String} regular expression matching the whole URL of the requests.
+     * @param permitsPerSecond {@link Double} number of requests per second in the long run.
+     * @param burst            {@link Integer} number of requests which could be sent at once.
+     * @return the current instance of {@link HttpRateLimiter}.
+     */
+    public HttpRateLimiter limitRoute(String regex, double permitsPerSecond, int burst) {
+        routeLimits.add(new Limit(regex, Pattern.compile(regex), permitsPerSecond, burst));
+        return this;
+    }
+
+    /**
+     * @param mode         {@link Mode} applied when no token is available, BLOCK by default.
+     * @param queueTimeout {@link Long} deadline in millisecond of the QUEUE mode, 5 seconds by default.
+     * @return the current instance of {@link HttpRateLimiter}.
+     */
+    public HttpRateLimiter setMode(Mode mode, long queueTimeout) {
+        this.mode = mode;
+        this.queueTimeout = Math.max(0, queueTimeout);
+        return this;
+    }
+    //</editor-fold>
+
+    /**
+     * Execute a request once a token of its limit is available.
+     *
+     * @param request {@link HttpRequest} to execute.
+     * @param next    {@link HttpExchange} performing the request.
+     * @return {@link HttpResponse} of the exchange, or failed with a {@link RateLimitExceededException}.
+     */
+    HttpResponse execute(HttpRequest request, HttpExchange next) {
+        Limit limit = find(request);
+        if (limit == null) {
+            return next.proceed(request);
+        }
+        long maxWait = mode == Mode.BLOCK ? Long.MAX_VALUE : mode == Mode.QUEUE ? queueTimeout : 0;
+        long wait = limit.reserve(System.currentTimeMillis(), maxWait);
+        if (wait > maxWait) {
+            rejectedCount.incrementAndGet();
+            HttpResponse response = new HttpResponse();
+            response.setException(new RateLimitExceededException(limit.name, wait));
+            return response;
+        }
+        if (wait > 0) {
+            delayedCount.incrementAndGet();
+            if (!sleep(request, wait)) {
+                limit.cancel();
+                HttpResponse response = new HttpResponse();
+                response.setException(new InterruptedIOException("Request canceled while waiting for the rate limit"));
+                return response;
+            }
+        }
+        HttpResponse response = next.proceed(request);
+        limit.update(response, System.currentTimeMillis());
+        return response;
+    }
+
+    //<editor-fold desc="Statistics">
+    /**
+     * @return number of requests which waited for their token.
+     */
+    public long getDelayedCount() {
+        return delayedCount.get();
+    }
+
+    /**
+     * @return number of requests failed because no token was available in time.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * @param name {@link String} host or pattern given to {@link #limitHost} or {@link #limitRoute}.
+     * @return {@link Double} number of tokens available, negative when requests are waiting, NaN for an unknown limit.
+     */
+    public double getAvailableTokens(String name) {
+        for (Limit limit : routeLimits) {
+            if (limit.name.equals(name)) {
+                return limit.available(System.currentTimeMillis());
+            }
+        }
+        for (Limit limit : hostLimits) {
+            if (limit.name.equalsIgnoreCase(name)) {
+                return limit.available(System.currentTimeMillis());
+            }
+        }
+        return Double.NaN;
+    }
+    //</editor-fold>
+
+    private Limit find(HttpRequest request) {
+        String url = request.getUrl();
+        if (url != null) {
+            for (Limit limit : routeLimits) {
+                if (limit.pattern.matcher(url).matches()) {
+                    return limit;
+                }
+            }
+        }
+        String host = request.getHost();
+        if (host != null) {
+            host = host.toLowerCase(Locale.US);
+            for (Limit limit : hostLimits) {
+                if (limit.name.equals(host)
+                        || limit.name.startsWith("*.") && host.endsWith(limit.name.substring(1))) {
+                    return limit;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sleep by steps to notice the cancellation of the request.
+     *
+     * @return false if the request was cancelled, or the thread interrupted, before the end.
+     */
+    private static boolean sleep(HttpRequest request, long wait) {
+        long end = System.currentTimeMillis() + wait;
+        long remaining = wait;
+        try {
+            while (remaining > 0) {
+                Thread.sleep(Math.min(remaining, MAX_SLEEP));
+                if (request.isCancelled()) {
+                    return false;
+                }
+                remaining = end - System.currentTimeMillis();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Token bucket of a limit. The tokens go negative when requests wait for them : the refill
+     * pays back the reservations first, keeping the order of arrival. A refill time in the future
+     * pauses the bucket until then.
+     */
+    private static final class Limit {
+
+        private final String name;
+        private final Pattern pattern;
+        private final double rate;
+        private final double capacity;
+        private double currentRate;
+        private double tokens;
+        private long refilled;
+
+        Limit(String name, Pattern pattern, double permitsPerSecond, int burst) {
+            if (permitsPerSecond <= 0 || burst < 1) {
+                throw new IllegalArgumentException("Rate limit must be greater than 0");
+            }
+            this.name = name;
+            this.pattern = pattern;
+            this.rate = permitsPerSecond;
+            this.capacity = burst;
+            this.currentRate = permitsPerSecond;
+            this.tokens = burst;
+            this.refilled = System.currentTimeMillis();
+        }
+
+        /**
+         * @return {@link Long} wait in millisecond before the token, the token being taken only
+         * when the wait doesn't exceed the maximum.
+         */
+        synchronized long reserve(long now, long maxWait) {
+            refill(now);
+            long wait = Math.max(0, refilled - now);
+            if (tokens < 1) {
+                wait += (long) Math.ceil((1 - tokens) * 1000 / currentRate);
+            }
+            if (wait <= maxWait) {
+                tokens -= 1;
+            }
+            return wait;
+        }
+
+        synchronized void cancel() {
+            tokens = Math.min(capacity, tokens + 1);
+        }
+
+        synchronized double available(long now) {
+            refill(now);
+            return tokens;
+        }
+
+        /**
+         * Follow the quota announced by the response.
+         */
+        synchronized void update(HttpResponse response, long now) {
+            long remaining = parseLong(response.getHeader("X-RateLimit-Remaining"));
+            long reset = parseReset(response.getHeader("X-RateLimit-Reset"), now);
+            refill(now);
+            if (remaining >= 0) {
+                tokens = Math.min(tokens, remaining);
+            }
+            if (reset > now) {
+                if (remaining == 0) {
+                    pause(reset);
+                } else if (remaining > 0) {
+                    // spread the remaining requests until the reset
+                    currentRate = Math.min(rate, remaining * 1000.0 / (reset - now));
+                }
+            } else if (remaining != 0) {
+                currentRate = rate;
+            }
+            if (response.getStatusCode() == 429) {
+                long retryAfter = parseLong(response.getHeader("Retry-After"));
+                pause(retryAfter >= 0 ? now + retryAfter * 1000 : Math.max(reset, now + (long) (1000 / currentRate)));
+            }
+        }
+
+        private void pause(long until) {
+            tokens = Math.min(tokens, 0);
+            refilled = Math.max(refilled, until);
+        }
+
+        private void refill(long now) {
+            if (now > refilled) {
+                tokens = Math.min(capacity, tokens + (now - refilled) * currentRate / 1000);
+                refilled = now;
+            }
+        }
+
+        /**
+         * @return {@link Long} epoch time in millisecond of the reset, -1 without header. Small
+         * values are a number of seconds, large ones an epoch time in seconds.
+         */
+        private static long parseReset(String value, long now) {
+            long reset = parseLong(value);
+            if (reset < 0) {
+                return -1;
+            }
+            return reset > 1000000000L ? reset * 1000 : now + reset * 1000;
+        }
+
+        private static long parseLong(String value) {
+            if (value == null) {
+                return -1;
+            }
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+    }
+}
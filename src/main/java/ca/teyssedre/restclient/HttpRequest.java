@@ -3,28 +3,31 @@ package ca.teyssedre.restclient;
 
 import android.util.Base64;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.DataOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Reader;
-import java.io.UnsupportedEncodingException;
+import java.net.ConnectException;
 import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.NoRouteToHostException;
+import java.net.SocketException;
+import java.net.ProtocolException;
 import java.net.URL;
-import java.nio.charset.Charset;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
-import java.util.zip.GZIPInputStream;
 
 import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocketFactory;
 
 /**
@@ -37,24 +40,43 @@ import javax.net.ssl.SSLSocketFactory;
 public class HttpRequest {
 
     private static final String TAG = "HttpRequest";
+    private static final long MAX_DRAIN = 64 * 1024;
+    private static final ContentDecoders DEFAULT_DECODERS = new ContentDecoders();
     //<editor-fold desc="properties">
     private UUID id;
     private HttpRequestType type;
     private HttpContentType contentType;
+    private boolean contentTypeSniffed;
     private Set<HttpHeader> headers;
     private boolean https;
     private boolean anonymous;
-    private SSLSocketFactory sslFactory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+    private SSLSocketFactory sslFactory;
     private String url;
+    private String host;
     private String data;
     private byte[] binary;
+    private HttpBody body;
+    private HttpBody outgoing;
     private int readTimeout = 15 * 1000;
     private int connectTimeout = 30 * 1000;
     private boolean read = true;
     private boolean write;
+    private HttpResponseMode responseMode = HttpResponseMode.BUFFERED;
     private HttpResponse response;
     private boolean processed;
-    private HttpURLConnection connection;
+    private boolean parsed;
+    private volatile boolean cancelled;
+    private volatile HttpURLConnection connection;
+    private volatile Closeable cancelHook;
+    private long allocatedBytes;
+    private long compressionThreshold = -1;
+    private long defaultCompressionThreshold = -1;
+    private ContentDecoders contentDecoders;
+    private SSLSocketFactory connectionFactory;
+    private ConnectionStats stats;
+    private HttpEvents events = HttpEvents.NONE;
+    private HttpResolver resolver;
+    private SSLContext tlsContext;
     //</editor-fold>
 
     //<editor-fold desc="Constructors">
@@ -94,7 +116,7 @@ public class HttpRequest {
         this.url = url;
         this.type = type;
         setContentType(contentType);
-        sslFactory = new NoSSLValidation();
+        sslFactory = NoSSLValidation.shared();
         validateUrl();
     }
     //</editor-fold>
@@ -103,7 +125,28 @@ public class HttpRequest {
 
     public HttpRequest addBinary(byte[] binary) {
         this.binary = binary;
+        if (contentType == null || contentTypeSniffed) {
+            contentType = ContentSniffer.detect(binary);
+            contentTypeSniffed = contentType != null;
+        }
         this.type = HttpRequestType.POST;
+        this.write = true;
+        return this;
+    }
+
+    /**
+     * Set the body to stream to the server. A GET request will be changed to
+     * {@link HttpRequestType#POST}.
+     *
+     * @param body {@link HttpBody} source of the bytes to send.
+     * @return the current instance of {@link HttpRequest}.
+     */
+    public HttpRequest addBody(HttpBody body) {
+        this.body = body;
+        if (type == null || type == HttpRequestType.GET || type == HttpRequestType.UNKNOWNS) {
+            this.type = HttpRequestType.POST;
+        }
+        this.write = true;
         return this;
     }
 
@@ -124,38 +167,39 @@ public class HttpRequest {
         return this;
     }
 
+    /**
+     * Set the form as the body of the request, its fields being encoded while it is sent.
+     *
+     * @param data {@link HttpForm} fields to send.
+     * @return the current instance of {@link HttpRequest}.
+     */
     public HttpRequest addFormData(HttpForm data) {
         if (data != null) {
-            try {
-                String serialize = data.serialize();
-                this.addData(serialize);
-                this.contentType = HttpContentType.APPLICATION_WWW_FORM;
-            } catch (UnsupportedEncodingException e) {
-                e.printStackTrace();
-            }
+            setContentType(HttpContentType.APPLICATION_WWW_FORM);
+            addBody(data);
         }
         return this;
     }
 
+    /**
+     * Set the body of the request, sent with POST. Unless an {@link HttpContentType} has been set
+     * explicitly, the Content-Type is guessed from the first characters of the data by the
+     * {@link ContentSniffer}.
+     *
+     * @param data {@link String} body of the request.
+     * @return the current instance of {@link HttpRequest}.
+     */
     public HttpRequest addData(String data) {
         this.data = data;
-        determineType(data);
+        if (contentType == null || contentTypeSniffed) {
+            contentType = ContentSniffer.detect(data);
+            contentTypeSniffed = contentType != null;
+        }
         this.type = HttpRequestType.POST;
         this.write = true;
         return this;
     }
 
-    private void determineType(String data) {
-        // TODO: try to guess content-type
-        try {
-            JSONObject n = new JSONObject(data);
-            setContentType(HttpContentType.APPLICATION_JSON);
-        } catch (JSONException e) {
-            e.printStackTrace();
-            setContentType(HttpContentType.PLAIN_TEXT);
-        }
-    }
-
     public HttpRequest addUserAgent(boolean anonymous) {
         this.anonymous = anonymous;
         return this;
@@ -165,33 +209,231 @@ public class HttpRequest {
         headers.add(new HttpHeader("User-Agent", userAgent));
         return this;
     }
+
+    /**
+     * Cancel the request. If the connection is already open it will be closed, interrupting any
+     * pending write or read.
+     */
+    public void cancel() {
+        cancelled = true;
+        HttpURLConnection current = connection;
+        if (current != null) {
+            current.disconnect();
+        }
+        Streams.closeQuietly(cancelHook);
+    }
     //</editor-fold>
 
     //<editor-fold desc="Private methods">
+    /**
+     * Perform the whole exchange with the server : connection, write of the body, parsing of the
+     * status and headers and read of the body. The body is always consumed, or drained when it is
+     * not read, so that the connection could be reused; on failure the connection is closed. An
+     * idempotent request failing before any response, as it happens on a stale pooled connection,
+     * is sent once more.
+     *
+     * @param stats {@link ConnectionStats} to update, could be null.
+     * @return {@link HttpResponse} of the exchange.
+     */
+    HttpResponse exchange(ConnectionStats stats) {
+        this.stats = stats;
+        boolean retried = false;
+        while (true) {
+            if (stats != null) {
+                stats.exchange(https && connectionFactory != null);
+            }
+            attempt();
+            Exception failure = response.getException();
+            if (failure == null || retried || cancelled || response.getStatusCode() > 0
+                    || !isStaleConnectionFailure(failure) || !canResend()) {
+                break;
+            }
+            retried = true;
+            if (stats != null) {
+                stats.staleRetry();
+            }
+        }
+        parsed = true;
+        return response;
+    }
+
+    private void attempt() {
+        processRequest();
+        if (response.getException() == null && shouldWrite()) {
+            doWrite();
+        }
+        if (response.getException() == null) {
+            events.requestEnd();
+            parseConnection();
+            if (response.getException() == null) {
+                events.responseHeadersEnd(response.getStatusCode());
+                if (shouldRead()) {
+                    doRead();
+                } else {
+                    release();
+                }
+            }
+        }
+        Exception failure = response.getException();
+        if (failure != null && !(failure instanceof RequestException)) {
+            discard(connection, stats);
+        }
+    }
+
+    /**
+     * Consume the body which is not read by the request, to release the connection to the pool.
+     */
+    private void release() {
+        InputStream in;
+        try {
+            in = connection.getResponseCode() >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        } catch (IOException e) {
+            discard(connection, stats);
+            return;
+        }
+        if (!Streams.drain(in, MAX_DRAIN)) {
+            discard(connection, stats);
+        }
+    }
+
+    boolean canResend() {
+        return HttpRetryPolicy.isIdempotent(this) && isBodyRepeatable();
+    }
+
+    /**
+     * @return true if the body of the last attempt, if any, could be written once more.
+     */
+    boolean isBodyRepeatable() {
+        return outgoing == null || outgoing.isRepeatable();
+    }
+
+    /**
+     * @return true if the failure is the one of a connection closed by the server while idle in the pool.
+     */
+    static boolean isStaleConnectionFailure(Exception failure) {
+        if (failure instanceof ConnectException || failure instanceof NoRouteToHostException) {
+            return false;
+        }
+        if (failure instanceof SocketException || failure instanceof EOFException) {
+            return true;
+        }
+        String message = failure.getMessage();
+        return failure instanceof IOException && message != null
+                && message.toLowerCase().contains("unexpected end of");
+    }
+
+    private static void discard(HttpURLConnection connection, ConnectionStats stats) {
+        if (connection != null) {
+            connection.disconnect();
+            if (stats != null) {
+                stats.discarded();
+            }
+        }
+    }
+
+    /**
+     * @return {@link HttpEvents} of the current call, {@link HttpEvents#NONE} without listener.
+     */
+    HttpEvents events() {
+        return events;
+    }
+
+    void setEvents(HttpEvents events) {
+        this.events = events != null ? events : HttpEvents.NONE;
+    }
+
+    /**
+     * @param resolver {@link HttpResolver} of the {@link HttpClient} executing the request, null for
+     *                 the one of the system.
+     */
+    void setResolver(HttpResolver resolver) {
+        this.resolver = resolver;
+    }
+
+    /**
+     * Resolve the host of the request with the {@link HttpResolver} of the client, reporting the
+     * lookup to the {@link HttpEventListener}.
+     *
+     * @param host {@link String} name of the host.
+     * @return array of {@link InetAddress} of the host.
+     * @throws UnknownHostException if the host can't be resolved.
+     */
+    InetAddress[] resolve(String host) throws UnknownHostException {
+        return events.lookup(resolver, host);
+    }
+
+    /**
+     * Build a copy of the request, with its own identifier and exchange state, to send it once more
+     * in parallel with the original one.
+     *
+     * @return {@link HttpRequest} sending the same method, URL, headers and body.
+     */
+    HttpRequest duplicate() {
+        HttpRequest copy = new HttpRequest();
+        copy.type = type;
+        copy.contentType = contentType;
+        copy.contentTypeSniffed = contentTypeSniffed;
+        copy.headers = headers != null ? new HashSet<>(headers) : new HashSet<HttpHeader>();
+        copy.https = https;
+        copy.anonymous = anonymous;
+        copy.sslFactory = sslFactory;
+        copy.url = url;
+        copy.host = host;
+        copy.data = data;
+        copy.binary = binary;
+        copy.body = body;
+        copy.readTimeout = readTimeout;
+        copy.connectTimeout = connectTimeout;
+        copy.read = read;
+        copy.write = write;
+        copy.responseMode = responseMode;
+        copy.compressionThreshold = compressionThreshold;
+        copy.defaultCompressionThreshold = defaultCompressionThreshold;
+        copy.contentDecoders = contentDecoders;
+        copy.events = events.fork();
+        copy.resolver = resolver;
+        copy.tlsContext = tlsContext;
+        return copy;
+    }
+
+    /**
+     * Complete the request with a {@link HttpResponse} which was not read from its own connection,
+     * for example a response served from a cache.
+     *
+     * @param response {@link HttpResponse} of the request.
+     */
+    void complete(HttpResponse response) {
+        this.response = response;
+        this.processed = true;
+        this.parsed = true;
+    }
+
     protected HttpRequest processRequest() {
         response = new HttpResponse();
         processed = true;
+        parsed = false;
         connection = null;
+        if (cancelled) {
+            response.setException(new IOException("Request canceled"));
+            return this;
+        }
+        events.attemptStart();
         try {
             URL url = new URL(this.url);
+            HttpHeader.checkTarget(url.getFile());
             if (https) {
                 connection = (HttpsURLConnection) url.openConnection();
             } else {
                 connection = (HttpURLConnection) url.openConnection();
             }
-            if (sslFactory != null) {
-                ((HttpsURLConnection) connection).setSSLSocketFactory(sslFactory);
-            }
-            if (!anonymous) {
-                connection.setRequestProperty("User-Agent", System.getProperty("http.agent"));
+            SSLSocketFactory factory = connectionFactory != null ? connectionFactory : sslFactory;
+            if (https && factory != null) {
+                ((HttpsURLConnection) connection).setSSLSocketFactory(factory);
             }
-            if (contentType != null) {
-                connection.setRequestProperty("Content-Type", contentType.getValue());
+            HttpBody requestBody = prepareBody();
+            for (HttpHeader header : buildHeaders(requestBody)) {
+                connection.setRequestProperty(header.getName(), header.getValue());
             }
-            connection.setRequestProperty("Accept-Encoding", "gzip, deflate");
-            connection.setRequestProperty("Connection", "keep-alive");
-            // TODO: may change depending on content-type
-            connection.setRequestProperty("Accept", "*/*");
 
             connection.setConnectTimeout(connectTimeout);
 
@@ -204,23 +446,38 @@ public class HttpRequest {
                     break;
                 case POST:
                     connection.setRequestMethod("POST");
-                    if (data != null && data.length() > 0) {
-                        connection.setRequestProperty("Content-Length", "" + String.valueOf(data.getBytes().length));
-                    } else if (binary != null) {
-                        connection.setRequestProperty("Content-Length", "" + String.valueOf(binary.length));
-                    }
                     break;
                 case DELETE:
                     connection.setRequestMethod("DELETE");
                     break;
             }
-            if (headers != null) {
-                for (HttpHeader header : headers) {
-                    connection.setRequestProperty(header.getName(), header.getValue());
+            if (requestBody != null) {
+                connection.setDoOutput(true);
+                long length = requestBody.contentLength();
+                if (length >= 0 && length <= Integer.MAX_VALUE) {
+                    connection.setFixedLengthStreamingMode((int) length);
+                } else {
+                    connection.setChunkedStreamingMode(0);
                 }
             }
             connection.setReadTimeout(readTimeout);
-            connection.connect();
+            if (cancelled) {
+                throw new IOException("Request canceled");
+            }
+            if (events.isActive()) {
+                // measured with the lookup of the system, which HttpURLConnection uses whatever the
+                // resolver of the client, the addresses being then served from the system cache
+                events.lookup(HttpResolver.SYSTEM, url.getHost());
+            }
+            events.connectStart(url.getHost(), url.getPort() != -1 ? url.getPort() : url.getDefaultPort());
+            events.enter();
+            try {
+                connection.connect();
+            } finally {
+                events.exit();
+            }
+            events.secureConnectEnd();
+            events.connectEnd();
 
         } catch (IOException e) {
             e.printStackTrace();
@@ -231,55 +488,42 @@ public class HttpRequest {
     }
 
     protected void doRead() {
-        if (connection == null) {
+        if (connection == null || cancelled) {
             return;
         }
+        if (response == null) {
+            response = new HttpResponse();
+        }
+        InputStream in = null;
         try {
-            InputStream in = connection.getInputStream();
+            int status = connection.getResponseCode();
+            in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
             if (in != null) {
-                Charset charset = Charset.forName("UTF8");
-                Reader reader;
-                if ("gzip".equals(connection.getContentEncoding())) {
-                    reader = new InputStreamReader(new GZIPInputStream(in), charset);
-                } else {
-                    reader = new InputStreamReader(in, charset);
-                }
-                BufferedReader rd = new BufferedReader(reader);
-                String line;
-                StringBuilder sbt = new StringBuilder();
-                while ((line = rd.readLine()) != null) {
-                    sbt.append(line);
-                }
-                rd.close();
-                addStringResult(sbt.toString());
+                readBody(response, status, new ReleasingInputStream(in, connection, stats),
+                        connection.getContentLength(), connection.getContentEncoding());
+                in = null;
+            }
+            if (status >= 400) {
+                response.setException(new RequestException(status, connection.getResponseMessage()));
             }
         } catch (IOException e) {
             response.setException(e);
+            Streams.closeQuietly(in);
+            discard(connection, stats);
         }
     }
 
-    private void addStringResult(String data) {
-        if (response == null) {
-            response = new HttpResponse();
-        }
-        response.setStringResponse(data);
-    }
-
     protected void doWrite() {
+        if (connection == null || cancelled) {
+            return;
+        }
         try {
-            if (write) {
+            if (write && outgoing != null) {
                 OutputStream os = connection.getOutputStream();
-                if (data != null) {
-                    BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(os, "UTF-8"));
-                    writer.write(data);
-                    writer.flush();
-                    writer.close();
-                } else {
-                    // binary to send could be very long ... should be able request
-                    DataOutputStream writer = new DataOutputStream(os);
-                    writer.write(binary);
-                    writer.flush();
-                    writer.close();
+                try {
+                    outgoing.writeTo(os);
+                } finally {
+                    os.close();
                 }
             }
         } catch (IOException exception) {
@@ -287,8 +531,143 @@ public class HttpRequest {
         }
     }
 
+    /**
+     * Select the body to send for this exchange, null when the request doesn't write.
+     *
+     * @return {@link HttpBody} to send.
+     */
+    HttpBody prepareBody() {
+        HttpBody requestBody = write ? getRequestBody() : null;
+        long threshold = compressionThreshold >= 0 ? compressionThreshold : defaultCompressionThreshold;
+        if (requestBody != null && threshold >= 0 && requestBody.contentEncoding() == null
+                && !hasHeader("Content-Encoding")) {
+            long length = requestBody.contentLength();
+            if (length < 0 ? threshold == 0 : length >= threshold) {
+                requestBody = HttpBody.gzip(requestBody);
+            }
+        }
+        outgoing = events.count(requestBody);
+        return outgoing;
+    }
+
+    private boolean hasHeader(String name) {
+        if (headers != null) {
+            for (HttpHeader header : headers) {
+                if (name.equalsIgnoreCase(header.getName())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Build the headers sent with the request, whatever the transport : the default ones followed
+     * by the headers of the request, which replace the default ones of the same name.
+     *
+     * @param requestBody {@link HttpBody} to send, could be null.
+     * @return {@link List} of {@link HttpHeader} to send.
+     * @throws ProtocolException if a header contains CR, LF or NUL.
+     */
+    List<HttpHeader> buildHeaders(HttpBody requestBody) throws ProtocolException {
+        Map<String, HttpHeader> values = new LinkedHashMap<>();
+        if (!anonymous && System.getProperty("http.agent") != null) {
+            putHeader(values, "User-Agent", System.getProperty("http.agent"));
+        }
+        if (requestBody != null && requestBody.contentType() != null
+                && (contentType == null || contentType == requestBody.contentType())) {
+            putHeader(values, "Content-Type", requestBody.contentTypeValue());
+        } else if (contentType != null) {
+            putHeader(values, "Content-Type", contentType.getValue());
+        }
+        if (requestBody != null && requestBody.contentEncoding() != null) {
+            putHeader(values, "Content-Encoding", requestBody.contentEncoding());
+        }
+        putHeader(values, "Accept-Encoding", decoders().getAcceptEncoding());
+        putHeader(values, "Connection", "keep-alive");
+        // TODO: may change depending on content-type
+        putHeader(values, "Accept", "*/*");
+        if (headers != null) {
+            for (HttpHeader header : headers) {
+                if (header.getName() != null && header.getValue() != null) {
+                    putHeader(values, header.getName(), header.getValue());
+                }
+            }
+        }
+        return new ArrayList<>(values.values());
+    }
+
+    private static void putHeader(Map<String, HttpHeader> values, String name, String value)
+            throws ProtocolException {
+        HttpHeader.check(name, value);
+        values.put(name.toLowerCase(Locale.US), new HttpHeader(name, value));
+    }
+
+    /**
+     * Read the body of the response, decoding it according to its encoding, either buffered or
+     * handed as a stream depending on the {@link HttpResponseMode}. Closing the stream must release
+     * the connection.
+     *
+     * @param response {@link HttpResponse} to complete.
+     * @param status   {@link Integer} status code of the response.
+     * @param in       {@link InputStream} of the body as received.
+     * @param length   {@link Integer} length of the body as received, -1 if unknown.
+     * @param encoding {@link String} value of the Content-Encoding header, could be null.
+     * @throws IOException throw while reading the body.
+     */
+    void readBody(HttpResponse response, int status, InputStream in, int length, String encoding) throws IOException {
+        in = events.count(in);
+        try {
+            InputStream decoded = decoders().decode(in, encoding);
+            if (decoded != in) {
+                in = decoded;
+                length = -1;
+            }
+            if (status == 204 || status == 304) {
+                // without body, whatever the length announced
+                length = -1;
+            }
+            if (responseMode == HttpResponseMode.STREAM && status < 400) {
+                response.setBodyStream(in);
+            } else {
+                response.setBody(Streams.readFully(in, length));
+            }
+        } catch (IOException e) {
+            Streams.closeQuietly(in);
+            throw e;
+        }
+    }
+
+    /**
+     * @param hook {@link Closeable} closed by {@link #cancel()}, the connection of a
+     *             {@link HttpTransport} other than the {@link HttpURLConnection} one.
+     */
+    void setCancelHook(Closeable hook) {
+        this.cancelHook = hook;
+        if (hook != null && cancelled) {
+            Streams.closeQuietly(hook);
+        }
+    }
+
+    /**
+     * @return {@link HttpBody} to send, built from the data or the binary when no body has been set.
+     */
+    private HttpBody getRequestBody() {
+        if (body != null) {
+            return body;
+        }
+        if (data != null) {
+            return HttpBody.create(data);
+        }
+        if (binary != null) {
+            return HttpBody.create(binary);
+        }
+        return null;
+    }
+
     private void parseConnection() {
-        if (connection != null) {
+        if (connection != null && !parsed) {
+            parsed = true;
             if (response == null) {
                 response = new HttpResponse();
             }
@@ -320,6 +699,7 @@ public class HttpRequest {
         if (url.getProtocol().toLowerCase().contains("https")) {
             https = true;
         }
+        host = url.getHost();
     }
     //</editor-fold>
 
@@ -332,6 +712,21 @@ public class HttpRequest {
         this.headers = headers;
     }
 
+    /**
+     * @param name {@link String} name of the header, compared ignoring the case.
+     * @return {@link String} value of the header, null if the header is not set.
+     */
+    public String getHeader(String name) {
+        if (headers != null) {
+            for (HttpHeader header : headers) {
+                if (header.getName() != null && header.getName().equalsIgnoreCase(name)) {
+                    return header.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
     public String getUrl() {
         return url;
     }
@@ -345,6 +740,10 @@ public class HttpRequest {
         }
     }
 
+    public String getHost() {
+        return host;
+    }
+
     public String getData() {
         return data;
     }
@@ -353,6 +752,20 @@ public class HttpRequest {
         this.data = data;
     }
 
+    public HttpBody getBody() {
+        return body;
+    }
+
+    /**
+     * Replace the body without changing the method, the body is sent only if the request already
+     * writes one. Use {@link #addBody(HttpBody)} to send it.
+     *
+     * @param body {@link HttpBody} source of the bytes to send.
+     */
+    public void setBody(HttpBody body) {
+        this.body = body;
+    }
+
     public byte[] getBinary() {
         return binary;
     }
@@ -361,6 +774,41 @@ public class HttpRequest {
         this.binary = binary;
     }
 
+    public long getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * Compress the body with gzip when its length reaches the threshold. A body of unknown length,
+     * a stream or a multipart with a stream part, is compressed only with a threshold of 0. The
+     * body is compressed while it is sent.
+     *
+     * @param compressionThreshold {@link Long} length in bytes from which the body is compressed, 0
+     *                             for every body, -1 to use the threshold of the {@link HttpClient}
+     *                             (the default), {@link Long#MAX_VALUE} to never compress.
+     */
+    public void setCompressionThreshold(long compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * @param threshold {@link Long} threshold of the {@link HttpClient}, -1 when disabled.
+     */
+    void setDefaultCompressionThreshold(long threshold) {
+        this.defaultCompressionThreshold = threshold;
+    }
+
+    /**
+     * @param contentDecoders {@link ContentDecoders} of the {@link HttpClient} executing the request.
+     */
+    void setContentDecoders(ContentDecoders contentDecoders) {
+        this.contentDecoders = contentDecoders;
+    }
+
+    private ContentDecoders decoders() {
+        return contentDecoders != null ? contentDecoders : DEFAULT_DECODERS;
+    }
+
     public int getReadTimeout() {
         return readTimeout;
     }
@@ -397,6 +845,31 @@ public class HttpRequest {
         return type;
     }
 
+    /**
+     * @return {@link Long} number of bytes allocated from the {@link BufferPool} while the request
+     * was executed, the body of the response included.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    void setAllocatedBytes(long allocatedBytes) {
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public HttpResponseMode getResponseMode() {
+        return responseMode;
+    }
+
+    /**
+     * Change how the body of the response will be read, {@link HttpResponseMode#BUFFERED} by default.
+     *
+     * @param responseMode {@link HttpResponseMode} value.
+     */
+    public void setResponseMode(HttpResponseMode responseMode) {
+        this.responseMode = responseMode;
+    }
+
     public void setType(HttpRequestType type) {
         this.type = type;
     }
@@ -407,18 +880,44 @@ public class HttpRequest {
 
     public void setContentType(HttpContentType contentType) {
         this.contentType = contentType;
+        this.contentTypeSniffed = false;
     }
 
     public boolean isAnonymous() {
         return anonymous;
     }
 
+    /**
+     * @return {@link SSLSocketFactory} of the HTTPS connections, null for the default one of
+     * {@link HttpsURLConnection}.
+     */
     public SSLSocketFactory getSslFactory() {
         return sslFactory;
     }
 
     public void setSslFactory(SSLSocketFactory sslFactory) {
         this.sslFactory = sslFactory;
+        this.connectionFactory = null;
+    }
+
+    /**
+     * @param factory {@link SSLSocketFactory} used by the connection in place of the one of the
+     *                request, a wrapper of it installed by the {@link HttpClient}.
+     */
+    void setConnectionFactory(SSLSocketFactory factory) {
+        this.connectionFactory = factory;
+    }
+
+    /**
+     * @return {@link SSLContext} of the {@link HttpTlsConfig} of the client, for the transports
+     * performing the TLS handshake themselves, null without configuration.
+     */
+    SSLContext getTlsContext() {
+        return tlsContext;
+    }
+
+    void setTlsContext(SSLContext tlsContext) {
+        this.tlsContext = tlsContext;
     }
 
     public HttpResponse getResponse() {
@@ -426,6 +925,14 @@ public class HttpRequest {
         return response;
     }
 
+    /**
+     * @return {@link HttpTimings} of the phases of the last call, null if the {@link HttpClient}
+     * has no {@link HttpEventListener}.
+     */
+    public HttpTimings getTimings() {
+        return events.timings();
+    }
+
     public UUID getId() {
         return id;
     }
@@ -434,6 +941,10 @@ public class HttpRequest {
         return processed;
     }
 
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
     public boolean shouldWrite() {
         return write;
     }
@@ -447,4 +958,32 @@ public class HttpRequest {
     }
 
     //</editor-fold>
+
+    /**
+     * Stream of the body handed to the caller with {@link HttpResponseMode#STREAM}. Closing it
+     * drains the remaining bytes to release the connection to the pool.
+     */
+    private static class ReleasingInputStream extends FilterInputStream {
+
+        private final HttpURLConnection connection;
+        private final ConnectionStats stats;
+        private boolean closed;
+
+        ReleasingInputStream(InputStream in, HttpURLConnection connection, ConnectionStats stats) {
+            super(in);
+            this.connection = connection;
+            this.stats = stats;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (!Streams.drain(in, MAX_DRAIN)) {
+                discard(connection, stats);
+            }
+        }
+    }
 }
@@ -0,0 +1,18 @@
+package ca.teyssedre.restclient;
+
+/**
+ * Function computing the key identifying equivalent {@link HttpRequest}, used by the
+ * {@link HttpClient} features sharing a response between requests.
+ *
+ * @author pteyssedre
+ * @version 1.0
+ * @see UrlRequestKey
+ */
+public interface HttpRequestKey {
+
+    /**
+     * @param request {@link HttpRequest} to identify.
+     * @return {@link String} key of the request, null if the request should not be shared.
+     */
+    String key(HttpRequest request);
+}
@@ -0,0 +1,33 @@
+package ca.teyssedre.restclient;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Resolution of the host names of the requests. {@link NioTransport} and {@link Http2Transport}
+ * connect to the addresses it returns. {@link java.net.HttpURLConnection} resolves the host by
+ * itself, so the resolver is ignored by {@link UrlConnectionTransport} : its time to live, its stale
+ * addresses and its custom lookups have no effect with this transport.
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+public interface HttpResolver {
+
+    /**
+     * {@link HttpResolver} of the system, {@link InetAddress#getAllByName(String)}.
+     */
+    HttpResolver SYSTEM = new HttpResolver() {
+        @Override
+        public InetAddress[] resolve(String host) throws UnknownHostException {
+            return InetAddress.getAllByName(host);
+        }
+    };
+
+    /**
+     * @param host {@link String} name of the host or literal IP address.
+     * @return array of {@link InetAddress} of the host, at least one.
+     * @throws UnknownHostException if the host can't be resolved.
+     */
+    InetAddress[] resolve(String host) throws UnknownHostException;
+}
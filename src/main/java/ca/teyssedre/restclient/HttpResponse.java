@@ -1,11 +1,22 @@
 package ca.teyssedre.restclient;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
 import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 public class HttpResponse {
 
+    private static final String DEFAULT_CHARSET = "UTF-8";
+
     private int statusCode;
     private String origin;
     private String contentType;
@@ -14,6 +25,10 @@ public class HttpResponse {
     private Exception exception;
     private Map<String, List<String>> headers;
     private String stringResponse;
+    private byte[] body;
+    private InputStream bodyStream;
+    private boolean fromCache;
+    private volatile boolean immutable;
 
     public HttpResponse() {
     }
@@ -31,6 +46,7 @@ public class HttpResponse {
     }
 
     public void setStatusCode(int statusCode) {
+        checkMutable();
         this.statusCode = statusCode;
     }
 
@@ -39,6 +55,7 @@ public class HttpResponse {
     }
 
     public void setOrigin(String origin) {
+        checkMutable();
         this.origin = origin;
     }
 
@@ -47,6 +64,7 @@ public class HttpResponse {
     }
 
     public void setContentType(String contentType) {
+        checkMutable();
         this.contentType = contentType;
     }
 
@@ -55,6 +73,7 @@ public class HttpResponse {
     }
 
     public void setCertificates(Certificate[] certificates) {
+        checkMutable();
         this.certificates = certificates;
     }
 
@@ -63,6 +82,7 @@ public class HttpResponse {
     }
 
     public void setCipherSuite(String cipherSuite) {
+        checkMutable();
         this.cipherSuite = cipherSuite;
     }
 
@@ -71,6 +91,7 @@ public class HttpResponse {
     }
 
     public void setException(Exception exception) {
+        checkMutable();
         // TODO manage exception parsing custom exception should be creating in order easily manage them.
         this.exception = exception;
     }
@@ -80,14 +101,181 @@ public class HttpResponse {
     }
 
     public void setHeaders(Map<String, List<String>> headers) {
+        checkMutable();
         this.headers = headers;
     }
 
+    /**
+     * Retrieve the values of a header, the name is compared ignoring the case.
+     *
+     * @param name {@link String} name of the header.
+     * @return {@link List} of the values, null if the header is not present.
+     */
+    public List<String> getHeaderValues(String name) {
+        if (headers == null || name == null) {
+            return null;
+        }
+        List<String> values = headers.get(name);
+        if (values != null) {
+            return values;
+        }
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param name {@link String} name of the header, compared ignoring the case.
+     * @return first {@link String} value of the header, null if the header is not present.
+     */
+    public String getHeader(String name) {
+        List<String> values = getHeaderValues(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    /**
+     * @return true if the response was served by the cache of the {@link HttpClient}.
+     */
+    public boolean isFromCache() {
+        return fromCache;
+    }
+
+    void setFromCache(boolean fromCache) {
+        checkMutable();
+        this.fromCache = fromCache;
+    }
+
+    /**
+     * Retrieve the body of the response as a {@link String}. The value is decoded from the bytes of
+     * the body on the first call, using the charset of the Content-Type or UTF-8 by default.
+     *
+     * @return {@link String} value of the body, null if the body was not read.
+     */
     public String getStringResponse() {
+        if (stringResponse == null && body != null) {
+            try {
+                stringResponse = new String(body, getCharset());
+            } catch (UnsupportedEncodingException e) {
+                e.printStackTrace();
+            }
+        }
         return stringResponse;
     }
 
     public void setStringResponse(String stringResponse) {
+        checkMutable();
         this.stringResponse = stringResponse;
     }
+
+    /**
+     * @return array of byte of the body, null if the body was not read or was handed as a stream.
+     * The array of an immutable response is shared and must not be modified.
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    public void setBody(byte[] body) {
+        checkMutable();
+        this.body = body;
+        this.stringResponse = null;
+    }
+
+    /**
+     * @return read-only {@link ByteBuffer} wrapping the body without copy, null if the body was not read.
+     */
+    public ByteBuffer getBodyBuffer() {
+        return body == null ? null : ByteBuffer.wrap(body).asReadOnlyBuffer();
+    }
+
+    /**
+     * Retrieve the body as an {@link InputStream}. With {@link HttpResponseMode#STREAM} this is the
+     * stream of the connection which must be consumed and closed by the caller.
+     *
+     * @return {@link InputStream} of the body, null if there is no body.
+     */
+    public InputStream getBodyStream() {
+        if (bodyStream != null) {
+            return bodyStream;
+        }
+        return body == null ? null : new ByteArrayInputStream(body);
+    }
+
+    /**
+     * Parse the body as JSON while it is read, using the charset of the Content-Type. With
+     * {@link HttpResponseMode#STREAM} the elements of a large list can be processed as the bytes
+     * arrive, the reader must then be closed to release the connection.
+     *
+     * @return {@link JsonStreamReader} of the body, null if there is no body.
+     */
+    public JsonStreamReader getJsonReader() {
+        InputStream in = getBodyStream();
+        return in == null ? null : new JsonStreamReader(in, Charset.forName(getCharset()));
+    }
+
+    public void setBodyStream(InputStream bodyStream) {
+        checkMutable();
+        this.bodyStream = bodyStream;
+    }
+
+    /**
+     * @return true if the instance is shared, by the in-memory cache for example, and can't be modified.
+     */
+    public boolean isImmutable() {
+        return immutable;
+    }
+
+    /**
+     * Build an immutable copy of the response, sharing the body. The headers are copied in an
+     * unmodifiable map.
+     *
+     * @param fromCache flag of the copy indicating it is served by a cache.
+     * @return immutable {@link HttpResponse} instance.
+     */
+    HttpResponse toImmutable(boolean fromCache) {
+        HttpResponse copy = new HttpResponse(statusCode, origin, contentType, certificates, cipherSuite);
+        copy.exception = exception;
+        copy.body = body;
+        copy.stringResponse = stringResponse;
+        copy.fromCache = fromCache;
+        if (headers != null) {
+            Map<String, List<String>> map = new LinkedHashMap<>();
+            for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+                map.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<>(entry.getValue())));
+            }
+            copy.headers = Collections.unmodifiableMap(map);
+        }
+        copy.immutable = true;
+        return copy;
+    }
+
+    private void checkMutable() {
+        if (immutable) {
+            throw new UnsupportedOperationException("Shared HttpResponse can't be modified");
+        }
+    }
+
+    /**
+     * @return {@link String} name of the charset declared by the Content-Type, UTF-8 by default.
+     */
+    public String getCharset() {
+        if (contentType != null) {
+            for (String parameter : contentType.split(";")) {
+                String trimmed = parameter.trim();
+                if (trimmed.regionMatches(true, 0, "charset=", 0, 8)) {
+                    String name = trimmed.substring(8).replace("\"", "").trim();
+                    try {
+                        if (Charset.isSupported(name)) {
+                            return name;
+                        }
+                    } catch (IllegalCharsetNameException ignored) {
+                    }
+                }
+            }
+        }
+        return DEFAULT_CHARSET;
+    }
 }
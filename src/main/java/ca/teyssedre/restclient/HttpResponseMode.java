@@ -0,0 +1,19 @@
+package ca.teyssedre.restclient;
+
+/**
+ * Enum to specify how the body of the response is read by a {@link HttpRequest}.
+ *
+ * @version 1.0
+ */
+public enum HttpResponseMode {
+
+    /**
+     * The body is read as bytes, the {@link String} value is only decoded when requested.
+     */
+    BUFFERED,
+    /**
+     * The body is not read, the {@link java.io.InputStream} is handed to the caller which is
+     * responsible to consume and close it.
+     */
+    STREAM
+}
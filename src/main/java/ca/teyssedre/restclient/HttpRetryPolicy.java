@@ -0,0 +1,222 @@
+package ca.teyssedre.restclient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.SSLException;
+
+/**
+ * Retry of the failed exchanges, placed by the {@link HttpClient} right above the transport so
+ * that each attempt is a network exchange. A request is sent again when :
+ * <ul>
+ * <li>it is idempotent (GET, PUT, DELETE) and its body can be written again, a non-idempotent
+ * request being retried only when the connection could not be established;</li>
+ * <li>the failure is transient : I/O error, 408, 429 or 5xx (except 501 and 505), a circuit open
+ * by the {@link HttpCircuitBreaker} or a request refused by the {@link HttpRateLimiter} being
+ * final;</li>
+ * <li>the retry budget of the client allows it.</li>
+ * </ul>
+ * The attempts are spaced by a "decorrelated jitter" backoff, each delay being drawn between the
+ * base delay and three times the previous one, so that the clients failing together don't retry
+ * together. A Retry-After header sent with a 429 or a 503 replaces the computed delay, the
+ * response being returned as it is when the server asks to wait longer than the maximum delay.
+ * <p>
+ * The budget bounds the extra load of the retries during an outage : each request deposits
+ * {@code ratio} token and each retry withdraws one, the balance being capped by the reserve. With
+ * a ratio of 0.1 the retries can't exceed 10% of the requests once the reserve is spent.
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+@SuppressWarnings("unused")
+public class HttpRetryPolicy {
+
+    private final Random random = new Random();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong exhaustedCount = new AtomicLong();
+    private int maxAttempts = 3;
+    private long baseDelay = 100;
+    private long maxDelay = 10 * 1000;
+    private final RetryBudget budget = new RetryBudget(0.1, 10);
+
+    //<editor-fold desc="Configuration">
+    /**
+     * @param maxAttempts {@link Integer} number of attempts of a request including the first one, 3 by default.
+     * @return the current instance of {@link HttpRetryPolicy}.
+     */
+    public HttpRetryPolicy setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        return this;
+    }
+
+    /**
+     * @param baseDelay {@link Long} minimum delay in millisecond between two attempts, 100 by default.
+     * @param maxDelay  {@link Long} maximum delay in millisecond between two attempts, 10 seconds by default.
+     * @return the current instance of {@link HttpRetryPolicy}.
+     */
+    public HttpRetryPolicy setBackoff(long baseDelay, long maxDelay) {
+        this.baseDelay = Math.max(0, baseDelay);
+        this.maxDelay = Math.max(this.baseDelay, maxDelay);
+        return this;
+    }
+
+    /**
+     * @param ratio   {@link Double} fraction of the requests which could be retried, 0.1 by default.
+     * @param reserve {@link Integer} number of retries allowed before any deposit, and maximum
+     *                balance of the budget, 10 by default.
+     * @return the current instance of {@link HttpRetryPolicy}.
+     */
+    public HttpRetryPolicy setBudget(double ratio, int reserve) {
+        budget.set(ratio, reserve);
+        return this;
+    }
+    //</editor-fold>
+
+    /**
+     * Execute a request, sending it again while its failure is transient.
+     *
+     * @param request {@link HttpRequest} to execute.
+     * @param next    {@link HttpExchange} performing the network exchange.
+     * @return {@link HttpResponse} of the last attempt.
+     */
+    HttpResponse execute(HttpRequest request, HttpExchange next) {
+        budget.deposit();
+        long delay = baseDelay;
+        int attempt = 1;
+        while (true) {
+            HttpResponse response = next.proceed(request);
+            if (attempt >= maxAttempts || request.isCancelled() || !shouldRetry(request, response)) {
+                return response;
+            }
+            delay = nextDelay(delay);
+            long retryAfter = retryAfter(response);
+            if (retryAfter > maxDelay) {
+                return response;
+            }
+            if (!budget.withdraw()) {
+                exhaustedCount.incrementAndGet();
+                return response;
+            }
+            closeBody(response);
+            try {
+                Thread.sleep(retryAfter >= 0 ? retryAfter : delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return response;
+            }
+            if (request.isCancelled()) {
+                return response;
+            }
+            retryCount.incrementAndGet();
+            attempt++;
+        }
+    }
+
+    /**
+     * @param request  {@link HttpRequest} which failed.
+     * @param response {@link HttpResponse} of the failed attempt.
+     * @return true if the failure is transient and the request could be sent again.
+     */
+    protected boolean shouldRetry(HttpRequest request, HttpResponse response) {
+        Exception failure = response.getException();
+        if (failure == null || !request.isBodyRepeatable()) {
+            return false;
+        }
+        if (failure instanceof RequestException) {
+            return isIdempotent(request) && isRetryableStatus(((RequestException) failure).statusCode);
+        }
+        if (failure instanceof ConnectException) {
+            // nothing was sent, even a POST can be retried
+            return true;
+        }
+        if (failure instanceof CircuitBreakerOpenException || failure instanceof RateLimitExceededException
+                || failure instanceof UnknownHostException
+                || failure instanceof SSLException
+                || failure instanceof InterruptedIOException && !(failure instanceof SocketTimeoutException)) {
+            return false;
+        }
+        return failure instanceof IOException && isIdempotent(request);
+    }
+
+    /**
+     * @param status {@link Integer} status code of the response.
+     * @return true for 408, 429 and the 5xx except 501 (Not Implemented) and 505 (HTTP Version Not Supported).
+     */
+    protected boolean isRetryableStatus(int status) {
+        return status == 408 || status == 429 || status >= 500 && status <= 599 && status != 501 && status != 505;
+    }
+
+    static boolean isIdempotent(HttpRequest request) {
+        HttpRequestType type = request.getType();
+        return type == HttpRequestType.GET || type == HttpRequestType.PUT || type == HttpRequestType.DELETE;
+    }
+
+    //<editor-fold desc="Statistics">
+    /**
+     * @return number of attempts performed after the first one.
+     */
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    /**
+     * @return number of retries refused because the budget was spent.
+     */
+    public long getBudgetExhaustedCount() {
+        return exhaustedCount.get();
+    }
+
+    /**
+     * @return {@link Double} number of retries the budget allows at the moment.
+     */
+    public double getBudgetBalance() {
+        return budget.balance();
+    }
+    //</editor-fold>
+
+    /**
+     * Decorrelated jitter : a random delay between the base delay and three times the previous one.
+     */
+    private long nextDelay(long previous) {
+        long upper = Math.min(maxDelay, Math.max(baseDelay, previous * 3));
+        long range = upper - baseDelay;
+        double draw;
+        synchronized (random) {
+            draw = random.nextDouble();
+        }
+        return baseDelay + (long) (draw * range);
+    }
+
+    /**
+     * @return {@link Long} delay in millisecond asked by the Retry-After header, -1 without header.
+     */
+    private static long retryAfter(HttpResponse response) {
+        String value = response.getHeader("Retry-After");
+        if (value == null) {
+            return -1;
+        }
+        value = value.trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e) {
+            long date = HttpDate.parse(value);
+            return date < 0 ? -1 : Math.max(0, date - System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Close the body of a streamed error response which won't be returned to the caller.
+     */
+    private static void closeBody(HttpResponse response) {
+        InputStream stream = response.getBodyStream();
+        if (stream != null && response.getBody() == null) {
+            Streams.closeQuietly(stream);
+        }
+    }
+}
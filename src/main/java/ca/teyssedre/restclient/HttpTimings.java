@@ -0,0 +1,99 @@
+package ca.teyssedre.restclient;
+
+/**
+ * Durations of the phases of the last attempt of a call, measured when a
+ * {@link HttpEventListener} is set on the {@link HttpClient}. A phase which didn't happen, the
+ * connection of a request sent on a pooled connection for example, lasts -1.
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+public final class HttpTimings {
+
+    private final long dns;
+    private final long connect;
+    private final long secureConnect;
+    private final long request;
+    private final long wait;
+    private final long response;
+    private final long total;
+    private final long bytesSent;
+    private final long bytesReceived;
+
+    HttpTimings(long dns, long connect, long secureConnect, long request, long wait, long response, long total,
+                long bytesSent, long bytesReceived) {
+        this.dns = dns;
+        this.connect = connect;
+        this.secureConnect = secureConnect;
+        this.request = request;
+        this.wait = wait;
+        this.response = response;
+        this.total = total;
+        this.bytesSent = bytesSent;
+        this.bytesReceived = bytesReceived;
+    }
+
+    /**
+     * @return {@link Long} time in microsecond spent resolving the host.
+     */
+    public long getDnsTime() {
+        return dns;
+    }
+
+    /**
+     * @return {@link Long} time in microsecond spent opening the connection, TLS handshake included.
+     */
+    public long getConnectTime() {
+        return connect;
+    }
+
+    /**
+     * @return {@link Long} time in microsecond spent in the TLS handshake.
+     */
+    public long getSecureConnectTime() {
+        return secureConnect;
+    }
+
+    /**
+     * @return {@link Long} time in microsecond spent writing the headers and the body of the request.
+     */
+    public long getRequestTime() {
+        return request;
+    }
+
+    /**
+     * @return {@link Long} time in microsecond between the end of the request and the response headers.
+     */
+    public long getWaitTime() {
+        return wait;
+    }
+
+    /**
+     * @return {@link Long} time in microsecond spent reading the body of the response.
+     */
+    public long getResponseTime() {
+        return response;
+    }
+
+    /**
+     * @return {@link Long} time in microsecond of the whole call, retries and caches included.
+     */
+    public long getTotalTime() {
+        return total;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    @Override
+    public String toString() {
+        return "dns=" + dns + "us connect=" + connect + "us tls=" + secureConnect + "us request=" + request
+                + "us wait=" + wait + "us response=" + response + "us total=" + total + "us sent=" + bytesSent
+                + "B received=" + bytesReceived + "B";
+    }
+}
@@ -0,0 +1,113 @@
+package ca.teyssedre.restclient;
+
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * TLS configuration of a {@link HttpClient} : one {@link SSLContext} and one {@link SSLSocketFactory}
+ * shared by all its requests, whatever the transport, so that the sessions negotiated are cached
+ * and resumed by the next connections to the same host, saving the key exchange of a full
+ * handshake. The full and resumed handshakes are counted by the {@link ConnectionStats} of the
+ * client.
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+@SuppressWarnings("unused")
+public class HttpTlsConfig {
+
+    public static final int DEFAULT_SESSION_CACHE_SIZE = 100;
+    public static final int DEFAULT_SESSION_TIMEOUT = 24 * 60 * 60;
+
+    private final SSLContext sslContext;
+    private final SSLSocketFactory socketFactory;
+
+    /**
+     * Default constructor of {@link HttpTlsConfig} class, with its own {@link SSLContext} trusting
+     * the certificates of the system, caching {@link #DEFAULT_SESSION_CACHE_SIZE} sessions for
+     * {@link #DEFAULT_SESSION_TIMEOUT} seconds.
+     *
+     * @throws NoSuchAlgorithmException if TLS is not available.
+     * @throws KeyManagementException   if the context can't be initialized.
+     */
+    public HttpTlsConfig() throws NoSuchAlgorithmException, KeyManagementException {
+        this(newContext());
+        setSessionCacheSize(DEFAULT_SESSION_CACHE_SIZE);
+        setSessionTimeout(DEFAULT_SESSION_TIMEOUT);
+    }
+
+    /**
+     * Constructor of {@link HttpTlsConfig} class, keeping the session cache settings of the context.
+     *
+     * @param sslContext {@link SSLContext} initialized, with the key and trust managers of the client.
+     */
+    public HttpTlsConfig(SSLContext sslContext) {
+        this.sslContext = sslContext;
+        this.socketFactory = sslContext.getSocketFactory();
+    }
+
+    private static SSLContext newContext() throws NoSuchAlgorithmException, KeyManagementException {
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, null, null);
+        return context;
+    }
+
+    /**
+     * @param size {@link Integer} number of sessions kept for resumption, 0 for no limit.
+     * @return the current instance of {@link HttpTlsConfig}.
+     */
+    public HttpTlsConfig setSessionCacheSize(int size) {
+        SSLSessionContext sessions = sslContext.getClientSessionContext();
+        if (sessions != null) {
+            sessions.setSessionCacheSize(Math.max(0, size));
+        }
+        return this;
+    }
+
+    /**
+     * @param seconds {@link Integer} time during which a session could be resumed, 0 for no limit.
+     * @return the current instance of {@link HttpTlsConfig}.
+     */
+    public HttpTlsConfig setSessionTimeout(int seconds) {
+        SSLSessionContext sessions = sslContext.getClientSessionContext();
+        if (sessions != null) {
+            sessions.setSessionTimeout(Math.max(0, seconds));
+        }
+        return this;
+    }
+
+    public SSLContext getSslContext() {
+        return sslContext;
+    }
+
+    /**
+     * @return {@link SSLSocketFactory} of the context, always the same instance : the pool of
+     * {@link java.net.HttpURLConnection} being keyed on the factory, a new one would prevent the
+     * reuse of the connections.
+     */
+    public SSLSocketFactory getSocketFactory() {
+        return socketFactory;
+    }
+
+    /**
+     * @return number of sessions cached, which could be resumed.
+     */
+    public int getSessionCount() {
+        SSLSessionContext sessions = sslContext.getClientSessionContext();
+        if (sessions == null) {
+            return 0;
+        }
+        int count = 0;
+        Enumeration<byte[]> ids = sessions.getIds();
+        while (ids.hasMoreElements()) {
+            ids.nextElement();
+            count++;
+        }
+        return count;
+    }
+}
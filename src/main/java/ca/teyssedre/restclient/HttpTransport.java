@@ -0,0 +1,28 @@
+package ca.teyssedre.restclient;
+
+/**
+ * Engine performing the network exchange of the {@link HttpRequest} for the {@link HttpClient},
+ * below the dispatcher and the caches. The default one, {@link UrlConnectionTransport}, relies on
+ * {@link java.net.HttpURLConnection}; {@link NioTransport} is a native HTTP/1.1 engine with its own
+ * connection pool.
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+public interface HttpTransport {
+
+    /**
+     * Perform the exchange : connection, write of the request, read of the response. Failures are
+     * reported by {@link HttpResponse#getException()}, never thrown.
+     *
+     * @param request {@link HttpRequest} to send.
+     * @param stats   {@link ConnectionStats} of the client to update.
+     * @return {@link HttpResponse} of the exchange, never null.
+     */
+    HttpResponse execute(HttpRequest request, ConnectionStats stats);
+
+    /**
+     * Close the idle connections and release the resources of the transport.
+     */
+    void shutdown();
+}
@@ -0,0 +1,623 @@
+package ca.teyssedre.restclient;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
+
+/**
+ * Pull parser of a JSON document (RFC 8259) reading its characters straight from the stream, the
+ * parse progresses as the bytes arrive and no copy of the whole document is built. The tokens are
+ * consumed one by one, or a value at once through {@link #nextValue()}.
+ * <pre>
+ * JsonStreamReader reader = response.getJsonReader();
+ * Iterator&lt;Object&gt; elements = reader.elements();
+ * while (elements.hasNext()) {
+ *     JSONObject item = (JSONObject) elements.next();
+ * }
+ * reader.close();
+ * </pre>
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+@SuppressWarnings("unused")
+public class JsonStreamReader implements Closeable {
+
+    private static final Pattern NUMBER = Pattern.compile("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][+-]?[0-9]+)?");
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    /**
+     * Kind of the next element of the document.
+     */
+    public enum Token {
+        BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    /**
+     * Read one element of an array, see {@link #elements(ElementReader)}.
+     *
+     * @param <T> type of the elements.
+     */
+    public interface ElementReader<T> {
+        T read(JsonStreamReader reader) throws IOException;
+    }
+
+    private final Reader in;
+    private char[] buffer = BufferPool.shared().takeChars();
+    private int position;
+    private int limit;
+    private long offset;
+    private int[] stack = new int[32];
+    private int depth;
+    private Token peeked;
+    private String peekedValue;
+    private final StringBuilder builder = new StringBuilder();
+
+    public JsonStreamReader(Reader in) {
+        if (in == null) {
+            throw new NullPointerException("in == null");
+        }
+        this.in = in;
+        stack[depth++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * @param in      {@link InputStream} of the document, a response body for example.
+     * @param charset {@link Charset} of the document, UTF-8 when null.
+     */
+    public JsonStreamReader(InputStream in, Charset charset) {
+        this(new InputStreamReader(in, charset != null ? charset : Charset.forName("UTF-8")));
+    }
+
+    //<editor-fold desc="Tokens">
+    /**
+     * @return {@link Token} of the next element, without consuming it.
+     * @throws IOException on a read failure or a malformed document.
+     */
+    public Token peek() throws IOException {
+        if (peeked != null) {
+            return peeked;
+        }
+        int scope = stack[depth - 1];
+        int c;
+        switch (scope) {
+            case EMPTY_ARRAY:
+            case NONEMPTY_ARRAY:
+                stack[depth - 1] = NONEMPTY_ARRAY;
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    depth--;
+                    return peeked = Token.END_ARRAY;
+                }
+                if (scope == NONEMPTY_ARRAY) {
+                    if (c != ',') {
+                        throw syntaxError("Expected ',' or ']'");
+                    }
+                    c = nextNonWhitespace();
+                }
+                return readValue(c);
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                c = nextNonWhitespace();
+                if (c == '}') {
+                    depth--;
+                    return peeked = Token.END_OBJECT;
+                }
+                if (scope == NONEMPTY_OBJECT) {
+                    if (c != ',') {
+                        throw syntaxError("Expected ',' or '}'");
+                    }
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') {
+                    throw syntaxError("Expected a name");
+                }
+                stack[depth - 1] = DANGLING_NAME;
+                peekedValue = readString();
+                return peeked = Token.NAME;
+            case DANGLING_NAME:
+                if (nextNonWhitespace() != ':') {
+                    throw syntaxError("Expected ':'");
+                }
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                return readValue(nextNonWhitespace());
+            case EMPTY_DOCUMENT:
+                stack[depth - 1] = NONEMPTY_DOCUMENT;
+                return readValue(nextNonWhitespace());
+            default:
+                if (read(true) != -1) {
+                    throw syntaxError("Unexpected data after the document");
+                }
+                return peeked = Token.END_DOCUMENT;
+        }
+    }
+
+    public void beginArray() throws IOException {
+        consume(Token.BEGIN_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        consume(Token.END_ARRAY);
+    }
+
+    public void beginObject() throws IOException {
+        consume(Token.BEGIN_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        consume(Token.END_OBJECT);
+    }
+
+    /**
+     * @return true if the current array or object has another element.
+     * @throws IOException on a read failure or a malformed document.
+     */
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_ARRAY && token != Token.END_OBJECT && token != Token.END_DOCUMENT;
+    }
+
+    public String nextName() throws IOException {
+        return consume(Token.NAME);
+    }
+
+    /**
+     * @return {@link String} value of the next string, or the text of the next number.
+     * @throws IOException if the next element is neither a string nor a number.
+     */
+    public String nextString() throws IOException {
+        if (peek() == Token.NUMBER) {
+            return consume(Token.NUMBER);
+        }
+        return consume(Token.STRING);
+    }
+
+    public boolean nextBoolean() throws IOException {
+        return Boolean.parseBoolean(consume(Token.BOOLEAN));
+    }
+
+    public void nextNull() throws IOException {
+        consume(Token.NULL);
+    }
+
+    public double nextDouble() throws IOException {
+        return nextDoubleOf(nextString());
+    }
+
+    public long nextLong() throws IOException {
+        String value = nextString();
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            double parsed = nextDoubleOf(value);
+            if ((long) parsed != parsed) {
+                throw syntaxError("Expected a long but was " + value);
+            }
+            return (long) parsed;
+        }
+    }
+
+    public int nextInt() throws IOException {
+        long value = nextLong();
+        if ((int) value != value) {
+            throw syntaxError("Expected an int but was " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Skip the next value, with all its nested elements. Skipping a name skips its value too.
+     *
+     * @throws IOException on a read failure or a malformed document.
+     */
+    public void skipValue() throws IOException {
+        int nested = 0;
+        do {
+            Token token = peek();
+            peeked = null;
+            peekedValue = null;
+            switch (token) {
+                case BEGIN_ARRAY:
+                case BEGIN_OBJECT:
+                    nested++;
+                    break;
+                case END_ARRAY:
+                case END_OBJECT:
+                    if (nested == 0) {
+                        throw syntaxError("No value to skip");
+                    }
+                    nested--;
+                    break;
+                case NAME:
+                    if (nested == 0) {
+                        skipValue();
+                        return;
+                    }
+                    break;
+                case END_DOCUMENT:
+                    throw syntaxError("No value to skip");
+                default:
+                    break;
+            }
+        } while (nested > 0);
+    }
+
+    /**
+     * Read the next value entirely : {@link JSONObject}, {@link JSONArray}, {@link String},
+     * {@link Boolean}, {@link Long} or {@link Double} for the numbers, {@link JSONObject#NULL}.
+     *
+     * @return {@link Object} value read.
+     * @throws IOException on a read failure or a malformed document.
+     */
+    public Object nextValue() throws IOException {
+        try {
+            switch (peek()) {
+                case BEGIN_OBJECT:
+                    JSONObject object = new JSONObject();
+                    beginObject();
+                    while (hasNext()) {
+                        String name = nextName();
+                        object.put(name, nextValue());
+                    }
+                    endObject();
+                    return object;
+                case BEGIN_ARRAY:
+                    JSONArray array = new JSONArray();
+                    beginArray();
+                    while (hasNext()) {
+                        array.put(nextValue());
+                    }
+                    endArray();
+                    return array;
+                case STRING:
+                    return nextString();
+                case NUMBER:
+                    String number = consume(Token.NUMBER);
+                    if (number.indexOf('.') == -1 && number.indexOf('e') == -1 && number.indexOf('E') == -1) {
+                        try {
+                            return Long.parseLong(number);
+                        } catch (NumberFormatException ignored) {
+                        }
+                    }
+                    return Double.parseDouble(number);
+                case BOOLEAN:
+                    return nextBoolean();
+                case NULL:
+                    nextNull();
+                    return JSONObject.NULL;
+                default:
+                    throw syntaxError("Expected a value but was " + peek());
+            }
+        } catch (JSONException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Elements">
+    /**
+     * Iterate lazily over the elements of the array at the current position, each element being
+     * read through {@link #nextValue()}.
+     *
+     * @return {@link Iterator} of the elements.
+     * @see #elements(ElementReader)
+     */
+    public Iterator<Object> elements() {
+        return elements(new ElementReader<Object>() {
+            @Override
+            public Object read(JsonStreamReader reader) throws IOException {
+                return reader.nextValue();
+            }
+        });
+    }
+
+    /**
+     * Iterate lazily over the elements of the array at the current position, the top-level array
+     * of a list endpoint for example : an element is parsed only when requested, as its bytes
+     * arrive. The array is entered on the first call if not done yet, and closed once the last
+     * element has been read. The {@link IOException} of the parse are thrown wrapped in an
+     * {@link IllegalStateException}.
+     *
+     * @param elementReader {@link ElementReader} consuming exactly one value per call.
+     * @param <T>           type of the elements.
+     * @return {@link Iterator} of the elements.
+     */
+    public <T> Iterator<T> elements(final ElementReader<T> elementReader) {
+        return new Iterator<T>() {
+
+            private boolean started;
+            private boolean finished;
+
+            @Override
+            public boolean hasNext() {
+                if (finished) {
+                    return false;
+                }
+                try {
+                    if (!started) {
+                        started = true;
+                        if (peek() == Token.BEGIN_ARRAY) {
+                            beginArray();
+                        }
+                    }
+                    if (JsonStreamReader.this.hasNext()) {
+                        return true;
+                    }
+                    endArray();
+                    finished = true;
+                    return false;
+                } catch (IOException e) {
+                    throw new IllegalStateException(e.getMessage(), e);
+                }
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    return elementReader.read(JsonStreamReader.this);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e.getMessage(), e);
+                }
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+    //</editor-fold>
+
+    /**
+     * Close the underlying stream, a response body is released this way, and hand the buffer back
+     * to the {@link BufferPool}.
+     */
+    @Override
+    public void close() throws IOException {
+        peeked = null;
+        if (buffer != null) {
+            BufferPool.shared().recycle(buffer);
+            buffer = null;
+        }
+        in.close();
+    }
+
+    //<editor-fold desc="Lexer">
+    private String consume(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected) {
+            throw syntaxError("Expected " + expected + " but was " + token);
+        }
+        String value = peekedValue;
+        peeked = null;
+        peekedValue = null;
+        return value;
+    }
+
+    private Token readValue(int c) throws IOException {
+        switch (c) {
+            case '{':
+                push(EMPTY_OBJECT);
+                return peeked = Token.BEGIN_OBJECT;
+            case '[':
+                push(EMPTY_ARRAY);
+                return peeked = Token.BEGIN_ARRAY;
+            case '"':
+                peekedValue = readString();
+                return peeked = Token.STRING;
+            case 't':
+                readLiteral("true");
+                peekedValue = "true";
+                return peeked = Token.BOOLEAN;
+            case 'f':
+                readLiteral("false");
+                peekedValue = "false";
+                return peeked = Token.BOOLEAN;
+            case 'n':
+                readLiteral("null");
+                return peeked = Token.NULL;
+            default:
+                if (c == '-' || c >= '0' && c <= '9') {
+                    peekedValue = readNumber((char) c);
+                    return peeked = Token.NUMBER;
+                }
+                throw syntaxError("Unexpected character");
+        }
+    }
+
+    private void push(int scope) {
+        if (depth == stack.length) {
+            int[] larger = new int[depth * 2];
+            System.arraycopy(stack, 0, larger, 0, depth);
+            stack = larger;
+        }
+        stack[depth++] = scope;
+    }
+
+    private void readLiteral(String literal) throws IOException {
+        for (int i = 1; i < literal.length(); i++) {
+            if (read(false) != literal.charAt(i)) {
+                throw syntaxError("Expected " + literal);
+            }
+        }
+        checkDelimiter();
+    }
+
+    private String readNumber(char first) throws IOException {
+        builder.setLength(0);
+        builder.append(first);
+        while (fill()) {
+            char c = buffer[position];
+            if (c >= '0' && c <= '9' || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                builder.append(c);
+                position++;
+                offset++;
+            } else {
+                break;
+            }
+        }
+        checkDelimiter();
+        String number = builder.toString();
+        if (!NUMBER.matcher(number).matches()) {
+            throw syntaxError("Malformed number " + number);
+        }
+        return number;
+    }
+
+    /**
+     * The literals and the numbers must be followed by a structural character, a whitespace or the
+     * end of the document.
+     */
+    private void checkDelimiter() throws IOException {
+        if (fill()) {
+            char c = buffer[position];
+            if (c != ',' && c != ']' && c != '}' && c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                throw syntaxError("Unexpected character");
+            }
+        }
+    }
+
+    private String readString() throws IOException {
+        builder.setLength(0);
+        while (true) {
+            if (!fill()) {
+                throw syntaxError("Unterminated string");
+            }
+            // copy the characters up to the next quote or escape at once
+            int start = position;
+            while (position < limit) {
+                char c = buffer[position];
+                if (c == '"' || c == '\\') {
+                    break;
+                }
+                if (c < 0x20) {
+                    offset += position - start;
+                    throw syntaxError("Unescaped control character");
+                }
+                position++;
+            }
+            builder.append(buffer, start, position - start);
+            offset += position - start;
+            if (position == limit) {
+                continue;
+            }
+            char c = buffer[position++];
+            offset++;
+            if (c == '"') {
+                return builder.toString();
+            }
+            builder.append(readEscape());
+        }
+    }
+
+    private char readEscape() throws IOException {
+        int c = read(false);
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(false), 16);
+                    if (digit == -1) {
+                        throw syntaxError("Malformed unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            default:
+                throw syntaxError("Invalid escape");
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (true) {
+            int c = read(false);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return c;
+            }
+        }
+    }
+
+    /**
+     * @param eofAllowed true if the end of the document may be reached, after the root value.
+     * @return the next non whitespace character when the end is allowed, the next character
+     * otherwise, -1 at the end of the document.
+     */
+    private int read(boolean eofAllowed) throws IOException {
+        while (fill()) {
+            char c = buffer[position++];
+            offset++;
+            if (!eofAllowed || c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return c;
+            }
+        }
+        if (!eofAllowed) {
+            throw syntaxError("Unexpected end of document");
+        }
+        return -1;
+    }
+
+    /**
+     * @return true if a character is available in the buffer, reading from the stream if needed.
+     */
+    private boolean fill() throws IOException {
+        if (buffer == null) {
+            throw new IOException("Reader closed");
+        }
+        while (position == limit) {
+            int read = in.read(buffer, 0, buffer.length);
+            if (read == -1) {
+                return false;
+            }
+            position = 0;
+            limit = read;
+        }
+        return true;
+    }
+
+    private double nextDoubleOf(String value) throws IOException {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Expected a number but was \"" + value + "\"");
+        }
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException(message + " at offset " + offset);
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,115 @@
+package ca.teyssedre.restclient;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations with log-linear buckets, in the manner of HdrHistogram : the values below
+ * 32 have their own bucket, the larger ones share a bucket with the values of the same power of two
+ * divided in 16, which bounds the error of the percentiles to about 6%. Recording is lock free and
+ * allocation free, and the memory doesn't depend on the number of values.
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+    // values up to 2^40, 12 days in microsecond
+    private static final int MAX_MAGNITUDE = 40 - SUB_BUCKET_BITS;
+    private static final long MAX_VALUE = (1L << 40) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(LINEAR_LIMIT + MAX_MAGNITUDE * SUB_BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long value) {
+        if (value < 0) {
+            return;
+        }
+        long clamped = Math.min(value, MAX_VALUE);
+        counts.incrementAndGet(index(clamped));
+        total.incrementAndGet();
+        sum.addAndGet(clamped);
+        long current;
+        while ((current = max.get()) < clamped && !max.compareAndSet(current, clamped)) {
+            // retry
+        }
+    }
+
+    long getCount() {
+        return total.get();
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    double getMean() {
+        long count = total.get();
+        return count == 0 ? 0 : (double) sum.get() / count;
+    }
+
+    /**
+     * @param percentile {@link Double} between 0 and 1.
+     * @return {@link Long} value at the percentile, the middle of its bucket, 0 without value.
+     */
+    long percentile(double percentile) {
+        long[] snapshot = new long[counts.length()];
+        long count = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile * count));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(max.get(), (lowest(i) + highest(i)) / 2);
+            }
+        }
+        return max.get();
+    }
+
+    void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        total.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    static int index(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> magnitude) - SUB_BUCKETS;
+        return LINEAR_LIMIT + (magnitude - 1) * SUB_BUCKETS + sub;
+    }
+
+    static long lowest(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int magnitude = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        int sub = (index - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        return (long) sub << magnitude;
+    }
+
+    static long highest(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int magnitude = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        return lowest(index) + (1L << magnitude) - 1;
+    }
+}
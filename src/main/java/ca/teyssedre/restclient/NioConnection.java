@@ -0,0 +1,633 @@
+package ca.teyssedre.restclient;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+
+/**
+ * Connection of the {@link NioTransport} : a non-blocking {@link SocketChannel}, secured by a
+ * {@link SSLEngine} for HTTPS, exposed as blocking streams honoring the timeouts.
+ */
+class NioConnection implements Closeable {
+
+    private final Route route;
+    private final String host;
+    private final SocketChannel channel;
+    private final Selector readSelector;
+    private final Selector writeSelector;
+    private final SSLEngine engine;
+    private final ByteBuffer netIn;
+    private final ByteBuffer netOut;
+    private ByteBuffer appIn;
+    private final InputStream source;
+    private final OutputStream sink;
+    private volatile boolean closed;
+    private int timeout;
+
+    // pipelining state, guarded by this
+    private int written;
+    private int readTurn;
+    private int inFlight;
+    private boolean reusable = true;
+    private boolean confirmed;
+    private boolean shareable;
+    private long idleSince = System.nanoTime();
+    private final long created = System.currentTimeMillis();
+
+    private NioConnection(Route route, String host, SocketChannel channel, SSLEngine engine) throws IOException {
+        this.route = route;
+        this.host = host;
+        this.channel = channel;
+        this.readSelector = Selector.open();
+        this.writeSelector = Selector.open();
+        this.engine = engine;
+        if (engine != null) {
+            SSLSession session = engine.getSession();
+            netIn = ByteBuffer.allocate(session.getPacketBufferSize());
+            netOut = ByteBuffer.allocate(session.getPacketBufferSize());
+            appIn = ByteBuffer.allocate(session.getApplicationBufferSize());
+            appIn.limit(0);
+        } else {
+            netIn = ByteBuffer.allocate(16 * 1024);
+            netOut = null;
+            appIn = null;
+        }
+        source = new BufferedInputStream(new ChannelInputStream(), 16 * 1024);
+        sink = new BufferedOutputStream(new ChannelOutputStream(), 8 * 1024);
+    }
+
+    /**
+     * Open a connection to the first reachable address.
+     *
+     * @param route          {@link Route} key of the pool for the connection.
+     * @param host           {@link String} name of the host, used for TLS.
+     * @param port           {@link Integer} port of the server.
+     * @param addresses      resolved addresses of the host.
+     * @param sslContext     {@link SSLContext} for HTTPS, null for plain HTTP.
+     * @param verifier       {@link HostnameVerifier} checking the certificate, null to skip the check.
+     * @param connectTimeout {@link Integer} timeout of the connection and the handshake.
+     * @return connected {@link NioConnection} instance.
+     * @throws IOException if no address could be reached.
+     */
+    static NioConnection open(Route route, String host, int port, InetAddress[] addresses, SSLContext sslContext,
+                              HostnameVerifier verifier, int connectTimeout) throws IOException {
+        return open(route, host, port, addresses, sslContext, verifier, connectTimeout, null);
+    }
+
+    /**
+     * Open a connection to the first reachable address, offering the protocols through ALPN.
+     *
+     * @param protocols {@link String} protocols offered during the TLS handshake, null for none.
+     * @see #getApplicationProtocol()
+     */
+    static NioConnection open(Route route, String host, int port, InetAddress[] addresses, SSLContext sslContext,
+                              HostnameVerifier verifier, int connectTimeout, String[] protocols) throws IOException {
+        return open(route, host, port, addresses, sslContext, verifier, connectTimeout, protocols, HttpEvents.NONE);
+    }
+
+    /**
+     * Open a connection to the first reachable address, reporting the connect and the TLS phases.
+     *
+     * @param events {@link HttpEvents} of the call opening the connection.
+     */
+    static NioConnection open(Route route, String host, int port, InetAddress[] addresses, SSLContext sslContext,
+                              HostnameVerifier verifier, int connectTimeout, String[] protocols,
+                              HttpEvents events) throws IOException {
+        events.connectStart(host, port);
+        IOException failure = null;
+        for (InetAddress address : addresses) {
+            SocketChannel channel = SocketChannel.open();
+            NioConnection connection = null;
+            try {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                SSLEngine engine = null;
+                if (sslContext != null) {
+                    engine = sslContext.createSSLEngine(host, port);
+                    engine.setUseClientMode(true);
+                    if (protocols != null) {
+                        setApplicationProtocols(engine, protocols);
+                    }
+                }
+                connection = new NioConnection(route, host, channel, engine);
+                connection.connect(new InetSocketAddress(address, port), connectTimeout);
+                if (engine != null) {
+                    events.secureConnectStart();
+                    connection.handshake();
+                    if (verifier != null && !verifier.verify(host, engine.getSession())) {
+                        throw new SSLPeerUnverifiedException("Hostname " + host + " not verified");
+                    }
+                    events.secureConnectEnd(engine.getSession());
+                }
+                events.connectEnd();
+                return connection;
+            } catch (IOException e) {
+                failure = e;
+                if (connection != null) {
+                    connection.close();
+                } else {
+                    channel.close();
+                }
+            }
+        }
+        throw failure != null ? failure : new IOException("No address for " + host);
+    }
+
+    private void connect(InetSocketAddress address, int connectTimeout) throws IOException {
+        timeout = connectTimeout;
+        if (!channel.connect(address)) {
+            await(SelectionKey.OP_CONNECT);
+            channel.finishConnect();
+        }
+    }
+
+    //<editor-fold desc="TLS">
+    /**
+     * ALPN is only available from Java 9 (and 8u252) or Android 10, it is configured by reflection
+     * and silently skipped on the older platforms.
+     */
+    private static void setApplicationProtocols(SSLEngine engine, String[] protocols) {
+        try {
+            SSLParameters parameters = engine.getSSLParameters();
+            Method method = SSLParameters.class.getMethod("setApplicationProtocols", String[].class);
+            method.invoke(parameters, (Object) protocols);
+            engine.setSSLParameters(parameters);
+        } catch (Exception ignored) {
+        }
+    }
+
+    /**
+     * @return true if the connection is a TLS one.
+     */
+    boolean isSecure() {
+        return engine != null;
+    }
+
+    /**
+     * @return true if the TLS handshake resumed a session negotiated by a previous connection.
+     */
+    boolean isResumedSession() {
+        return engine != null && ConnectionStats.isResumed(engine.getSession(), created);
+    }
+
+    /**
+     * @return {@link String} protocol selected through ALPN, null if none or not supported.
+     */
+    String getApplicationProtocol() {
+        if (engine == null) {
+            return null;
+        }
+        try {
+            Method method = SSLEngine.class.getMethod("getApplicationProtocol");
+            String protocol = (String) method.invoke(engine);
+            return protocol == null || protocol.length() == 0 ? null : protocol;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private void handshake() throws IOException {
+        engine.beginHandshake();
+        SSLEngineResult.HandshakeStatus status = engine.getHandshakeStatus();
+        while (status != SSLEngineResult.HandshakeStatus.FINISHED
+                && status != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING) {
+            switch (status) {
+                case NEED_WRAP:
+                    status = wrap(ByteBuffer.allocate(0));
+                    break;
+                case NEED_UNWRAP:
+                    status = unwrap(true);
+                    break;
+                case NEED_TASK:
+                    status = runTasks();
+                    break;
+                default:
+                    throw new SSLException("Unexpected handshake status " + status);
+            }
+        }
+    }
+
+    private SSLEngineResult.HandshakeStatus runTasks() {
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null) {
+            task.run();
+        }
+        return engine.getHandshakeStatus();
+    }
+
+    /**
+     * Encrypt the application bytes and send them.
+     */
+    private SSLEngineResult.HandshakeStatus wrap(ByteBuffer src) throws IOException {
+        synchronized (netOut) {
+            return wrapLocked(src);
+        }
+    }
+
+    private SSLEngineResult.HandshakeStatus wrapLocked(ByteBuffer src) throws IOException {
+        SSLEngineResult.HandshakeStatus status;
+        do {
+            netOut.clear();
+            SSLEngineResult result = engine.wrap(src, netOut);
+            if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+                throw new EOFException("TLS connection closed");
+            }
+            netOut.flip();
+            writeFully(netOut);
+            status = result.getHandshakeStatus();
+            if (status == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+                status = runTasks();
+            }
+        } while (src.hasRemaining() || status == SSLEngineResult.HandshakeStatus.NEED_WRAP && src.capacity() == 0);
+        return status;
+    }
+
+    /**
+     * Decrypt the bytes received into the application buffer, reading from the channel if needed.
+     *
+     * @param handshaking true during the handshake, false when application bytes are expected.
+     * @return status of the handshake after the operation, null on end of stream.
+     */
+    private SSLEngineResult.HandshakeStatus unwrap(boolean handshaking) throws IOException {
+        while (true) {
+            netIn.flip();
+            appIn.compact();
+            SSLEngineResult result;
+            try {
+                result = engine.unwrap(netIn, appIn);
+            } finally {
+                appIn.flip();
+                netIn.compact();
+            }
+            switch (result.getStatus()) {
+                case OK:
+                    SSLEngineResult.HandshakeStatus status = result.getHandshakeStatus();
+                    if (status == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+                        status = runTasks();
+                    }
+                    if (handshaking || appIn.hasRemaining()) {
+                        return status;
+                    }
+                    if (status == SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+                        // post-handshake message, a key update for example
+                        wrap(ByteBuffer.allocate(0));
+                    }
+                    break;
+                case BUFFER_UNDERFLOW:
+                    if (fill() == -1) {
+                        if (handshaking) {
+                            throw new EOFException("Connection closed during TLS handshake");
+                        }
+                        return null;
+                    }
+                    break;
+                case BUFFER_OVERFLOW:
+                    ByteBuffer larger = ByteBuffer.allocate(appIn.capacity() * 2);
+                    larger.put(appIn);
+                    larger.flip();
+                    appIn = larger;
+                    break;
+                case CLOSED:
+                    if (handshaking) {
+                        throw new EOFException("TLS connection closed during handshake");
+                    }
+                    return null;
+            }
+        }
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Channel">
+    /**
+     * Read bytes from the channel into the network buffer.
+     *
+     * @return number of bytes read, -1 on end of stream.
+     */
+    private int fill() throws IOException {
+        while (true) {
+            int read = channel.read(netIn);
+            if (read != 0) {
+                return read;
+            }
+            if (!netIn.hasRemaining()) {
+                throw new IOException("Network buffer full");
+            }
+            await(SelectionKey.OP_READ);
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.write(buffer) == 0) {
+                await(SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    /**
+     * Wait for the channel to be ready, the reads and the writes using their own selector as they
+     * could happen at the same time on a pipelined connection.
+     */
+    private void await(int operation) throws IOException {
+        if (closed) {
+            throw new IOException("Connection closed");
+        }
+        Selector selector = operation == SelectionKey.OP_WRITE ? writeSelector : readSelector;
+        try {
+            SelectionKey key = channel.register(selector, operation);
+            try {
+                int ready = timeout > 0 ? selector.select(timeout) : selector.select();
+                if (closed) {
+                    throw new IOException("Connection closed");
+                }
+                if (ready == 0) {
+                    throw new SocketTimeoutException(operation == SelectionKey.OP_CONNECT
+                            ? "Connect timed out" : "Read timed out");
+                }
+            } finally {
+                if (key.isValid()) {
+                    key.interestOps(0);
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (ClosedSelectorException | CancelledKeyException e) {
+            throw new IOException("Connection closed");
+        }
+    }
+
+    private int readApplication(byte[] buffer, int offset, int length) throws IOException {
+        if (engine == null) {
+            if (netIn.position() == 0 && fill() == -1) {
+                return -1;
+            }
+            netIn.flip();
+            int count = Math.min(length, netIn.remaining());
+            netIn.get(buffer, offset, count);
+            netIn.compact();
+            return count;
+        }
+        if (!appIn.hasRemaining() && unwrap(false) == null && !appIn.hasRemaining()) {
+            return -1;
+        }
+        int count = Math.min(length, appIn.remaining());
+        appIn.get(buffer, offset, count);
+        return count;
+    }
+
+    private void writeApplication(byte[] buffer, int offset, int length) throws IOException {
+        ByteBuffer src = ByteBuffer.wrap(buffer, offset, length);
+        if (engine == null) {
+            writeFully(src);
+        } else {
+            wrap(src);
+        }
+    }
+    //</editor-fold>
+
+    /**
+     * Check an idle connection : the server should not send anything, data or end of stream mean
+     * the connection was closed by the server.
+     *
+     * @return true if the connection could be reused.
+     */
+    boolean isHealthy() {
+        if (closed || !channel.isOpen()) {
+            return false;
+        }
+        try {
+            if (channel.read(netIn) == -1) {
+                return false;
+            }
+            if (engine == null) {
+                return netIn.position() == 0;
+            }
+            // TLS 1.3 servers send their session tickets once the handshake is done, the records
+            // without application data don't make the connection stale
+            while (netIn.position() > 0) {
+                netIn.flip();
+                appIn.compact();
+                SSLEngineResult result;
+                try {
+                    result = engine.unwrap(netIn, appIn);
+                } finally {
+                    appIn.flip();
+                    netIn.compact();
+                }
+                if (result.getStatus() == SSLEngineResult.Status.CLOSED || appIn.hasRemaining()) {
+                    return false;
+                }
+                if (result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+                    runTasks();
+                }
+                if (result.getStatus() != SSLEngineResult.Status.OK || result.bytesConsumed() == 0) {
+                    break;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    InputStream source() {
+        return source;
+    }
+
+    OutputStream sink() {
+        return sink;
+    }
+
+    Route getRoute() {
+        return route;
+    }
+
+    String getHost() {
+        return host;
+    }
+
+    SSLSession getSession() {
+        return engine == null ? null : engine.getSession();
+    }
+
+    //<editor-fold desc="Pipelining">
+    /**
+     * Reserve the connection for a new exchange, called by the pool.
+     *
+     * @param pipelinable true if the exchange accepts to share the connection.
+     */
+    synchronized void reserve(boolean pipelinable) {
+        shareable = inFlight == 0 ? pipelinable : shareable && pipelinable;
+        inFlight++;
+    }
+
+    /**
+     * @return sequence number of the request being written, the responses being read in this order.
+     */
+    synchronized int nextSequence() {
+        return written++;
+    }
+
+    /**
+     * Wait until the responses of the previous exchanges have been read.
+     */
+    synchronized void awaitTurn(int sequence) throws IOException {
+        while (readTurn != sequence) {
+            if (closed) {
+                throw new EOFException("Connection closed before the response");
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the response");
+            }
+        }
+    }
+
+    /**
+     * Complete an exchange, passing the read turn to the next one.
+     *
+     * @param keepAlive false if the connection can't be used after this exchange.
+     * @return true if no exchange is pending on the connection anymore.
+     */
+    synchronized boolean release(boolean keepAlive) {
+        if (keepAlive) {
+            confirmed = true;
+        } else {
+            reusable = false;
+        }
+        inFlight--;
+        readTurn++;
+        notifyAll();
+        if (inFlight == 0) {
+            idleSince = System.nanoTime();
+            return true;
+        }
+        return false;
+    }
+
+    synchronized boolean isReusable() {
+        return reusable && !closed;
+    }
+
+    /**
+     * @param maxInFlight {@link Integer} maximum number of exchanges on the connection.
+     * @return true if another request could be pipelined : the server kept the connection alive
+     * once already and the exchanges in flight accept to share it.
+     */
+    synchronized boolean canPipeline(int maxInFlight) {
+        return reusable && !closed && confirmed && shareable && inFlight > 0 && inFlight < maxInFlight;
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    synchronized long getIdleSince() {
+        return idleSince;
+    }
+    //</editor-fold>
+
+    /**
+     * Send the close_notify alert without waiting, the peers invalidating the TLS session of a
+     * connection closed without it, which would prevent its resumption by the next connections.
+     */
+    private void sendCloseNotify() {
+        try {
+            ByteBuffer alert = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+            engine.wrap(ByteBuffer.allocate(0), alert);
+            alert.flip();
+            if (alert.hasRemaining() && channel.isOpen()) {
+                channel.write(alert);
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        synchronized (this) {
+            reusable = false;
+            notifyAll();
+        }
+        try {
+            readSelector.wakeup();
+            writeSelector.wakeup();
+            if (engine != null) {
+                engine.closeOutbound();
+                sendCloseNotify();
+            }
+            channel.close();
+            readSelector.close();
+            writeSelector.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    private class ChannelInputStream extends InputStream {
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            return readApplication(buffer, offset, length);
+        }
+    }
+
+    private class ChannelOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            writeApplication(buffer, offset, length);
+        }
+    }
+}
@@ -0,0 +1,566 @@
+package ca.teyssedre.restclient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.URL;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * {@link HttpTransport} speaking HTTP/1.1 over NIO {@link java.nio.channels.SocketChannel}, with
+ * TLS through {@link javax.net.ssl.SSLEngine}. Unlike {@link java.net.HttpURLConnection} the
+ * connections are owned by the transport : they are pooled per host, evicted after an idle delay,
+ * and every connection opened or reused is counted by the {@link ConnectionStats}.
+ * <p>
+ * When pipelining is enabled, the GET requests without body read in
+ * {@link HttpResponseMode#BUFFERED} mode are written on a busy connection to the same host
+ * instead of opening a new one, their responses being read in order. Only the connections on
+ * which the server already answered with a persistent HTTP/1.1 response are pipelined.
+ * <pre>
+ * HttpClient client = new HttpClient().setTransport(new NioTransport().setPipelining(true));
+ * </pre>
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+@SuppressWarnings("unused")
+public class NioTransport implements HttpTransport {
+
+    private static final long MAX_DRAIN = 64 * 1024;
+
+    private final Map<Route, LinkedList<NioConnection>> idleConnections = new HashMap<>();
+    private final List<NioConnection> activeConnections = new ArrayList<>();
+    private final UrlConnectionTransport fallback = new UrlConnectionTransport();
+    private SSLContext sslContext;
+    private HostnameVerifier hostnameVerifier = HttpsURLConnection.getDefaultHostnameVerifier();
+    private int maxIdleConnections = 5;
+    private long keepAliveNanos = TimeUnit.MINUTES.toNanos(5);
+    private boolean pipelining;
+    private int maxPipelineDepth = 4;
+    private boolean shutdown;
+
+    /**
+     * Change the {@link SSLContext} of the HTTPS connections, the default one otherwise. A request
+     * using {@link NoSSLValidation} keeps its own context, and the one of the {@link HttpTlsConfig}
+     * of the client is preferred. A request with another {@link SSLSocketFactory}, pinning the
+     * certificates for example, is sent by a {@link UrlConnectionTransport} so that the factory is
+     * still the one opening its connections.
+     *
+     * @param sslContext {@link SSLContext} instance.
+     * @return the current instance of {@link NioTransport}.
+     */
+    public NioTransport setSslContext(SSLContext sslContext) {
+        this.sslContext = sslContext;
+        return this;
+    }
+
+    /**
+     * @param verifier {@link HostnameVerifier} checking the certificates against the host name.
+     * @return the current instance of {@link NioTransport}.
+     */
+    public NioTransport setHostnameVerifier(HostnameVerifier verifier) {
+        this.hostnameVerifier = verifier;
+        return this;
+    }
+
+    /**
+     * @param maxIdleConnections {@link Integer} number of idle connections kept per host, 5 by default.
+     * @return the current instance of {@link NioTransport}.
+     */
+    public NioTransport setMaxIdleConnections(int maxIdleConnections) {
+        this.maxIdleConnections = maxIdleConnections;
+        return this;
+    }
+
+    /**
+     * @param millisecond {@link Long} delay after which an idle connection is closed, 5 minutes by default.
+     * @return the current instance of {@link NioTransport}.
+     */
+    public NioTransport setKeepAlive(long millisecond) {
+        this.keepAliveNanos = TimeUnit.MILLISECONDS.toNanos(millisecond);
+        return this;
+    }
+
+    /**
+     * Enable the HTTP/1.1 pipelining of the GET requests, disabled by default as some servers and
+     * proxies don't support it.
+     *
+     * @param pipelining {@link Boolean} flag.
+     * @return the current instance of {@link NioTransport}.
+     */
+    public NioTransport setPipelining(boolean pipelining) {
+        this.pipelining = pipelining;
+        return this;
+    }
+
+    /**
+     * @param depth {@link Integer} maximum number of requests in flight on a pipelined connection, 4 by default.
+     * @return the current instance of {@link NioTransport}.
+     */
+    public NioTransport setMaxPipelineDepth(int depth) {
+        this.maxPipelineDepth = depth;
+        return this;
+    }
+
+    public boolean isPipelining() {
+        return pipelining;
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request, ConnectionStats stats) {
+        HttpResponse response = new HttpResponse();
+        response.setOrigin(request.getUrl());
+        if (request.isCancelled()) {
+            response.setException(new IOException("Request canceled"));
+            return response;
+        }
+        URL url;
+        HttpBody body;
+        List<HttpHeader> headers;
+        try {
+            url = new URL(request.getUrl());
+            if (!isSupported(url, request)) {
+                return fallback.execute(request, stats);
+            }
+            body = request.prepareBody();
+            headers = request.buildHeaders(body);
+        } catch (IOException e) {
+            response.setException(e);
+            return response;
+        }
+        String method = method(request);
+        boolean pipelinable = pipelining && body == null && request.getType() == HttpRequestType.GET
+                && request.getResponseMode() == HttpResponseMode.BUFFERED;
+        Route route = route(url, request);
+        boolean retried = false;
+        while (true) {
+            stats.exchange(true);
+            request.events().attemptStart();
+            NioConnection connection = null;
+            boolean reused = false;
+            response = new HttpResponse();
+            response.setOrigin(request.getUrl());
+            try {
+                connection = acquire(route, pipelinable);
+                reused = connection != null;
+                if (connection == null) {
+                    connection = connect(request, url, route, pipelinable);
+                    stats.newConnection();
+                    if (connection.isSecure()) {
+                        stats.handshake(connection.isResumedSession());
+                    }
+                }
+                request.setCancelHook(connection);
+                exchange(connection, request, url, method, headers, body, response, stats);
+                return response;
+            } catch (IOException e) {
+                if (connection != null) {
+                    discard(connection, stats);
+                }
+                if (retried || !reused || request.isCancelled() || response.getStatusCode() > 0
+                        || !HttpRequest.isStaleConnectionFailure(e) || !request.canResend()) {
+                    response.setException(e);
+                    return response;
+                }
+                retried = true;
+                stats.staleRetry();
+            } finally {
+                request.setCancelHook(null);
+            }
+        }
+    }
+
+    private void exchange(final NioConnection connection, HttpRequest request, URL url, String method,
+                          List<HttpHeader> headers, HttpBody body, HttpResponse response,
+                          final ConnectionStats stats) throws IOException {
+        connection.setTimeout(request.getReadTimeout());
+        int sequence;
+        OutputStream sink = connection.sink();
+        synchronized (sink) {
+            sequence = connection.nextSequence();
+            Http1Codec.writeRequest(sink, url, method, headers, body);
+        }
+        request.events().requestEnd();
+        connection.awaitTurn(sequence);
+        Http1Codec.Head head = Http1Codec.readHead(connection.source());
+        request.events().responseHeadersEnd(head.status);
+        response.setStatusCode(head.status);
+        response.setContentType(head.header("Content-Type"));
+        response.setHeaders(head.headers);
+        SSLSession session = connection.getSession();
+        if (session != null) {
+            response.setCipherSuite(session.getCipherSuite());
+            try {
+                response.setCertificates(session.getPeerCertificates());
+            } catch (SSLPeerUnverifiedException ignored) {
+            }
+        }
+        final boolean keepAlive = head.isKeepAlive();
+        long length = head.hasNoBody(method) ? 0 : head.isChunked() ? -1 : head.contentLength();
+        InputStream framed;
+        if (length == 0) {
+            framed = new Http1Codec.FixedLengthInputStream(connection.source(), 0);
+        } else if (length > 0) {
+            framed = new Http1Codec.FixedLengthInputStream(connection.source(), length);
+        } else if (head.isChunked()) {
+            framed = new Http1Codec.ChunkedInputStream(connection.source());
+        } else {
+            // body delimited by the end of the connection
+            framed = connection.source();
+        }
+        final boolean delimited = length >= 0 || head.isChunked();
+        InputStream in = new BodyInputStream(framed) {
+            @Override
+            void onEnd(boolean complete) {
+                if (complete) {
+                    release(connection, keepAlive && delimited);
+                } else {
+                    discard(connection, stats);
+                }
+            }
+        };
+        if (!request.shouldRead()) {
+            in.close();
+        } else {
+            request.readBody(response, head.status, in, length >= 0 && length <= Integer.MAX_VALUE
+                    ? (int) length : -1, head.header("Content-Encoding"));
+        }
+        if (head.status >= 400) {
+            response.setException(new RequestException(head.status, head.message));
+        }
+    }
+
+    //<editor-fold desc="Pool">
+    /**
+     * @return a pooled connection of the route, null if a new one must be opened.
+     */
+    private NioConnection acquire(Route route, boolean pipelinable) {
+        List<NioConnection> stale = new ArrayList<>();
+        NioConnection found = null;
+        synchronized (this) {
+            evictIdle(System.nanoTime(), stale);
+            LinkedList<NioConnection> idle = idleConnections.get(route);
+            while (found == null && idle != null && !idle.isEmpty()) {
+                NioConnection candidate = idle.removeLast();
+                if (candidate.isHealthy()) {
+                    found = candidate;
+                    activeConnections.add(found);
+                } else {
+                    stale.add(candidate);
+                }
+            }
+            if (found == null && pipelinable) {
+                for (NioConnection candidate : activeConnections) {
+                    if (candidate.getRoute().equals(route) && candidate.canPipeline(maxPipelineDepth)) {
+                        found = candidate;
+                        break;
+                    }
+                }
+            }
+            if (found != null) {
+                found.reserve(pipelinable);
+            }
+        }
+        for (NioConnection connection : stale) {
+            connection.close();
+        }
+        return found;
+    }
+
+    private NioConnection connect(HttpRequest request, URL url, Route route, boolean pipelinable)
+            throws IOException {
+        boolean https = "https".equalsIgnoreCase(url.getProtocol());
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        SSLContext context = null;
+        HostnameVerifier verifier = null;
+        if (https) {
+            context = route.getSslContext() != null ? route.getSslContext() : sslContext();
+            verifier = route.isVerified() ? hostnameVerifier : null;
+        }
+        InetAddress[] addresses = request.resolve(url.getHost());
+        NioConnection connection = NioConnection.open(route, url.getHost(), port, addresses, context,
+                verifier, request.getConnectTimeout(), null, request.events());
+        connection.reserve(pipelinable);
+        synchronized (this) {
+            if (shutdown) {
+                connection.close();
+                throw new IOException("Transport shut down");
+            }
+            activeConnections.add(connection);
+        }
+        return connection;
+    }
+
+    private void release(NioConnection connection, boolean keepAlive) {
+        if (!connection.release(keepAlive)) {
+            return;
+        }
+        NioConnection evicted = null;
+        synchronized (this) {
+            activeConnections.remove(connection);
+            if (connection.isReusable() && !shutdown) {
+                LinkedList<NioConnection> idle = idleConnections.get(connection.getRoute());
+                if (idle == null) {
+                    idle = new LinkedList<>();
+                    idleConnections.put(connection.getRoute(), idle);
+                }
+                idle.addLast(connection);
+                if (idle.size() > maxIdleConnections) {
+                    evicted = idle.removeFirst();
+                }
+                connection = null;
+            }
+        }
+        if (connection != null) {
+            connection.close();
+        }
+        if (evicted != null) {
+            evicted.close();
+        }
+    }
+
+    /**
+     * Add to the pool a connection opened by another transport, an HTTPS connection on which the
+     * server selected HTTP/1.1 through ALPN for example.
+     *
+     * @param connection {@link NioConnection} idle connection.
+     */
+    void adopt(NioConnection connection) {
+        synchronized (this) {
+            if (!shutdown) {
+                LinkedList<NioConnection> idle = idleConnections.get(connection.getRoute());
+                if (idle == null) {
+                    idle = new LinkedList<>();
+                    idleConnections.put(connection.getRoute(), idle);
+                }
+                idle.addLast(connection);
+                return;
+            }
+        }
+        connection.close();
+    }
+
+    private void discard(NioConnection connection, ConnectionStats stats) {
+        synchronized (this) {
+            activeConnections.remove(connection);
+        }
+        if (!connection.isClosed()) {
+            connection.close();
+            stats.discarded();
+        }
+    }
+
+    private void evictIdle(long now, List<NioConnection> evicted) {
+        Iterator<LinkedList<NioConnection>> routes = idleConnections.values().iterator();
+        while (routes.hasNext()) {
+            LinkedList<NioConnection> idle = routes.next();
+            Iterator<NioConnection> iterator = idle.iterator();
+            while (iterator.hasNext()) {
+                NioConnection connection = iterator.next();
+                if (now - connection.getIdleSince() > keepAliveNanos) {
+                    iterator.remove();
+                    evicted.add(connection);
+                }
+            }
+            if (idle.isEmpty()) {
+                routes.remove();
+            }
+        }
+    }
+
+    /**
+     * Close the connections idle for longer than the keep alive delay. This is also done each time
+     * a connection is requested from the pool.
+     *
+     * @return {@link Integer} number of connections closed.
+     */
+    public int evictIdleConnections() {
+        List<NioConnection> evicted = new ArrayList<>();
+        synchronized (this) {
+            evictIdle(System.nanoTime(), evicted);
+        }
+        for (NioConnection connection : evicted) {
+            connection.close();
+        }
+        return evicted.size();
+    }
+
+    /**
+     * @return {@link Integer} number of connections waiting in the pool.
+     */
+    public synchronized int getIdleConnectionCount() {
+        int count = 0;
+        for (LinkedList<NioConnection> idle : idleConnections.values()) {
+            count += idle.size();
+        }
+        return count;
+    }
+
+    /**
+     * @return {@link Integer} number of connections with an exchange in flight.
+     */
+    public synchronized int getActiveConnectionCount() {
+        return activeConnections.size();
+    }
+
+    @Override
+    public void shutdown() {
+        List<NioConnection> connections = new ArrayList<>();
+        synchronized (this) {
+            shutdown = true;
+            for (LinkedList<NioConnection> idle : idleConnections.values()) {
+                connections.addAll(idle);
+            }
+            idleConnections.clear();
+            connections.addAll(activeConnections);
+            activeConnections.clear();
+        }
+        for (NioConnection connection : connections) {
+            connection.close();
+        }
+        fallback.shutdown();
+    }
+    //</editor-fold>
+
+    private synchronized SSLContext sslContext() throws IOException {
+        if (sslContext == null) {
+            try {
+                sslContext = SSLContext.getDefault();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException("No default SSLContext: " + e.getMessage());
+            }
+        }
+        return sslContext;
+    }
+
+    static String route(URL url) {
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        return url.getProtocol().toLowerCase() + "://" + url.getHost().toLowerCase() + ":" + port;
+    }
+
+    /**
+     * @return true if the connections of the request could be opened from a known {@link SSLContext} :
+     * its {@link SSLSocketFactory} is unset, the default one, a {@link NoSSLValidation} or the one
+     * of the {@link HttpTlsConfig} of the client.
+     */
+    static boolean isSupported(URL url, HttpRequest request) {
+        if (!"https".equalsIgnoreCase(url.getProtocol())) {
+            return true;
+        }
+        SSLSocketFactory factory = request.getSslFactory();
+        return factory == null || factory instanceof NoSSLValidation || request.getTlsContext() != null
+                || factory == SSLSocketFactory.getDefault();
+    }
+
+    /**
+     * @return {@link Route} of the {@link URL} qualified by the trust of the request, so that a
+     * connection opened without certificate validation, or with another {@link SSLContext}, is
+     * never reused by a request expecting a verified peer.
+     */
+    static Route route(URL url, HttpRequest request) {
+        String address = route(url);
+        if (!"https".equalsIgnoreCase(url.getProtocol())) {
+            return new Route(address, null, true);
+        }
+        if (request.getSslFactory() instanceof NoSSLValidation) {
+            return new Route(address, ((NoSSLValidation) request.getSslFactory()).sslContext, false);
+        }
+        return new Route(address, request.getTlsContext(), true);
+    }
+
+    static String method(HttpRequest request) {
+        HttpRequestType type = request.getType();
+        if (type == null || type == HttpRequestType.UNKNOWNS) {
+            return "GET";
+        }
+        return type.name();
+    }
+
+    /**
+     * Stream of a response body notifying its end : fully read, or closed before the end in which
+     * case the remaining bytes are drained when possible.
+     */
+    private abstract static class BodyInputStream extends InputStream {
+
+        private final InputStream in;
+        private boolean ended;
+
+        BodyInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        abstract void onEnd(boolean complete);
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (ended) {
+                return -1;
+            }
+            int read;
+            try {
+                read = in.read(buffer, offset, length);
+            } catch (IOException e) {
+                end(false);
+                throw e;
+            }
+            if (read == -1) {
+                end(true);
+            }
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return ended ? 0 : in.available();
+        }
+
+        @Override
+        public void close() {
+            if (ended) {
+                return;
+            }
+            BufferPool pool = BufferPool.shared();
+            byte[] buffer = pool.takeBytes();
+            long drained = 0;
+            try {
+                int read;
+                while (drained <= MAX_DRAIN && (read = in.read(buffer, 0, buffer.length)) != -1) {
+                    drained += read;
+                }
+            } catch (IOException e) {
+                drained = MAX_DRAIN + 1;
+            } finally {
+                pool.recycle(buffer);
+            }
+            end(drained <= MAX_DRAIN);
+        }
+
+        private void end(boolean complete) {
+            if (!ended) {
+                ended = true;
+                onEnd(complete);
+            }
+        }
+    }
+}
@@ -17,10 +17,24 @@ import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
 public class NoSSLValidation extends SSLSocketFactory {
+    private static NoSSLValidation shared;
     public SSLContext sslContext;
     public TrustManager tm;
     public HostnameVerifier hv;
 
+    /**
+     * @return {@link NoSSLValidation} shared by the requests, so that its {@link SSLContext} and the
+     * TLS sessions it caches are created once.
+     * @throws NoSuchAlgorithmException if TLS is not available.
+     * @throws KeyManagementException   if the context can't be initialized.
+     */
+    public static synchronized NoSSLValidation shared() throws NoSuchAlgorithmException, KeyManagementException {
+        if (shared == null) {
+            shared = new NoSSLValidation();
+        }
+        return shared;
+    }
+
     public NoSSLValidation() throws NoSuchAlgorithmException, KeyManagementException {
         super();
         sslContext = SSLContext.getInstance("TLS");
@@ -0,0 +1,35 @@
+package ca.teyssedre.restclient;
+
+import java.io.IOException;
+
+/**
+ * Exception set on the {@link HttpResponse} when the {@link HttpRateLimiter} refused the request :
+ * no token was available, or would be within the deadline of the queue.
+ */
+public class RateLimitExceededException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String limit;
+    private final long retryAfter;
+
+    public RateLimitExceededException(String limit, long retryAfter) {
+        super("Rate limit " + limit + " exceeded, next token in " + retryAfter + " ms");
+        this.limit = limit;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return {@link String} host or pattern of the limit.
+     */
+    public String getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return {@link Long} delay in millisecond before a token is available.
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -1,6 +1,19 @@
 package ca.teyssedre.restclient;
 
+/**
+ * Exception set on the {@link HttpResponse} when the server answered with an error status code,
+ * 4xx or 5xx. The body of the error is available on the response.
+ */
 public class RequestException extends Exception {
     public int statusCode;
     public String message;
+
+    public RequestException() {
+    }
+
+    public RequestException(int statusCode, String message) {
+        super("HTTP " + statusCode + (message != null ? " " + message : ""));
+        this.statusCode = statusCode;
+        this.message = message;
+    }
 }
@@ -0,0 +1,43 @@
+package ca.teyssedre.restclient;
+
+/**
+ * Token bucket bounding the extra requests sent by the client, retries or hedges. Each original
+ * request deposits {@code ratio} token and each extra request withdraws one, the balance being
+ * capped by the reserve : once the reserve is spent the extra requests can't exceed the ratio of
+ * the traffic.
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+class RetryBudget {
+
+    private double ratio;
+    private double reserve;
+    private double balance;
+
+    RetryBudget(double ratio, int reserve) {
+        set(ratio, reserve);
+    }
+
+    synchronized void set(double ratio, int reserve) {
+        this.ratio = Math.max(0, ratio);
+        this.reserve = Math.max(0, reserve);
+        this.balance = this.reserve;
+    }
+
+    synchronized void deposit() {
+        balance = Math.min(reserve, balance + ratio);
+    }
+
+    synchronized boolean withdraw() {
+        if (balance < 1) {
+            return false;
+        }
+        balance -= 1;
+        return true;
+    }
+
+    synchronized double balance() {
+        return balance;
+    }
+}
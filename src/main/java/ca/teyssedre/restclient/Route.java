@@ -0,0 +1,59 @@
+package ca.teyssedre.restclient;
+
+import javax.net.ssl.SSLContext;
+
+/**
+ * Key of the connection pools of the {@link NioTransport} and {@link Http2Transport} : the scheme,
+ * host and port of the requests and, for HTTPS, the {@link SSLContext} opening the connections.
+ * The contexts are compared by reference, a connection being only reused by a request trusting
+ * the peer the same way.
+ */
+final class Route {
+
+    private final String address;
+    private final SSLContext sslContext;
+    private final boolean verified;
+
+    /**
+     * @param address    {@link String} scheme, host and port of the requests.
+     * @param sslContext {@link SSLContext} of the connections, null for the one of the transport.
+     * @param verified   {@link Boolean} flag, false when the host name of the certificates is not checked.
+     */
+    Route(String address, SSLContext sslContext, boolean verified) {
+        this.address = address;
+        this.sslContext = sslContext;
+        this.verified = verified;
+    }
+
+    SSLContext getSslContext() {
+        return sslContext;
+    }
+
+    boolean isVerified() {
+        return verified;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Route)) {
+            return false;
+        }
+        Route other = (Route) o;
+        return address.equals(other.address) && sslContext == other.sslContext && verified == other.verified;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = address.hashCode();
+        result = 31 * result + System.identityHashCode(sslContext);
+        return 31 * result + (verified ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return address;
+    }
+}
@@ -0,0 +1,174 @@
+package ca.teyssedre.restclient;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers to read and release the streams of a connection.
+ */
+final class Streams {
+
+    /**
+     * Largest announced length allocated before reading, a larger or bogus Content-Length is read
+     * through segments so that the memory follows the bytes actually received.
+     */
+    static final int MAX_EXACT_LENGTH = 4 * 1024 * 1024;
+
+    private Streams() {
+    }
+
+    /**
+     * Read all the bytes of an {@link InputStream}, the stream is closed once read. A known length
+     * up to {@link #MAX_EXACT_LENGTH} is read straight into an array of the exact size, otherwise the
+     * bytes are gathered in pooled segments and copied once into the returned array.
+     *
+     * @param in             {@link InputStream} to read.
+     * @param expectedLength length announced for the stream, -1 when unknown.
+     * @return array of byte read from the stream.
+     * @throws EOFException if the stream ends before the expected length, a connection dropped
+     *                      in the middle of the body for example.
+     * @throws IOException  throw by the {@link InputStream} in case of error.
+     */
+    static byte[] readFully(InputStream in, int expectedLength) throws IOException {
+        BufferPool pool = BufferPool.shared();
+        try {
+            if (expectedLength >= 0 && expectedLength <= MAX_EXACT_LENGTH) {
+                byte[] exact = pool.allocate(expectedLength);
+                int offset = 0;
+                int read;
+                while (offset < expectedLength && (read = in.read(exact, offset, expectedLength - offset)) != -1) {
+                    offset += read;
+                }
+                if (offset < expectedLength) {
+                    throw truncated(expectedLength, offset);
+                }
+                int next = in.read();
+                if (next == -1) {
+                    return exact;
+                }
+                // the server sent more than announced, keep reading
+                List<byte[]> segments = new ArrayList<>();
+                byte[] segment = pool.takeBytes();
+                segment[0] = (byte) next;
+                segments.add(segment);
+                return gather(in, exact, segments, 1);
+            }
+            byte[] body = gather(in, null, new ArrayList<byte[]>(), BufferPool.SEGMENT_SIZE);
+            if (body.length < expectedLength) {
+                throw truncated(expectedLength, body.length);
+            }
+            return body;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private static EOFException truncated(int expectedLength, int length) {
+        return new EOFException("expected " + expectedLength + " bytes, got " + length);
+    }
+
+    /**
+     * Read the rest of the stream into pooled segments and build the array of all the bytes.
+     *
+     * @param head     bytes already read before the segments, null if none.
+     * @param segments segments already filled, the last one holding {@code used} bytes.
+     * @param used     number of bytes of the last segment, {@link BufferPool#SEGMENT_SIZE} if none.
+     */
+    private static byte[] gather(InputStream in, byte[] head, List<byte[]> segments, int used) throws IOException {
+        BufferPool pool = BufferPool.shared();
+        try {
+            int read;
+            while (true) {
+                if (used == BufferPool.SEGMENT_SIZE) {
+                    segments.add(pool.takeBytes());
+                    used = 0;
+                }
+                byte[] segment = segments.get(segments.size() - 1);
+                if ((read = in.read(segment, used, segment.length - used)) == -1) {
+                    break;
+                }
+                used += read;
+            }
+            int headLength = head == null ? 0 : head.length;
+            long total = (long) headLength + (long) (segments.size() - 1) * BufferPool.SEGMENT_SIZE + used;
+            if (total > Integer.MAX_VALUE) {
+                throw new IOException("Body too large");
+            }
+            byte[] result = pool.allocate((int) total);
+            int offset = 0;
+            if (head != null) {
+                System.arraycopy(head, 0, result, 0, headLength);
+                offset = headLength;
+            }
+            for (int i = 0; i < segments.size(); i++) {
+                int length = i == segments.size() - 1 ? used : BufferPool.SEGMENT_SIZE;
+                System.arraycopy(segments.get(i), 0, result, offset, length);
+                offset += length;
+            }
+            return result;
+        } finally {
+            for (byte[] segment : segments) {
+                pool.recycle(segment);
+            }
+        }
+    }
+
+    static long copy(InputStream in, OutputStream out) throws IOException {
+        BufferPool pool = BufferPool.shared();
+        byte[] buffer = pool.takeBytes();
+        try {
+            long total = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                total += read;
+            }
+            return total;
+        } finally {
+            pool.recycle(buffer);
+        }
+    }
+
+    /**
+     * Consume the remaining bytes of an {@link InputStream} and close it, so that the connection
+     * could be returned to the pool.
+     *
+     * @param in       {@link InputStream} of the connection.
+     * @param maxBytes maximum number of bytes to consume.
+     * @return true if the stream was consumed until its end.
+     */
+    static boolean drain(InputStream in, long maxBytes) {
+        if (in == null) {
+            return true;
+        }
+        BufferPool pool = BufferPool.shared();
+        byte[] buffer = pool.takeBytes();
+        try {
+            long total = 0;
+            int read;
+            while (total <= maxBytes && (read = in.read(buffer)) != -1) {
+                total += read;
+            }
+            return total <= maxBytes;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            pool.recycle(buffer);
+            closeQuietly(in);
+        }
+    }
+
+    static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package ca.teyssedre.restclient;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import javax.net.ssl.HandshakeCompletedEvent;
+import javax.net.ssl.HandshakeCompletedListener;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * {@link SSLSocketFactory} delegating to another one while counting the sockets created, each of
+ * them being a new connection of the {@link javax.net.ssl.HttpsURLConnection} pool. The same
+ * instance must be used for all the requests of a delegate, the pool being keyed on the factory.
+ * The handshakes are counted as full or resumed once completed. When the call connecting has a
+ * {@link HttpEventListener}, the start of the handshake is reported here and its end once the
+ * connection is established.
+ */
+class TrackingSSLSocketFactory extends SSLSocketFactory {
+
+    private final SSLSocketFactory delegate;
+    private final ConnectionStats stats;
+
+    TrackingSSLSocketFactory(SSLSocketFactory delegate, ConnectionStats stats) {
+        this.delegate = delegate;
+        this.stats = stats;
+    }
+
+    SSLSocketFactory getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public String[] getDefaultCipherSuites() {
+        return delegate.getDefaultCipherSuites();
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+        return delegate.getSupportedCipherSuites();
+    }
+
+    private Socket handshake(Socket socket) {
+        if (!(socket instanceof SSLSocket)) {
+            return socket;
+        }
+        SSLSocket sslSocket = (SSLSocket) socket;
+        final long start = System.currentTimeMillis();
+        sslSocket.addHandshakeCompletedListener(new HandshakeCompletedListener() {
+            @Override
+            public void handshakeCompleted(HandshakeCompletedEvent event) {
+                stats.handshake(ConnectionStats.isResumed(event.getSession(), start));
+            }
+        });
+        // the handshake is left to the connection, which enables the verification of the host first
+        HttpEvents.current().secureConnectStart(sslSocket);
+        return socket;
+    }
+
+    @Override
+    public Socket createSocket(Socket s, String host, int port, boolean autoClose) throws IOException {
+        stats.newConnection();
+        return handshake(delegate.createSocket(s, host, port, autoClose));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        stats.newConnection();
+        return handshake(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        stats.newConnection();
+        return handshake(delegate.createSocket(host, port, localHost, localPort));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        stats.newConnection();
+        return handshake(delegate.createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+        stats.newConnection();
+        return handshake(delegate.createSocket(address, port, localAddress, localPort));
+    }
+}
@@ -0,0 +1,58 @@
+package ca.teyssedre.restclient;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * {@link HttpTransport} relying on {@link java.net.HttpURLConnection} and its shared connection
+ * pool, the default one of the {@link HttpClient}.
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+public class UrlConnectionTransport implements HttpTransport {
+
+    private final Map<SSLSocketFactory, TrackingSSLSocketFactory> trackingFactories = new HashMap<>();
+
+    @Override
+    public HttpResponse execute(HttpRequest request, ConnectionStats stats) {
+        SSLSocketFactory factory = request.getSslFactory();
+        if (factory == null && request.getUrl() != null && request.getUrl().regionMatches(true, 0, "https:", 0, 6)) {
+            // resolved for the HTTPS requests only, the plain HTTP ones never pay for the TLS setup
+            factory = HttpsURLConnection.getDefaultSSLSocketFactory();
+        }
+        if (factory != null) {
+            request.setConnectionFactory(trackingFactory(factory, stats));
+        }
+        return request.exchange(stats);
+    }
+
+    /**
+     * The connections belong to the pool of {@link java.net.HttpURLConnection}, shared by the
+     * whole process, nothing to release here.
+     */
+    @Override
+    public void shutdown() {
+        synchronized (trackingFactories) {
+            trackingFactories.clear();
+        }
+    }
+
+    /**
+     * @return one {@link TrackingSSLSocketFactory} per factory : the connection pool being keyed on
+     * the factory, a new wrapper for each request would prevent the reuse of the connections.
+     */
+    private TrackingSSLSocketFactory trackingFactory(SSLSocketFactory factory, ConnectionStats stats) {
+        synchronized (trackingFactories) {
+            TrackingSSLSocketFactory tracking = trackingFactories.get(factory);
+            if (tracking == null) {
+                tracking = new TrackingSSLSocketFactory(factory, stats);
+                trackingFactories.put(factory, tracking);
+            }
+            return tracking;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package ca.teyssedre.restclient;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Default {@link HttpRequestKey} built from the normalized URL of the request and the values of its
+ * headers, all of them or a selection. The scheme and host are lower cased, the default port and the
+ * fragment are removed and the query parameters are sorted, so that equivalent URLs share the same
+ * key.
+ *
+ * @author pteyssedre
+ * @version 1.0
+ */
+public class UrlRequestKey implements HttpRequestKey {
+
+    private final String[] headers;
+    private final boolean allHeaders;
+
+    /**
+     * Constructor of {@link UrlRequestKey} class, keyed on a selection of the headers only. The
+     * requests differing by another header, Cookie or an API key for example, share the same key :
+     * the selection must hold every header identifying the caller.
+     *
+     * @param headers names of the headers which values are part of the key, "Accept" or
+     *                "Authorization" for example.
+     */
+    public UrlRequestKey(String... headers) {
+        this(false, headers);
+    }
+
+    private UrlRequestKey(boolean allHeaders, String[] headers) {
+        this.headers = headers == null ? new String[0] : headers.clone();
+        this.allHeaders = allHeaders;
+    }
+
+    /**
+     * @return {@link UrlRequestKey} keyed on all the headers set on the requests, the default of the
+     * {@link HttpClient} features sharing a response.
+     */
+    public static UrlRequestKey allHeaders() {
+        return new UrlRequestKey(true, null);
+    }
+
+    @Override
+    public String key(HttpRequest request) {
+        String url = normalize(request.getUrl());
+        if (url == null) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(url.length() + 32);
+        key.append(request.getType()).append(' ').append(url);
+        if (allHeaders) {
+            appendAll(key, request.getHeaders());
+        }
+        for (String header : headers) {
+            String value = request.getHeader(header);
+            if (value != null) {
+                key.append('\n').append(header.toLowerCase()).append(':').append(value);
+            }
+        }
+        return key.toString();
+    }
+
+    private static void appendAll(StringBuilder key, Set<HttpHeader> headers) {
+        if (headers == null || headers.isEmpty()) {
+            return;
+        }
+        // sorted, the order of the set being undefined
+        List<String> lines = new ArrayList<>(headers.size());
+        for (HttpHeader header : headers) {
+            if (header.getName() != null && header.getValue() != null) {
+                lines.add(header.getName().toLowerCase(Locale.US) + ':' + header.getValue());
+            }
+        }
+        Collections.sort(lines);
+        for (String line : lines) {
+            key.append('\n').append(line);
+        }
+    }
+
+    /**
+     * @param value {@link String} URL to normalize.
+     * @return normalized {@link String} value of the URL, null if the URL is invalid.
+     */
+    static String normalize(String value) {
+        if (value == null) {
+            return null;
+        }
+        URL url;
+        try {
+            url = new URL(value);
+        } catch (MalformedURLException e) {
+            return null;
+        }
+        String protocol = url.getProtocol().toLowerCase();
+        StringBuilder builder = new StringBuilder(value.length());
+        builder.append(protocol).append("://").append(url.getHost().toLowerCase());
+        int port = url.getPort();
+        if (port != -1 && port != url.getDefaultPort()) {
+            builder.append(':').append(port);
+        }
+        String path = url.getPath();
+        builder.append(path == null || path.length() == 0 ? "/" : path);
+        String query = url.getQuery();
+        if (query != null && query.length() > 0) {
+            String[] parameters = query.split("&");
+            Arrays.sort(parameters);
+            builder.append('?');
+            for (int i = 0; i < parameters.length; i++) {
+                if (i > 0) {
+                    builder.append('&');
+                }
+                builder.append(parameters[i]);
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,67 @@
+package ca.teyssedre.restclient;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BufferPoolUnitTest {
+
+    @Test
+    public void body_of_unknown_length_is_read_through_recycled_segments() throws Exception {
+        byte[] payload = new byte[20000];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+        assertArrayEquals(payload, Streams.readFully(new ByteArrayInputStream(payload), -1));
+
+        long before = BufferPool.threadAllocatedBytes();
+        assertArrayEquals(payload, Streams.readFully(new ByteArrayInputStream(payload), -1));
+        // the segments of the first read are reused, only the body is allocated
+        assertEquals(payload.length, BufferPool.threadAllocatedBytes() - before);
+    }
+
+    @Test
+    public void body_of_known_length_is_allocated_once() throws Exception {
+        LoopbackServer server = new LoopbackServer();
+        try {
+            byte[] payload = new byte[50000];
+            server.setBody(payload, "application/octet-stream");
+            HttpRequest request = new HttpRequest(server.url("/sized"));
+            new HttpClient().execute(request);
+
+            assertEquals(payload.length, request.getResponse().getBody().length);
+            assertEquals(payload.length, request.getAllocatedBytes());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void bogus_length_is_not_allocated_up_front() throws Exception {
+        byte[] payload = new byte[1000];
+        long before = BufferPool.threadAllocatedBytes();
+        try {
+            Streams.readFully(new ByteArrayInputStream(payload), 2000000000);
+            fail("1000 bytes read as a body of 2000000000");
+        } catch (EOFException expected) {
+            assertEquals("expected 2000000000 bytes, got 1000", expected.getMessage());
+        }
+        assertTrue(BufferPool.threadAllocatedBytes() - before < Streams.MAX_EXACT_LENGTH);
+    }
+
+    @Test
+    public void body_shorter_than_announced_is_an_error() throws Exception {
+        try {
+            Streams.readFully(new ByteArrayInputStream(new byte[10]), 20);
+            fail("truncated body returned as complete");
+        } catch (EOFException expected) {
+            assertEquals("expected 20 bytes, got 10", expected.getMessage());
+        }
+    }
+}
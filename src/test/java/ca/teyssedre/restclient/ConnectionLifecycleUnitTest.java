@@ -0,0 +1,119 @@
+package ca.teyssedre.restclient;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectionLifecycleUnitTest {
+
+    @Test
+    public void error_body_is_read_from_error_stream() throws Exception {
+        LoopbackServer server = new LoopbackServer();
+        try {
+            server.setStatus(404).setBody("{\"error\":\"missing\"}".getBytes("UTF-8"), "application/json");
+            HttpResponse response = new HttpClient().execute(new HttpRequest(server.url("/missing")));
+
+            assertEquals(404, response.getStatusCode());
+            assertEquals("{\"error\":\"missing\"}", response.getStringResponse());
+            assertTrue(response.getException() instanceof RequestException);
+            assertEquals(404, ((RequestException) response.getException()).statusCode);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void unread_body_is_drained_without_error() throws Exception {
+        LoopbackServer server = new LoopbackServer();
+        try {
+            HttpRequest request = new HttpRequest(server.url("/ignored"));
+            request.setRead(false);
+            HttpClient client = new HttpClient();
+            HttpResponse response = client.execute(request);
+
+            assertNull(response.getException());
+            assertEquals(200, response.getStatusCode());
+            assertEquals(0, client.getConnectionStats().getDiscardedCount());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void idempotent_request_is_resent_after_stale_connection() throws Exception {
+        // HttpURLConnection already resends once by itself, the server fails twice
+        final ServerSocket socket = new ServerSocket(0, 10, InetAddress.getByName("127.0.0.1"));
+        final AtomicInteger connections = new AtomicInteger();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (connections.get() < 3) {
+                        Socket client = socket.accept();
+                        BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), "UTF-8"));
+                        String line;
+                        while ((line = reader.readLine()) != null && line.length() > 0) {
+                            // consume the request headers
+                        }
+                        if (connections.incrementAndGet() > 2) {
+                            OutputStream out = client.getOutputStream();
+                            out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\nConnection: close\r\n\r\nok".getBytes("UTF-8"));
+                            out.flush();
+                        }
+                        client.close();
+                    }
+                } catch (Exception ignored) {
+                }
+            }
+        });
+        thread.start();
+        try {
+            HttpClient client = new HttpClient();
+            HttpResponse response = client.execute(new HttpRequest("http://127.0.0.1:" + socket.getLocalPort() + "/"));
+
+            assertNull(response.getException());
+            assertEquals("ok", response.getStringResponse());
+            assertEquals(1, client.getConnectionStats().getStaleRetryCount());
+            assertEquals(2, client.getConnectionStats().getExchangeCount());
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void post_request_is_not_resent_after_failure() throws Exception {
+        final ServerSocket socket = new ServerSocket(0, 10, InetAddress.getByName("127.0.0.1"));
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        socket.accept().close();
+                    }
+                } catch (Exception ignored) {
+                }
+            }
+        });
+        thread.start();
+        try {
+            HttpClient client = new HttpClient();
+            HttpResponse response = client.execute(new HttpRequest("http://127.0.0.1:" + socket.getLocalPort() + "/").addData("a=1"));
+
+            assertNotNull(response.getException());
+            assertEquals(0, client.getConnectionStats().getStaleRetryCount());
+        } finally {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package ca.teyssedre.restclient;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ContentDecodersUnitTest {
+
+    private final ContentDecoders decoders = new ContentDecoders();
+
+    @Test
+    public void gzip_members_are_inflated() throws Exception {
+        byte[] payload = payload(100000);
+        ByteArrayOutputStream concatenated = new ByteArrayOutputStream();
+        concatenated.write(gzip(payload));
+        concatenated.write(gzip("tail".getBytes("UTF-8")));
+
+        byte[] decoded = decode(concatenated.toByteArray(), "gzip");
+        assertEquals(payload.length + 4, decoded.length);
+        assertEquals("tail", new String(decoded, payload.length, 4, "UTF-8"));
+        assertTrue(ContentDecoders.pooledInflaters() > 0);
+    }
+
+    @Test
+    public void deflate_accepts_zlib_and_raw_streams() throws Exception {
+        byte[] payload = payload(30000);
+        ByteArrayOutputStream zlib = new ByteArrayOutputStream();
+        DeflaterOutputStream out = new DeflaterOutputStream(zlib);
+        out.write(payload);
+        out.close();
+        assertArrayEquals(payload, decode(zlib.toByteArray(), "deflate"));
+
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        out = new DeflaterOutputStream(raw, deflater);
+        out.write(payload);
+        out.close();
+        deflater.end();
+        assertArrayEquals(payload, decode(raw.toByteArray(), "deflate"));
+    }
+
+    @Test(expected = IOException.class)
+    public void corrupt_gzip_trailer_is_rejected() throws Exception {
+        byte[] compressed = gzip(payload(1000));
+        compressed[compressed.length - 8] ^= 0x01;
+        decode(compressed, "gzip");
+    }
+
+    @Test
+    public void accept_encoding_lists_the_registered_decoders() throws Exception {
+        assertEquals("gzip, deflate", decoders.getAcceptEncoding());
+        decoders.register("x-identity", new ContentDecoders.Decoder() {
+            @Override
+            public InputStream decode(InputStream in) {
+                return in;
+            }
+        });
+        assertEquals("gzip, deflate, x-identity", decoders.getAcceptEncoding());
+        decoders.register("deflate", null);
+        assertEquals("gzip, x-identity", decoders.getAcceptEncoding());
+        try {
+            decode(new byte[]{1}, "br");
+            throw new AssertionError("br accepted");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void deflate_response_is_decoded() throws Exception {
+        LoopbackServer server = new LoopbackServer();
+        try {
+            ByteArrayOutputStream zlib = new ByteArrayOutputStream();
+            DeflaterOutputStream out = new DeflaterOutputStream(zlib);
+            out.write("deflated body".getBytes("UTF-8"));
+            out.close();
+            server.setBody(zlib.toByteArray(), "text/plain").setHeaders("Content-Encoding", "deflate");
+            HttpResponse response = new HttpClient().execute(new HttpRequest(server.url("/deflate")));
+
+            assertEquals("gzip, deflate", server.getLastRequestHeader("Accept-Encoding"));
+            assertEquals("deflated body", response.getStringResponse());
+        } finally {
+            server.stop();
+        }
+    }
+
+    private byte[] decode(byte[] encoded, String encoding) throws IOException {
+        return Streams.readFully(decoders.decode(new ByteArrayInputStream(encoded), encoding), -1);
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GZIPOutputStream out = new GZIPOutputStream(bytes);
+        out.write(data);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] payload(int size) {
+        byte[] payload = new byte[size];
+        for (int i = 0; i < size; i++) {
+            payload[i] = (byte) ((i * 31) % 97);
+        }
+        return payload;
+    }
+}
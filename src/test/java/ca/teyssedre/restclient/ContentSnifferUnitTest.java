@@ -0,0 +1,45 @@
+package ca.teyssedre.restclient;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ContentSnifferUnitTest {
+
+    @Test
+    public void text_bodies_are_detected_from_their_prefix() throws Exception {
+        assertEquals(HttpContentType.APPLICATION_JSON, ContentSniffer.detect("  {\"id\": 1}"));
+        assertEquals(HttpContentType.APPLICATION_JSON, ContentSniffer.detect("[1, 2, 3]"));
+        assertEquals(HttpContentType.APPLICATION_XML, ContentSniffer.detect("<?xml version=\"1.0\"?><a/>"));
+        assertEquals(HttpContentType.TEXT_HTML, ContentSniffer.detect("<!DOCTYPE html><html></html>"));
+        assertEquals(HttpContentType.APPLICATION_WWW_FORM, ContentSniffer.detect("name=John+Doe&age=42&city=Qu%C3%A9bec"));
+        assertEquals(HttpContentType.PLAIN_TEXT, ContentSniffer.detect("{not json"));
+        assertEquals(HttpContentType.PLAIN_TEXT, ContentSniffer.detect("Hello, world = me"));
+        assertEquals(HttpContentType.OCTET_STREAM, ContentSniffer.detect(new byte[]{(byte) 0x89, 'P', 'N', 'G', 0x0d, 0x0a, 0x1a, 0x0a}));
+        assertEquals(HttpContentType.APPLICATION_JSON, ContentSniffer.detect(new byte[]{(byte) 0xef, (byte) 0xbb, (byte) 0xbf, '{', '}'}));
+        assertNull(ContentSniffer.detect((String) null));
+    }
+
+    @Test
+    public void only_the_prefix_is_examined() throws Exception {
+        StringBuilder large = new StringBuilder("{\"items\": [");
+        for (int i = 0; i < 100000; i++) {
+            large.append("\"item\",");
+        }
+        // invalid after the prefix, still detected as JSON
+        large.append("\u0000");
+        assertEquals(HttpContentType.APPLICATION_JSON, ContentSniffer.detect(large.toString()));
+    }
+
+    @Test
+    public void explicit_content_type_skips_sniffing() throws Exception {
+        HttpRequest sniffed = new HttpRequest("http://example.com/data").addData("<a>xml</a>");
+        assertEquals(HttpContentType.APPLICATION_XML, sniffed.getContentType());
+        sniffed.addData("{\"a\": 1}");
+        assertEquals(HttpContentType.APPLICATION_JSON, sniffed.getContentType());
+
+        HttpRequest explicit = new HttpRequest("http://example.com/data", HttpContentType.PLAIN_TEXT).addData("{\"a\": 1}");
+        assertEquals(HttpContentType.PLAIN_TEXT, explicit.getContentType());
+    }
+}
@@ -0,0 +1,84 @@
+package ca.teyssedre.restclient;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class HpackUnitTest {
+
+    // RFC 7541 Appendix C.4, requests with Huffman encoding sharing the same dynamic table
+    private static final String[][][] REQUESTS = {
+            {{":method", "GET"}, {":scheme", "http"}, {":path", "/"}, {":authority", "www.example.com"}},
+            {{":method", "GET"}, {":scheme", "http"}, {":path", "/"}, {":authority", "www.example.com"},
+                    {"cache-control", "no-cache"}},
+            {{":method", "GET"}, {":scheme", "https"}, {":path", "/index.html"}, {":authority", "www.example.com"},
+                    {"custom-key", "custom-value"}}
+    };
+    private static final String[] BLOCKS = {
+            "828684418cf1e3c2e5f23a6ba0ab90f4ff",
+            "828684be5886a8eb10649cbf",
+            "828785bf408825a849e95ba97d7f8925a849e95bb8e8b4bf"
+    };
+
+    @Test
+    public void encoder_matches_rfc_examples() throws Exception {
+        Hpack.Encoder encoder = new Hpack.Encoder();
+        for (int i = 0; i < REQUESTS.length; i++) {
+            assertArrayEquals("request " + (i + 1), hex(BLOCKS[i]), encoder.encode(list(REQUESTS[i])));
+        }
+    }
+
+    @Test
+    public void decoder_matches_rfc_examples() throws Exception {
+        Hpack.Decoder decoder = new Hpack.Decoder(4096);
+        for (int i = 0; i < REQUESTS.length; i++) {
+            byte[] block = hex(BLOCKS[i]);
+            List<String[]> headers = decoder.decode(block, 0, block.length);
+            assertEquals(REQUESTS[i].length, headers.size());
+            for (int j = 0; j < headers.size(); j++) {
+                assertArrayEquals(REQUESTS[i][j], headers.get(j));
+            }
+        }
+    }
+
+    @Test
+    public void sensitive_headers_are_not_indexed() throws Exception {
+        Hpack.Encoder encoder = new Hpack.Encoder();
+        Hpack.Decoder decoder = new Hpack.Decoder(4096);
+        List<String[]> headers = list(new String[][]{{"authorization", "Bearer secret-token"}, {"x-trace", "abc"}});
+        for (int i = 0; i < 2; i++) {
+            byte[] block = encoder.encode(headers);
+            List<String[]> decoded = decoder.decode(block, 0, block.length);
+            assertArrayEquals(headers.get(0), decoded.get(0));
+            assertArrayEquals(headers.get(1), decoded.get(1));
+            // never indexed literal, name from the static table
+            assertEquals(0x1f, block[0] & 0xff);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void invalid_index_is_rejected() throws Exception {
+        new Hpack.Decoder(4096).decode(new byte[]{(byte) 0xff, 0x00}, 0, 2);
+    }
+
+    private static List<String[]> list(String[][] headers) {
+        List<String[]> list = new ArrayList<>();
+        for (String[] header : headers) {
+            list.add(header);
+        }
+        return list;
+    }
+
+    private static byte[] hex(String value) {
+        byte[] data = new byte[value.length() / 2];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) Integer.parseInt(value.substring(i * 2, i * 2 + 2), 16);
+        }
+        return data;
+    }
+}
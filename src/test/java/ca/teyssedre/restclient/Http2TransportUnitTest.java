@@ -0,0 +1,301 @@
+package ca.teyssedre.restclient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class Http2TransportUnitTest {
+
+    private H2cServer server;
+    private Http2Transport transport;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new H2cServer();
+        transport = new Http2Transport();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        transport.shutdown();
+        server.stop();
+    }
+
+    @Test
+    public void concurrent_requests_share_one_connection() throws Exception {
+        // the server answers only once the three streams are open
+        server.holdUntil = 3;
+        final HttpClient client = new HttpClient().setTransport(transport);
+        final String[] bodies = new String[3];
+        Thread[] threads = new Thread[bodies.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        bodies[index] = client.execute(new HttpRequest(server.url("/stream/" + index))).getStringResponse();
+                    } catch (Exception ignored) {
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join(10000);
+        }
+
+        for (int i = 0; i < bodies.length; i++) {
+            assertEquals("/stream/" + i, bodies[i]);
+        }
+        assertEquals(1, server.accepted.get());
+        assertEquals(1, client.getConnectionStats().getNewConnectionCount());
+        assertEquals(1, transport.getConnectionCount());
+    }
+
+    @Test
+    public void body_larger_than_the_window_is_flow_controlled() throws Exception {
+        byte[] payload = new byte[300000];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+        HttpRequest request = new HttpRequest(server.url("/echo"))
+                .addBody(HttpBody.create(new ByteArrayInputStream(payload), -1));
+        HttpResponse response = new HttpClient().setTransport(transport).execute(request);
+
+        assertNull(response.getException());
+        assertEquals(200, response.getStatusCode());
+        assertArrayEquals(payload, response.getBody());
+    }
+
+    @Test
+    public void other_ssl_factory_is_sent_in_http1_from_it() throws Exception {
+        SSLContext tls = LoopbackServer.tlsContext("/loopback.jks");
+        LoopbackServer https = new LoopbackServer(tls);
+        try {
+            HttpClient client = new HttpClient().setTransport(transport).setSSLFactory(tls.getSocketFactory());
+            HttpResponse response = client.execute(new HttpRequest(https.url("/pinned")));
+
+            assertNull(response.getException());
+            assertEquals(200, response.getStatusCode());
+            assertEquals(0, transport.getConnectionCount());
+        } finally {
+            https.stop();
+        }
+    }
+
+    @Test
+    public void sequential_requests_reuse_the_connection() throws Exception {
+        HttpClient client = new HttpClient().setTransport(transport);
+        for (int i = 0; i < 3; i++) {
+            assertEquals("/again", client.execute(new HttpRequest(server.url("/again"))).getStringResponse());
+        }
+
+        assertEquals(1, client.getConnectionStats().getNewConnectionCount());
+        assertEquals(2, client.getConnectionStats().getReusedConnectionCount());
+    }
+
+    @Test(timeout = 10000)
+    public void max_frame_size_out_of_range_is_a_connection_error() throws Exception {
+        server.settings = new byte[]{0, (byte) Http2Connection.SETTINGS_MAX_FRAME_SIZE, 0, 0, 0, 0};
+        HttpResponse response = new HttpClient().setTransport(transport).execute(new HttpRequest(server.url("/zero")));
+
+        assertTrue(response.getException() instanceof IOException);
+        assertEquals(Http2Connection.ERROR_PROTOCOL, server.awaitGoAway());
+    }
+
+    @Test(timeout = 10000)
+    public void push_promise_is_a_connection_error() throws Exception {
+        server.push = true;
+        HttpResponse response = new HttpClient().setTransport(transport).execute(new HttpRequest(server.url("/push")));
+
+        assertTrue(response.getException() instanceof IOException);
+        assertEquals(Http2Connection.ERROR_PROTOCOL, server.awaitGoAway());
+    }
+
+    /**
+     * Minimal h2c server with prior knowledge : answers each stream with its path, or echoes the
+     * request body, granting window updates as the DATA frames arrive.
+     */
+    private static class H2cServer implements Runnable {
+
+        private final ServerSocket socket;
+        private final AtomicInteger accepted = new AtomicInteger();
+        private volatile int holdUntil = 1;
+        private volatile byte[] settings = new byte[0];
+        private volatile boolean push;
+        private volatile int goAwayCode = -1;
+
+        H2cServer() throws IOException {
+            socket = new ServerSocket(0, 10, InetAddress.getByName("127.0.0.1"));
+            Thread thread = new Thread(this);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * @return error code of the GOAWAY sent by the client, -1 if none within a second.
+         */
+        int awaitGoAway() throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 1000;
+            while (goAwayCode == -1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            return goAwayCode;
+        }
+
+        String url(String path) {
+            return "http://127.0.0.1:" + socket.getLocalPort() + path;
+        }
+
+        void stop() throws IOException {
+            socket.close();
+        }
+
+        @Override
+        public void run() {
+            while (!socket.isClosed()) {
+                try {
+                    final Socket client = socket.accept();
+                    accepted.incrementAndGet();
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                serve(client);
+                            } catch (IOException ignored) {
+                            } finally {
+                                try {
+                                    client.close();
+                                } catch (IOException ignored) {
+                                }
+                            }
+                        }
+                    });
+                    thread.setDaemon(true);
+                    thread.start();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        private void serve(Socket client) throws IOException {
+            DataInputStream in = new DataInputStream(client.getInputStream());
+            OutputStream out = client.getOutputStream();
+            in.readFully(new byte[24]);
+            writeFrame(out, Http2Connection.TYPE_SETTINGS, 0, 0, settings);
+            Hpack.Decoder decoder = new Hpack.Decoder(4096);
+            Hpack.Encoder encoder = new Hpack.Encoder();
+            Map<Integer, String> paths = new HashMap<>();
+            Map<Integer, ByteArrayOutputStream> bodies = new HashMap<>();
+            List<Integer> complete = new ArrayList<>();
+            while (true) {
+                int length = (in.readUnsignedByte() << 16) | in.readUnsignedShort();
+                int type = in.readUnsignedByte();
+                int flags = in.readUnsignedByte();
+                int stream = in.readInt() & 0x7fffffff;
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                if (type == Http2Connection.TYPE_SETTINGS && (flags & Http2Connection.FLAG_ACK) == 0) {
+                    writeFrame(out, Http2Connection.TYPE_SETTINGS, Http2Connection.FLAG_ACK, 0, new byte[0]);
+                } else if (type == Http2Connection.TYPE_HEADERS) {
+                    for (String[] header : decoder.decode(payload, 0, payload.length)) {
+                        if (":path".equals(header[0])) {
+                            paths.put(stream, header[1]);
+                        }
+                    }
+                    bodies.put(stream, new ByteArrayOutputStream());
+                } else if (type == Http2Connection.TYPE_DATA) {
+                    bodies.get(stream).write(payload);
+                    if (length > 0) {
+                        writeFrame(out, Http2Connection.TYPE_WINDOW_UPDATE, 0, 0, int32(length));
+                        writeFrame(out, Http2Connection.TYPE_WINDOW_UPDATE, 0, stream, int32(length));
+                    }
+                } else if (type == Http2Connection.TYPE_GOAWAY) {
+                    goAwayCode = ((payload[4] & 0xff) << 24) | ((payload[5] & 0xff) << 16)
+                            | ((payload[6] & 0xff) << 8) | (payload[7] & 0xff);
+                    return;
+                }
+                if ((type == Http2Connection.TYPE_HEADERS || type == Http2Connection.TYPE_DATA)
+                        && (flags & Http2Connection.FLAG_END_STREAM) != 0) {
+                    complete.add(stream);
+                    if (complete.size() >= holdUntil) {
+                        for (Integer id : complete) {
+                            if (push) {
+                                promise(out, encoder, id);
+                            }
+                            byte[] body = bodies.get(id).size() > 0 ? bodies.get(id).toByteArray()
+                                    : paths.get(id).getBytes("UTF-8");
+                            respond(out, encoder, id, body);
+                        }
+                        complete.clear();
+                    }
+                }
+            }
+        }
+
+        private static void respond(OutputStream out, Hpack.Encoder encoder, int stream, byte[] body) throws IOException {
+            List<String[]> headers = new ArrayList<>();
+            headers.add(new String[]{":status", "200"});
+            headers.add(new String[]{"content-type", "text/plain"});
+            headers.add(new String[]{"content-length", String.valueOf(body.length)});
+            writeFrame(out, Http2Connection.TYPE_HEADERS, Http2Connection.FLAG_END_HEADERS, stream, encoder.encode(headers));
+            int offset = 0;
+            do {
+                int chunk = Math.min(Http2Connection.DEFAULT_MAX_FRAME_SIZE, body.length - offset);
+                byte[] data = new byte[chunk];
+                System.arraycopy(body, offset, data, 0, chunk);
+                offset += chunk;
+                writeFrame(out, Http2Connection.TYPE_DATA, offset == body.length ? Http2Connection.FLAG_END_STREAM : 0,
+                        stream, data);
+            } while (offset < body.length);
+        }
+
+        private static void promise(OutputStream out, Hpack.Encoder encoder, int stream) throws IOException {
+            List<String[]> headers = new ArrayList<>();
+            headers.add(new String[]{":method", "GET"});
+            headers.add(new String[]{":scheme", "http"});
+            headers.add(new String[]{":path", "/pushed"});
+            headers.add(new String[]{":authority", "127.0.0.1"});
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            payload.write(int32(stream + 1));
+            payload.write(encoder.encode(headers));
+            writeFrame(out, Http2Connection.TYPE_PUSH_PROMISE, Http2Connection.FLAG_END_HEADERS, stream,
+                    payload.toByteArray());
+        }
+
+        private static void writeFrame(OutputStream out, int type, int flags, int stream, byte[] payload) throws IOException {
+            byte[] head = {(byte) (payload.length >>> 16), (byte) (payload.length >>> 8), (byte) payload.length,
+                    (byte) type, (byte) flags, (byte) (stream >>> 24), (byte) (stream >>> 16), (byte) (stream >>> 8),
+                    (byte) stream};
+            out.write(head);
+            out.write(payload);
+            out.flush();
+        }
+
+        private static byte[] int32(int value) {
+            return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+        }
+    }
+}
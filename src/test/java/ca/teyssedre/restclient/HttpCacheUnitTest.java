@@ -0,0 +1,121 @@
+package ca.teyssedre.restclient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HttpCacheUnitTest {
+
+    private LoopbackServer server;
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LoopbackServer();
+        directory = new File(System.getProperty("java.io.tmpdir"), "http-cache-" + System.nanoTime());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void fresh_entry_is_served_without_network() throws Exception {
+        server.setBody("{\"a\":1}".getBytes("UTF-8"), "application/json").setHeaders("Cache-Control", "max-age=60");
+        HttpCache cache = new HttpCache(directory, 1024 * 1024);
+        HttpClient client = new HttpClient().setCache(cache);
+
+        HttpResponse first = client.execute(new HttpRequest(server.url("/config")));
+        HttpResponse second = client.execute(new HttpRequest(server.url("/config")));
+
+        assertFalse(first.isFromCache());
+        assertTrue(second.isFromCache());
+        assertEquals("{\"a\":1}", second.getStringResponse());
+        assertEquals(1, server.getHits());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void stale_entry_is_revalidated_and_304_served_from_cache() throws Exception {
+        server.setBody("payload".getBytes("UTF-8"), "text/plain").setHeaders("ETag", "\"v1\"", "Cache-Control", "no-cache");
+        HttpCache cache = new HttpCache(directory, 1024 * 1024);
+        HttpClient client = new HttpClient().setCache(cache);
+
+        client.execute(new HttpRequest(server.url("/data")));
+        server.setStatus(304);
+        final HttpRequest request = new HttpRequest(server.url("/data"));
+        final AtomicInteger conditionsSeen = new AtomicInteger();
+        client.setTransport(new UrlConnectionTransport() {
+            @Override
+            public HttpResponse execute(HttpRequest exchanged, ConnectionStats stats) {
+                if (request.getHeader("If-None-Match") != null) {
+                    conditionsSeen.incrementAndGet();
+                }
+                return super.execute(exchanged, stats);
+            }
+        });
+        HttpResponse second = client.execute(request);
+
+        // sent on a copy, never added to the headers of the caller
+        assertEquals(0, conditionsSeen.get());
+        assertEquals("\"v1\"", server.getLastRequestHeader("If-None-Match"));
+        assertEquals(200, second.getStatusCode());
+        assertEquals("payload", second.getStringResponse());
+        assertEquals(2, server.getHits());
+        assertEquals(1, cache.getRevalidationCount());
+        assertEquals(1, cache.getConditionalHitCount());
+    }
+
+    @Test
+    public void least_recently_used_entries_are_evicted() throws Exception {
+        server.setBody(new byte[400], "application/octet-stream").setHeaders("Cache-Control", "max-age=60");
+        HttpCache cache = new HttpCache(directory, 1500);
+        HttpClient client = new HttpClient().setCache(cache);
+
+        client.execute(new HttpRequest(server.url("/1")));
+        client.execute(new HttpRequest(server.url("/2")));
+        client.execute(new HttpRequest(server.url("/1")));
+        client.execute(new HttpRequest(server.url("/3")));
+
+        assertTrue(cache.getSize() <= 1500);
+        assertEquals(3, server.getHits());
+        client.execute(new HttpRequest(server.url("/1")));
+        assertEquals(3, server.getHits());
+        client.execute(new HttpRequest(server.url("/2")));
+        assertEquals(4, server.getHits());
+    }
+
+    @Test
+    public void entry_is_served_only_to_the_same_variant() throws Exception {
+        server.setBody("fr".getBytes("UTF-8"), "text/plain")
+                .setHeaders("Cache-Control", "max-age=60", "Vary", "Accept-Language");
+        HttpCache cache = new HttpCache(directory, 1024 * 1024);
+        HttpClient client = new HttpClient().setCache(cache);
+
+        client.execute(new HttpRequest(server.url("/greeting")).addHeader("Accept-Language", "fr"));
+        assertTrue(client.execute(new HttpRequest(server.url("/greeting")).addHeader("Accept-Language", "fr")).isFromCache());
+        assertEquals(1, server.getHits());
+
+        HttpResponse english = client.execute(new HttpRequest(server.url("/greeting")).addHeader("Accept-Language", "en"));
+        assertFalse(english.isFromCache());
+        assertEquals(2, server.getHits());
+        assertFalse(client.execute(new HttpRequest(server.url("/greeting"))).isFromCache());
+        assertEquals(3, server.getHits());
+    }
+}
@@ -0,0 +1,122 @@
+package ca.teyssedre.restclient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HttpCallUnitTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private LoopbackServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LoopbackServer();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void executeAsync_delivers_response_on_callback_executor() throws Exception {
+        HttpClient client = new HttpClient().setCallbackExecutor(DIRECT);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<HttpResponse> result = new AtomicReference<>();
+
+        HttpCall call = client.executeAsync(new HttpRequest(server.url("/async")), new HttpCallback() {
+            @Override
+            public void onResponse(HttpRequest request, HttpResponse response) {
+                result.set(response);
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(HttpRequest request, Exception exception) {
+                latch.countDown();
+            }
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(200, result.get().getStatusCode());
+        assertEquals(result.get(), call.await());
+        assertTrue(call.isDone());
+    }
+
+    @Test
+    public void cancel_stops_in_flight_request_without_callback() throws Exception {
+        server.enqueueDelay(5000);
+        // one worker, the next call runs once the cancelled one has returned
+        HttpClient client = new HttpClient().setCallbackExecutor(DIRECT).setDispatcher(new HttpDispatcher(1, 1));
+        final AtomicInteger notified = new AtomicInteger();
+
+        HttpCall call = client.executeAsync(new HttpRequest(server.url("/slow")), new HttpCallback() {
+            @Override
+            public void onResponse(HttpRequest request, HttpResponse response) {
+                notified.incrementAndGet();
+            }
+
+            @Override
+            public void onFailure(HttpRequest request, Exception exception) {
+                notified.incrementAndGet();
+            }
+        });
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.getHits() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        long start = System.currentTimeMillis();
+        call.cancel();
+
+        assertTrue(call.isCancelled());
+        assertNull(call.await());
+        assertEquals(200, client.executeAsync(new HttpRequest(server.url("/next")), null).await().getStatusCode());
+        assertTrue(System.currentTimeMillis() - start < 4000);
+        assertEquals(0, notified.get());
+    }
+
+    @Test
+    public void runtime_exception_is_delivered_to_onFailure() throws Exception {
+        HttpClient client = new HttpClient().setCallbackExecutor(DIRECT).setEventListener(new HttpEventAdapter() {
+            @Override
+            public void callStart(HttpRequest request) {
+                throw new IllegalStateException("listener failure");
+            }
+        });
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+
+        client.executeAsync(new HttpRequest(server.url("/async")), new HttpCallback() {
+            @Override
+            public void onResponse(HttpRequest request, HttpResponse response) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(HttpRequest request, Exception exception) {
+                failure.set(exception);
+                latch.countDown();
+            }
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(failure.get() instanceof IllegalStateException);
+    }
+}
@@ -0,0 +1,89 @@
+package ca.teyssedre.restclient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HttpCircuitBreakerUnitTest {
+
+    private LoopbackServer server;
+    private HttpCircuitBreaker breaker;
+    private final List<String> transitions = Collections.synchronizedList(new ArrayList<String>());
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LoopbackServer();
+        breaker = new HttpCircuitBreaker().addListener(new HttpCircuitBreaker.Listener() {
+            @Override
+            public void onStateChange(String host, HttpCircuitBreaker.State from, HttpCircuitBreaker.State to) {
+                transitions.add(from + ">" + to);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void failures_open_then_trial_closes() throws Exception {
+        server.setStatus(503);
+        breaker.setWindow(4, 4).setOpenDuration(200, 1);
+        HttpClient client = new HttpClient().setCircuitBreaker(breaker);
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(503, client.execute(new HttpRequest(server.url("/down"))).getStatusCode());
+        }
+        assertEquals(HttpCircuitBreaker.State.OPEN, breaker.getState("127.0.0.1"));
+
+        HttpResponse rejected = client.execute(new HttpRequest(server.url("/down")));
+        assertTrue(rejected.getException() instanceof CircuitBreakerOpenException);
+        assertEquals(4, server.getHits());
+        assertEquals(1, breaker.getRejectedCount());
+
+        Thread.sleep(250);
+        server.setStatus(200);
+        HttpResponse trial = client.execute(new HttpRequest(server.url("/up")));
+        assertNull(trial.getException());
+        assertEquals(HttpCircuitBreaker.State.CLOSED, breaker.getState("127.0.0.1"));
+        assertEquals("[CLOSED>OPEN, OPEN>HALF_OPEN, HALF_OPEN>CLOSED]", transitions.toString());
+    }
+
+    @Test
+    public void failed_trial_opens_again() throws Exception {
+        server.setStatus(500);
+        breaker.setWindow(2, 2).setOpenDuration(100, 1);
+        HttpClient client = new HttpClient().setCircuitBreaker(breaker);
+
+        client.execute(new HttpRequest(server.url("/down")));
+        client.execute(new HttpRequest(server.url("/down")));
+        Thread.sleep(150);
+        client.execute(new HttpRequest(server.url("/down")));
+
+        assertEquals(3, server.getHits());
+        assertEquals(HttpCircuitBreaker.State.OPEN, breaker.getState("127.0.0.1"));
+        assertEquals("[CLOSED>OPEN, OPEN>HALF_OPEN, HALF_OPEN>OPEN]", transitions.toString());
+    }
+
+    @Test
+    public void slow_calls_open_and_client_errors_dont() throws Exception {
+        breaker.setWindow(2, 2).setSlowCallThreshold(0.5, 200);
+        HttpClient client = new HttpClient().setCircuitBreaker(breaker);
+
+        server.setStatus(404);
+        client.execute(new HttpRequest(server.url("/missing")));
+        client.execute(new HttpRequest(server.url("/missing")));
+        assertEquals(HttpCircuitBreaker.State.CLOSED, breaker.getState("127.0.0.1"));
+
+        server.setStatus(200).setDelay(400);
+        client.execute(new HttpRequest(server.url("/slow")));
+        assertEquals(HttpCircuitBreaker.State.OPEN, breaker.getState("127.0.0.1"));
+    }
+}
@@ -47,4 +47,21 @@ public class HttpClientUnitTest {
         Assert.assertEquals(200, get.getResponse().getStatusCode());
     }
 
+    @Test
+    @SuppressWarnings("deprecation")
+    public void deprecated_helpers_send_the_request_once() throws Exception {
+        LoopbackServer server = new LoopbackServer();
+        try {
+            server.setBody("{\"name\":\"value\"}".getBytes("UTF-8"), "application/json");
+            assertEquals("value", new HttpClient(server.url("/json")).getJson().getString("name"));
+            assertEquals(1, server.getHits());
+
+            server.setBody("line\nnext".getBytes("UTF-8"), "text/plain");
+            assertEquals("line\rnext\r", new HttpClient(server.url("/text")).getString());
+            assertEquals(2, server.getHits());
+        } finally {
+            server.stop();
+        }
+    }
+
 }
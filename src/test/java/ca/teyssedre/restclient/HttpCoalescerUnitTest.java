@@ -0,0 +1,108 @@
+package ca.teyssedre.restclient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class HttpCoalescerUnitTest {
+
+    private LoopbackServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LoopbackServer().setDelay(300);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void identical_requests_in_flight_share_one_exchange() throws Exception {
+        HttpCoalescer coalescer = new HttpCoalescer();
+        HttpClient client = new HttpClient().setCoalescer(coalescer).setDispatcher(new HttpDispatcher(10, 10));
+        HttpCall[] calls = new HttpCall[5];
+        Executor callbacks = Executors.newSingleThreadExecutor();
+        client.setCallbackExecutor(callbacks);
+        for (int i = 0; i < calls.length; i++) {
+            calls[i] = client.executeAsync(new HttpRequest(server.url("/start")), null);
+        }
+        HttpResponse[] responses = new HttpResponse[calls.length];
+        for (int i = 0; i < calls.length; i++) {
+            responses[i] = calls[i].await();
+            assertEquals(200, responses[i].getStatusCode());
+        }
+
+        assertEquals(1, server.getHits());
+        assertEquals(1, coalescer.getFlightCount());
+        assertEquals(4, coalescer.getCoalescedCount());
+        Set<HttpResponse> instances = Collections.newSetFromMap(new IdentityHashMap<HttpResponse, Boolean>());
+        instances.addAll(Arrays.asList(responses));
+        assertEquals(2, instances.size());
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    @Test
+    public void cancelled_leader_does_not_fail_the_waiting_requests() throws Exception {
+        server.enqueueDelay(5000);
+        HttpCoalescer coalescer = new HttpCoalescer();
+        HttpClient client = new HttpClient().setCoalescer(coalescer).setDispatcher(new HttpDispatcher(10, 10));
+        HttpCall leader = client.executeAsync(new HttpRequest(server.url("/start")), null);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.getHits() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        HttpCall follower = client.executeAsync(new HttpRequest(server.url("/start")), null);
+        // leaves the follower the time to join the request in flight
+        Thread.sleep(100);
+        leader.cancel();
+
+        HttpResponse response = follower.await();
+        assertNull(response.getException());
+        assertEquals(200, response.getStatusCode());
+        assertEquals(2, server.getHits());
+        assertEquals(2, coalescer.getFlightCount());
+        assertEquals(0, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void post_requests_are_not_coalesced() throws Exception {
+        server.setDelay(0);
+        HttpCoalescer coalescer = new HttpCoalescer();
+        HttpClient client = new HttpClient().setCoalescer(coalescer);
+
+        client.execute(new HttpRequest(server.url("/post")).addData("a=1"));
+        client.execute(new HttpRequest(server.url("/post")).addData("a=1"));
+
+        assertEquals(2, server.getHits());
+        assertEquals(0, coalescer.getFlightCount());
+    }
+
+    @Test
+    public void default_key_separates_sessions() throws Exception {
+        HttpRequest alice = new HttpRequest("http://example.com/me").addHeader("Cookie", "session=a")
+                .addHeader("Accept", "application/json");
+        HttpRequest bob = new HttpRequest("http://example.com/me").addHeader("Cookie", "session=b")
+                .addHeader("Accept", "application/json");
+        HttpRequest again = new HttpRequest("http://example.com/me").addHeader("Accept", "application/json")
+                .addHeader("Cookie", "session=a");
+
+        HttpRequestKey all = UrlRequestKey.allHeaders();
+        assertFalse(all.key(alice).equals(all.key(bob)));
+        assertEquals(all.key(alice), all.key(again));
+        HttpRequestKey selected = new UrlRequestKey("Accept");
+        assertEquals(selected.key(alice), selected.key(bob));
+    }
+}
@@ -0,0 +1,69 @@
+package ca.teyssedre.restclient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class HttpDispatcherUnitTest {
+
+    private LoopbackServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LoopbackServer().setDelay(300);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void dispatch_runs_queued_requests_in_parallel() throws Exception {
+        HttpRequest[] array = new HttpRequest[10];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = new HttpRequest(server.url("/item/" + i));
+        }
+        HttpClient client = new HttpClient(array).setDispatcher(new HttpDispatcher(10, 10));
+
+        long start = System.currentTimeMillis();
+        Map<UUID, Future<HttpResponse>> futures = client.dispatch();
+        assertEquals(10, futures.size());
+        for (HttpRequest request : array) {
+            HttpResponse response = futures.get(request.getId()).get();
+            assertNotNull(response);
+            assertEquals(200, response.getStatusCode());
+            assertEquals(response, client.getFuture(request.getId()).get());
+        }
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue("elapsed " + elapsed, elapsed < 10 * 300);
+        assertTrue(client.dispatch().isEmpty());
+    }
+
+    @Test
+    public void dispatch_honors_per_host_limit() throws Exception {
+        HttpRequest[] array = new HttpRequest[6];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = new HttpRequest(server.url("/item/" + i));
+        }
+        HttpClient client = new HttpClient(array).setDispatcher(new HttpDispatcher(10, 2));
+
+        client.execute();
+
+        for (HttpRequest request : array) {
+            assertTrue(request.hasBeenProcessed());
+            assertEquals(200, client.getResponse(request.getId()).getStatusCode());
+        }
+        assertEquals(6, server.getHits());
+        assertTrue(server.getMaxActive() <= 2);
+    }
+}
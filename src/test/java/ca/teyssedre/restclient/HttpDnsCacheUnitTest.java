@@ -0,0 +1,111 @@
+package ca.teyssedre.restclient;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class HttpDnsCacheUnitTest {
+
+    /**
+     * Resolver answering 127.0.0.1 for every host, failing once {@link #down} is set.
+     */
+    private static class FakeResolver implements HttpResolver {
+        final AtomicInteger lookups = new AtomicInteger();
+        volatile boolean down;
+
+        @Override
+        public InetAddress[] resolve(String host) throws UnknownHostException {
+            lookups.incrementAndGet();
+            if (down) {
+                throw new UnknownHostException(host);
+            }
+            return new InetAddress[]{InetAddress.getByAddress(host, new byte[]{127, 0, 0, 1})};
+        }
+    }
+
+    @Test
+    public void addresses_cached_until_expiry() throws Exception {
+        FakeResolver fake = new FakeResolver();
+        HttpDnsCache cache = new HttpDnsCache(fake).setTtl(100).setPrefetch(0, 0);
+
+        cache.resolve("api.example.com");
+        cache.resolve("API.example.com");
+        assertEquals(1, fake.lookups.get());
+        Thread.sleep(150);
+        cache.resolve("api.example.com");
+
+        assertEquals(2, fake.lookups.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1.0 / 3, cache.getHitRate(), 0.001);
+        assertEquals(2, cache.getLookupCount());
+    }
+
+    @Test
+    public void stale_addresses_served_when_lookup_fails() throws Exception {
+        FakeResolver fake = new FakeResolver();
+        HttpDnsCache cache = new HttpDnsCache(fake).setTtl(50).setStaleTtl(10000).setPrefetch(0, 0);
+
+        InetAddress[] addresses = cache.resolve("api.example.com");
+        fake.down = true;
+        Thread.sleep(80);
+
+        assertArrayEquals(addresses, cache.resolve("api.example.com"));
+        assertEquals(1, cache.getStaleCount());
+        assertEquals(1, cache.getFailureCount());
+        try {
+            cache.resolve("other.example.com");
+            fail("unknown host resolved");
+        } catch (UnknownHostException expected) {
+            assertEquals(2, cache.getFailureCount());
+        }
+    }
+
+    @Test
+    public void hot_host_refreshed_before_expiry() throws Exception {
+        FakeResolver fake = new FakeResolver();
+        HttpDnsCache cache = new HttpDnsCache(fake).setTtl(1000).setPrefetch(0.5, 1);
+        try {
+            cache.resolve("api.example.com");
+            Thread.sleep(550);
+            cache.resolve("api.example.com");
+            long deadline = System.currentTimeMillis() + 2000;
+            while (cache.getPrefetchCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            Thread.sleep(100);
+            cache.resolve("api.example.com");
+
+            assertEquals(1, cache.getPrefetchCount());
+            assertEquals(2, fake.lookups.get());
+            assertEquals(1, cache.getMissCount());
+            assertEquals(2, cache.getHitCount());
+        } finally {
+            cache.shutdown();
+        }
+    }
+
+    @Test
+    public void nio_transport_connects_to_resolved_address() throws Exception {
+        LoopbackServer server = new LoopbackServer();
+        NioTransport transport = new NioTransport();
+        try {
+            HttpDnsCache cache = new HttpDnsCache(new FakeResolver());
+            HttpClient client = new HttpClient().setTransport(transport).setResolver(cache);
+            for (int i = 0; i < 2; i++) {
+                HttpResponse response = client.execute(
+                        new HttpRequest("http://loopback.test:" + server.getPort() + "/resolved"));
+                assertNull(response.getException());
+                assertEquals("ok", response.getStringResponse());
+            }
+            assertEquals(1, cache.getMissCount());
+        } finally {
+            transport.shutdown();
+            server.stop();
+        }
+    }
+}
@@ -28,4 +28,25 @@ public class HttpFormUnitTest {
         form.add("param1", "param1 and 2").add("param2", "param2@de");
         assertEquals("param1=param1+and+2&param2=param2%40de", form.serialize());
     }
+
+    @Test
+    public void httpForm_streamed_as_body() throws Exception {
+        LoopbackServer server = new LoopbackServer();
+        try {
+            HttpForm form = new HttpForm().add("name", "\u00e9t\u00e9 2016").add("tags", "a&b=c");
+            HttpRequest request = new HttpRequest(server.url("/form")).addFormData(form);
+            HttpResponse response = new HttpClient().execute(request);
+
+            String expected = "name=%C3%A9t%C3%A9+2016&tags=a%26b%3Dc";
+            assertNull(response.getException());
+            assertEquals(expected, form.serialize());
+            assertEquals(expected.length(), form.contentLength());
+            assertEquals("POST", server.getLastRequestMethod());
+            assertEquals("application/x-www-form-urlencoded", server.getLastRequestHeader("Content-Type"));
+            assertEquals(String.valueOf(expected.length()), server.getLastRequestHeader("Content-Length"));
+            assertEquals(expected, new String(server.getLastRequestBody(), "US-ASCII"));
+        } finally {
+            server.stop();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,97 @@
+package ca.teyssedre.restclient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HttpHedgingPolicyUnitTest {
+
+    private LoopbackServer server;
+    private HttpHedgingPolicy policy;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LoopbackServer();
+        policy = new HttpHedgingPolicy();
+    }
+
+    @After
+    public void tearDown() {
+        policy.shutdown();
+        server.stop();
+    }
+
+    @Test
+    public void slow_request_overtaken_by_hedge() throws Exception {
+        server.enqueueDelay(3000);
+        HttpClient client = new HttpClient().setHedgingPolicy(policy.setDelay(50));
+
+        long start = System.currentTimeMillis();
+        HttpResponse response = client.execute(new HttpRequest(server.url("/slow")));
+
+        assertNull(response.getException());
+        assertEquals(200, response.getStatusCode());
+        assertEquals("ok", response.getStringResponse());
+        assertTrue(System.currentTimeMillis() - start < 2000);
+        assertEquals(2, server.getHits());
+        assertEquals(1, policy.getHedgeCount());
+        assertEquals(1, policy.getHedgeWinCount());
+    }
+
+    @Test
+    public void timings_are_the_ones_of_the_winner() throws Exception {
+        server.enqueueDelay(3000);
+        HttpClient client = new HttpClient().setHedgingPolicy(policy.setDelay(50))
+                .setEventListener(new HttpEventAdapter() {
+                });
+
+        HttpRequest request = new HttpRequest(server.url("/slow"));
+        client.execute(request);
+
+        HttpTimings timings = request.getTimings();
+        assertEquals(1, policy.getHedgeWinCount());
+        assertTrue(timings.getWaitTime() >= 0 && timings.getWaitTime() < 2000 * 1000);
+        assertTrue(timings.getResponseTime() >= 0);
+        assertTrue(timings.getTotalTime() >= 50 * 1000);
+    }
+
+    @Test
+    public void fast_request_and_post_not_hedged() throws Exception {
+        HttpClient client = new HttpClient().setHedgingPolicy(policy.setDelay(500));
+
+        assertEquals(200, client.execute(new HttpRequest(server.url("/fast"))).getStatusCode());
+        server.setDelay(100);
+        assertEquals(200, client.execute(new HttpRequest(server.url("/post")).addData("a=1")).getStatusCode());
+        Thread.sleep(600);
+
+        assertEquals(2, server.getHits());
+        assertEquals(0, policy.getHedgeCount());
+    }
+
+    @Test
+    public void budget_caps_hedges() throws Exception {
+        server.enqueueDelay(300);
+        HttpClient client = new HttpClient().setHedgingPolicy(policy.setDelay(20).setBudget(0, 0));
+
+        long start = System.currentTimeMillis();
+        HttpResponse response = client.execute(new HttpRequest(server.url("/slow")));
+
+        assertEquals(200, response.getStatusCode());
+        assertTrue(System.currentTimeMillis() - start >= 300);
+        assertEquals(1, server.getHits());
+        assertEquals(1, policy.getBudgetExhaustedCount());
+    }
+
+    @Test
+    public void delay_follows_host_percentile() throws Exception {
+        HttpClient client = new HttpClient().setHedgingPolicy(policy.setDelay(1000).setPercentileDelay(0.95, 50));
+        assertEquals(1000, policy.getHedgeDelay("127.0.0.1"));
+        for (int i = 0; i < 25; i++) {
+            client.execute(new HttpRequest(server.url("/fast")));
+        }
+        assertTrue(policy.getHedgeDelay("127.0.0.1") < 1000);
+        assertEquals(0, policy.getHedgeCount());
+    }
+}
@@ -0,0 +1,96 @@
+package ca.teyssedre.restclient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HttpMemoryCacheUnitTest {
+
+    private LoopbackServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LoopbackServer();
+        server.setBody("{\"config\":true}".getBytes("UTF-8"), "application/json");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void hits_share_one_immutable_response() throws Exception {
+        HttpMemoryCache cache = new HttpMemoryCache(64 * 1024);
+        HttpClient client = new HttpClient().setMemoryCache(cache);
+
+        HttpResponse first = client.execute(new HttpRequest(server.url("/config?b=2&a=1")));
+        HttpResponse second = client.execute(new HttpRequest(server.url("/config?a=1&b=2")));
+        HttpResponse third = client.execute(new HttpRequest(server.url("/config?a=1&b=2#top")));
+
+        assertFalse(first.isImmutable());
+        assertTrue(second.isImmutable());
+        assertTrue(second.isFromCache());
+        assertSame(second, third);
+        assertEquals("{\"config\":true}", third.getStringResponse());
+        assertEquals(1, server.getHits());
+        assertEquals(2, cache.getHitCount());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shared_response_can_not_be_modified() throws Exception {
+        HttpClient client = new HttpClient().setMemoryCache(new HttpMemoryCache(64 * 1024));
+        client.execute(new HttpRequest(server.url("/config")));
+        HttpResponse shared = client.execute(new HttpRequest(server.url("/config")));
+
+        shared.setStatusCode(500);
+    }
+
+    @Test
+    public void entries_expire_after_ttl_and_differ_by_selected_headers() throws Exception {
+        HttpMemoryCache cache = new HttpMemoryCache(64 * 1024).setDefaultTtl(100);
+        HttpClient client = new HttpClient().setMemoryCache(cache);
+
+        client.execute(new HttpRequest(server.url("/config")).addHeader("Accept", "application/json"));
+        client.execute(new HttpRequest(server.url("/config")).addHeader("Accept", "text/xml"));
+        assertEquals(2, server.getHits());
+
+        Thread.sleep(150);
+        client.execute(new HttpRequest(server.url("/config")).addHeader("Accept", "application/json"));
+        assertEquals(3, server.getHits());
+    }
+
+    @Test
+    public void byte_weighted_eviction_keeps_size_bounded() throws Exception {
+        server.setBody(new byte[300], "application/octet-stream");
+        HttpMemoryCache cache = new HttpMemoryCache(1000).setMaxEntrySize(1000);
+        HttpClient client = new HttpClient().setMemoryCache(cache);
+
+        for (int i = 0; i < 5; i++) {
+            client.execute(new HttpRequest(server.url("/blob/" + i)));
+        }
+
+        assertTrue(cache.getSize() <= 1000);
+        assertTrue(cache.getEvictionCount() >= 3);
+    }
+
+    @Test
+    public void responses_varying_on_other_headers_are_not_kept() throws Exception {
+        HttpClient client = new HttpClient().setMemoryCache(new HttpMemoryCache(64 * 1024));
+
+        server.setHeaders("Vary", "Accept-Language");
+        client.execute(new HttpRequest(server.url("/greeting")));
+        client.execute(new HttpRequest(server.url("/greeting")));
+        assertEquals(2, server.getHits());
+
+        server.setHeaders("Vary", "Accept-Encoding");
+        client.execute(new HttpRequest(server.url("/config")));
+        assertTrue(client.execute(new HttpRequest(server.url("/config"))).isFromCache());
+        assertEquals(3, server.getHits());
+    }
+}
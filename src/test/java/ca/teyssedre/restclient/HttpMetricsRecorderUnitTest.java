@@ -0,0 +1,160 @@
+package ca.teyssedre.restclient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+
+import static org.junit.Assert.*;
+
+public class HttpMetricsRecorderUnitTest {
+
+    private LoopbackServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LoopbackServer();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void phases_are_reported_in_order() throws Exception {
+        server.setBody("phases".getBytes("UTF-8"), "text/plain");
+        final List<String> events = new ArrayList<>();
+        HttpClient client = new HttpClient().setEventListener(new HttpEventAdapter() {
+            @Override
+            public void callStart(HttpRequest request) {
+                events.add("callStart");
+            }
+
+            @Override
+            public void dnsEnd(HttpRequest request, String host, InetAddress[] addresses) {
+                events.add("dnsEnd");
+            }
+
+            @Override
+            public void connectStart(HttpRequest request, String host, int port) {
+                events.add("connectStart");
+            }
+
+            @Override
+            public void connectEnd(HttpRequest request) {
+                events.add("connectEnd");
+            }
+
+            @Override
+            public void requestEnd(HttpRequest request, long bodyBytes) {
+                events.add("requestEnd");
+            }
+
+            @Override
+            public void responseHeadersEnd(HttpRequest request, int statusCode) {
+                events.add("responseHeadersEnd " + statusCode);
+            }
+
+            @Override
+            public void responseBodyEnd(HttpRequest request, long bytes) {
+                events.add("responseBodyEnd " + bytes);
+            }
+
+            @Override
+            public void callEnd(HttpRequest request, HttpResponse response) {
+                events.add("callEnd");
+            }
+        });
+
+        HttpRequest request = new HttpRequest(server.url("/phases"));
+        assertEquals("phases", client.execute(request).getStringResponse());
+
+        assertEquals(Arrays.asList("callStart", "dnsEnd", "connectStart", "connectEnd", "requestEnd",
+                "responseHeadersEnd 200", "responseBodyEnd 6", "callEnd"), events);
+        HttpTimings timings = request.getTimings();
+        assertTrue(timings.getTotalTime() >= timings.getWaitTime());
+        assertTrue(timings.getWaitTime() >= 0);
+        assertEquals(6, timings.getBytesReceived());
+    }
+
+    @Test
+    public void certificate_of_another_host_is_rejected_with_listener() throws Exception {
+        SSLContext tls = LoopbackServer.tlsContext("/wrong-host.jks");
+        LoopbackServer https = new LoopbackServer(tls);
+        try {
+            final List<String> events = new ArrayList<>();
+            HttpClient client = new HttpClient().setSSLFactory(tls.getSocketFactory())
+                    .setEventListener(new HttpEventAdapter() {
+                        @Override
+                        public void secureConnectStart(HttpRequest request) {
+                            events.add("secureConnectStart");
+                        }
+
+                        @Override
+                        public void secureConnectEnd(HttpRequest request, SSLSession session) {
+                            events.add("secureConnectEnd");
+                        }
+                    });
+
+            HttpResponse response = client.execute(new HttpRequest(https.url("/secure")));
+
+            // the certificate is trusted but issued for "wrong.example.com", not 127.0.0.1
+            assertTrue(response.getException() instanceof IOException);
+            assertEquals(0, https.getHits());
+            assertEquals(Arrays.asList("secureConnectStart"), events);
+        } finally {
+            https.stop();
+        }
+    }
+
+    @Test
+    public void recorder_keeps_per_host_figures() throws Exception {
+        server.setBody(new byte[1000], "application/octet-stream").setDelay(5);
+        HttpMetricsRecorder recorder = new HttpMetricsRecorder();
+        NioTransport transport = new NioTransport();
+        try {
+            HttpClient client = new HttpClient().setTransport(transport).setEventListener(recorder);
+            for (int i = 0; i < 4; i++) {
+                client.execute(new HttpRequest(server.url("/get/" + i)));
+            }
+            byte[] payload = new byte[300];
+            client.execute(new HttpRequest(server.url("/post"))
+                    .addBody(HttpBody.create(new ByteArrayInputStream(payload), payload.length)));
+        } finally {
+            transport.shutdown();
+        }
+
+        HttpMetricsRecorder.HostMetrics metrics = recorder.snapshot().get("127.0.0.1");
+        assertEquals(5, metrics.getCallCount());
+        assertEquals(0, metrics.getFailureCount());
+        assertEquals(300, metrics.getBytesSent());
+        assertEquals(5000, metrics.getBytesReceived());
+        assertTrue(metrics.getP50() >= 4000);
+        assertTrue(metrics.getP99() >= metrics.getP50());
+        assertTrue(metrics.getWaitP50() >= 4000);
+    }
+
+    @Test
+    public void histogram_percentiles_stay_within_bucket_error() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10000, histogram.getMax());
+        assertEquals(5000, histogram.percentile(0.50), 5000 * 0.07);
+        assertEquals(9900, histogram.percentile(0.99), 9900 * 0.07);
+        assertEquals(5000.5, histogram.getMean(), 0.001);
+    }
+}
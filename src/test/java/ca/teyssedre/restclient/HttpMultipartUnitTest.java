@@ -0,0 +1,71 @@
+package ca.teyssedre.restclient;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+
+import static org.junit.Assert.*;
+
+public class HttpMultipartUnitTest {
+
+    @Test
+    public void multipart_encodes_parts() throws Exception {
+        HttpMultipart multipart = new HttpMultipart("XyZ")
+                .addField("title", "Holidays")
+                .addStream("my \"file\"", "a.txt", new ByteArrayInputStream("hello".getBytes("UTF-8")), 5, "text/plain");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        multipart.writeTo(out);
+        String expected = "--XyZ\r\n"
+                + "Content-Disposition: form-data; name=\"title\"\r\n\r\n"
+                + "Holidays\r\n"
+                + "--XyZ\r\n"
+                + "Content-Disposition: form-data; name=\"my %22file%22\"; filename=\"a.txt\"\r\n"
+                + "Content-Type: text/plain\r\n\r\n"
+                + "hello\r\n"
+                + "--XyZ--\r\n";
+        assertEquals(expected, out.toString("UTF-8"));
+        assertEquals(expected.length(), multipart.contentLength());
+        assertEquals("multipart/form-data; boundary=XyZ", multipart.contentTypeValue());
+        assertFalse(multipart.isRepeatable());
+    }
+
+    @Test
+    public void multipart_streams_file_with_length() throws Exception {
+        LoopbackServer server = new LoopbackServer();
+        try {
+            byte[] payload = new byte[128 * 1024];
+            for (int i = 0; i < payload.length; i++) {
+                payload[i] = (byte) (i % 253);
+            }
+            File file = File.createTempFile("upload", ".bin");
+            file.deleteOnExit();
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(payload);
+            out.close();
+
+            HttpMultipart multipart = new HttpMultipart().addField("id", "42").addFile("data", file, null);
+            HttpRequest request = new HttpRequest(server.url("/upload")).addBody(multipart);
+            HttpResponse response = new HttpClient().execute(request);
+
+            assertNull(response.getException());
+            assertEquals("multipart/form-data; boundary=" + multipart.getBoundary(),
+                    server.getLastRequestHeader("Content-Type"));
+            assertEquals(String.valueOf(multipart.contentLength()), server.getLastRequestHeader("Content-Length"));
+            byte[] received = server.getLastRequestBody();
+            assertEquals(multipart.contentLength(), received.length);
+            String text = new String(received, "ISO-8859-1");
+            assertTrue(text.contains("filename=\"" + file.getName() + "\"\r\nContent-Type: application/octet-stream\r\n\r\n"));
+            int start = text.indexOf("\r\n\r\n", text.indexOf("name=\"data\"")) + 4;
+            for (int i = 0; i < payload.length; i++) {
+                assertEquals(payload[i], received[start + i]);
+            }
+            assertTrue(text.endsWith("--" + multipart.getBoundary() + "--\r\n"));
+        } finally {
+            server.stop();
+        }
+    }
+}
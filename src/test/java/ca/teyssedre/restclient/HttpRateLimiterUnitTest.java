@@ -0,0 +1,85 @@
+package ca.teyssedre.restclient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HttpRateLimiterUnitTest {
+
+    private LoopbackServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LoopbackServer();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void fail_fast_when_burst_spent() throws Exception {
+        HttpRateLimiter limiter = new HttpRateLimiter().limitHost("127.0.0.1", 1, 2)
+                .setMode(HttpRateLimiter.Mode.FAIL_FAST, 0);
+        HttpClient client = new HttpClient().setRateLimiter(limiter);
+
+        assertNull(client.execute(new HttpRequest(server.url("/a"))).getException());
+        assertNull(client.execute(new HttpRequest(server.url("/b"))).getException());
+        Exception refused = client.execute(new HttpRequest(server.url("/c"))).getException();
+
+        assertTrue(refused instanceof RateLimitExceededException);
+        assertEquals("127.0.0.1", ((RateLimitExceededException) refused).getLimit());
+        assertEquals(2, server.getHits());
+        assertEquals(1, limiter.getRejectedCount());
+    }
+
+    @Test
+    public void block_paces_route() throws Exception {
+        // at 2 per second, no loopback exchange is slow enough for the token to refill
+        HttpRateLimiter limiter = new HttpRateLimiter().limitRoute(".*/paced/.*", 2, 1);
+        HttpClient client = new HttpClient().setRateLimiter(limiter);
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) {
+            assertNull(client.execute(new HttpRequest(server.url("/paced/" + i))).getException());
+        }
+        client.execute(new HttpRequest(server.url("/other")));
+
+        assertTrue(System.currentTimeMillis() - start >= 900);
+        assertEquals(4, server.getHits());
+        assertEquals(2, limiter.getDelayedCount());
+    }
+
+    @Test
+    public void queue_deadline_refuses_late_token() throws Exception {
+        HttpRateLimiter limiter = new HttpRateLimiter().limitHost("*.0.0.1", 1, 1)
+                .setMode(HttpRateLimiter.Mode.QUEUE, 200);
+        HttpClient client = new HttpClient().setRateLimiter(limiter);
+
+        assertNull(client.execute(new HttpRequest(server.url("/a"))).getException());
+        long start = System.currentTimeMillis();
+        Exception refused = client.execute(new HttpRequest(server.url("/b"))).getException();
+
+        assertTrue(refused instanceof RateLimitExceededException);
+        assertTrue(System.currentTimeMillis() - start < 200);
+        assertEquals(1, server.getHits());
+    }
+
+    @Test
+    public void quota_headers_pause_bucket() throws Exception {
+        server.setHeaders("X-RateLimit-Remaining", "0", "X-RateLimit-Reset", "2");
+        HttpRateLimiter limiter = new HttpRateLimiter().limitHost("127.0.0.1", 100, 10)
+                .setMode(HttpRateLimiter.Mode.FAIL_FAST, 0);
+        HttpClient client = new HttpClient().setRateLimiter(limiter);
+
+        assertNull(client.execute(new HttpRequest(server.url("/a"))).getException());
+        Exception refused = client.execute(new HttpRequest(server.url("/b"))).getException();
+
+        assertTrue(refused instanceof RateLimitExceededException);
+        assertTrue(((RateLimitExceededException) refused).getRetryAfter() > 1000);
+        assertEquals(1, server.getHits());
+    }
+}
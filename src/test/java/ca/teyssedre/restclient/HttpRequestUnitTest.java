@@ -3,7 +3,18 @@ package ca.teyssedre.restclient;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class HttpRequestUnitTest {
 
@@ -18,4 +29,115 @@ public class HttpRequestUnitTest {
         HttpRequest request = new HttpRequest("htp://exampleom/datason");
         assertNotEquals(request, null);
     }
+
+    @Test
+    public void httpRequest_streams_file_body_with_fixed_length() throws Exception {
+        LoopbackServer server = new LoopbackServer();
+        try {
+            byte[] payload = new byte[256 * 1024];
+            for (int i = 0; i < payload.length; i++) {
+                payload[i] = (byte) (i % 251);
+            }
+            File file = File.createTempFile("upload", ".bin");
+            file.deleteOnExit();
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(payload);
+            out.close();
+
+            HttpRequest request = new HttpRequest(server.url("/upload")).addBody(HttpBody.create(file));
+            HttpResponse response = new HttpClient().execute(request);
+
+            assertNull(response.getException());
+            assertEquals("POST", server.getLastRequestMethod());
+            assertEquals(String.valueOf(payload.length), server.getLastRequestHeader("Content-Length"));
+            assertEquals("octet/stream", server.getLastRequestHeader("Content-Type"));
+            assertArrayEquals(payload, server.getLastRequestBody());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void httpRequest_streams_unknown_length_body_chunked() throws Exception {
+        LoopbackServer server = new LoopbackServer();
+        try {
+            HttpRequest request = new HttpRequest(server.url("/upload")).addBody(new HttpBody() {
+                @Override
+                public long contentLength() {
+                    return -1;
+                }
+
+                @Override
+                public void writeTo(OutputStream out) throws IOException {
+                    for (int i = 0; i < 3; i++) {
+                        out.write(("part" + i).getBytes("UTF-8"));
+                    }
+                }
+            });
+            HttpResponse response = new HttpClient().execute(request);
+
+            assertNull(response.getException());
+            assertEquals("chunked", server.getLastRequestHeader("Transfer-Encoding"));
+            assertEquals("part0part1part2", new String(server.getLastRequestBody(), "UTF-8"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void httpRequest_sends_binary_and_stream_bodies() throws Exception {
+        LoopbackServer server = new LoopbackServer();
+        try {
+            HttpRequest binary = new HttpRequest(server.url("/binary")).addBinary(new byte[]{1, 2, 3});
+            new HttpClient().execute(binary);
+            assertArrayEquals(new byte[]{1, 2, 3}, server.getLastRequestBody());
+
+            byte[] bytes = "streamed".getBytes("UTF-8");
+            HttpRequest stream = new HttpRequest(server.url("/stream"))
+                    .addBody(HttpBody.create(new ByteArrayInputStream(bytes), bytes.length));
+            new HttpClient().execute(stream);
+            assertArrayEquals(bytes, server.getLastRequestBody());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void httpRequest_compresses_bodies_above_the_threshold() throws Exception {
+        LoopbackServer server = new LoopbackServer();
+        try {
+            StringBuilder json = new StringBuilder("[");
+            for (int i = 0; i < 500; i++) {
+                json.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append(",\"name\":\"item\"}");
+            }
+            String large = json.append("]").toString();
+            HttpClient client = new HttpClient().setRequestCompression(1024);
+
+            client.execute(new HttpRequest(server.url("/large"), HttpRequestType.POST).addData(large));
+            assertEquals("gzip", server.getLastRequestHeader("Content-Encoding"));
+            byte[] compressed = server.getLastRequestBody();
+            assertTrue(compressed.length * 5 < large.length());
+            byte[] inflated = Streams.readFully(new GZIPInputStream(new ByteArrayInputStream(compressed)), -1);
+            assertEquals(large, new String(inflated, "UTF-8"));
+
+            client.execute(new HttpRequest(server.url("/small"), HttpRequestType.POST).addData("{\"id\":1}"));
+            assertNull(server.getLastRequestHeader("Content-Encoding"));
+
+            HttpRequest optOut = new HttpRequest(server.url("/opt-out"), HttpRequestType.POST).addData(large);
+            optOut.setCompressionThreshold(Long.MAX_VALUE);
+            client.execute(optOut);
+            assertNull(server.getLastRequestHeader("Content-Encoding"));
+            assertEquals(large, new String(server.getLastRequestBody(), "UTF-8"));
+
+            byte[] bytes = large.getBytes("UTF-8");
+            client.execute(new HttpRequest(server.url("/stream"), HttpRequestType.POST)
+                    .addBody(HttpBody.create(new ByteArrayInputStream(bytes), -1)));
+            assertNull(server.getLastRequestHeader("Content-Encoding"));
+            client.setRequestCompression(0).execute(new HttpRequest(server.url("/stream"), HttpRequestType.POST)
+                    .addBody(HttpBody.create(new ByteArrayInputStream(bytes), -1)));
+            assertEquals("gzip", server.getLastRequestHeader("Content-Encoding"));
+        } finally {
+            server.stop();
+        }
+    }
 }
@@ -0,0 +1,74 @@
+package ca.teyssedre.restclient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class HttpResponseUnitTest {
+
+    private LoopbackServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LoopbackServer();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void buffered_body_keeps_line_terminators() throws Exception {
+        server.setBody("line1\r\nline2\nline3".getBytes("UTF-8"), "text/plain; charset=utf-8");
+        HttpResponse response = new HttpClient().execute(new HttpRequest(server.url("/text")));
+
+        assertEquals("line1\r\nline2\nline3", response.getStringResponse());
+    }
+
+    @Test
+    public void buffered_body_keeps_binary_intact() throws Exception {
+        byte[] binary = new byte[256];
+        for (int i = 0; i < binary.length; i++) {
+            binary[i] = (byte) i;
+        }
+        server.setBody(binary, "application/octet-stream");
+        HttpResponse response = new HttpClient().execute(new HttpRequest(server.url("/binary")));
+
+        assertArrayEquals(binary, response.getBody());
+        ByteBuffer buffer = response.getBodyBuffer();
+        assertEquals(256, buffer.remaining());
+        assertEquals((byte) 255, buffer.get(255));
+    }
+
+    @Test
+    public void string_is_decoded_with_declared_charset() throws Exception {
+        server.setBody("été".getBytes("ISO-8859-1"), "text/plain; charset=ISO-8859-1");
+        HttpResponse response = new HttpClient().execute(new HttpRequest(server.url("/latin")));
+
+        assertEquals("ISO-8859-1", response.getCharset());
+        assertEquals("été", response.getStringResponse());
+    }
+
+    @Test
+    public void stream_mode_hands_the_connection_stream() throws Exception {
+        server.setBody("streamed".getBytes("UTF-8"), "text/plain");
+        HttpRequest request = new HttpRequest(server.url("/stream"));
+        request.setResponseMode(HttpResponseMode.STREAM);
+        HttpResponse response = new HttpClient().execute(request);
+
+        assertNull(response.getBody());
+        InputStream in = response.getBodyStream();
+        byte[] buffer = new byte[64];
+        int read = in.read(buffer);
+        in.close();
+        assertEquals("streamed", new String(buffer, 0, read, "UTF-8"));
+    }
+}
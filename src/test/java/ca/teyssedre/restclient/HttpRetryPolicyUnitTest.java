@@ -0,0 +1,78 @@
+package ca.teyssedre.restclient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HttpRetryPolicyUnitTest {
+
+    private LoopbackServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LoopbackServer();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void idempotent_request_retried_until_success() throws Exception {
+        server.enqueueStatus(503, 500);
+        HttpRetryPolicy policy = new HttpRetryPolicy().setBackoff(5, 50);
+        HttpClient client = new HttpClient().setRetryPolicy(policy);
+
+        HttpResponse response = client.execute(new HttpRequest(server.url("/flaky")));
+
+        assertNull(response.getException());
+        assertEquals(200, response.getStatusCode());
+        assertEquals(3, server.getHits());
+        assertEquals(2, policy.getRetryCount());
+    }
+
+    @Test
+    public void post_and_client_errors_not_retried() throws Exception {
+        HttpClient client = new HttpClient().setRetryPolicy(new HttpRetryPolicy().setBackoff(5, 50));
+
+        server.enqueueStatus(503);
+        HttpResponse post = client.execute(new HttpRequest(server.url("/post")).addData("{\"a\":1}"));
+        assertEquals(503, post.getStatusCode());
+        assertEquals(1, server.getHits());
+
+        server.enqueueStatus(404);
+        HttpResponse missing = client.execute(new HttpRequest(server.url("/missing")));
+        assertEquals(404, missing.getStatusCode());
+        assertEquals(2, server.getHits());
+    }
+
+    @Test
+    public void retry_after_honored() throws Exception {
+        server.enqueueStatus(429).setHeaders("Retry-After", "1");
+        HttpClient client = new HttpClient().setRetryPolicy(new HttpRetryPolicy().setBackoff(5, 5000));
+
+        long start = System.currentTimeMillis();
+        HttpResponse response = client.execute(new HttpRequest(server.url("/limited")));
+
+        assertEquals(200, response.getStatusCode());
+        assertTrue(System.currentTimeMillis() - start >= 1000);
+        assertEquals(2, server.getHits());
+    }
+
+    @Test
+    public void budget_bounds_retries() throws Exception {
+        server.setStatus(503);
+        HttpRetryPolicy policy = new HttpRetryPolicy().setBackoff(1, 5).setBudget(0, 1);
+        HttpClient client = new HttpClient().setRetryPolicy(policy);
+
+        client.execute(new HttpRequest(server.url("/down")));
+        assertEquals(2, server.getHits());
+        client.execute(new HttpRequest(server.url("/down")));
+        assertEquals(3, server.getHits());
+        assertEquals(1, policy.getRetryCount());
+        assertEquals(2, policy.getBudgetExhaustedCount());
+    }
+}
@@ -0,0 +1,63 @@
+package ca.teyssedre.restclient;
+
+import org.junit.Test;
+
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class HttpTlsConfigUnitTest {
+
+    @Test
+    public void session_cache_configured_on_context() throws Exception {
+        HttpTlsConfig config = new HttpTlsConfig();
+        SSLSessionContext sessions = config.getSslContext().getClientSessionContext();
+        assertEquals(HttpTlsConfig.DEFAULT_SESSION_CACHE_SIZE, sessions.getSessionCacheSize());
+        assertEquals(HttpTlsConfig.DEFAULT_SESSION_TIMEOUT, sessions.getSessionTimeout());
+
+        config.setSessionCacheSize(10).setSessionTimeout(60);
+        assertEquals(10, sessions.getSessionCacheSize());
+        assertEquals(60, sessions.getSessionTimeout());
+        assertSame(config.getSocketFactory(), config.getSocketFactory());
+        assertEquals(0, config.getSessionCount());
+    }
+
+    @Test
+    public void client_shares_socket_factory() throws Exception {
+        HttpTlsConfig config = new HttpTlsConfig();
+        HttpClient client = new HttpClient().setTlsConfig(config);
+        assertSame(config, client.getTlsConfig());
+        client.setTlsConfig(null);
+        assertNull(client.getTlsConfig());
+    }
+
+    @Test
+    public void requests_share_factory() throws Exception {
+        HttpRequest first = new HttpRequest("https://api.example.com/a", HttpRequestType.GET, HttpContentType.APPLICATION_JSON);
+        HttpRequest second = new HttpRequest("https://api.example.com/b", HttpRequestType.GET, HttpContentType.APPLICATION_JSON);
+        assertSame(first.getSslFactory(), second.getSslFactory());
+        assertSame(NoSSLValidation.shared(), first.getSslFactory());
+        assertNull(new HttpRequest("https://api.example.com/c").getSslFactory());
+    }
+
+    @Test
+    public void handshakes_counted_as_full_or_resumed() {
+        long start = System.currentTimeMillis();
+        SSLSession created = mock(SSLSession.class);
+        when(created.getCreationTime()).thenReturn(start + 5);
+        SSLSession cached = mock(SSLSession.class);
+        when(cached.getCreationTime()).thenReturn(start - 60000);
+        assertFalse(ConnectionStats.isResumed(created, start));
+        assertTrue(ConnectionStats.isResumed(cached, start));
+
+        ConnectionStats stats = new ConnectionStats();
+        stats.handshake(ConnectionStats.isResumed(created, start));
+        stats.handshake(ConnectionStats.isResumed(cached, start));
+        stats.handshake(true);
+        assertEquals(1, stats.getFullHandshakeCount());
+        assertEquals(2, stats.getResumedHandshakeCount());
+    }
+}
@@ -0,0 +1,156 @@
+package ca.teyssedre.restclient;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JsonStreamReaderUnitTest {
+
+    @Test
+    public void tokens_are_pulled_in_order() throws Exception {
+        JsonStreamReader reader = reader("{\"id\": 42, \"name\": \"caf\\u00e9 \\\"bar\\\"\", \"tags\": [true, null, -1.5e2], \"empty\": {}}");
+        reader.beginObject();
+        assertEquals("id", reader.nextName());
+        assertEquals(42, reader.nextInt());
+        assertEquals("name", reader.nextName());
+        assertEquals("café \"bar\"", reader.nextString());
+        assertEquals("tags", reader.nextName());
+        reader.beginArray();
+        assertTrue(reader.nextBoolean());
+        assertEquals(JsonStreamReader.Token.NULL, reader.peek());
+        reader.nextNull();
+        assertEquals(-150.0, reader.nextDouble(), 0);
+        assertFalse(reader.hasNext());
+        reader.endArray();
+        assertEquals("empty", reader.nextName());
+        reader.skipValue();
+        reader.endObject();
+        assertEquals(JsonStreamReader.Token.END_DOCUMENT, reader.peek());
+    }
+
+    @Test
+    public void next_value_builds_the_tree() throws Exception {
+        JSONObject object = (JSONObject) reader("{\"a\": [1, 2.5, \"x\"], \"b\": {\"c\": false}, \"big\": 12345678901}").nextValue();
+
+        JSONArray array = object.getJSONArray("a");
+        assertEquals(1L, array.get(0));
+        assertEquals(2.5, array.getDouble(1), 0);
+        assertEquals("x", array.getString(2));
+        assertFalse(object.getJSONObject("b").getBoolean("c"));
+        assertEquals(12345678901L, object.getLong("big"));
+    }
+
+    @Test
+    public void array_elements_are_read_lazily() throws Exception {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 2000; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"index\":").append(i).append(",\"skip\":[1,{\"x\":\"y\"}]}");
+        }
+        json.append("]");
+        CountingInputStream in = new CountingInputStream(new ByteArrayInputStream(json.toString().getBytes("UTF-8")));
+        JsonStreamReader reader = new JsonStreamReader(in, Charset.forName("UTF-8"));
+        Iterator<Integer> elements = reader.elements(new JsonStreamReader.ElementReader<Integer>() {
+            @Override
+            public Integer read(JsonStreamReader reader) throws IOException {
+                int index = -1;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if ("index".equals(reader.nextName())) {
+                        index = reader.nextInt();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                return index;
+            }
+        });
+
+        assertEquals(0, (int) elements.next());
+        assertTrue(in.count < json.length() / 2);
+        int expected = 1;
+        while (elements.hasNext()) {
+            assertEquals(expected++, (int) elements.next());
+        }
+        assertEquals(2000, expected);
+        assertEquals(JsonStreamReader.Token.END_DOCUMENT, reader.peek());
+    }
+
+    @Test
+    public void malformed_documents_are_rejected() throws Exception {
+        String[] documents = {"", "[1,]", "{\"a\" 1}", "[01]", "[tru]", "\"open", "{} {}", "[1 2]", "{a:1}"};
+        for (String document : documents) {
+            try {
+                JsonStreamReader reader = reader(document);
+                reader.nextValue();
+                reader.peek();
+                throw new AssertionError("Accepted " + document);
+            } catch (IOException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void response_body_is_parsed_from_the_stream() throws Exception {
+        LoopbackServer server = new LoopbackServer();
+        try {
+            server.setBody("[{\"id\":1},{\"id\":2}]".getBytes("UTF-8"), "application/json");
+            HttpRequest request = new HttpRequest(server.url("/items"));
+            request.setResponseMode(HttpResponseMode.STREAM);
+            JsonStreamReader reader = new HttpClient().execute(request).getJsonReader();
+            Iterator<Object> elements = reader.elements();
+            int sum = 0;
+            while (elements.hasNext()) {
+                sum += ((JSONObject) elements.next()).getInt("id");
+            }
+            reader.close();
+
+            assertEquals(3, sum);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static JsonStreamReader reader(String json) {
+        return new JsonStreamReader(new StringReader(json));
+    }
+
+    private static class CountingInputStream extends InputStream {
+
+        private final InputStream in;
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = in.read();
+            if (read != -1) {
+                count++;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = in.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package ca.teyssedre.restclient;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.KeyStore;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+/**
+ * Small HTTP server bound to the loopback interface, used by the unit tests to execute real
+ * requests without depending on the network.
+ */
+public class LoopbackServer {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private volatile long delay;
+    private volatile int status = 200;
+    private final ConcurrentLinkedQueue<Integer> nextStatuses = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Long> nextDelays = new ConcurrentLinkedQueue<>();
+    private volatile byte[] body = "ok".getBytes();
+    private volatile String contentType = "text/plain; charset=utf-8";
+    private volatile String[] headers = new String[0];
+    private volatile byte[] lastRequestBody;
+    private volatile String lastRequestMethod;
+    private volatile com.sun.net.httpserver.Headers lastRequestHeaders;
+
+    public LoopbackServer() throws IOException {
+        this(null);
+    }
+
+    /**
+     * @param tls {@link SSLContext} of the server, null to serve plain HTTP.
+     */
+    public LoopbackServer(SSLContext tls) throws IOException {
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0);
+        if (tls != null) {
+            HttpsServer https = HttpsServer.create(address, 0);
+            https.setHttpsConfigurator(new HttpsConfigurator(tls));
+            server = https;
+        } else {
+            server = HttpServer.create(address, 0);
+        }
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleExchange(exchange);
+            }
+        });
+        server.start();
+    }
+
+    private void handleExchange(HttpExchange exchange) throws IOException {
+        int current = active.incrementAndGet();
+        boolean counted = true;
+        hits.incrementAndGet();
+        while (true) {
+            int max = maxActive.get();
+            if (current <= max || maxActive.compareAndSet(max, current)) {
+                break;
+            }
+        }
+        try {
+            lastRequestMethod = exchange.getRequestMethod();
+            lastRequestHeaders = exchange.getRequestHeaders();
+            lastRequestBody = readAll(exchange.getRequestBody());
+            Long nextDelay = nextDelays.poll();
+            long delay = nextDelay != null ? nextDelay : this.delay;
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            String[] extra = headers;
+            for (int i = 0; i + 1 < extra.length; i += 2) {
+                exchange.getResponseHeaders().add(extra[i], extra[i + 1]);
+            }
+            Integer next = nextStatuses.poll();
+            int status = next != null ? next : this.status;
+            byte[] payload = body;
+            boolean empty = status == 304 || status == 204 || "HEAD".equals(lastRequestMethod);
+            // no longer active once the client could see the response and send the next request
+            active.decrementAndGet();
+            counted = false;
+            exchange.sendResponseHeaders(status, empty ? -1 : payload.length);
+            if (!empty) {
+                OutputStream os = exchange.getResponseBody();
+                os.write(payload);
+                os.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+            if (counted) {
+                active.decrementAndGet();
+            }
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    public String url(String path) {
+        String scheme = server instanceof HttpsServer ? "https" : "http";
+        return scheme + "://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public LoopbackServer setDelay(long millisecond) {
+        this.delay = millisecond;
+        return this;
+    }
+
+    public LoopbackServer setStatus(int status) {
+        this.status = status;
+        return this;
+    }
+
+    /**
+     * @param statuses status codes answered to the next requests, before the one of {@link #setStatus(int)}.
+     */
+    public LoopbackServer enqueueStatus(int... statuses) {
+        for (int status : statuses) {
+            nextStatuses.add(status);
+        }
+        return this;
+    }
+
+    /**
+     * @param delays delays in millisecond before answering the next requests, before the one of {@link #setDelay(long)}.
+     */
+    public LoopbackServer enqueueDelay(long... delays) {
+        for (long delay : delays) {
+            nextDelays.add(delay);
+        }
+        return this;
+    }
+
+    public LoopbackServer setBody(byte[] body, String contentType) {
+        this.body = body;
+        this.contentType = contentType;
+        return this;
+    }
+
+    public LoopbackServer setHeaders(String... pairs) {
+        this.headers = pairs;
+        return this;
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMaxActive() {
+        return maxActive.get();
+    }
+
+    public byte[] getLastRequestBody() {
+        return lastRequestBody;
+    }
+
+    public String getLastRequestMethod() {
+        return lastRequestMethod;
+    }
+
+    public String getLastRequestHeader(String name) {
+        com.sun.net.httpserver.Headers current = lastRequestHeaders;
+        return current == null ? null : current.getFirst(name);
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * @param keyStore {@link String} resource of the test key store : "/loopback.jks" issued for
+     *                 127.0.0.1, or "/wrong-host.jks" issued for "wrong.example.com".
+     * @return {@link SSLContext} serving, or trusting, the certificate of the key store only.
+     */
+    public static SSLContext tlsContext(String keyStore) throws Exception {
+        KeyStore store = KeyStore.getInstance("JKS");
+        InputStream in = LoopbackServer.class.getResourceAsStream(keyStore);
+        try {
+            store.load(in, "password".toCharArray());
+        } finally {
+            in.close();
+        }
+        KeyManagerFactory keys = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keys.init(store, "password".toCharArray());
+        TrustManagerFactory trust = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trust.init(store);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keys.getKeyManagers(), trust.getTrustManagers(), null);
+        return context;
+    }
+}
@@ -0,0 +1,233 @@
+package ca.teyssedre.restclient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class NioTransportUnitTest {
+
+    private LoopbackServer server;
+    private NioTransport transport;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LoopbackServer();
+        transport = new NioTransport();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        transport.shutdown();
+        server.stop();
+    }
+
+    @Test
+    public void connection_is_reused_between_requests() throws Exception {
+        server.setBody("pooled".getBytes("UTF-8"), "text/plain");
+        HttpClient client = new HttpClient().setTransport(transport);
+        for (int i = 0; i < 3; i++) {
+            HttpResponse response = client.execute(new HttpRequest(server.url("/pooled")));
+            assertNull(response.getException());
+            assertEquals("pooled", response.getStringResponse());
+        }
+
+        assertEquals(3, client.getConnectionStats().getExchangeCount());
+        assertEquals(1, client.getConnectionStats().getNewConnectionCount());
+        assertEquals(2, client.getConnectionStats().getReusedConnectionCount());
+        assertEquals(1, transport.getIdleConnectionCount());
+    }
+
+    @Test
+    public void body_of_unknown_length_is_sent_chunked() throws Exception {
+        byte[] payload = new byte[20000];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+        HttpRequest request = new HttpRequest(server.url("/upload"))
+                .addBody(HttpBody.create(new ByteArrayInputStream(payload), -1));
+        HttpResponse response = new HttpClient().setTransport(transport).execute(request);
+
+        assertNull(response.getException());
+        assertEquals("POST", server.getLastRequestMethod());
+        assertEquals("chunked", server.getLastRequestHeader("Transfer-Encoding"));
+        assertArrayEquals(payload, server.getLastRequestBody());
+    }
+
+    @Test
+    public void idle_connections_are_evicted() throws Exception {
+        transport.setKeepAlive(50);
+        HttpClient client = new HttpClient().setTransport(transport);
+        client.execute(new HttpRequest(server.url("/first")));
+        assertEquals(1, transport.getIdleConnectionCount());
+
+        Thread.sleep(100);
+        assertEquals(1, transport.evictIdleConnections());
+        client.execute(new HttpRequest(server.url("/second")));
+
+        assertEquals(2, client.getConnectionStats().getNewConnectionCount());
+    }
+
+    @Test
+    public void error_status_sets_request_exception() throws Exception {
+        server.setStatus(503).setBody("down".getBytes("UTF-8"), "text/plain");
+        HttpResponse response = new HttpClient().setTransport(transport).execute(new HttpRequest(server.url("/down")));
+
+        assertEquals(503, response.getStatusCode());
+        assertEquals("down", response.getStringResponse());
+        assertTrue(response.getException() instanceof RequestException);
+    }
+
+    @Test
+    public void pipelined_requests_share_the_connection() throws Exception {
+        // the server answers the second and third requests only once both have been received
+        final ServerSocket socket = new ServerSocket(0, 10, InetAddress.getByName("127.0.0.1"));
+        final AtomicInteger accepted = new AtomicInteger();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Socket client = socket.accept();
+                    accepted.incrementAndGet();
+                    client.setSoTimeout(5000);
+                    InputStream in = client.getInputStream();
+                    OutputStream out = client.getOutputStream();
+                    readHead(in);
+                    out.write("HTTP/1.1 200 OK\r\nContent-Length: 1\r\n\r\n0".getBytes("UTF-8"));
+                    out.flush();
+                    readHead(in);
+                    readHead(in);
+                    out.write("HTTP/1.1 200 OK\r\nContent-Length: 1\r\n\r\n1HTTP/1.1 200 OK\r\nContent-Length: 1\r\n\r\n2".getBytes("UTF-8"));
+                    out.flush();
+                    socket.accept();
+                    accepted.incrementAndGet();
+                } catch (Exception ignored) {
+                }
+            }
+        });
+        thread.start();
+        try {
+            final String url = "http://127.0.0.1:" + socket.getLocalPort() + "/";
+            final HttpClient client = new HttpClient().setTransport(transport.setPipelining(true));
+            assertEquals("0", client.execute(new HttpRequest(url)).getStringResponse());
+
+            final String[] bodies = new String[2];
+            Thread[] threads = new Thread[2];
+            for (int i = 0; i < threads.length; i++) {
+                final int index = i;
+                threads[i] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            bodies[index] = client.execute(new HttpRequest(url)).getStringResponse();
+                        } catch (Exception ignored) {
+                        }
+                    }
+                });
+                threads[i].start();
+            }
+            for (Thread t : threads) {
+                t.join(10000);
+            }
+
+            assertTrue("1".equals(bodies[0]) && "2".equals(bodies[1]) || "2".equals(bodies[0]) && "1".equals(bodies[1]));
+            assertEquals(1, accepted.get());
+            assertEquals(1, client.getConnectionStats().getNewConnectionCount());
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void header_with_line_break_is_rejected() throws Exception {
+        HttpRequest nio = new HttpRequest(server.url("/inject")).addHeader("X-Name", "a\r\nX-Injected: 1");
+        HttpResponse response = new HttpClient().setTransport(transport).execute(nio);
+        assertTrue(response.getException() instanceof ProtocolException);
+
+        HttpRequest path = new HttpRequest(server.url("/inject") + "?q=a\r\nHost:%20other");
+        assertTrue(new HttpClient().setTransport(transport).execute(path).getException() instanceof ProtocolException);
+
+        HttpRequest system = new HttpRequest(server.url("/inject")).addHeader("X-Name\n", "a");
+        assertTrue(new HttpClient().execute(system).getException() instanceof ProtocolException);
+        assertEquals(0, server.getHits());
+    }
+
+    @Test
+    public void unvalidated_connections_have_their_own_route() throws Exception {
+        URL url = new URL("https://api.example.com/users");
+        HttpRequest validated = new HttpRequest(url.toString());
+        HttpRequest insecure = new HttpRequest(url.toString(), HttpRequestType.GET, HttpContentType.APPLICATION_JSON);
+
+        assertEquals(NioTransport.route(url, validated), NioTransport.route(url, new HttpRequest(url.toString())));
+        assertFalse(NioTransport.route(url, validated).equals(NioTransport.route(url, insecure)));
+        validated.setTlsContext(new HttpTlsConfig().getSslContext());
+        assertFalse(NioTransport.route(url, validated).equals(NioTransport.route(url, new HttpRequest(url.toString()))));
+    }
+
+    @Test
+    public void contexts_are_told_apart_by_reference() throws Exception {
+        URL url = new URL("https://api.example.com/users");
+        HttpRequest first = new HttpRequest(url.toString());
+        HttpRequest second = new HttpRequest(url.toString());
+        SSLContext context = new HttpTlsConfig().getSslContext();
+        first.setTlsContext(context);
+        second.setTlsContext(context);
+        assertEquals(NioTransport.route(url, first), NioTransport.route(url, second));
+
+        assertSame(context, NioTransport.route(url, first).getSslContext());
+
+        second.setTlsContext(new HttpTlsConfig().getSslContext());
+        assertFalse(NioTransport.route(url, first).equals(NioTransport.route(url, second)));
+    }
+
+    @Test
+    public void other_ssl_factory_still_opens_the_connections() throws Exception {
+        SSLContext tls = LoopbackServer.tlsContext("/loopback.jks");
+        LoopbackServer https = new LoopbackServer(tls);
+        try {
+            // trusting only the certificate of the server, as a pinning factory would
+            HttpClient client = new HttpClient().setTransport(transport).setTlsConfig(new HttpTlsConfig())
+                    .setSSLFactory(tls.getSocketFactory());
+            assertNull(client.getTlsConfig());
+
+            HttpResponse response = client.execute(new HttpRequest(https.url("/pinned")));
+            assertNull(response.getException());
+            assertEquals(200, response.getStatusCode());
+            assertEquals(0, transport.getIdleConnectionCount());
+
+            HttpResponse rejected = new HttpClient().setTransport(transport).setTlsConfig(new HttpTlsConfig())
+                    .execute(new HttpRequest(https.url("/untrusted")));
+            assertTrue(rejected.getException() instanceof IOException);
+            assertEquals(1, https.getHits());
+        } finally {
+            https.stop();
+        }
+    }
+
+    private static void readHead(InputStream in) throws Exception {
+        int matched = 0;
+        int c;
+        while (matched < 4 && (c = in.read()) != -1) {
+            matched = (c == '\r' || c == '\n') ? matched + 1 : 0;
+        }
+    }
+}